@@ -39,6 +39,8 @@ import java.util.Set;
 
 import org.cts.crs.CRSException;
 import org.cts.crs.CoordinateReferenceSystem;
+import org.cts.metrics.Events;
+import org.cts.metrics.Metrics;
 import org.cts.parser.prj.PrjKeyParameters;
 import org.cts.parser.prj.PrjParser;
 import org.cts.parser.proj.ProjKeyParameters;
@@ -92,6 +94,9 @@ public class CRSFactory {
     public CoordinateReferenceSystem getCRS(String authorityAndSrid) throws CRSException {
         CoordinateReferenceSystem crs = CRSPOOL.get(authorityAndSrid);
         if (crs == null) {
+            Metrics.increment(Metrics.CRS_CACHE_MISS);
+            long start = Metrics.start();
+            Object event = Events.beginCRSCreation();
             try {
                 String[] registryNameWithCode = splitRegistryNameAndCode(authorityAndSrid);
                 if (isRegistrySupported(registryNameWithCode[0])) {
@@ -108,6 +113,10 @@ public class CRSFactory {
             } catch (RegistryException ex) {
                 throw new CRSException("Cannot create the CRS", ex);
             }
+            Metrics.recordSince(Metrics.CRS_CREATION_TIME, start);
+            Events.commitCRSCreation(event, authorityAndSrid);
+        } else {
+            Metrics.increment(Metrics.CRS_CACHE_HIT);
         }
         return crs;
     }
@@ -31,7 +31,10 @@
  */
 package org.cts;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.cts.crs.*;
@@ -47,7 +50,10 @@ import org.cts.op.Geocentric2Geographic;
 import org.cts.op.Geographic2Geocentric;
 import org.cts.op.Identity;
 import org.cts.op.projection.*;
+import org.cts.op.transformation.Altitude2EllipsoidalHeight;
+import org.cts.op.transformation.CompositeGridShiftTransformation;
 import org.cts.op.transformation.FrenchGeocentricNTF2RGF;
+import org.cts.op.transformation.FrenchGeographicNTF2RGF;
 import org.cts.op.transformation.GeocentricTranslation;
 import org.cts.op.transformation.NTv2GridShiftTransformation;
 import org.cts.op.transformation.SevenParameterTransformation;
@@ -105,6 +111,9 @@ public class CRSHelper {
                         + "CoordinateReferenceSystem");
             } else {
                 CoordinateSystem cs = getCoordinateSystem(parameters, 1);
+                if (verticalDatum.getAltiToEllpsHeight() instanceof Altitude2EllipsoidalHeight) {
+                    ((Altitude2EllipsoidalHeight) verticalDatum.getAltiToEllpsHeight()).prefetch();
+                }
                 return new VerticalCRS(identifier, verticalDatum, cs);
             }
         }
@@ -520,7 +529,11 @@ public class CRSHelper {
 
     /**
      * Set nadgrids operation used by the
-     * {@link org.cts.crs.CoordinateReferenceSystem}.
+     * {@link org.cts.crs.CoordinateReferenceSystem}. Like in proj, the grids
+     * are used in the order of the list, a grid prefixed by @ is optional
+     * and the @null grid ends the list. When several grids are listed, or a
+     * grid followed by @null, a single
+     * {@link CompositeGridShiftTransformation} is created.
      *
      * @param crs the CRS defined by {@code param} we want to associate nadgrids
      * operation with
@@ -530,46 +543,101 @@ public class CRSHelper {
         String nadgrids = param.remove(ProjKeyParameters.nadgrids);
         if (nadgrids != null) {
             String[] grids = nadgrids.split(",");
+            List<NTv2GridShiftTransformation> gridList = new ArrayList<NTv2GridShiftTransformation>();
+            boolean terminalNull = false;
             for (String grid : grids) {
                 if (!grid.equals("null")) {
                     LOGGER.warn("A grid has been founded.");
                     if (grid.equals("@null")) {
                         crs.addGridTransformation(GeodeticDatum.WGS84, Identity.IDENTITY);
-                    } else {
-                        try {
-                            if (grid.equals("ntf_r93.gsb")) {
-                                // Use a transformation based on IGN grid that is the official way to convert coordinates from NTF to RGF93.
-                                if (crs.getDatum().equals(GeodeticDatum.NTF)) {
-                                    crs.addGridTransformation(
-                                            GeodeticDatum.RGF93,
-                                            new CoordinateOperationSequence(
-                                            new Identifier(CoordinateOperation.class, "NTF" + " to " + "RGF93"),
-                                            new Geographic2Geocentric(GeodeticDatum.NTF.getEllipsoid()),
-                                            new FrenchGeocentricNTF2RGF(),
-                                            new Geocentric2Geographic(GeodeticDatum.RGF93.getEllipsoid())));
-                                } else if (crs.getDatum().equals(GeodeticDatum.NTF_PARIS)) {
-                                    crs.addGridTransformation(
-                                            GeodeticDatum.RGF93,
-                                            new CoordinateOperationSequence(
-                                            new Identifier(CoordinateOperation.class, "NTF" + " to " + "RGF93"),
-                                            GeodeticDatum.NTF_PARIS.getCoordinateOperations(GeodeticDatum.NTF).get(0),
-                                            new Geographic2Geocentric(GeodeticDatum.NTF.getEllipsoid()),
-                                            new FrenchGeocentricNTF2RGF(),
-                                            new Geocentric2Geographic(GeodeticDatum.RGF93.getEllipsoid())));
-                                }
+                        terminalNull = true;
+                        // the following grids are never used
+                        break;
+                    }
+                    boolean optional = grid.startsWith("@");
+                    if (optional) {
+                        grid = grid.substring(1);
+                    }
+                    try {
+                        if (grid.equals("ntf_r93.gsb")) {
+                            // Use a transformation based on IGN grid that is the official way to convert coordinates from NTF to RGF93.
+                            if (crs.getDatum().equals(GeodeticDatum.NTF)) {
+                                crs.addGridTransformation(GeodeticDatum.RGF93, createNTF2RGF93());
+                            } else if (crs.getDatum().equals(GeodeticDatum.NTF_PARIS)) {
+                                crs.addGridTransformation(
+                                        GeodeticDatum.RGF93,
+                                        new CoordinateOperationSequence(
+                                        new Identifier(CoordinateOperation.class, "NTF" + " to " + "RGF93"),
+                                        GeodeticDatum.NTF_PARIS.getCoordinateOperations(GeodeticDatum.NTF).get(0),
+                                        createNTF2RGF93()));
                             }
-                            NTv2GridShiftTransformation gt = NTv2GridShiftTransformation.createNTv2GridShiftTransformation(grid);
-                            gt.setMode(NTv2GridShiftTransformation.SPEED);
-                            crs.addGridTransformation(GeodeticDatum.datumFromName.get(gt.getToDatum()), gt);
-                        } catch (Exception ex) {
+                        }
+                        NTv2GridShiftTransformation gt = NTv2GridShiftTransformation.createNTv2GridShiftTransformation(grid);
+                        gt.setMode(NTv2GridShiftTransformation.SPEED);
+                        gridList.add(gt);
+                    } catch (Exception ex) {
+                        if (optional) {
+                            LOGGER.warn("Cannot find the optional nadgrid " + grid + ".");
+                        } else {
                             LOGGER.error("Cannot find the nadgrid " + grid + ".", ex);
                         }
                     }
                 }
             }
+            addGridTransformations(crs, nadgrids, gridList, terminalNull);
         }
     }
 
+    /**
+     * Add the transformations of the NTv2 grids of a nadgrids parameter to
+     * crs : a single {@link CompositeGridShiftTransformation} for the grids
+     * sharing the datums of the first grid if there are several of them or
+     * if they are followed by @null, a transformation per grid otherwise.
+     */
+    private static void addGridTransformations(GeodeticCRS crs, String nadgrids,
+            List<NTv2GridShiftTransformation> gridList, boolean terminalNull) {
+        List<NTv2GridShiftTransformation> composite = new ArrayList<NTv2GridShiftTransformation>();
+        for (NTv2GridShiftTransformation gt : gridList) {
+            if (gt.getFromDatum().equals(gridList.get(0).getFromDatum())
+                    && gt.getToDatum().equals(gridList.get(0).getToDatum())) {
+                composite.add(gt);
+            } else {
+                LOGGER.warn("The nadgrid " + gt + " does not use the datums of the first nadgrid.");
+                crs.addGridTransformation(GeodeticDatum.datumFromName.get(gt.getToDatum()), gt);
+            }
+        }
+        if (composite.size() == 1 && !terminalNull) {
+            NTv2GridShiftTransformation gt = composite.get(0);
+            crs.addGridTransformation(GeodeticDatum.datumFromName.get(gt.getToDatum()), gt);
+        } else if (!composite.isEmpty()) {
+            try {
+                CompositeGridShiftTransformation cgt = new CompositeGridShiftTransformation(
+                        new Identifier(CompositeGridShiftTransformation.class, "nadgrids=" + nadgrids),
+                        composite, terminalNull);
+                crs.addGridTransformation(GeodeticDatum.datumFromName.get(cgt.getToDatum()), cgt);
+            } catch (IOException ex) {
+                LOGGER.error("Cannot load the nadgrids " + nadgrids + ".", ex);
+            }
+        }
+    }
+
+    /**
+     * Create the official transformation from NTF geographic coordinates to
+     * RGF93 geographic coordinates : a single interpolation in a grid of
+     * geographic shifts if {@link FrenchGeographicNTF2RGF} is enabled, the
+     * geocentric interpolation of the IGN grid otherwise.
+     */
+    private static CoordinateOperation createNTF2RGF93() throws Exception {
+        if (FrenchGeographicNTF2RGF.isEnabled()) {
+            return new FrenchGeographicNTF2RGF();
+        }
+        return new CoordinateOperationSequence(
+                new Identifier(CoordinateOperation.class, "NTF" + " to " + "RGF93"),
+                new Geographic2Geocentric(GeodeticDatum.NTF.getEllipsoid()),
+                new FrenchGeocentricNTF2RGF(),
+                new Geocentric2Geographic(GeodeticDatum.RGF93.getEllipsoid()));
+    }
+
     /**
      * Returns a {@link Ellipsoid} from a map of parameters. Try first to obtain
      * the {@link Ellipsoid} from its name using {@code ellps} keyword. Then if
@@ -44,16 +44,14 @@ import org.cts.op.CoordinateOperation;
 import org.cts.op.CoordinateOperationSequence;
 import org.cts.op.CoordinateSwitch;
 import org.cts.op.Identity;
-import org.cts.op.LoadMemorizeCoordinate;
-import org.cts.op.MemorizeCoordinate;
 import org.cts.op.NonInvertibleOperationException;
 import org.cts.op.OppositeCoordinate;
 import org.cts.op.UnitConversion;
 import org.cts.op.transformation.Altitude2EllipsoidalHeight;
+import org.cts.op.transformation.CompoundAltitude2EllipsoidalHeight;
 import org.cts.units.Unit;
 
 import static org.cts.op.CoordinateOperationSequence.cleverAdd;
-import org.cts.op.IterativeTransformation;
 
 /**
  * A compound CoordinateReferenceSystem is a
@@ -184,83 +182,7 @@ public class CompoundCRS extends GeodeticCRS {
         } else if (verticalCRS.getDatum().getAltiToEllpsHeight() instanceof Altitude2EllipsoidalHeight) {
             Altitude2EllipsoidalHeight transfo = (Altitude2EllipsoidalHeight) verticalCRS.getDatum().getAltiToEllpsHeight();
             if (!horizontalCRS.getDatum().equals(transfo.getAssociatedDatum())) {
-
-                ops.add(MemorizeCoordinate.memoX); // We must save this value to check that the longitude obtained after calculation of the height is close enough to the original value
-                ops.add(MemorizeCoordinate.memoY); // We must save this value to check that the latitude obtained after calculation of the height is close enough to the original value
-
-                ops.add(MemorizeCoordinate.memoZ);
-                if (horizontalCRS.getGridTransformations(transfo.getAssociatedDatum()) != null) {
-                    ops.add(horizontalCRS.getGridTransformations(transfo.getAssociatedDatum()).get(0));
-                    ops.add(UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER));
-                    ops.add(LoadMemorizeCoordinate.loadZ);
-
-                    ops.add(MemorizeCoordinate.memoZ); // We must keep this value in memory in the eventuallity of an iterativ process
-
-                    ops.add(transfo);
-                    ops.add(UnitConversion.createUnitConverter(Unit.DEGREE, Unit.RADIAN, Unit.METER, Unit.METER));
-                    ops.add(horizontalCRS.getGridTransformations(transfo.getAssociatedDatum()).get(0).inverse());
-
-                    CoordinateOperationSequence seq = new CoordinateOperationSequence(new Identifier(CoordinateOperationSequence.class),
-                            new CoordinateSwitch(4, 5),
-                            new CoordinateSwitch(3, 4),
-                            LoadMemorizeCoordinate.loadY,
-                            LoadMemorizeCoordinate.loadX,
-                            MemorizeCoordinate.memoX,
-                            MemorizeCoordinate.memoY,
-                            new CoordinateSwitch(3, 4),
-                            new CoordinateSwitch(4, 5),
-                            horizontalCRS.getGridTransformations(transfo.getAssociatedDatum()).get(0),
-                            UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER),
-                            LoadMemorizeCoordinate.loadZ,
-                            MemorizeCoordinate.memoZ,
-                            transfo,
-                            UnitConversion.createUnitConverter(Unit.DEGREE, Unit.RADIAN, Unit.METER, Unit.METER),
-                            horizontalCRS.getGridTransformations(transfo.getAssociatedDatum()).get(0).inverse()
-                            );
-                    try {
-                        ops.add(new IterativeTransformation(seq, new int[]{3, 4}, new int[]{0, 1}, new double[]{1e-11, 1e-11}));
-                    } catch (Exception ex) {
-                    }
-
-                } else {
-                    ops.add(horizontalCRS.getDatum().getCoordinateOperations(transfo.getAssociatedDatum()).get(0));
-                    ops.add(UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER));
-                    ops.add(LoadMemorizeCoordinate.loadZ);
-
-                    ops.add(MemorizeCoordinate.memoZ); // We must keep this value in memory in the eventuallity of an iterativ process
-
-                    ops.add(transfo);
-                    ops.add(UnitConversion.createUnitConverter(Unit.DEGREE, Unit.RADIAN, Unit.METER, Unit.METER));
-                    ops.add(transfo.getAssociatedDatum().getCoordinateOperations(horizontalCRS.getDatum()).get(0));
-
-                    CoordinateOperationSequence seq = new CoordinateOperationSequence(new Identifier(CoordinateOperationSequence.class),
-                            new CoordinateSwitch(4, 5),
-                            new CoordinateSwitch(3, 4),
-                            LoadMemorizeCoordinate.loadY,
-                            LoadMemorizeCoordinate.loadX,
-                            MemorizeCoordinate.memoX,
-                            MemorizeCoordinate.memoY,
-                            new CoordinateSwitch(3, 4),
-                            new CoordinateSwitch(4, 5),
-                            horizontalCRS.getDatum().getCoordinateOperations(transfo.getAssociatedDatum()).get(0),
-                            UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER),
-                            LoadMemorizeCoordinate.loadZ,
-                            MemorizeCoordinate.memoZ,
-                            transfo,
-                            UnitConversion.createUnitConverter(Unit.DEGREE, Unit.RADIAN, Unit.METER, Unit.METER),
-                            transfo.getAssociatedDatum().getCoordinateOperations(horizontalCRS.getDatum()).get(0)
-                            );
-                    try {
-                        ops.add(new IterativeTransformation(seq, new int[]{3, 4}, new int[]{0, 1}, new double[]{1e-11, 1e-11}));
-                    } catch (Exception ex) {
-                    }
-
-                }
-
-                ops.add(LoadMemorizeCoordinate.loadY); // In fact, it deletes the memorized value of altitude
-                ops.add(LoadMemorizeCoordinate.loadY); // We use the original value for a greater precision
-                ops.add(LoadMemorizeCoordinate.loadX); // We use the original value for a greater precision
-
+                ops.add(getAltitude2EllipsoidalHeight(transfo));
             } else {
                 ops = cleverAdd(ops, UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER));
                 ops.add(transfo);
@@ -275,6 +197,30 @@ public class CompoundCRS extends GeodeticCRS {
                 CoordinateOperationSequence.class), ops);
     }
 
+    /**
+     * Return the operation transforming altitudes of this CRS into
+     * ellipsoidal heights (latitude and longitude in radians). If the grid of
+     * transfo is defined in another geodetic datum than the horizontal datum,
+     * the horizontal position is transformed to this datum before
+     * interpolating the grid.
+     *
+     * @param transfo the altitude grid transformation of the vertical datum
+     */
+    private CompoundAltitude2EllipsoidalHeight getAltitude2EllipsoidalHeight(Altitude2EllipsoidalHeight transfo)
+            throws NonInvertibleOperationException {
+        GeodeticDatum gridDatum = transfo.getAssociatedDatum();
+        if (horizontalCRS.getDatum().equals(gridDatum)) {
+            return new CompoundAltitude2EllipsoidalHeight(transfo, Identity.IDENTITY, Identity.IDENTITY);
+        } else if (horizontalCRS.getGridTransformations(gridDatum) != null) {
+            CoordinateOperation gridTransformation = horizontalCRS.getGridTransformations(gridDatum).get(0);
+            return new CompoundAltitude2EllipsoidalHeight(transfo, gridTransformation, gridTransformation.inverse());
+        } else {
+            return new CompoundAltitude2EllipsoidalHeight(transfo,
+                    horizontalCRS.getDatum().getCoordinateOperations(gridDatum).get(0),
+                    gridDatum.getCoordinateOperations(horizontalCRS.getDatum()).get(0));
+        }
+    }
+
     /**
      * Creates a CoordinateOperation object to convert coordinates from a
      * GeographicReferenceSystem based on the same horizonal datum and vertical
@@ -291,19 +237,7 @@ public class CompoundCRS extends GeodeticCRS {
             // TO DO
         } else if (verticalCRS.getDatum().getAltiToEllpsHeight() instanceof Altitude2EllipsoidalHeight) {
             Altitude2EllipsoidalHeight transfo = (Altitude2EllipsoidalHeight) verticalCRS.getDatum().getAltiToEllpsHeight();
-            ops.add(MemorizeCoordinate.memoX);
-            ops.add(MemorizeCoordinate.memoY);
-            if (!horizontalCRS.getDatum().equals(transfo.getAssociatedDatum())) {
-                if (horizontalCRS.getGridTransformations(transfo.getAssociatedDatum()) != null) {
-                    ops.add(horizontalCRS.getGridTransformations(transfo.getAssociatedDatum()).get(0));
-                } else {
-                    ops.add(horizontalCRS.getDatum().getCoordinateOperations(transfo.getAssociatedDatum()).get(0));
-                }
-            }
-            ops.add(UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER));
-            ops.add(transfo.inverse());
-            ops.add(LoadMemorizeCoordinate.loadY);
-            ops.add(LoadMemorizeCoordinate.loadX);
+            ops.add(getAltitude2EllipsoidalHeight(transfo).inverse());
         } else if (verticalCRS.getDatum().getType().equals(VerticalDatum.Type.ELLIPSOIDAL)) {
             ops.add(Identity.IDENTITY);
         } else {
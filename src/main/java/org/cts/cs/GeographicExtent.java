@@ -142,7 +142,7 @@ public class GeographicExtent implements Extent {
      * Return the eastern bound of this geographic area.
      */
     public double getEasternBound() {
-        return westernBound;
+        return easternBound;
     }
 
     /**
@@ -33,6 +33,7 @@ package org.cts.datum;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.atan;
+import static java.lang.Math.cos;
 import static java.lang.Math.exp;
 import static java.lang.Math.log;
 import static java.lang.Math.pow;
@@ -46,6 +47,9 @@ import java.util.Map;
 import org.cts.Identifiable;
 import org.cts.IdentifiableComponent;
 import org.cts.Identifier;
+import org.cts.util.ConvergencePolicy;
+import org.cts.util.NonConvergenceException;
+import org.cts.util.UncheckedNonConvergenceException;
 
 /**
  * An ellipsoid is a mathematical surface used to describe the Earth surface.<p>
@@ -79,6 +83,11 @@ public class Ellipsoid extends IdentifiableComponent {
      * The double value of PI/2.
      */
     private static final double PI_2 = Math.PI / 2.;
+    /**
+     * Convergence policy of the latitude computation from isometric latitude.
+     */
+    private static volatile ConvergencePolicy latitudeConvergencePolicy =
+            new ConvergencePolicy("Ellipsoid.latitude", 100, 1E-11, ConvergencePolicy.OnFailure.THROW);
     /**
      * Perfect SPHERE.
      */
@@ -697,6 +706,19 @@ public class Ellipsoid extends IdentifiableComponent {
         return log(tan((PI_2 + latitude) / 2) * pow((1 - esinlat) / (1 + esinlat), e / 2));
     }
 
+    /**
+     * Computes the derivative of the isometric latitude with respect to the
+     * geographic latitude, which is the ratio between the meridional radius of
+     * curvature and the radius of the parallel.
+     *
+     * @param latitude geographic latitude
+     * @return the derivative of the isometric latitude (no unit)
+     */
+    public final double isometricLatitudeDerivative(double latitude) {
+        double sinlat = sin(latitude);
+        return (1 - e2) / ((1 - e2 * sinlat * sinlat) * cos(latitude));
+    }
+
     /**
      * Computes the geographic latitude from the isometric latitude (fr : calcul
      * de la latitude géographique à partir de la latitude isometrique).<p>
@@ -715,18 +737,32 @@ public class Ellipsoid extends IdentifiableComponent {
      * sequence. Use 1E-10 for a precision of about 0.6 mm, 1E-11 for a
      * precision of about 0.06 mm and 1E-12 for a preciison of about 0.006 mm
      * @return the geographic latitude as a double
+     * @throws UncheckedNonConvergenceException if the sequence does not
+     * converge and the latitude convergence policy throws on failure
      */
     public final double latitude(double isoLatitude, double epsilon) {
+        ConvergencePolicy policy = latitudeConvergencePolicy;
+        int maxIterations = policy.getMaxIterations();
         double exp_isolatitude = exp(isoLatitude);
         double lat0 = 2 * atan(exp_isolatitude) - PI_2;
         double lati = lat0;
         double latj = 1000;
+        int iter = 0;
         while (abs(latj - lati) >= epsilon) {
+            if (iter == maxIterations) {
+                try {
+                    return policy.notConverged(latj);
+                } catch (NonConvergenceException e) {
+                    throw new UncheckedNonConvergenceException(e);
+                }
+            }
+            iter++;
             lati = latj;
             double esinlat = e * sin(lati);
             latj = 2 * atan(pow((1 + esinlat) / (1 - esinlat), e / 2) * exp_isolatitude)
                     - PI_2;
         }
+        policy.converged(iter);
         return latj;
     }
 
@@ -743,7 +779,26 @@ public class Ellipsoid extends IdentifiableComponent {
      * @return the geographic latitude in radians
      */
     public final double latitude(double isoLatitude) {
-        return latitude(isoLatitude, 1E-11);
+        return latitude(isoLatitude, latitudeConvergencePolicy.getTolerance());
+    }
+
+    /**
+     * Return the policy used to stop the computation of latitudes from
+     * isometric latitudes (see {@link #latitude(double, double)}).
+     */
+    public static ConvergencePolicy getLatitudeConvergencePolicy() {
+        return latitudeConvergencePolicy;
+    }
+
+    /**
+     * Set the policy used to stop the computation of latitudes from isometric
+     * latitudes. The tolerance of the policy is used by
+     * {@link #latitude(double)}.
+     *
+     * @param policy the new convergence policy
+     */
+    public static void setLatitudeConvergencePolicy(ConvergencePolicy policy) {
+        latitudeConvergencePolicy = policy;
     }
 
     /**
@@ -169,95 +169,95 @@ public class VerticalDatum extends AbstractDatum {
             "", "", Type.GEOIDAL, "ggm04v1.txt", GeodeticDatum.RGF93);
     public final static VerticalDatum IGN62KER = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Géoïde géométrique Kerguelen (EGM2008 + Points GPS nivelés)", "IGN62KER"),
-            new GeographicExtent("Kerguelen", 67, 71, -50.5, -48),
+            new GeographicExtent("Kerguelen", -50.5, -48, 67, 71),
             "", "", Type.GEOIDAL, "ggker08v2.txt", GeodeticDatum.RGF93);
     public final static VerticalDatum DANGER50 = new VerticalDatum(
             new Identifier("EPSG", "5190", "Géoïde géométrique Saint Pierre et Miquelon (EGM96 + Points GPS nivelés)", "DANGER50"),
-            new GeographicExtent("Saint Pierre et Miquelon", -56.52, -55.9350, 46.485, 47.295),
+            new GeographicExtent("Saint Pierre et Miquelon", 46.485, 47.295, -56.52, -55.9350),
             "", "", Type.GEOIDAL, "ggspm06v1.txt", GeodeticDatum.RGF93);
     public final static VerticalDatum BORASAU01 = new VerticalDatum(
             new Identifier("EPSG", "5202", "Bora Bora SAU 2001", "BORASAU01"),
-            new GeographicExtent("Bora", -152, -151.5, -16.75, -16.25),
+            new GeographicExtent("Bora", -16.75, -16.25, -152, -151.5),
             "", "", Type.GEOIDAL, "ggpf02-Bora.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum FAKARAVA = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Fakarava dans RGPF", "FAKARAVA"),
-            new GeographicExtent("Fakarava", -145.9, -145.3, -16.65, -15.95),
+            new GeographicExtent("Fakarava", -16.65, -15.95, -145.9, -145.3),
             "", "", Type.GEOIDAL, "ggpf08-Fakarava.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum GAMBIER = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Gambier vers RGPF", "GAMBIER"),
-            new GeographicExtent("Gambier", -135.25, -134.75, -23.4, -22.9),
+            new GeographicExtent("Gambier", -23.4, -22.9, -135.25, -134.75),
             "", "", Type.GEOIDAL, "ggpf08-Gambier.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum HAO = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynesie : Hao vers RGPF", "HAO"),
-            new GeographicExtent("Hao", -141.2, -140.55, -18.55, -17.95),
+            new GeographicExtent("Hao", -18.55, -17.95, -141.2, -140.55),
             "", "", Type.GEOIDAL, "ggpf08-Hao.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum HIVAOA = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : HIVA OA dans RGPF", "HAO"),
-            new GeographicExtent("Hao", -139.25, -138.675, -9.9, -9.6),
+            new GeographicExtent("Hao", -9.9, -9.6, -139.25, -138.675),
             "", "", Type.GEOIDAL, "ggpf05-HivaOa.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum HUAHINESAU01 = new VerticalDatum(
             new Identifier("EPSG", "5200", "Huahine SAU 2001", "HUAHINESAU01"),
-            new GeographicExtent("Huahine", -151.5, -150.75, -17, -16.5),
+            new GeographicExtent("Huahine", -17, -16.5, -151.5, -150.75),
             "", "", Type.GEOIDAL, "ggpf02-Huahine.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum IGNTAHITI66 = new VerticalDatum(
             new Identifier("EPSG", "5196", "Polynésie : IGN TAHITI 1966 dans RGPF", "IGNTAHITI66"),
-            new GeographicExtent("Tahiti", -149.69, -149, -18, -17),
+            new GeographicExtent("Tahiti", -18, -17, -149.69, -149),
             "", "", Type.GEOIDAL, "ggpf10-Tahiti.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum MAIAO01 = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : MAIAO 2001 dans RGPF", "MAIAO01"),
-            new GeographicExtent("Maiao", -150.75, -150.5, -17.75, -17.5),
+            new GeographicExtent("Maiao", -17.75, -17.5, -150.75, -150.5),
             "", "", Type.GEOIDAL, "ggpf02-Maiao.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum MATAIVA = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Mataiva vers RGPF", "MATAIVA"),
-            new GeographicExtent("Mataiva", -148.8, -148.55, -14.95, -14.8),
+            new GeographicExtent("Mataiva", -14.95, -14.8, -148.8, -148.55),
             "", "", Type.GEOIDAL, "ggpf08-Mataiva.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum MAUPITISAU01 = new VerticalDatum(
             new Identifier("EPSG", "5199", "Maupiti SAU 2001", "MAUPITISAU01"),
-            new GeographicExtent("Maupiti", -152.5, -152, -16.75, -16.25),
+            new GeographicExtent("Maupiti", -16.75, -16.25, -152.5, -152),
             "", "", Type.GEOIDAL, "ggpf02-Maupiti.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum MOOREASAU81 = new VerticalDatum(
             new Identifier("EPSG", "5197", "Moorea SAU 1981", "MOOREASAU81"),
-            new GeographicExtent("Moorea", -150.05, -149.65, -17.7, -17.35),
+            new GeographicExtent("Moorea", -17.7, -17.35, -150.05, -149.65),
             "", "", Type.GEOIDAL, "ggpf10-Moorea.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum NUKUHIVA = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : NUKU HIVA ALTI dans RGPF", "NUKUHIVA"),
-            new GeographicExtent("Nuku Hiva", -140.3, -139.9, -9, -8.675),
+            new GeographicExtent("Nuku Hiva", -9, -8.675, -140.3, -139.9),
             "", "", Type.GEOIDAL, "ggpf05-Nuku.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum RAIATEASAU01 = new VerticalDatum(
             new Identifier("EPSG", "5198", "Raiatea SAU 2001", "RAIATEASAU01"),
-            new GeographicExtent("Raiatea", -151.75, -151.25, -17, -16.5),
+            new GeographicExtent("Raiatea", -17, -16.5, -151.75, -151.25),
             "", "", Type.GEOIDAL, "ggpf02-Raiatea.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum RAIVAVAE = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Raivavae vers RGPF", "RAIVAVAE"),
-            new GeographicExtent("Raicvavae", -147.8, -147.5, -24, -23.75),
+            new GeographicExtent("Raicvavae", -24, -23.75, -147.8, -147.5),
             "", "", Type.GEOIDAL, "ggpf08-Raivavae.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum REAO = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Reao vers RGPF", "REAO"),
-            new GeographicExtent("Reao", -136.55, -136.2, -18.65, -18.4),
+            new GeographicExtent("Reao", -18.65, -18.4, -136.55, -136.2),
             "", "", Type.GEOIDAL, "ggpf08-Reao.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum RURUTU = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Rurutu vers RGPF", "RURUTU"),
-            new GeographicExtent("Rurutu", -151.45, -151.25, -22.6, -22.35),
+            new GeographicExtent("Rurutu", -22.6, -22.35, -151.45, -151.25),
             "", "", Type.GEOIDAL, "ggpf08-Rurutu.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum TAHAASAU01 = new VerticalDatum(
             new Identifier("EPSG", "5201", "Tahaa SAU 2001", "TAHAASAU01"),
-            new GeographicExtent("Tahaa", -151.75, -151.25, -16.75, -16.5),
+            new GeographicExtent("Tahaa", -16.75, -16.5, -151.75, -151.25),
             "", "", Type.GEOIDAL, "ggpf02-Tahaa.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum TIKEHAU = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Tikehau vers RGPF", "TIKEHAU"),
-            new GeographicExtent("Tikehau", -148.35, -147.95, -15.2, -14.85),
+            new GeographicExtent("Tikehau", -15.2, -14.85, -148.35, -147.95),
             "", "", Type.GEOIDAL, "ggpf08-Tikehau.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum TUBUAI = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Tubuai vers RGPF", "TUBUAI"),
-            new GeographicExtent("Tubuai", -149.65, -149.3, -23.5, -23.25),
+            new GeographicExtent("Tubuai", -23.5, -23.25, -149.65, -149.3),
             "", "", Type.GEOIDAL, "ggpf08-Tubuai.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum TUPAI01 = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Polynésie : Tubuai vers RGPF", "TUPAI01"),
-            new GeographicExtent("Tupai", -152, -151.75, -16.5, -16),
+            new GeographicExtent("Tupai", -16.5, -16, -152, -151.75),
             "", "", Type.GEOIDAL, "ggpf02-Tupai.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum RAR07 = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Référence des Altitudes Réunionnaises 2007", "RAR07"),
-            new GeographicExtent("Reunion", 55.14, 55.94, -21.5, -20.75),
+            new GeographicExtent("Reunion", -21.5, -20.75, 55.14, 55.94),
             "", "", Type.GEOIDAL, "RAR07.mnt", GeodeticDatum.RGF93);
     public final static VerticalDatum IGN88GTBTold = new VerticalDatum(
             new Identifier(VerticalDatum.class, "Geoide géométrique pour la Guadeloupe : Grande-Terre et Basse-Terre (EGM96 + points GPS nivelés)", "IGN88GTBTold"),
@@ -0,0 +1,111 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsCollector} keeping its counters in {@link LongAdder}s and
+ * its durations in {@link LatencyHistogram}s, so that it can be used by many
+ * threads with a very low contention.
+ */
+public class DefaultMetricsCollector implements MetricsCollector {
+
+    private final ConcurrentMap<String, LongAdder> counters =
+            new ConcurrentHashMap<String, LongAdder>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+
+    /**
+     * Creates a new DefaultMetricsCollector.
+     */
+    public DefaultMetricsCollector() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void increment(String name, long delta) {
+        LongAdder counter = counters.get(name);
+        if (counter == null) {
+            LongAdder newCounter = new LongAdder();
+            counter = counters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.add(delta);
+    }
+
+    @Override
+    public void record(String name, long value) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.record(value);
+    }
+
+    @Override
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> c = new HashMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            c.put(entry.getKey(), entry.getValue().sum());
+        }
+        Map<String, HistogramSnapshot> h = new HashMap<String, HistogramSnapshot>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            h.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new MetricsSnapshot(c, h);
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+/**
+ * An EventRecorder publishes the main activities of CTS as events of an
+ * external profiler (Java Flight Recorder by default, see {@link Events}).<p>
+ * Each activity is reported in two steps : a begin method returns an opaque
+ * event object (or null if this kind of event is not recorded), then the
+ * matching commit method completes the event once the activity is over.
+ * Commit methods must accept a null event and do nothing in this case.
+ */
+public interface EventRecorder {
+
+    /**
+     * Begin a grid load event.
+     */
+    public Object beginGridLoad();
+
+    /**
+     * Commit a grid load event.
+     *
+     * @param event the object returned by {@link #beginGridLoad()}
+     * @param file the name of the grid file
+     * @param format the format of the grid
+     * @param bytes the memory used by the grid
+     */
+    public void commitGridLoad(Object event, String file, String format, long bytes);
+
+    /**
+     * Begin a registry parse event.
+     */
+    public Object beginRegistryParse();
+
+    /**
+     * Commit a registry parse event.
+     *
+     * @param event the object returned by {@link #beginRegistryParse()}
+     * @param registry the name of the parsed registry file
+     * @param code the code looked for (null if all the codes are read)
+     */
+    public void commitRegistryParse(Object event, String registry, String code);
+
+    /**
+     * Begin a CRS creation event.
+     */
+    public Object beginCRSCreation();
+
+    /**
+     * Commit a CRS creation event.
+     *
+     * @param event the object returned by {@link #beginCRSCreation()}
+     * @param code the code of the created CRS
+     */
+    public void commitCRSCreation(Object event, String code);
+
+    /**
+     * Begin an operation creation event.
+     */
+    public Object beginOperationCreation();
+
+    /**
+     * Commit an operation creation event.
+     *
+     * @param event the object returned by {@link #beginOperationCreation()}
+     * @param source the code of the source CRS
+     * @param target the code of the target CRS
+     * @param operations the number of candidate operations found
+     */
+    public void commitOperationCreation(Object event, String source, String target, int operations);
+
+    /**
+     * Return true if bulk transformation events are currently recorded. This
+     * method is called for each bulk transformation and must be cheap.
+     */
+    public boolean isTransformBatchEnabled();
+
+    /**
+     * Begin a bulk transformation event.
+     */
+    public Object beginTransformBatch();
+
+    /**
+     * Commit a bulk transformation event.
+     *
+     * @param event the object returned by {@link #beginTransformBatch()}
+     * @param operation the name of the operation
+     * @param points the number of transformed points
+     */
+    public void commitTransformBatch(Object event, String operation, int points);
+}
@@ -0,0 +1,223 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Static entry point used by CTS to publish profiling events.<p>
+ * If the JVM provides the jdk.jfr module, events are published as Java Flight
+ * Recorder events (see the org.cts.metrics.jfr package). They are all
+ * disabled by default and must be enabled in the recording settings, for
+ * instance :
+ * <pre>
+ * -XX:StartFlightRecording:settings=profile,+org.cts.GridLoad#enabled=true
+ * </pre>
+ * On JVMs without jdk.jfr, a no-op recorder is used.<p>
+ * Bulk transformation events are sampled : only one batch out of
+ * {@link #getBatchSamplingPeriod()} is recorded. Batches are counted per
+ * thread, and only while the recorder records bulk transformation events.
+ */
+public final class Events {
+
+    static final Logger LOGGER = LoggerFactory.getLogger(Events.class);
+    private static final String JFR_RECORDER = "org.cts.metrics.jfr.JfrEventRecorder";
+    private static volatile EventRecorder recorder = defaultRecorder();
+    private static volatile int batchSamplingPeriod = 64;
+    private static final ThreadLocal<long[]> batchCount = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private Events() {
+    }
+
+    /**
+     * Return the JFR recorder if jdk.jfr is available, or a no-op recorder.
+     */
+    private static EventRecorder defaultRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (EventRecorder) Class.forName(JFR_RECORDER).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            LOGGER.debug("Java Flight Recorder is not available, CTS events are disabled");
+        } catch (LinkageError e) {
+            LOGGER.debug("Java Flight Recorder is not available, CTS events are disabled");
+        }
+        return NoOpEventRecorder.NOOP;
+    }
+
+    /**
+     * Return the installed EventRecorder.
+     */
+    public static EventRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Install a new EventRecorder. Passing null disables all events.
+     *
+     * @param newRecorder the recorder receiving CTS events
+     */
+    public static void setRecorder(EventRecorder newRecorder) {
+        recorder = newRecorder == null ? NoOpEventRecorder.NOOP : newRecorder;
+    }
+
+    /**
+     * Return the sampling period of bulk transformation events.
+     */
+    public static int getBatchSamplingPeriod() {
+        return batchSamplingPeriod;
+    }
+
+    /**
+     * Set the sampling period of bulk transformation events (1 to record
+     * every batch).
+     *
+     * @param period the number of batches per recorded batch
+     */
+    public static void setBatchSamplingPeriod(int period) {
+        batchSamplingPeriod = Math.max(1, period);
+    }
+
+    /**
+     * Begin a grid load event (see {@link EventRecorder#beginGridLoad()}).
+     */
+    public static Object beginGridLoad() {
+        return recorder.beginGridLoad();
+    }
+
+    /**
+     * Commit a grid load event.
+     *
+     * @param event the object returned by {@link #beginGridLoad()}
+     * @param file the name of the grid file
+     * @param format the format of the grid
+     * @param bytes the memory used by the grid
+     */
+    public static void commitGridLoad(Object event, String file, String format, long bytes) {
+        if (event != null) {
+            recorder.commitGridLoad(event, file, format, bytes);
+        }
+    }
+
+    /**
+     * Begin a registry parse event.
+     */
+    public static Object beginRegistryParse() {
+        return recorder.beginRegistryParse();
+    }
+
+    /**
+     * Commit a registry parse event.
+     *
+     * @param event the object returned by {@link #beginRegistryParse()}
+     * @param registry the name of the parsed registry file
+     * @param code the code looked for
+     */
+    public static void commitRegistryParse(Object event, String registry, String code) {
+        if (event != null) {
+            recorder.commitRegistryParse(event, registry, code);
+        }
+    }
+
+    /**
+     * Begin a CRS creation event.
+     */
+    public static Object beginCRSCreation() {
+        return recorder.beginCRSCreation();
+    }
+
+    /**
+     * Commit a CRS creation event.
+     *
+     * @param event the object returned by {@link #beginCRSCreation()}
+     * @param code the code of the created CRS
+     */
+    public static void commitCRSCreation(Object event, String code) {
+        if (event != null) {
+            recorder.commitCRSCreation(event, code);
+        }
+    }
+
+    /**
+     * Begin an operation creation event.
+     */
+    public static Object beginOperationCreation() {
+        return recorder.beginOperationCreation();
+    }
+
+    /**
+     * Commit an operation creation event.
+     *
+     * @param event the object returned by {@link #beginOperationCreation()}
+     * @param source the code of the source CRS
+     * @param target the code of the target CRS
+     * @param operations the number of candidate operations found
+     */
+    public static void commitOperationCreation(Object event, String source, String target, int operations) {
+        if (event != null) {
+            recorder.commitOperationCreation(event, source, target, operations);
+        }
+    }
+
+    /**
+     * Begin a bulk transformation event if this batch is sampled.
+     */
+    public static Object beginTransformBatch() {
+        EventRecorder r = recorder;
+        if (!r.isTransformBatchEnabled()) {
+            return null;
+        }
+        int period = batchSamplingPeriod;
+        if (period > 1 && batchCount.get()[0]++ % period != 0) {
+            return null;
+        }
+        return r.beginTransformBatch();
+    }
+
+    /**
+     * Commit a bulk transformation event.
+     *
+     * @param event the object returned by {@link #beginTransformBatch()}
+     * @param operation the name of the operation
+     * @param points the number of transformed points
+     */
+    public static void commitTransformBatch(Object event, String operation, int points) {
+        if (event != null) {
+            recorder.commitTransformBatch(event, operation, points);
+        }
+    }
+}
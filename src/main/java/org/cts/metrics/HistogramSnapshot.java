@@ -0,0 +1,146 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+/**
+ * An immutable view of the state of a {@link LatencyHistogram}.
+ */
+public final class HistogramSnapshot {
+
+    private final long count;
+    private final long sum;
+    private final long max;
+    private final long[] buckets;
+
+    /**
+     * Create a new HistogramSnapshot.
+     *
+     * @param count number of recorded values
+     * @param sum sum of the recorded values
+     * @param max maximum recorded value
+     * @param buckets number of values recorded in each power of two bucket
+     */
+    HistogramSnapshot(long count, long sum, long max, long[] buckets) {
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Return the number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Return the sum of the recorded values.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Return the greatest recorded value (0 if the histogram is empty).
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Return the mean of the recorded values (0 if the histogram is empty).
+     */
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * Return a copy of the bucket counts. Bucket i counts values v such as
+     * 2^(i-1) &lt;= v &lt; 2^i.
+     */
+    public long[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * Return an upper bound of the p-th percentile of the recorded values.
+     * The result is the upper limit of the bucket containing the percentile,
+     * bounded by the maximum recorded value.
+     *
+     * @param p the percentile, between 0 and 100
+     */
+    public long getPercentile(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * Math.max(0.0, Math.min(100.0, p)) / 100.0);
+        long cumul = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumul += buckets[i];
+            if (cumul >= rank && cumul > 0) {
+                long upper = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upper, max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Return a new snapshot combining the values recorded in this snapshot
+     * and in other (for example to aggregate the histograms of several
+     * collectors).
+     *
+     * @param other the snapshot to merge with this one
+     */
+    public HistogramSnapshot merge(HistogramSnapshot other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return other;
+        }
+        long[] b = new long[Math.max(buckets.length, other.buckets.length)];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (i < buckets.length ? buckets[i] : 0L)
+                    + (i < other.buckets.length ? other.buckets[i] : 0L);
+        }
+        return new HistogramSnapshot(count + other.count, sum + other.sum,
+                Math.max(max, other.max), b);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " mean=" + getMean() + " p50<=" + getPercentile(50)
+                + " p99<=" + getPercentile(99) + " max=" + max;
+    }
+}
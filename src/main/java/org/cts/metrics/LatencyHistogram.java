@@ -0,0 +1,115 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A low overhead histogram of positive long values (generally durations in
+ * nanoseconds).<p>
+ * Values are counted in power of two buckets : bucket i contains values v
+ * such as 2^(i-1) &lt;= v &lt; 2^i (bucket 0 contains zero and negative values).
+ * Recording a value is lock-free and costs a few additions, so that the
+ * histogram can be updated from many threads at the same time. Percentiles
+ * computed from a {@link HistogramSnapshot} are thus precise within a factor
+ * 2, which is what is needed to follow latencies.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of buckets of the histogram (one per bit of a long, plus the
+     * bucket of zero values).
+     */
+    public static final int BUCKETS = 65;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a new empty LatencyHistogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Return the index of the bucket containing value.
+     *
+     * @param value the recorded value
+     */
+    static int bucketIndex(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Record a new value in this histogram.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        buckets[bucketIndex(value)].increment();
+        count.increment();
+        sum.add(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Reset this histogram.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+        max.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * Return a snapshot of the current state of this histogram.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] b = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            b[i] = buckets[i].sum();
+        }
+        long n = count.sum();
+        return new HistogramSnapshot(n, sum.sum(), n == 0 ? 0 : max.get(), b);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Static entry point used by CTS to publish its metrics to the installed
+ * {@link MetricsCollector}.<p>
+ * By default, the collector is {@link NoOpMetricsCollector#NOOP} and the
+ * instrumentation only costs a volatile read. To monitor CTS, install a
+ * collector once at startup :
+ * <pre>
+ * Metrics.setCollector(new DefaultMetricsCollector());
+ * ...
+ * MetricsSnapshot snapshot = Metrics.snapshot();
+ * </pre>
+ * Durations are recorded in nanoseconds and memory sizes in bytes.
+ */
+public final class Metrics {
+
+    /**
+     * Number of CRS found in the {@link org.cts.CRSFactory} cache.
+     */
+    public static final String CRS_CACHE_HIT = "crs.cache.hit";
+    /**
+     * Number of CRS not found in the {@link org.cts.CRSFactory} cache.
+     */
+    public static final String CRS_CACHE_MISS = "crs.cache.miss";
+    /**
+     * Time spent to create a CRS missing from the cache.
+     */
+    public static final String CRS_CREATION_TIME = "crs.creation.time";
+    /**
+     * Time spent to read a registry file.
+     */
+    public static final String REGISTRY_READ_TIME = "registry.read.time";
+    /**
+     * Time spent to create the coordinate operations between two CRS.
+     */
+    public static final String OPERATION_CREATION_TIME = "operation.creation.time";
+    /**
+     * Number of coordinate operation lists found in the cache of the source
+     * CRS.
+     */
+    public static final String OPERATION_CACHE_HIT = "operation.cache.hit";
+    /**
+     * Prefix of the grid load time histograms (followed by the grid class).
+     */
+    public static final String GRID_LOAD_TIME = "grid.load.time.";
+    /**
+     * Prefix of the grid memory histograms (followed by the grid class).
+     */
+    public static final String GRID_LOAD_MEMORY = "grid.load.memory.";
+    /**
+     * Time spent by transformations waiting for a grid loaded in the
+     * background.
+     */
+    public static final String GRID_WAIT_TIME = "grid.wait.time";
+    /**
+     * Number of grids released to respect the memory budget of the grids.
+     */
+    public static final String GRID_EVICTION = "grid.eviction";
+    /**
+     * Prefix of the transform counters (followed by the operation class).
+     */
+    public static final String TRANSFORM_COUNT = "transform.count.";
+    /**
+     * Number of coordinates rejected because they are out of the extent of a
+     * grid.
+     */
+    public static final String OUT_OF_EXTENT = "transform.outOfExtent";
+    /**
+     * Number of coordinates found in the cache of a memoized operation.
+     */
+    public static final String MEMO_HIT = "transform.memo.hit";
+    /**
+     * Number of coordinates not found in the cache of a memoized operation.
+     */
+    public static final String MEMO_MISS = "transform.memo.miss";
+    /**
+     * Number of coordinates transformed by the fallback operation of a
+     * {@link org.cts.op.FallbackCoordinateOperation}.
+     */
+    public static final String FALLBACK = "transform.fallback";
+    private static volatile MetricsCollector collector = NoOpMetricsCollector.NOOP;
+    private static final ConcurrentMap<Class<?>, String> transformCounterNames =
+            new ConcurrentHashMap<Class<?>, String>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Return the installed MetricsCollector.
+     */
+    public static MetricsCollector getCollector() {
+        return collector;
+    }
+
+    /**
+     * Install a new MetricsCollector. Passing null restores the no-op
+     * collector.
+     *
+     * @param newCollector the collector receiving CTS metrics
+     */
+    public static void setCollector(MetricsCollector newCollector) {
+        collector = newCollector == null ? NoOpMetricsCollector.NOOP : newCollector;
+    }
+
+    /**
+     * Return true if the installed collector records metrics.
+     */
+    public static boolean isEnabled() {
+        return collector.isEnabled();
+    }
+
+    /**
+     * Increment the counter named name.
+     *
+     * @param name the name of the counter
+     */
+    public static void increment(String name) {
+        MetricsCollector c = collector;
+        if (c.isEnabled()) {
+            c.increment(name, 1L);
+        }
+    }
+
+    /**
+     * Add delta to the counter named name.
+     *
+     * @param name the name of the counter
+     * @param delta the value to add
+     */
+    public static void increment(String name, long delta) {
+        MetricsCollector c = collector;
+        if (c.isEnabled()) {
+            c.increment(name, delta);
+        }
+    }
+
+    /**
+     * Record a value in the histogram named name.
+     *
+     * @param name the name of the histogram
+     * @param value the value to record
+     */
+    public static void record(String name, long value) {
+        MetricsCollector c = collector;
+        if (c.isEnabled()) {
+            c.record(name, value);
+        }
+    }
+
+    /**
+     * Return the current time in nanoseconds if metrics are enabled, 0
+     * otherwise. To be used with {@link #recordSince(String, long)}.
+     */
+    public static long start() {
+        return collector.isEnabled() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the time elapsed since start in the histogram named name. Does
+     * nothing if start is 0 (metrics were disabled when the measure began).
+     *
+     * @param name the name of the histogram
+     * @param start the value returned by {@link #start()}
+     */
+    public static void recordSince(String name, long start) {
+        MetricsCollector c = collector;
+        if (start != 0L && c.isEnabled()) {
+            c.record(name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Count one coordinate transformed by an operation of class opClass.
+     *
+     * @param opClass the class of the operation
+     */
+    public static void countTransform(Class<?> opClass) {
+        countTransform(opClass, 1L);
+    }
+
+    /**
+     * Count points transformed by a bulk call to an operation of class
+     * opClass.
+     *
+     * @param opClass the class of the operation
+     * @param count the number of transformed points
+     */
+    public static void countTransform(Class<?> opClass, long count) {
+        MetricsCollector c = collector;
+        if (c.isEnabled()) {
+            String name = transformCounterNames.get(opClass);
+            if (name == null) {
+                name = TRANSFORM_COUNT + opClass.getName();
+                transformCounterNames.putIfAbsent(opClass, name);
+            }
+            c.increment(name, count);
+        }
+    }
+
+    /**
+     * Record the time and the memory needed to load a grid.
+     *
+     * @param gridClass the class of the loaded grid
+     * @param start the value returned by {@link #start()} before loading
+     * @param memory an estimation of the memory used by the grid in bytes
+     */
+    public static void gridLoaded(Class<?> gridClass, long start, long memory) {
+        MetricsCollector c = collector;
+        if (start != 0L && c.isEnabled()) {
+            c.record(GRID_LOAD_TIME + gridClass.getSimpleName(), System.nanoTime() - start);
+            c.record(GRID_LOAD_MEMORY + gridClass.getSimpleName(), memory);
+        }
+    }
+
+    /**
+     * Return a snapshot of the metrics collected by the installed collector.
+     */
+    public static MetricsSnapshot snapshot() {
+        return collector.snapshot();
+    }
+}
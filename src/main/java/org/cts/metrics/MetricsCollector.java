@@ -0,0 +1,80 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+/**
+ * A MetricsCollector receives the measures taken by CTS while creating
+ * coordinate reference systems, looking for coordinate operations, loading
+ * grids and transforming coordinates.<p>
+ * This is the service provider interface of the {@link Metrics} facade : the
+ * default collector is a no-op one, and an application which wants to monitor
+ * CTS can either install a {@link DefaultMetricsCollector} and export its
+ * {@link MetricsSnapshot}s, or plug its own implementation bridging CTS to
+ * its monitoring system.<p>
+ * Implementations must be thread-safe and as cheap as possible, as they may be
+ * called for each transformed coordinate.
+ */
+public interface MetricsCollector {
+
+    /**
+     * Return true if this collector records something. CTS does not even read
+     * the clock when the installed collector is disabled.
+     */
+    public boolean isEnabled();
+
+    /**
+     * Add delta to the counter named name.
+     *
+     * @param name the name of the counter
+     * @param delta the value to add to the counter
+     */
+    public void increment(String name, long delta);
+
+    /**
+     * Record a duration (or any other positive long value as a memory size)
+     * in the histogram named name.
+     *
+     * @param name the name of the histogram
+     * @param value the value to record (nanoseconds for durations)
+     */
+    public void record(String name, long value);
+
+    /**
+     * Return a snapshot of all the values collected so far.
+     */
+    public MetricsSnapshot snapshot();
+
+    /**
+     * Reset all the counters and histograms of this collector.
+     */
+    public void reset();
+}
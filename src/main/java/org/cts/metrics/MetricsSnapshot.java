@@ -0,0 +1,119 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of the counters and histograms recorded by a
+ * {@link MetricsCollector}, to be exported to an external monitoring system.
+ */
+public final class MetricsSnapshot {
+
+    /**
+     * An empty snapshot (returned by disabled collectors).
+     */
+    public static final MetricsSnapshot EMPTY = new MetricsSnapshot(
+            new TreeMap<String, Long>(), new TreeMap<String, HistogramSnapshot>());
+    private final long timestamp;
+    private final Map<String, Long> counters;
+    private final Map<String, HistogramSnapshot> histograms;
+
+    /**
+     * Create a new MetricsSnapshot.
+     *
+     * @param counters the value of the counters by name
+     * @param histograms the state of the histograms by name
+     */
+    public MetricsSnapshot(Map<String, Long> counters, Map<String, HistogramSnapshot> histograms) {
+        this.timestamp = System.currentTimeMillis();
+        this.counters = Collections.unmodifiableMap(new TreeMap<String, Long>(counters));
+        this.histograms = Collections.unmodifiableMap(new TreeMap<String, HistogramSnapshot>(histograms));
+    }
+
+    /**
+     * Return the time at which this snapshot has been taken (in milliseconds
+     * since the epoch).
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Return the counters sorted by name.
+     */
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Return the histograms sorted by name.
+     */
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * Return the value of a counter, or 0 if this counter has never been
+     * incremented.
+     *
+     * @param name the name of the counter
+     */
+    public long getCounter(String name) {
+        Long value = counters.get(name);
+        return value == null ? 0L : value;
+    }
+
+    /**
+     * Return the snapshot of a histogram, or null if nothing has been recorded
+     * in this histogram.
+     *
+     * @param name the name of the histogram
+     */
+    public HistogramSnapshot getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            sb.append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, HistogramSnapshot> entry : histograms.entrySet()) {
+            sb.append(entry.getKey()).append(" : ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
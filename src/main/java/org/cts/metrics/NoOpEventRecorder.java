@@ -0,0 +1,96 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+/**
+ * An {@link EventRecorder} which does not record anything.
+ */
+public final class NoOpEventRecorder implements EventRecorder {
+
+    /**
+     * The unique instance of NoOpEventRecorder.
+     */
+    public static final NoOpEventRecorder NOOP = new NoOpEventRecorder();
+
+    private NoOpEventRecorder() {
+    }
+
+    @Override
+    public Object beginGridLoad() {
+        return null;
+    }
+
+    @Override
+    public void commitGridLoad(Object event, String file, String format, long bytes) {
+    }
+
+    @Override
+    public Object beginRegistryParse() {
+        return null;
+    }
+
+    @Override
+    public void commitRegistryParse(Object event, String registry, String code) {
+    }
+
+    @Override
+    public Object beginCRSCreation() {
+        return null;
+    }
+
+    @Override
+    public void commitCRSCreation(Object event, String code) {
+    }
+
+    @Override
+    public Object beginOperationCreation() {
+        return null;
+    }
+
+    @Override
+    public void commitOperationCreation(Object event, String source, String target, int operations) {
+    }
+
+    @Override
+    public boolean isTransformBatchEnabled() {
+        return false;
+    }
+
+    @Override
+    public Object beginTransformBatch() {
+        return null;
+    }
+
+    @Override
+    public void commitTransformBatch(Object event, String operation, int points) {
+    }
+}
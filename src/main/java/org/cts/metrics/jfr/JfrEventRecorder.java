@@ -0,0 +1,148 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+import org.cts.metrics.EventRecorder;
+
+/**
+ * An {@link EventRecorder} publishing CTS activities as Java Flight Recorder
+ * events. This class is only loaded (by reflection, see
+ * {@link org.cts.metrics.Events}) if the JVM provides the jdk.jfr module.<p>
+ * As long as an event type is not enabled in a running recording, begin
+ * methods only read the state of the event type and return null.
+ */
+public class JfrEventRecorder implements EventRecorder {
+
+    private static final EventType GRID_LOAD = EventType.getEventType(GridLoadEvent.class);
+    private static final EventType REGISTRY_PARSE = EventType.getEventType(RegistryParseEvent.class);
+    private static final EventType CRS_CREATION = EventType.getEventType(CRSCreationEvent.class);
+    private static final EventType OPERATION_CREATION = EventType.getEventType(OperationCreationEvent.class);
+    private static final EventType TRANSFORM_BATCH = EventType.getEventType(TransformBatchEvent.class);
+
+    /**
+     * Creates a new JfrEventRecorder.
+     */
+    public JfrEventRecorder() {
+    }
+
+    /**
+     * Begin event and return it.
+     */
+    private static Object begin(Event event) {
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Object beginGridLoad() {
+        return GRID_LOAD.isEnabled() ? begin(new GridLoadEvent()) : null;
+    }
+
+    @Override
+    public void commitGridLoad(Object event, String file, String format, long bytes) {
+        if (event instanceof GridLoadEvent) {
+            GridLoadEvent e = (GridLoadEvent) event;
+            e.file = file;
+            e.format = format;
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginRegistryParse() {
+        return REGISTRY_PARSE.isEnabled() ? begin(new RegistryParseEvent()) : null;
+    }
+
+    @Override
+    public void commitRegistryParse(Object event, String registry, String code) {
+        if (event instanceof RegistryParseEvent) {
+            RegistryParseEvent e = (RegistryParseEvent) event;
+            e.registry = registry;
+            e.code = code;
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginCRSCreation() {
+        return CRS_CREATION.isEnabled() ? begin(new CRSCreationEvent()) : null;
+    }
+
+    @Override
+    public void commitCRSCreation(Object event, String code) {
+        if (event instanceof CRSCreationEvent) {
+            CRSCreationEvent e = (CRSCreationEvent) event;
+            e.code = code;
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginOperationCreation() {
+        return OPERATION_CREATION.isEnabled() ? begin(new OperationCreationEvent()) : null;
+    }
+
+    @Override
+    public void commitOperationCreation(Object event, String source, String target, int operations) {
+        if (event instanceof OperationCreationEvent) {
+            OperationCreationEvent e = (OperationCreationEvent) event;
+            e.source = source;
+            e.target = target;
+            e.operations = operations;
+            e.commit();
+        }
+    }
+
+    @Override
+    public boolean isTransformBatchEnabled() {
+        return TRANSFORM_BATCH.isEnabled();
+    }
+
+    @Override
+    public Object beginTransformBatch() {
+        return TRANSFORM_BATCH.isEnabled() ? begin(new TransformBatchEvent()) : null;
+    }
+
+    @Override
+    public void commitTransformBatch(Object event, String operation, int points) {
+        if (event instanceof TransformBatchEvent) {
+            TransformBatchEvent e = (TransformBatchEvent) event;
+            e.operation = operation;
+            e.points = points;
+            e.commit();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import org.cts.IllegalCoordinateException;
+
+/**
+ * Utility methods used to transform coordinates stored in NIO buffers (heap
+ * or direct buffers) without copying the whole buffer into a double array.<p>
+ * Coordinates are read by blocks of {@link #BLOCK_SIZE} points into a few
+ * double columns, transformed with
+ * {@link CoordinateOperation#transform(double[][], int, int)} in double
+ * precision, and written back in place.<p>
+ * A block is written back only once all its points have been transformed.
+ * If a point cannot be transformed, the exception is thrown after the blocks
+ * preceding the block of this point have been written : these blocks are
+ * transformed, while the block of the failing point and the following ones
+ * keep their original values. The position and the limit of the buffer are
+ * never modified, even when an exception is thrown.
+ */
+public final class BufferTransforms {
+
+    /**
+     * Number of points read from the buffer and transformed at once.
+     */
+    public static final int BLOCK_SIZE = 512;
+
+    private BufferTransforms() {
+    }
+
+    /**
+     * Transform the interleaved coordinates stored in buffer between its
+     * position and its limit. Position and limit of the buffer are not
+     * modified.
+     *
+     * @param op the operation to apply
+     * @param buffer the buffer containing the coordinates (x0, y0, [z0,] x1,
+     * y1...)
+     * @param dimension number of values per point in the buffer
+     * @throws IllegalCoordinateException if a point cannot be transformed,
+     * the blocks preceding its block being already written
+     */
+    public static void transform(CoordinateOperation op, DoubleBuffer buffer, int dimension)
+            throws IllegalCoordinateException {
+        int start = buffer.position();
+        int points = checkPoints(buffer.remaining(), dimension);
+        double[][] columns = new double[dimension][Math.min(points, BLOCK_SIZE)];
+        for (int first = 0; first < points; first += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, points - first);
+            int index = start + first * dimension;
+            for (int i = 0; i < count; i++) {
+                for (int d = 0; d < dimension; d++) {
+                    columns[d][i] = buffer.get(index++);
+                }
+            }
+            double[][] result = op.transform(columns, 0, count);
+            int dim = Math.min(dimension, result.length);
+            for (int i = 0; i < count; i++) {
+                index = start + (first + i) * dimension;
+                for (int d = 0; d < dim; d++) {
+                    buffer.put(index + d, result[d][i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Transform the interleaved coordinates stored in buffer between its
+     * position and its limit. Computations are made in double precision, and
+     * the results are rounded to float when they are written back in the
+     * buffer. Position and limit of the buffer are not modified.<p>
+     * A <code>float[]</code> can be transformed by wrapping it with
+     * {@link FloatBuffer#wrap(float[], int, int)}.
+     *
+     * @param op the operation to apply
+     * @param buffer the buffer containing the coordinates (x0, y0, [z0,] x1,
+     * y1...)
+     * @param dimension number of values per point in the buffer
+     * @throws IllegalCoordinateException if a point cannot be transformed,
+     * the blocks preceding its block being already written
+     */
+    public static void transform(CoordinateOperation op, FloatBuffer buffer, int dimension)
+            throws IllegalCoordinateException {
+        int start = buffer.position();
+        int points = checkPoints(buffer.remaining(), dimension);
+        double[][] columns = new double[dimension][Math.min(points, BLOCK_SIZE)];
+        for (int first = 0; first < points; first += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, points - first);
+            int index = start + first * dimension;
+            for (int i = 0; i < count; i++) {
+                for (int d = 0; d < dimension; d++) {
+                    columns[d][i] = buffer.get(index++);
+                }
+            }
+            double[][] result = op.transform(columns, 0, count);
+            int dim = Math.min(dimension, result.length);
+            for (int i = 0; i < count; i++) {
+                index = start + (first + i) * dimension;
+                for (int d = 0; d < dim; d++) {
+                    buffer.put(index + d, (float) result[d][i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of points contained in remaining values.
+     */
+    private static int checkPoints(int remaining, int dimension) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("Invalid dimension : " + dimension);
+        }
+        if (remaining % dimension != 0) {
+            throw new IllegalArgumentException("The buffer contains " + remaining
+                    + " values, which is not a multiple of the dimension " + dimension);
+        }
+        return remaining / dimension;
+    }
+}
@@ -78,4 +78,18 @@ public class ChangeCoordinateDimension extends AbstractCoordinateOperation {
         System.arraycopy(coord, 0, cc, 0, Math.min(coord.length, cc.length));
         return cc;
     }
+
+    /**
+     * Change the number of columns : additional columns are filled with 0,
+     * exceeding columns are removed.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        return ColumnTransforms.resize(columns, dim);
+    }
 }
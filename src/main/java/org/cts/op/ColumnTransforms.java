@@ -0,0 +1,259 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.Arrays;
+
+import org.cts.CoordinateDimensionException;
+import org.cts.IllegalCoordinateException;
+import org.cts.util.UncheckedNonConvergenceException;
+
+/**
+ * Utility methods used by {@link CoordinateOperation}s to transform
+ * coordinates stored in columns (one array per dimension) instead of one
+ * array per point.<p>
+ * A set of columns is a <code>double[][]</code> where <code>columns[0]</code>
+ * contains the first ordinate of each point, <code>columns[1]</code> the
+ * second one... Operations transform the columns in place and return them,
+ * or return a new <code>double[][]</code> if the dimension of the coordinates
+ * changes, or if the order of the columns changes (a
+ * {@link CoordinateSwitch} just swaps two columns).
+ */
+public final class ColumnTransforms {
+
+    private ColumnTransforms() {
+    }
+
+    /**
+     * Transform the points of columns in the range [offset, offset+length[
+     * one by one with op.transform(double[]). This is the default bulk
+     * implementation used by operations which have no specific columnar
+     * algorithm : each point is copied into a single reusable array, so that
+     * in place operations do not allocate anything per point. The dimension
+     * of the returned columns is the dimension of the first transformed point.
+     *
+     * @param op the operation to apply
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @return the transformed columns
+     * @throws IllegalCoordinateException if a point cannot be transformed, or
+     * if op returns points of different dimensions
+     */
+    public static double[][] transformByPoint(CoordinateOperation op,
+            double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        checkRange(columns, offset, length);
+        int dim = columns.length;
+        TransformContext context = new TransformContext();
+        double[] coord = new double[dim];
+        double[][] output = null;
+        for (int i = offset; i < offset + length; i++) {
+            for (int d = 0; d < dim; d++) {
+                coord[d] = columns[d][i];
+            }
+            double[] result = op.transform(coord, context);
+            if (output == null) {
+                output = resize(columns, result.length);
+            } else if (result.length != output.length) {
+                throw new CoordinateDimensionException(result, output.length);
+            }
+            for (int d = 0; d < result.length; d++) {
+                output[d][i] = result[d];
+            }
+        }
+        return output == null ? columns : output;
+    }
+
+    /**
+     * Transform the points of columns in the range [offset, offset+length[
+     * without throwing an exception. The whole range is first transformed
+     * with the columnar transform of op, on a copy of the range. If a point
+     * cannot be transformed, the range is transformed again point by point
+     * with a {@link TransformContext} reporting failures, so that operations
+     * using grids report the points outside the grid without building any
+     * exception. Failed points get NaN coordinates and the status code of
+     * their failure. The dimension of the returned columns is the dimension
+     * of the first point transformed successfully ; a point transformed with
+     * another dimension is reported as a dimension error.<p> Only
+     * {@link IllegalCoordinateException}s and
+     * {@link UncheckedNonConvergenceException}s are reported in status : other
+     * exceptions thrown by op are propagated.
+     *
+     * @param op the operation to apply
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param status the status of each point, indexed like the columns
+     * @return the transformed columns
+     */
+    public static double[][] transform(CoordinateOperation op,
+            double[][] columns, int offset, int length, byte[] status) {
+        checkRange(columns, offset, length);
+        checkStatus(status, offset, length);
+        int dim = columns.length;
+        double[][] copy = new double[dim][];
+        for (int d = 0; d < dim; d++) {
+            copy[d] = new double[length];
+            System.arraycopy(columns[d], offset, copy[d], 0, length);
+        }
+        try {
+            copy = op.transform(copy, 0, length);
+            double[][] output = resize(columns, copy.length);
+            for (int d = 0; d < copy.length; d++) {
+                System.arraycopy(copy[d], 0, output[d], offset, length);
+            }
+            Arrays.fill(status, offset, offset + length, TransformStatus.OK);
+            return output;
+        } catch (IllegalCoordinateException | UncheckedNonConvergenceException e) {
+            // at least one point cannot be transformed (a dimension error may
+            // also come from a single point, or wrap a grid loading failure)
+        }
+        TransformContext context = new TransformContext();
+        context.setReportingFailures(true);
+        double[] coord = new double[dim];
+        double[][] output = null;
+        for (int i = offset; i < offset + length; i++) {
+            for (int d = 0; d < dim; d++) {
+                coord[d] = columns[d][i];
+            }
+            context.resetStatus();
+            double[] result;
+            try {
+                result = op.transform(coord, context);
+                status[i] = context.getStatus();
+            } catch (IllegalCoordinateException | UncheckedNonConvergenceException e) {
+                status[i] = TransformStatus.of(e);
+                continue;
+            }
+            if (status[i] != TransformStatus.OK) {
+                continue;
+            }
+            if (output == null) {
+                output = resize(columns, result.length);
+            } else if (result.length != output.length) {
+                status[i] = TransformStatus.DIMENSION_ERROR;
+                continue;
+            }
+            for (int d = 0; d < result.length; d++) {
+                output[d][i] = result[d];
+            }
+        }
+        if (output == null) {
+            output = columns;
+        }
+        // failed points still contain their input coordinates
+        for (int i = offset; i < offset + length; i++) {
+            if (status[i] != TransformStatus.OK) {
+                for (int d = 0; d < output.length; d++) {
+                    output[d][i] = Double.NaN;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Return columns with the given number of dimensions. If columns has
+     * more dimensions, the last ones are removed ; if it has less dimensions,
+     * new columns filled with 0 are added. The existing column arrays are
+     * reused.
+     *
+     * @param columns the columns to resize
+     * @param dim the number of dimensions of the returned columns
+     */
+    public static double[][] resize(double[][] columns, int dim) {
+        if (columns.length == dim) {
+            return columns;
+        }
+        double[][] resized = new double[dim][];
+        int size = columns.length == 0 ? 0 : columns[0].length;
+        for (int d = 0; d < dim; d++) {
+            resized[d] = d < columns.length ? columns[d] : new double[size];
+        }
+        return resized;
+    }
+
+    /**
+     * Check that columns has at least dim dimensions.
+     *
+     * @param columns the columns to check
+     * @param dim the minimal number of dimensions required
+     * @throws CoordinateDimensionException if columns has less than dim
+     * dimensions
+     */
+    public static void checkDimension(double[][] columns, int dim)
+            throws CoordinateDimensionException {
+        if (columns.length < dim) {
+            throw new CoordinateDimensionException("Columns of dimension "
+                    + columns.length + " are not valid : at least "
+                    + dim + " columns are required");
+        }
+    }
+
+    /**
+     * Check that status may receive the status of the points in the range
+     * [offset, offset+length[.
+     *
+     * @param status the status array to check
+     * @param offset index of the first point
+     * @param length number of points
+     * @throws IllegalArgumentException if status is too short
+     */
+    public static void checkStatus(byte[] status, int offset, int length) {
+        if (status.length < offset + length) {
+            throw new IllegalArgumentException("Status array contains only "
+                    + status.length + " values (" + (offset + length) + " required)");
+        }
+    }
+
+    /**
+     * Check that the range [offset, offset+length[ is valid for each column.
+     *
+     * @param columns the columns to check
+     * @param offset index of the first point
+     * @param length number of points
+     * @throws IllegalArgumentException if the range is not valid
+     */
+    public static void checkRange(double[][] columns, int offset, int length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid range : offset = "
+                    + offset + ", length = " + length);
+        }
+        for (int d = 0; d < columns.length; d++) {
+            if (columns[d].length < offset + length) {
+                throw new IllegalArgumentException("Column " + d + " contains only "
+                        + columns[d].length + " values (" + (offset + length) + " required)");
+            }
+        }
+    }
+}
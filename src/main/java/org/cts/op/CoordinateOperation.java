@@ -31,6 +31,11 @@
  */
 package org.cts.op;
 
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+
 import org.cts.Identifiable;
 import org.cts.IllegalCoordinateException;
 
@@ -57,6 +62,172 @@ public interface CoordinateOperation extends Identifiable {
      */
     public double[] transform(double[] coord) throws IllegalCoordinateException;
 
+    /**
+     * Transform values of a double array using a {@link TransformContext} to
+     * hold temporary objects and lookup hints.<p> Operations able to reuse
+     * the scratch arrays and hints of the context override this method, other
+     * operations just call {@link #transform(double[])}. The context must not
+     * be shared between threads.
+     *
+     * @param coord coordinate to be transformed
+     * @param context the context of the calling thread (may be null)
+     * @return the same object with new values or a new double array
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    default double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        return transform(coord);
+    }
+
+    /**
+     * Transform the points stored in columns (one array per dimension) in the
+     * range [offset, offset+length[.<p> <b>WARNING</b> : values of the column
+     * arrays are changed in place. The returned <code>double[][]</code> is
+     * columns itself, or a new array referencing the same columns in another
+     * order (after a coordinate switch) and/or new columns (if the dimension
+     * of the coordinates changes).<p> The default implementation transforms
+     * points one by one ; core operations override it with a columnar
+     * algorithm.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @return the transformed columns
+     * @throws IllegalCoordinateException if a point cannot be transformed
+     */
+    default double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        return ColumnTransforms.transformByPoint(this, columns, offset, length);
+    }
+
+    /**
+     * Transform the points stored in columns in the range [offset,
+     * offset+length[ without throwing an exception : points which cannot be
+     * transformed get NaN coordinates and a status code of
+     * {@link TransformStatus} (out of extent, not converged, dimension
+     * error...) in status, other points get {@link TransformStatus#OK}. The
+     * status of point i is written in status[i]. Failures are
+     * {@link IllegalCoordinateException}s and
+     * {@link org.cts.util.UncheckedNonConvergenceException}s : other runtime
+     * exceptions are propagated.<p> The default
+     * implementation is {@link ColumnTransforms#transform(CoordinateOperation,
+     * double[][], int, int, byte[])}.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param status the status of each point (at least offset+length values)
+     * @return the transformed columns (see
+     * {@link #transform(double[][], int, int)})
+     */
+    default double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+        return ColumnTransforms.transform(this, columns, offset, length, status);
+    }
+
+    /**
+     * Transform the points stored in three separate columns (zs may be null
+     * for 2D coordinates) in the range [offset, offset+length[.
+     *
+     * @param xs the first ordinate of the points
+     * @param ys the second ordinate of the points
+     * @param zs the third ordinate of the points, or null
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @return the transformed columns : xs, ys and zs in the same or in
+     * another order, plus new columns if the dimension of the coordinates
+     * changes (see {@link #transform(double[][], int, int)})
+     * @throws IllegalCoordinateException if a point cannot be transformed
+     */
+    default double[][] transform(double[] xs, double[] ys, double[] zs,
+            int offset, int length) throws IllegalCoordinateException {
+        return transform(zs == null ? new double[][]{xs, ys} : new double[][]{xs, ys, zs},
+                offset, length);
+    }
+
+    /**
+     * Transform in place the interleaved coordinates stored in buffer (heap
+     * or direct) between its position and its limit. Values are transformed
+     * in double precision by blocks, without copying the whole buffer. If the
+     * operation returns less than dimension values per point, the remaining
+     * values of each point are not modified. See {@link BufferTransforms}
+     * for the values written when a point cannot be transformed.
+     *
+     * @param buffer the buffer containing the coordinates
+     * @param dimension number of values per point in the buffer
+     * @throws IllegalCoordinateException if a point cannot be transformed
+     */
+    default void transform(DoubleBuffer buffer, int dimension)
+            throws IllegalCoordinateException {
+        BufferTransforms.transform(this, buffer, dimension);
+    }
+
+    /**
+     * Transform in place the interleaved coordinates stored in buffer (heap
+     * or direct) between its position and its limit. Values are transformed
+     * in double precision by blocks and rounded to float when they are
+     * written back. See {@link BufferTransforms} for the values written when
+     * a point cannot be transformed.
+     *
+     * @param buffer the buffer containing the coordinates
+     * @param dimension number of values per point in the buffer
+     * @throws IllegalCoordinateException if a point cannot be transformed
+     */
+    default void transform(FloatBuffer buffer, int dimension)
+            throws IllegalCoordinateException {
+        BufferTransforms.transform(this, buffer, dimension);
+    }
+
+    /**
+     * Return a stream of the points of points transformed by this operation.
+     * Points are transformed lazily, by blocks, with the bulk transform of
+     * this operation (see {@link CoordinateStreams}).<p> Points which cannot
+     * be transformed get NaN coordinates : their status is not available, use
+     * {@link #transform(double[][], int, int, byte[])} to know why a point
+     * failed.
+     *
+     * @param points the points to transform (modified in place)
+     */
+    default Stream<double[]> transformStream(Stream<double[]> points) {
+        return CoordinateStreams.transform(this, points);
+    }
+
+    /**
+     * Return a stream of the interleaved coordinates of values transformed
+     * by this operation. Values are transformed lazily, by blocks, with the
+     * bulk transform of this operation (see {@link CoordinateStreams}).<p>
+     * Points which cannot be transformed get NaN coordinates, as in
+     * {@link #transformStream(Stream)}.
+     *
+     * @param values the interleaved coordinates to transform
+     * @param dimension number of values per point
+     */
+    default DoubleStream transformStream(DoubleStream values, int dimension) {
+        return CoordinateStreams.transform(this, values, dimension);
+    }
+
+    /**
+     * Transform the regular lattice of coordinates defined by origin, step
+     * and count for the two first axes. Separable operations transform the
+     * values of each axis once (see {@link LatticeTransforms}).
+     *
+     * @param origin0 first value of axis 0
+     * @param step0 step between two values of axis 0
+     * @param count0 number of values of axis 0
+     * @param origin1 first value of axis 1
+     * @param step1 step between two values of axis 1
+     * @param count1 number of values of axis 1
+     * @return the transformed nodes, one array per dimension, node (i0, i1)
+     * being at index i0 * count1 + i1
+     * @throws IllegalCoordinateException if a node cannot be transformed
+     */
+    default double[][] transformLattice(double origin0, double step0, int count0,
+            double origin1, double step1, int count1)
+            throws IllegalCoordinateException {
+        return LatticeTransforms.transform(this, origin0, step0, count0,
+                origin1, step1, count1);
+    }
+
     /**
      * Return the inverse CoordinateOperation, or throw a
      * NonInvertibleOperationException. If op.inverse() is not null,
@@ -39,6 +39,9 @@ import java.util.List;
 import org.cts.Identifier;
 import org.cts.crs.GeodeticCRS;
 import org.cts.datum.GeodeticDatum;
+import org.cts.metrics.Events;
+import org.cts.metrics.Metrics;
+import org.cts.op.transformation.CompositeGridShiftTransformation;
 import org.cts.op.transformation.NTv2GridShiftTransformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,8 +88,11 @@ public final class CoordinateOperationFactory {
         }
         List<CoordinateOperation> opList = source.getCRSTransformations(target);
         if (opList != null) {
+            Metrics.increment(Metrics.OPERATION_CACHE_HIT);
             return opList;
         } else {
+            long start = Metrics.start();
+            Object event = Events.beginOperationCreation();
             opList = new ArrayList<CoordinateOperation>();
             GeodeticDatum sourceDatum = source.getDatum();
             if (sourceDatum == null) {
@@ -110,10 +116,92 @@ public final class CoordinateOperationFactory {
                 addCoordinateOperations(sourceDatum, source, targetDatum, target, opList);
             }
             source.addCRSTransformation(target, opList);
+            Metrics.recordSince(Metrics.OPERATION_CREATION_TIME, start);
+            Events.commitOperationCreation(event, source.getCode(), target.getCode(), opList.size());
         }
         return opList;
     }
 
+    /**
+     * Create the cheapest CoordinateOperation from a source
+     * {@link org.cts.crs.GeodeticCRS} to a target
+     * {@link org.cts.crs.GeodeticCRS} whose precision is at most precision
+     * and which can transform sample (see
+     * {@link CoordinateOperationSelector}).
+     *
+     * @param source the (non null) source geodetic coordinate reference system
+     * @param target the (non null) target geodetic coordinate reference system
+     * @param precision the required precision (in meters)
+     * @param sample a point representative of the points to transform,
+     * expressed in the source CRS
+     * @return the selected operation, or null if no operation meets the
+     * requirements
+     */
+    public static CoordinateOperation createCoordinateOperation(
+            GeodeticCRS source, GeodeticCRS target, double precision, double[] sample) {
+        return CoordinateOperationSelector.select(
+                createCoordinateOperations(source, target), precision, sample);
+    }
+
+    /**
+     * Create a CoordinateOperation from a source
+     * {@link org.cts.crs.GeodeticCRS} to a target
+     * {@link org.cts.crs.GeodeticCRS} using the most precise grid based
+     * operation, and falling back, for the points out of the grid, to the
+     * most precise operation which does not use any grid (generally the
+     * Helmert transformations based on the toWGS84 parameters of the
+     * datums). If there is no such pair of operations, the first operation
+     * of {@link #createCoordinateOperations} is returned.
+     *
+     * @param source the (non null) source geodetic coordinate reference system
+     * @param target the (non null) target geodetic coordinate reference system
+     * @throws IllegalArgumentException if no operation is found from source
+     * to target
+     * @see FallbackCoordinateOperation
+     */
+    public static CoordinateOperation createGridFallbackOperation(
+            GeodeticCRS source, GeodeticCRS target) {
+        List<CoordinateOperation> opList = createCoordinateOperations(source, target);
+        if (opList.isEmpty()) {
+            throw new IllegalArgumentException("No operation found from "
+                    + source.getCode() + " to " + target.getCode());
+        }
+        CoordinateOperation grid = null;
+        CoordinateOperation noGrid = null;
+        for (CoordinateOperation op : opList) {
+            if (usesGrid(op)) {
+                if (grid == null || op.getPrecision() < grid.getPrecision()) {
+                    grid = op;
+                }
+            } else if (noGrid == null || op.getPrecision() < noGrid.getPrecision()) {
+                noGrid = op;
+            }
+        }
+        if (grid == null || noGrid == null) {
+            return opList.get(0);
+        }
+        return new FallbackCoordinateOperation(new Identifier(FallbackCoordinateOperation.class,
+                source.getName() + " to " + target.getName()), grid, noGrid);
+    }
+
+    /**
+     * Return true if op is a {@link GridBasedOperation} or a sequence
+     * containing one.
+     */
+    private static boolean usesGrid(CoordinateOperation op) {
+        if (op instanceof GridBasedOperation) {
+            return true;
+        }
+        if (op instanceof CoordinateOperationSequence) {
+            for (CoordinateOperation step : ((CoordinateOperationSequence) op).getSequence()) {
+                if (usesGrid(step)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Add a CoordinateOperation to the list of CoordinateOperation in
      * parameter. This CoordinateOperation linked a source {@link GeodeticCRS}
@@ -141,20 +229,20 @@ public final class CoordinateOperationFactory {
             List<CoordinateOperation> opList) {
         for (CoordinateOperation coordOp : nadgridsTransformations) {
             try {
-                if (!(coordOp instanceof NTv2GridShiftTransformation) || (sourceDatum.getShortName().equals(((NTv2GridShiftTransformation) coordOp).getFromDatum()))) {
+                String fromDatum = getFromDatum(coordOp);
+                if (fromDatum == null || sourceDatum.getShortName().equals(fromDatum)) {
                     opList.add(new CoordinateOperationSequence(
                             new Identifier(CoordinateOperationSequence.class, source.getName() + " to " + target.getName()),
                             source.toGeographicCoordinateConverter(),
                             coordOp,
                             target.fromGeographicCoordinateConverter()));
                 } else {
-                    NTv2GridShiftTransformation gt = (NTv2GridShiftTransformation) coordOp;
-                    GeodeticDatum gtSource = GeodeticDatum.datumFromName.get(gt.getFromDatum());
+                    GeodeticDatum gtSource = GeodeticDatum.datumFromName.get(fromDatum);
                     opList.add(new CoordinateOperationSequence(
-                            new Identifier(CoordinateOperationSequence.class, sourceDatum.getName() + " to " + targetDatum.getName() + " through " + gt.getName() + " transformation"),
+                            new Identifier(CoordinateOperationSequence.class, sourceDatum.getName() + " to " + targetDatum.getName() + " through " + coordOp.getName() + " transformation"),
                             source.toGeographicCoordinateConverter(),
                             sourceDatum.getCoordinateOperations(gtSource).get(0),
-                            gt,
+                            coordOp,
                             target.fromGeographicCoordinateConverter()));
                 }
             } catch (NonInvertibleOperationException e) {
@@ -191,19 +279,19 @@ public final class CoordinateOperationFactory {
             List<CoordinateOperation> opList) {
         for (CoordinateOperation coordOp : nadgridsTransformations) {
             try {
-                if (!(coordOp instanceof NTv2GridShiftTransformation) || sourceDatum.getShortName().equals(((NTv2GridShiftTransformation) coordOp).getFromDatum())) {
+                String fromDatum = getFromDatum(coordOp);
+                if (fromDatum == null || sourceDatum.getShortName().equals(fromDatum)) {
                     opList.add(new CoordinateOperationSequence(
                             new Identifier(CoordinateOperationSequence.class, source.getName() + " to " + target.getName()),
                             source.toGeographicCoordinateConverter(),
                             coordOp.inverse(),
                             target.fromGeographicCoordinateConverter()));
                 } else {
-                    NTv2GridShiftTransformation gt = (NTv2GridShiftTransformation) coordOp;
-                    GeodeticDatum gtSource = GeodeticDatum.datumFromName.get(gt.getFromDatum());
+                    GeodeticDatum gtSource = GeodeticDatum.datumFromName.get(fromDatum);
                     opList.add(new CoordinateOperationSequence(
                             new Identifier(CoordinateOperationSequence.class, source.getName() + " to " + target.getName()),
                             source.toGeographicCoordinateConverter(),
-                            gt.inverse(),
+                            coordOp.inverse(),
                             gtSource.getCoordinateOperations(targetDatum).get(0),
                             target.fromGeographicCoordinateConverter()));
                 }
@@ -214,6 +302,21 @@ public final class CoordinateOperationFactory {
         }
     }
 
+    /**
+     * Return the short name of the datum from which the nadgrids
+     * transformation op must be used, or null if op is not a grid shift
+     * transformation.
+     */
+    private static String getFromDatum(CoordinateOperation op) {
+        if (op instanceof NTv2GridShiftTransformation) {
+            return ((NTv2GridShiftTransformation) op).getFromDatum();
+        }
+        if (op instanceof CompositeGridShiftTransformation) {
+            return ((CompositeGridShiftTransformation) op).getFromDatum();
+        }
+        return null;
+    }
+
     /**
      * Add a CoordinateOperation to the list of CoordinateOperation in
      * parameter. This CoordinateOperation linked a source
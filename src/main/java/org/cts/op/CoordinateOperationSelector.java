@@ -0,0 +1,357 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Utility methods used to choose among the candidate operations returned by
+ * {@link CoordinateOperationFactory#createCoordinateOperations} the
+ * cheapest one meeting an accuracy requirement.<p>
+ * Candidates are ranked by two criteria : their declared precision
+ * ({@link CoordinateOperation#getPrecision()}), which must not exceed the
+ * required precision, and their cost per point, measured by a short
+ * calibration transforming a batch of points spread around a sample point.
+ * A candidate unable to transform the sample point (for example a grid based
+ * operation whose grid does not cover it) is not eligible. Costs and
+ * eligibilities are computed once per operation instance (and per sample
+ * point for eligibilities) and kept as long as the operation is referenced.
+ * <p>
+ * The calibration is short and the measured costs are rough : they
+ * discriminate a grid interpolation from a simple Helmert transformation,
+ * not two operations of similar complexity.
+ */
+public final class CoordinateOperationSelector {
+
+    /**
+     * Number of points transformed in each calibration round.
+     */
+    private static final int CALIBRATION_POINTS = 64;
+    /**
+     * Number of calibration rounds, the fastest one giving the cost.
+     */
+    private static final int CALIBRATION_ROUNDS = 8;
+    /**
+     * Relative spread of the calibration points around the sample point.
+     * Operations do not expose their extent, so the calibration points are
+     * spread around the sample, by one percent of each ordinate (or of one
+     * unit for ordinates smaller than one).
+     */
+    private static final double CALIBRATION_SPREAD = 1E-2;
+    /**
+     * Maximum number of sample points whose eligibility is kept for each
+     * operation.
+     */
+    private static final int MAX_SAMPLES = 16;
+    /**
+     * Calibrations of the operations, keyed by operation identity : two
+     * equal operations may use different grids or contexts and do not share
+     * their costs.
+     */
+    private static final Map<OperationKey, Calibration> calibrations =
+            new HashMap<OperationKey, Calibration>();
+    private static final ReferenceQueue<CoordinateOperation> collected =
+            new ReferenceQueue<CoordinateOperation>();
+
+    private CoordinateOperationSelector() {
+    }
+
+    /**
+     * A weak reference to an operation, comparing operations by identity.
+     */
+    private static final class OperationKey extends WeakReference<CoordinateOperation> {
+
+        private final int hash;
+
+        private OperationKey(CoordinateOperation op, ReferenceQueue<CoordinateOperation> queue) {
+            super(op, queue);
+            this.hash = System.identityHashCode(op);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o instanceof OperationKey) {
+                Object op = get();
+                return op != null && op == ((OperationKey) o).get();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The cost of an operation and its eligibility for the last sample
+     * points it was checked against.
+     */
+    private static final class Calibration {
+
+        /**
+         * The cost in nanoseconds per point, NaN as long as it is not known.
+         */
+        private volatile double cost = Double.NaN;
+        private final Map<List<Double>, Boolean> eligibility =
+                new LinkedHashMap<List<Double>, Boolean>(MAX_SAMPLES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Double>, Boolean> eldest) {
+                return size() > MAX_SAMPLES;
+            }
+        };
+
+        private synchronized Boolean isEligible(List<Double> sample) {
+            return eligibility.get(sample);
+        }
+
+        private synchronized void setEligible(List<Double> sample, boolean eligible) {
+            eligibility.put(sample, eligible);
+        }
+    }
+
+    /**
+     * Return the calibration of op, creating an empty one if op has not
+     * been calibrated yet. The calibrations of the operations garbage
+     * collected are removed.
+     */
+    private static synchronized Calibration getCalibration(CoordinateOperation op) {
+        for (Object key; (key = collected.poll()) != null;) {
+            calibrations.remove(key);
+        }
+        OperationKey key = new OperationKey(op, collected);
+        Calibration calibration = calibrations.get(key);
+        if (calibration == null) {
+            calibration = new Calibration();
+            calibrations.put(key, calibration);
+        }
+        return calibration;
+    }
+
+    private static List<Double> toKey(double[] sample) {
+        List<Double> key = new ArrayList<Double>(sample.length);
+        for (double value : sample) {
+            key.add(value);
+        }
+        return key;
+    }
+
+    /**
+     * Return the cost of op in nanoseconds per point. The cost is measured
+     * the first time around sample, then read from a cache.
+     * Double.POSITIVE_INFINITY is returned if op cannot transform sample,
+     * this eligibility being cached too.
+     *
+     * @param op the operation to measure
+     * @param sample a point representative of the points to transform
+     */
+    public static double getCost(CoordinateOperation op, double[] sample) {
+        Calibration calibration = getCalibration(op);
+        List<Double> key = toKey(sample);
+        Boolean eligible = calibration.isEligible(key);
+        if (eligible == null && !Double.isNaN(calibration.cost)) {
+            eligible = canTransform(op, sample);
+            calibration.setEligible(key, eligible);
+        }
+        if (eligible != null && !eligible) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (Double.isNaN(calibration.cost)) {
+            double measured = measureCost(op, sample);
+            calibration.setEligible(key, !Double.isInfinite(measured));
+            if (Double.isInfinite(measured)) {
+                return measured;
+            }
+            calibration.cost = measured;
+        }
+        return calibration.cost;
+    }
+
+    /**
+     * Set the cost of op, replacing the measured one.
+     *
+     * @param op the operation
+     * @param cost the cost of op in nanoseconds per point
+     */
+    public static void setCost(CoordinateOperation op, double cost) {
+        getCalibration(op).cost = cost;
+    }
+
+    /**
+     * Forget all the costs and eligibilities measured or set.
+     */
+    public static synchronized void clearCosts() {
+        calibrations.clear();
+    }
+
+    /**
+     * Measure the cost of op in nanoseconds per point, without using the
+     * cache. The calibration points are spread around sample (the first one
+     * being sample itself), the points op cannot transform are discarded,
+     * and each calibration round transforms the remaining points through the
+     * non throwing bulk transformation, the fastest round giving the cost.
+     *
+     * @param op the operation to measure
+     * @param sample a point representative of the points to transform
+     * @return the cost of op, or Double.POSITIVE_INFINITY if op cannot
+     * transform sample
+     */
+    public static double measureCost(CoordinateOperation op, double[] sample) {
+        double[][] points = spread(sample);
+        byte[] status = new byte[CALIBRATION_POINTS];
+        double[][] columns = copy(points, CALIBRATION_POINTS);
+        ColumnTransforms.transform(op, columns, 0, CALIBRATION_POINTS, status);
+        if (status[0] != TransformStatus.OK) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // keep the points op can transform
+        int n = 0;
+        for (int i = 0; i < CALIBRATION_POINTS; i++) {
+            if (status[i] == TransformStatus.OK) {
+                for (int d = 0; d < points.length; d++) {
+                    points[d][n] = points[d][i];
+                }
+                n++;
+            }
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            columns = copy(points, n);
+            long start = System.nanoTime();
+            ColumnTransforms.transform(op, columns, 0, n, status);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / n;
+    }
+
+    /**
+     * Return CALIBRATION_POINTS points spread around sample, sample being
+     * the first one. The points are the same for each call.
+     */
+    private static double[][] spread(double[] sample) {
+        double[][] points = new double[sample.length][CALIBRATION_POINTS];
+        Random random = new Random(CALIBRATION_POINTS);
+        for (int d = 0; d < sample.length; d++) {
+            double delta = CALIBRATION_SPREAD * Math.max(Math.abs(sample[d]), 1.0);
+            points[d][0] = sample[d];
+            for (int i = 1; i < CALIBRATION_POINTS; i++) {
+                points[d][i] = sample[d] + delta * (2 * random.nextDouble() - 1);
+            }
+        }
+        return points;
+    }
+
+    private static double[][] copy(double[][] points, int length) {
+        double[][] columns = new double[points.length][];
+        for (int d = 0; d < points.length; d++) {
+            columns[d] = Arrays.copyOf(points[d], length);
+        }
+        return columns;
+    }
+
+    /**
+     * Return true if op can transform sample. Costs being measured around
+     * a single sample point, this test is done (and cached) for each new
+     * sample point.
+     */
+    private static boolean canTransform(CoordinateOperation op, double[] sample) {
+        double[][] columns = new double[sample.length][1];
+        for (int d = 0; d < sample.length; d++) {
+            columns[d][0] = sample[d];
+        }
+        byte[] status = new byte[1];
+        ColumnTransforms.transform(op, columns, 0, 1, status);
+        return status[0] == TransformStatus.OK;
+    }
+
+    /**
+     * Return the candidate operations whose precision is at most precision
+     * and which can transform sample, from the cheapest to the most
+     * expensive. Operations of the same cost are sorted from the most
+     * precise to the least precise.
+     *
+     * @param ops the candidate operations
+     * @param precision the required precision (in meters)
+     * @param sample a point representative of the points to transform
+     */
+    public static List<CoordinateOperation> rank(List<CoordinateOperation> ops,
+            double precision, double[] sample) {
+        final Map<CoordinateOperation, Double> opCosts = new IdentityHashMap<CoordinateOperation, Double>();
+        List<CoordinateOperation> eligible = new ArrayList<CoordinateOperation>();
+        for (CoordinateOperation op : ops) {
+            if (op.getPrecision() <= precision) {
+                double cost = getCost(op, sample);
+                if (!Double.isInfinite(cost)) {
+                    opCosts.put(op, cost);
+                    eligible.add(op);
+                }
+            }
+        }
+        Collections.sort(eligible, new Comparator<CoordinateOperation>() {
+            @Override
+            public int compare(CoordinateOperation op1, CoordinateOperation op2) {
+                int c = Double.compare(opCosts.get(op1), opCosts.get(op2));
+                return c != 0 ? c : Double.compare(op1.getPrecision(), op2.getPrecision());
+            }
+        });
+        return eligible;
+    }
+
+    /**
+     * Return the cheapest candidate operation whose precision is at most
+     * precision and which can transform sample, or null if no candidate
+     * meets these requirements.
+     *
+     * @param ops the candidate operations
+     * @param precision the required precision (in meters)
+     * @param sample a point representative of the points to transform
+     */
+    public static CoordinateOperation select(List<CoordinateOperation> ops,
+            double precision, double[] sample) {
+        List<CoordinateOperation> ranked = rank(ops, precision, sample);
+        return ranked.isEmpty() ? null : ranked.get(0);
+    }
+}
@@ -36,6 +36,8 @@ import java.util.Arrays;
 
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
+import org.cts.metrics.Events;
+import org.cts.metrics.Metrics;
 
 import java.util.List;
 
@@ -45,7 +47,8 @@ import java.util.List;
  *
  * @author Michaël Michaud
  */
-public class CoordinateOperationSequence extends AbstractCoordinateOperation {
+public class CoordinateOperationSequence extends AbstractCoordinateOperation
+        implements SeparableOperation {
 
     /**
      * The sequence of the {@link CoordinateOperation} used by this
@@ -140,12 +143,186 @@ public class CoordinateOperationSequence extends AbstractCoordinateOperation {
     @Override
     public double[] transform(double[] coord)
             throws IllegalCoordinateException {
+        if (Metrics.isEnabled()) {
+            for (CoordinateOperation op : sequence) {
+                Metrics.countTransform(op.getClass());
+                coord = op.transform(coord);
+            }
+            return coord;
+        }
         for (CoordinateOperation op : sequence) {
             coord = op.transform(coord);
         }
         return coord;
     }
 
+    /**
+     * Transform coord through the sequence, passing context to each
+     * operation of the sequence.
+     *
+     * @param coord the 3D coord to transform
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        if (context == null) {
+            return transform(coord);
+        }
+        context.countTransform();
+        if (Metrics.isEnabled()) {
+            for (CoordinateOperation op : sequence) {
+                Metrics.countTransform(op.getClass());
+                coord = op.transform(coord, context);
+                if (context.hasFailed()) {
+                    return coord;
+                }
+            }
+            return coord;
+        }
+        for (CoordinateOperation op : sequence) {
+            coord = op.transform(coord, context);
+            if (context.hasFailed()) {
+                // the following operations are not applied to a failed point
+                return coord;
+            }
+        }
+        return coord;
+    }
+
+    /**
+     * Transform the points stored in columns through the sequence, each
+     * operation of the sequence being applied to the whole range before the
+     * next one. If the sequence contains a locality sensitive
+     * {@link GridBasedOperation} and the range contains at least
+     * {@link LocalityOrder#getThreshold()} points, the points are
+     * transformed in the order of a Morton curve and put
+     * back in their original order afterwards.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @return the transformed columns
+     * @throws IllegalCoordinateException if a point cannot be transformed
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        Object event = Events.beginTransformBatch();
+        if (length >= LocalityOrder.getThreshold() && columns.length >= 2
+                && LocalityOrder.isLocalitySensitive(this)) {
+            ColumnTransforms.checkRange(columns, offset, length);
+            int[] order = LocalityOrder.order(columns, offset, length);
+            double[][] sorted = LocalityOrder.gather(columns, offset, length, order);
+            columns = LocalityOrder.scatter(transformSteps(sorted, 0, length), columns, offset, order);
+        } else {
+            columns = transformSteps(columns, offset, length);
+        }
+        Events.commitTransformBatch(event, getName(), length);
+        return columns;
+    }
+
+    private double[][] transformSteps(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        boolean metrics = Metrics.isEnabled();
+        for (CoordinateOperation op : sequence) {
+            if (metrics) {
+                Metrics.countTransform(op.getClass(), length);
+            }
+            columns = op.transform(columns, offset, length);
+        }
+        return columns;
+    }
+
+    /**
+     * Transform the points stored in columns through the sequence without
+     * throwing an exception, each operation of the sequence being applied
+     * to the whole range with its own non throwing bulk transformation. A
+     * point keeps the status of the first operation which failed to
+     * transform it, and NaN coordinates.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param status the status of each point, indexed like the columns
+     * @return the transformed columns
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+        ColumnTransforms.checkRange(columns, offset, length);
+        ColumnTransforms.checkStatus(status, offset, length);
+        Arrays.fill(status, offset, offset + length, TransformStatus.OK);
+        byte[] stepStatus = new byte[offset + length];
+        boolean failed = false;
+        for (CoordinateOperation op : sequence) {
+            columns = op.transform(columns, offset, length, stepStatus);
+            for (int i = offset; i < offset + length; i++) {
+                if (status[i] == TransformStatus.OK && stepStatus[i] != TransformStatus.OK) {
+                    status[i] = stepStatus[i];
+                    failed = true;
+                }
+            }
+        }
+        if (failed) {
+            // a failed point may have been transformed again by the next operations
+            for (int i = offset; i < offset + length; i++) {
+                if (status[i] != TransformStatus.OK) {
+                    for (int d = 0; d < columns.length; d++) {
+                        columns[d][i] = Double.NaN;
+                    }
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Return the source axis of axis, following the source axes of each
+     * operation from the last one to the first one, or -1 if one of the
+     * operations is not separable.
+     *
+     * @param axis the target axis (0 or 1)
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        for (int i = sequence.length - 1; i >= 0 && axis >= 0; i--) {
+            if (!(sequence[i] instanceof SeparableOperation)) {
+                return -1;
+            }
+            axis = ((SeparableOperation) sequence[i]).getSourceAxis(axis);
+        }
+        return axis;
+    }
+
+    /**
+     * Transform values of the source axis of axis through each operation of
+     * the sequence.
+     *
+     * @param axis the target axis (0 or 1)
+     * @param values the values of the source axis of target axis
+     * @param offset index of the first value to transform
+     * @param length number of values to transform
+     * @throws IllegalCoordinateException if a value cannot be transformed
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length)
+            throws IllegalCoordinateException {
+        if (getSourceAxis(axis) < 0) {
+            throw new UnsupportedOperationException(getName() + " is not separable");
+        }
+        // target axis of each operation
+        int[] axes = new int[sequence.length];
+        for (int i = sequence.length - 1; i >= 0; i--) {
+            axes[i] = axis;
+            axis = ((SeparableOperation) sequence[i]).getSourceAxis(axis);
+        }
+        for (int i = 0; i < sequence.length; i++) {
+            ((SeparableOperation) sequence[i]).transformAxis(axes[i], values, offset, length);
+        }
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
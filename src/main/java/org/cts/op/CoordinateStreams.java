@@ -0,0 +1,353 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Utility methods used to apply a {@link CoordinateOperation} lazily to the
+ * coordinates of a {@link Stream} or of a {@link DoubleStream}.<p>
+ * The returned streams are backed by spliterators which read the source by
+ * blocks of {@link #BLOCK_SIZE} points, transform each block with the
+ * non-throwing bulk transform of the operation (see
+ * {@link CoordinateOperation#transform(double[][], int, int, byte[])}) and
+ * reuse their column arrays from one block to the next. Points which cannot
+ * be transformed get NaN coordinates. Returned streams are parallel if the
+ * source stream is parallel : each split transforms its own blocks, the
+ * operation being shared between threads.
+ */
+public final class CoordinateStreams {
+
+    /**
+     * Number of points read from the source and transformed at once.
+     */
+    public static final int BLOCK_SIZE = 512;
+
+    private CoordinateStreams() {
+    }
+
+    /**
+     * Return a stream of the points of points transformed by op. Points are
+     * transformed lazily, by blocks, when the returned stream is consumed.
+     * <p><b>WARNING</b> : like {@link CoordinateOperation#transform(double[])},
+     * the arrays of the source stream are modified in place, unless the
+     * operation changes the dimension of the coordinates.
+     *
+     * @param op the operation to apply
+     * @param points the points to transform
+     */
+    public static Stream<double[]> transform(CoordinateOperation op, final Stream<double[]> points) {
+        return StreamSupport.stream(new PointSpliterator(op, points.spliterator()), points.isParallel())
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        points.close();
+                    }
+                });
+    }
+
+    /**
+     * Return a stream of the interleaved coordinates of values (x0, y0, [z0,]
+     * x1, y1...) transformed by op. Values are transformed lazily, by blocks,
+     * when the returned stream is consumed. As for
+     * {@link CoordinateOperation#transform(java.nio.DoubleBuffer, int)}, each
+     * point keeps dimension values : if the operation returns less values per
+     * point, the remaining values are not modified.<p> A parallel stream is
+     * split where its source splits, the end of a point cut by a split being
+     * moved to the first part : sources which do not know the size of their
+     * splits (not {@link Spliterator#SUBSIZED}) are not split.
+     *
+     * @param op the operation to apply
+     * @param values the interleaved coordinates to transform
+     * @param dimension number of values per point
+     * @throws IllegalArgumentException if dimension is not positive, or (when
+     * the stream is consumed) if the number of values is not a multiple of
+     * dimension
+     */
+    public static DoubleStream transform(CoordinateOperation op, final DoubleStream values, int dimension) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("Invalid dimension : " + dimension);
+        }
+        return StreamSupport.doubleStream(new PackedSpliterator(op, values.spliterator(), dimension),
+                values.isParallel())
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        values.close();
+                    }
+                });
+    }
+
+    /**
+     * Spliterator transforming the points of a source spliterator by blocks.
+     */
+    private static final class PointSpliterator implements Spliterator<double[]>, Consumer<double[]> {
+
+        private final CoordinateOperation op;
+        private final Spliterator<double[]> source;
+        private final double[][] block = new double[BLOCK_SIZE][];
+        private int count;
+        private int next;
+        /**
+         * First point of the next block, read while filling the current one
+         * (points of a block have the same dimension).
+         */
+        private double[] pending;
+        private double[][] columns = new double[0][];
+        private final byte[] status = new byte[BLOCK_SIZE];
+
+        private PointSpliterator(CoordinateOperation op, Spliterator<double[]> source) {
+            this.op = op;
+            this.source = source;
+        }
+
+        @Override
+        public void accept(double[] point) {
+            if (count > 0 && point.length != block[0].length) {
+                pending = point;
+            } else {
+                block[count++] = point;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super double[]> action) {
+            if (next == count && !fill()) {
+                return false;
+            }
+            double[] point = block[next];
+            block[next++] = null;
+            action.accept(point);
+            return true;
+        }
+
+        /**
+         * Read and transform the next block of points.
+         */
+        private boolean fill() {
+            count = 0;
+            next = 0;
+            if (pending != null) {
+                block[count++] = pending;
+                pending = null;
+            }
+            while (count < BLOCK_SIZE && pending == null && source.tryAdvance(this)) {
+            }
+            if (count == 0) {
+                return false;
+            }
+            int dim = block[0].length;
+            if (columns.length != dim) {
+                columns = new double[dim][BLOCK_SIZE];
+            }
+            for (int i = 0; i < count; i++) {
+                for (int d = 0; d < dim; d++) {
+                    columns[d][i] = block[i][d];
+                }
+            }
+            double[][] result = op.transform(columns, 0, count, status);
+            int resultDim = result.length;
+            for (int i = 0; i < count; i++) {
+                double[] point = block[i].length == resultDim ? block[i] : new double[resultDim];
+                for (int d = 0; d < resultDim; d++) {
+                    point[d] = result[d][i];
+                }
+                block[i] = point;
+            }
+            return true;
+        }
+
+        @Override
+        public Spliterator<double[]> trySplit() {
+            // points already read from the source must come first
+            if (next < count || pending != null) {
+                return null;
+            }
+            Spliterator<double[]> split = source.trySplit();
+            return split == null ? null : new PointSpliterator(op, split);
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = source.estimateSize();
+            if (size == Long.MAX_VALUE) {
+                return size;
+            }
+            return size + (count - next) + (pending == null ? 0 : 1);
+        }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics() & (ORDERED | SIZED | SUBSIZED | NONNULL);
+        }
+    }
+
+    /**
+     * Spliterator transforming the interleaved coordinates of a source
+     * spliterator by blocks.
+     */
+    private static final class PackedSpliterator implements Spliterator.OfDouble, DoubleConsumer {
+
+        private static final double[] NO_VALUES = new double[0];
+        private final CoordinateOperation op;
+        private final int dimension;
+        private final Spliterator.OfDouble source;
+        /**
+         * Values following the values of source : the end of the last point
+         * of source, taken from the next split (empty if source ends on a
+         * point boundary).
+         */
+        private final double[] tail;
+        private int tailNext;
+        private final double[] values;
+        private int count;
+        private int next;
+        private final double[][] columns;
+        private final byte[] status = new byte[BLOCK_SIZE];
+
+        private PackedSpliterator(CoordinateOperation op, Spliterator.OfDouble source, int dimension) {
+            this(op, source, NO_VALUES, dimension);
+        }
+
+        private PackedSpliterator(CoordinateOperation op, Spliterator.OfDouble source,
+                double[] tail, int dimension) {
+            this.op = op;
+            this.source = source;
+            this.tail = tail;
+            this.dimension = dimension;
+            this.values = new double[BLOCK_SIZE * dimension];
+            this.columns = new double[dimension][BLOCK_SIZE];
+        }
+
+        @Override
+        public void accept(double value) {
+            values[count++] = value;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (next == count && !fill()) {
+                return false;
+            }
+            action.accept(values[next++]);
+            return true;
+        }
+
+        /**
+         * Read and transform the next block of points.
+         */
+        private boolean fill() {
+            count = 0;
+            next = 0;
+            while (count < values.length && source.tryAdvance(this)) {
+            }
+            while (count < values.length && tailNext < tail.length) {
+                values[count++] = tail[tailNext++];
+            }
+            if (count % dimension != 0) {
+                throw new IllegalArgumentException("The stream contains a number of values "
+                        + "which is not a multiple of the dimension " + dimension);
+            }
+            if (count == 0) {
+                return false;
+            }
+            int points = count / dimension;
+            for (int i = 0, index = 0; i < points; i++) {
+                for (int d = 0; d < dimension; d++) {
+                    columns[d][i] = values[index++];
+                }
+            }
+            double[][] result = op.transform(columns, 0, points, status);
+            int dim = Math.min(dimension, result.length);
+            for (int i = 0; i < points; i++) {
+                int index = i * dimension;
+                for (int d = 0; d < dim; d++) {
+                    values[index + d] = result[d][i];
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Split the source. The sizes of the splits must be known to split
+         * on a point boundary : sources which are not SUBSIZED are not split.
+         * If the prefix ends in the middle of a point, the end of this point
+         * is taken from the source and given to the prefix.
+         */
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            if (next < count || tailNext < tail.length
+                    || !source.hasCharacteristics(SUBSIZED)) {
+                return null;
+            }
+            Spliterator.OfDouble prefix = source.trySplit();
+            if (prefix == null) {
+                return null;
+            }
+            int remainder = (int) (prefix.getExactSizeIfKnown() % dimension);
+            if (remainder == 0) {
+                return new PackedSpliterator(op, prefix, dimension);
+            }
+            final double[] end = new double[dimension - remainder];
+            final int[] position = new int[1];
+            DoubleConsumer copy = new DoubleConsumer() {
+                @Override
+                public void accept(double value) {
+                    end[position[0]++] = value;
+                }
+            };
+            while (position[0] < end.length && source.tryAdvance(copy)) {
+            }
+            if (position[0] < end.length) {
+                throw new IllegalArgumentException("The stream contains a number of values "
+                        + "which is not a multiple of the dimension " + dimension);
+            }
+            return new PackedSpliterator(op, prefix, end, dimension);
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = source.estimateSize();
+            return size == Long.MAX_VALUE ? size : size + (count - next) + (tail.length - tailNext);
+        }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics() & (ORDERED | SIZED | SUBSIZED | NONNULL);
+        }
+    }
+}
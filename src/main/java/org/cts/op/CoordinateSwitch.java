@@ -40,7 +40,7 @@ import org.cts.IllegalCoordinateException;
  *
  * @author Michaël Michaud
  */
-public class CoordinateSwitch extends AbstractCoordinateOperation {
+public class CoordinateSwitch extends AbstractCoordinateOperation implements SeparableOperation {
 
     /**
      * Switch the two first value of a coordinate. For instance longitude and
@@ -71,6 +71,42 @@ public class CoordinateSwitch extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Switch two columns : the column arrays are swapped, their values are
+     * not moved.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @return a new array referencing the same columns, in another order
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, Math.max(pos1, pos2) + 1);
+        double[][] switched = columns.clone();
+        switched[pos1] = columns[pos2];
+        switched[pos2] = columns[pos1];
+        return switched;
+    }
+
+    /**
+     * Switched axes take their values from each other. The operation is not
+     * separable if an axis takes its values from an axis greater than 1.
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        int source = axis == pos1 ? pos2 : axis == pos2 ? pos1 : axis;
+        return source < 2 ? source : -1;
+    }
+
+    /**
+     * Values are not modified, only moved to another axis.
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length) {
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
@@ -0,0 +1,305 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.Arrays;
+
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+import org.cts.metrics.Metrics;
+
+/**
+ * A FallbackCoordinateOperation transforms each point with a primary
+ * operation, generally a precise grid based datum shift, and transforms the
+ * points which cannot be transformed by the primary operation (points out of
+ * the extent of the grid) with a fallback operation, generally a Helmert
+ * transformation based on the parameters of the datums.<p>
+ * The failures of the primary operation are detected through the failure
+ * reporting of {@link TransformContext} : the primary operation is applied
+ * with a context reporting failures, instead of leaving points outside the
+ * grid unchanged or throwing an exception. In bulk mode, the whole range is
+ * first transformed by the non throwing bulk transformation of the primary
+ * operation, then the points it could not transform are gathered and
+ * transformed together by the fallback operation, so that each set of points
+ * runs through a single loop.<p>
+ * The precision of this operation is the precision of its least precise
+ * operation. The precision achieved for each point can be obtained with
+ * {@link #transform(double[][], int, int, double[])}.
+ */
+public class FallbackCoordinateOperation extends AbstractCoordinateOperation {
+
+    /**
+     * The operation used first.
+     */
+    private final CoordinateOperation primary;
+    /**
+     * The operation used for the points which cannot be transformed by
+     * primary.
+     */
+    private final CoordinateOperation fallback;
+
+    /**
+     * Create a new FallbackCoordinateOperation.
+     *
+     * @param identifier the identifier of this operation
+     * @param primary the operation used first
+     * @param fallback the operation used for the points which cannot be
+     * transformed by primary
+     */
+    public FallbackCoordinateOperation(Identifier identifier,
+            CoordinateOperation primary, CoordinateOperation fallback) {
+        super(identifier);
+        this.primary = primary;
+        this.fallback = fallback;
+        this.precision = Math.max(primary.getPrecision(), fallback.getPrecision());
+    }
+
+    /**
+     * Return the operation used first.
+     */
+    public CoordinateOperation getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Return the operation used for the points which cannot be transformed
+     * by the primary operation.
+     */
+    public CoordinateOperation getFallback() {
+        return fallback;
+    }
+
+    @Override
+    public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Transform coord with the primary operation, or with the fallback
+     * operation if the primary operation cannot transform it.
+     *
+     * @param coord the coordinate to transform
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> cannot be
+     * transformed by any of the two operations
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        TransformContext ctx = context == null ? new TransformContext() : context;
+        boolean reporting = ctx.isReportingFailures();
+        double[] copy = ctx.copy(this, coord);
+        double[] result;
+        ctx.setReportingFailures(true);
+        try {
+            result = primary.transform(coord, ctx);
+        } catch (IllegalCoordinateException e) {
+            result = null;
+        } finally {
+            ctx.setReportingFailures(reporting);
+        }
+        if (result != null && !ctx.hasFailed()) {
+            return result;
+        }
+        ctx.resetStatus();
+        Metrics.increment(Metrics.FALLBACK);
+        System.arraycopy(copy, 0, coord, 0, coord.length);
+        return fallback.transform(coord, context);
+    }
+
+    /**
+     * Transform the points stored in columns with the primary operation, and
+     * the points which cannot be transformed by the primary operation with
+     * the fallback operation.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @throws IllegalCoordinateException if a point cannot be transformed by
+     * any of the two operations
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        return transform(columns, offset, length, (double[]) null);
+    }
+
+    /**
+     * Transform the points stored in columns with the primary operation, and
+     * the points which cannot be transformed by the primary operation with
+     * the fallback operation, and store the precision achieved for each
+     * point in precisions.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param precisions the array receiving the precision (in meters) of the
+     * operation used for each point, at the same indices as the points (may
+     * be null)
+     * @throws IllegalCoordinateException if a point cannot be transformed by
+     * any of the two operations
+     */
+    public double[][] transform(double[][] columns, int offset, int length,
+            double[] precisions) throws IllegalCoordinateException {
+        byte[] status = new byte[offset + length];
+        columns = transform(columns, offset, length, precisions, status);
+        for (int i = offset; i < offset + length; i++) {
+            if (status[i] != TransformStatus.OK) {
+                throw new IllegalCoordinateException("Point " + i + " cannot be transformed ("
+                        + TransformStatus.toString(status[i]) + ")");
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Transform the points stored in columns without throwing an exception,
+     * with the primary operation, and the points which cannot be transformed
+     * by the primary operation with the fallback operation. Points which
+     * cannot be transformed by the fallback operation get NaN coordinates
+     * and the status of this failure. The dimension of the returned columns
+     * is the dimension of the points transformed by the primary operation
+     * (of the fallback operation if the primary operation could not
+     * transform any point) ; points transformed by the fallback operation
+     * with another dimension are reported as dimension errors.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param status the status of each point, indexed like the columns
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+        return transform(columns, offset, length, null, status);
+    }
+
+    /**
+     * Transform the points stored in columns, partitioning them into the
+     * points transformed by the primary operation and the points
+     * transformed by the fallback operation.
+     */
+    private double[][] transform(double[][] columns, int offset, int length,
+            double[] precisions, byte[] status) {
+        ColumnTransforms.checkRange(columns, offset, length);
+        ColumnTransforms.checkStatus(status, offset, length);
+        if (precisions != null && precisions.length < offset + length) {
+            throw new IndexOutOfBoundsException("Precision array of length " + precisions.length
+                    + " is too short for range [" + offset + "," + (offset + length) + "[");
+        }
+        int dim = columns.length;
+        double[][] source = new double[dim][];
+        for (int d = 0; d < dim; d++) {
+            source[d] = new double[length];
+            System.arraycopy(columns[d], offset, source[d], 0, length);
+        }
+        double[][] output = primary.transform(columns, offset, length, status);
+        int failed = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (status[i] != TransformStatus.OK) {
+                failed++;
+            }
+        }
+        double primaryPrecision = primary.getPrecision();
+        if (failed == 0) {
+            if (precisions != null) {
+                Arrays.fill(precisions, offset, offset + length, primaryPrecision);
+            }
+            return output;
+        }
+        Metrics.increment(Metrics.FALLBACK, failed);
+        int[] index = new int[failed];
+        double[][] outside = new double[dim][failed];
+        for (int i = offset, k = 0; i < offset + length; i++) {
+            if (status[i] != TransformStatus.OK) {
+                index[k] = i;
+                for (int d = 0; d < dim; d++) {
+                    outside[d][k] = source[d][i - offset];
+                }
+                k++;
+            }
+        }
+        byte[] outsideStatus = new byte[failed];
+        outside = fallback.transform(outside, 0, failed, outsideStatus);
+        if (failed == length) {
+            // no point transformed by primary : the fallback operation gives
+            // the output dimension
+            output = ColumnTransforms.resize(output, outside.length);
+        }
+        boolean sameDimension = outside.length == output.length;
+        for (int k = 0; k < failed; k++) {
+            int i = index[k];
+            status[i] = outsideStatus[k];
+            if (sameDimension) {
+                for (int d = 0; d < output.length; d++) {
+                    output[d][i] = outside[d][k];
+                }
+            } else {
+                if (status[i] == TransformStatus.OK) {
+                    status[i] = TransformStatus.DIMENSION_ERROR;
+                }
+                for (int d = 0; d < output.length; d++) {
+                    output[d][i] = Double.NaN;
+                }
+            }
+        }
+        if (precisions != null) {
+            double fallbackPrecision = fallback.getPrecision();
+            for (int i = offset, k = 0; i < offset + length; i++) {
+                if (k < failed && index[k] == i) {
+                    precisions[i] = status[i] == TransformStatus.OK ? fallbackPrecision : Double.NaN;
+                    k++;
+                } else {
+                    precisions[i] = primaryPrecision;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Creates the inverse CoordinateOperation, falling back from the inverse
+     * of the primary operation to the inverse of the fallback operation.
+     */
+    @Override
+    public CoordinateOperation inverse() throws NonInvertibleOperationException {
+        return new FallbackCoordinateOperation(new Identifier(FallbackCoordinateOperation.class,
+                "Inverse of " + getName()), primary.inverse(), fallback.inverse());
+    }
+
+    /**
+     * Return a String representation of this operation.
+     */
+    @Override
+    public String toString() {
+        return getName() + " (" + primary + ", falling back to " + fallback + ")";
+    }
+}
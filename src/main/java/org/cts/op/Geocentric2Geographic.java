@@ -42,6 +42,7 @@ import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
 import org.cts.datum.Ellipsoid;
+import org.cts.util.ConvergencePolicy;
 
 /**
  * <p>Transform geographic coordinates (latitude, longitude, ellipsoidal height
@@ -81,6 +82,15 @@ public class Geocentric2Geographic extends AbstractCoordinateOperation {
      * that error is less than 1E-4 m.
      */
     private double epsilon;
+    /**
+     * Default convergence policy of the latitude computation.
+     */
+    private static volatile ConvergencePolicy defaultConvergencePolicy =
+            new ConvergencePolicy("Geocentric2Geographic", 100, 1E-11, ConvergencePolicy.OnFailure.THROW);
+    /**
+     * Convergence policy of this operation (null to use the default policy).
+     */
+    private ConvergencePolicy convergencePolicy;
 
     /**
      * <p>Create a new Geographic2Geocentric transformation for a specific
@@ -93,7 +103,7 @@ public class Geocentric2Geographic extends AbstractCoordinateOperation {
         super(opId);
         this.ellipsoid = ellipsoid;
         this.precision = 1E-4;   // 0.0001 mm
-        this.epsilon = 1E-11;    // condition d'arret = 1E-11 radian < 1E-4 m
+        this.epsilon = defaultConvergencePolicy.getTolerance(); // 1E-11 radian < 1E-4 m
     }
 
     /**
@@ -142,12 +152,25 @@ public class Geocentric2Geographic extends AbstractCoordinateOperation {
         double lat0 = atan(Z / (XY2 * (1 - (a * e2 / sqrt(X * X + Y * Y + Z * Z)))));
         double lati = lat0;
         double lati1 = 0;
+        ConvergencePolicy policy = getConvergencePolicy();
+        int maxIterations = policy.getMaxIterations();
+        int iter = 0;
+        boolean converged = true;
         while (abs(lati1 - lati) > epsilon) {
+            if (iter == maxIterations) {
+                lati1 = policy.notConverged(lati1);
+                converged = false;
+                break;
+            }
+            iter++;
             lati = lati1;
             double exp1 = a * e2 * cos(lati);
             double exp2 = sqrt(1 - (e2 * sin(lati) * sin(lati)));
             lati1 = atan((Z / XY2) / (1 - (exp1 / (XY2 * exp2))));
         }
+        if (converged) {
+            policy.converged(iter);
+        }
         double lat = lati1;
         // Calcul de la hauteur
         double height = XY2 / cos(lat) - a / sqrt(1 - (e2 * sin(lat) * sin(lat)));
@@ -157,6 +180,36 @@ public class Geocentric2Geographic extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Transform geocentric coordinates stored in columns into geographic
+     * coordinates. The latitude being computed by an iterative algorithm,
+     * points are computed one by one in a single scratch array.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 3);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        double[] c2 = columns[2];
+        double[] coord = new double[3];
+        for (int i = offset; i < offset + length; i++) {
+            coord[0] = c0[i];
+            coord[1] = c1[i];
+            coord[2] = c2[i];
+            transform(coord);
+            c0[i] = coord[0];
+            c1[i] = coord[1];
+            c2[i] = coord[2];
+        }
+        return columns;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
@@ -173,6 +226,40 @@ public class Geocentric2Geographic extends AbstractCoordinateOperation {
         return getName() + " (" + ellipsoid.getName() + ")";
     }
 
+    /**
+     * Return the convergence policy used by this operation.
+     */
+    public ConvergencePolicy getConvergencePolicy() {
+        return convergencePolicy == null ? defaultConvergencePolicy : convergencePolicy;
+    }
+
+    /**
+     * Set the convergence policy used by this operation. The tolerance of
+     * this operation is not changed.
+     *
+     * @param policy the new convergence policy (null to use the default one)
+     */
+    public void setConvergencePolicy(ConvergencePolicy policy) {
+        this.convergencePolicy = policy;
+    }
+
+    /**
+     * Return the default convergence policy of Geocentric2Geographic
+     * operations.
+     */
+    public static ConvergencePolicy getDefaultConvergencePolicy() {
+        return defaultConvergencePolicy;
+    }
+
+    /**
+     * Set the default convergence policy of Geocentric2Geographic operations.
+     *
+     * @param policy the new default convergence policy
+     */
+    public static void setDefaultConvergencePolicy(ConvergencePolicy policy) {
+        defaultConvergencePolicy = policy;
+    }
+
     public Ellipsoid getEllipsoid() {
         return ellipsoid;
     }
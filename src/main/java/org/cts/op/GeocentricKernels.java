@@ -0,0 +1,184 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+
+/**
+ * Bulk kernels used by the columnar transforms of the operations working on
+ * geocentric coordinates (geocentric translation, seven parameter
+ * transformation, geographic to geocentric conversion).<p>
+ * This class contains the scalar implementation of the kernels. On Java 17
+ * and later, the library also contains a vectorized implementation based on
+ * the incubating Vector API (jdk.incubator.vector), stored in the
+ * versioned part of the multi-release jar. It is used by
+ * {@link #getInstance()} if the jdk.incubator.vector module is available
+ * (java is run with <code>--add-modules jdk.incubator.vector</code>) and if
+ * the system property <code>org.cts.vector</code> is not set to false.<p>
+ * Both implementations compute the same expressions in the same order, so
+ * that they give exactly the same results as the point by point transforms.
+ */
+public class GeocentricKernels {
+
+    /**
+     * Name of the class of the vectorized kernels.
+     */
+    private static final String VECTOR_KERNELS = "org.cts.op.VectorGeocentricKernels";
+    private static final GeocentricKernels INSTANCE = load();
+
+    /**
+     * Create scalar kernels.
+     */
+    protected GeocentricKernels() {
+    }
+
+    /**
+     * Return the kernels used by geocentric operations : the vectorized
+     * kernels if they are available, the scalar ones otherwise.
+     */
+    public static GeocentricKernels getInstance() {
+        return INSTANCE;
+    }
+
+    private static GeocentricKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("org.cts.vector", "true"))) {
+            return new GeocentricKernels();
+        }
+        try {
+            return (GeocentricKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            // Java 16 or less : the vectorized kernels are not in the jar
+        } catch (LinkageError e) {
+            // the jdk.incubator.vector module is not available
+        }
+        return new GeocentricKernels();
+    }
+
+    /**
+     * Return a short description of these kernels.
+     */
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Translate the points of the range [offset, offset+length[ of the
+     * columns x, y and z by (tx, ty, tz).
+     */
+    public void translate(double[] x, double[] y, double[] z, int offset, int length,
+            double tx, double ty, double tz) {
+        for (int i = offset; i < offset + length; i++) {
+            x[i] = tx + x[i];
+            y[i] = ty + y[i];
+            z[i] = tz + z[i];
+        }
+    }
+
+    /**
+     * Apply a seven parameter transformation to the points of the range
+     * [offset, offset+length[ of the columns x, y and z.
+     *
+     * @param tx translation along X
+     * @param ty translation along Y
+     * @param tz translation along Z
+     * @param scale scale factor
+     * @param srx sine (or linearized value) of the rotation around X
+     * @param sry sine (or linearized value) of the rotation around Y
+     * @param srz sine (or linearized value) of the rotation around Z
+     */
+    public void helmert(double[] x, double[] y, double[] z, int offset, int length,
+            double tx, double ty, double tz, double scale,
+            double srx, double sry, double srz) {
+        for (int i = offset; i < offset + length; i++) {
+            double xi = x[i];
+            double yi = y[i];
+            double zi = z[i];
+            x[i] = tx + scale * (xi + zi * sry - yi * srz);
+            y[i] = ty + scale * (yi + xi * srz - zi * srx);
+            z[i] = tz + scale * (zi + yi * srx - xi * sry);
+        }
+    }
+
+    /**
+     * Apply the inverse of a seven parameter transformation to the points of
+     * the range [offset, offset+length[ of the columns x, y and z.
+     *
+     * @param tx translation along X of the direct transformation
+     * @param ty translation along Y of the direct transformation
+     * @param tz translation along Z of the direct transformation
+     * @param invScale inverse of the scale factor
+     * @param srx opposite of the sine (or linearized value) of the rotation
+     * around X
+     * @param sry opposite of the sine (or linearized value) of the rotation
+     * around Y
+     * @param srz opposite of the sine (or linearized value) of the rotation
+     * around Z
+     */
+    public void inverseHelmert(double[] x, double[] y, double[] z, int offset, int length,
+            double tx, double ty, double tz, double invScale,
+            double srx, double sry, double srz) {
+        double det = 1 + srx * srx + sry * sry + srz * srz;
+        for (int i = offset; i < offset + length; i++) {
+            double xi = x[i] - tx;
+            double yi = y[i] - ty;
+            double zi = z[i] - tz;
+            x[i] = invScale * (xi * (1 + srx * srx) + zi * (sry + srx * srz) - yi * (srz - srx * sry)) / det;
+            y[i] = invScale * (yi * (1 + sry * sry) + xi * (srz + srx * sry) - zi * (srx - sry * srz)) / det;
+            z[i] = invScale * (zi * (1 + srz * srz) + yi * (srx + sry * srz) - xi * (sry - srx * srz)) / det;
+        }
+    }
+
+    /**
+     * Convert the geographic coordinates (latitude and longitude in radians,
+     * ellipsoidal height) of the range [offset, offset+length[ of the
+     * columns lat, lon and h into geocentric coordinates. NaN heights are
+     * considered as 0.
+     *
+     * @param a semi-major axis of the ellipsoid
+     * @param e2 square eccentricity of the ellipsoid
+     */
+    public void geographic2Geocentric(double[] lat, double[] lon, double[] h,
+            int offset, int length, double a, double e2) {
+        for (int i = offset; i < offset + length; i++) {
+            double phi = lat[i];
+            double lambda = lon[i];
+            double height = Double.isNaN(h[i]) ? 0.0 : h[i];
+            double sinlat = sin(phi);
+            double N = a / sqrt(1 - (e2 * sinlat * sinlat));
+            lat[i] = (N + height) * cos(phi) * cos(lambda);
+            lon[i] = (N + height) * cos(phi) * sin(lambda);
+            h[i] = (N * (1 - e2) + height) * sinlat;
+        }
+    }
+}
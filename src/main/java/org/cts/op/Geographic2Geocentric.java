@@ -142,6 +142,27 @@ public class Geographic2Geocentric extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Transform geographic coordinates stored in columns into geocentric
+     * coordinates. A third column is added if columns contains only latitudes
+     * and longitudes. Points are converted by the {@link GeocentricKernels}
+     * of the platform.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        columns = ColumnTransforms.resize(columns, Math.max(3, columns.length));
+        GeocentricKernels.getInstance().geographic2Geocentric(columns[0], columns[1], columns[2],
+                offset, length, ellipsoid.getSemiMajorAxis(), ellipsoid.getSquareEccentricity());
+        return columns;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
@@ -0,0 +1,385 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cts.metrics.Metrics;
+
+/**
+ * GridMemory keeps account of the memory used by the grids loaded in memory
+ * and by the coordinate caches, and enforces a global memory budget.<p>
+ * Each grid registers its footprint when it is loaded
+ * ({@link #register(String, long, Evictable)}) and marks its use with
+ * {@link #touch(Entry)}. Caches, whose footprint changes as they are filled,
+ * register themselves once ({@link #registerCache(String, Footprint)}) and
+ * are measured when the memory is accounted. When the grids and the caches
+ * exceed the budget ({@link #setBudget(long)}, unlimited by default), the
+ * least recently used grids are evicted : they are released and loaded
+ * again the next time they are used. Caches are never evicted. The footprint
+ * of each grid and cache can be read with {@link #getFootprints()}.<p>
+ * The owners of the grids and the caches are weakly referenced : a grid
+ * whose owner is garbage collected, or such a cache, is no longer accounted.
+ * The caches of CRS and of coordinate operations ({@link org.cts.CRSFactory}
+ * and {@link org.cts.crs.GeodeticCRS}) hold object graphs whose size cannot
+ * be measured cheaply : they are not accounted.
+ */
+public final class GridMemory {
+
+    /**
+     * An owner of grids which can release its grid and load it again when
+     * it is used next.
+     */
+    public interface Evictable {
+
+        /**
+         * Release the grid registered by this owner. It must be loaded again
+         * (and registered again) the next time it is used.
+         */
+        public void evictGrid();
+    }
+
+    /**
+     * A cache whose memory usage is accounted by GridMemory.
+     */
+    public interface Footprint {
+
+        /**
+         * Return an estimation of the memory currently used (in bytes).
+         */
+        public long getMemoryUsage();
+    }
+
+    /**
+     * A grid registered in GridMemory.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final long memory;
+        /**
+         * The owner of the grid (null if the grid cannot be evicted).
+         */
+        private final WeakReference<Evictable> owner;
+        private final boolean evictable;
+        /**
+         * Tick of the coarse clock when the grid has been used last. It is
+         * written without holding the lock of GridMemory.
+         */
+        private volatile long lastUse;
+
+        private Entry(String name, long memory, Evictable owner) {
+            this.name = name;
+            this.memory = memory;
+            this.owner = new WeakReference<Evictable>(owner);
+            this.evictable = owner != null;
+        }
+
+        /**
+         * Return the name of the grid.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Return the memory used by the grid (in bytes).
+         */
+        public long getMemoryUsage() {
+            return memory;
+        }
+
+        /**
+         * Return true if the owner of the grid has been garbage collected.
+         */
+        private boolean isCleared() {
+            return evictable && owner.get() == null;
+        }
+    }
+
+    /**
+     * Number of bits dropped from System.nanoTime() to get the coarse clock
+     * ordering the grids from the least recently used to the most recently
+     * used (about one millisecond per tick).
+     */
+    private static final int TICK_SHIFT = 20;
+    private static long budget = Long.MAX_VALUE;
+    private static final List<Entry> entries = new ArrayList<Entry>();
+    private static final List<CacheEntry> caches = new ArrayList<CacheEntry>();
+
+    private static final class CacheEntry {
+
+        final String name;
+        final WeakReference<Footprint> cache;
+
+        CacheEntry(String name, Footprint cache) {
+            this.name = name;
+            this.cache = new WeakReference<Footprint>(cache);
+        }
+    }
+
+    private GridMemory() {
+    }
+
+    /**
+     * Return the maximum memory (in bytes) used by the grids.
+     */
+    public static synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Set the maximum memory (in bytes) used by the grids. The least recently
+     * used grids are evicted at once if the registered grids exceed it.
+     *
+     * @param bytes the budget, Long.MAX_VALUE for an unlimited budget
+     */
+    public static void setBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Invalid memory budget : " + bytes);
+        }
+        List<Evictable> evicted;
+        synchronized (GridMemory.class) {
+            budget = bytes;
+            evicted = selectEvicted(null);
+        }
+        evict(evicted);
+    }
+
+    /**
+     * Register a grid which has just been loaded, and evict the least
+     * recently used grids if the budget is exceeded. The grid just loaded is
+     * never evicted here, even if it exceeds the budget alone.
+     *
+     * @param name the name of the grid (the name of its file)
+     * @param memory the memory used by the grid (in bytes)
+     * @param owner the owner of the grid, evicting it on demand (null if the
+     * grid can never be evicted)
+     * @return the entry of the grid, to be touched each time the grid is used
+     * and released when the grid is unloaded
+     */
+    public static Entry register(String name, long memory, Evictable owner) {
+        Entry entry = new Entry(name, memory, owner);
+        List<Evictable> evicted;
+        synchronized (GridMemory.class) {
+            entry.lastUse = now();
+            entries.add(entry);
+            evicted = selectEvicted(entry);
+        }
+        evict(evicted);
+        return entry;
+    }
+
+    /**
+     * Remove the entry of a grid which has been unloaded by its owner.
+     *
+     * @param entry the entry of the grid (may be null)
+     */
+    public static synchronized void release(Entry entry) {
+        if (entry != null) {
+            entries.remove(entry);
+        }
+    }
+
+    /**
+     * Mark a grid as the most recently used one.
+     *
+     * @param entry the entry of the grid (may be null)
+     */
+    public static void touch(Entry entry) {
+        if (entry != null) {
+            // a grid used several times in the same tick is only written
+            // once, and no shared variable is written
+            long now = now();
+            if (entry.lastUse != now) {
+                entry.lastUse = now;
+            }
+        }
+    }
+
+    /**
+     * Return the current tick of the coarse clock. Grids used in the same
+     * tick have the same time, their order being arbitrary.
+     */
+    private static long now() {
+        return System.nanoTime() >> TICK_SHIFT;
+    }
+
+    /**
+     * Register a cache whose memory usage is accounted with the grids. The
+     * cache is measured each time the memory is accounted, and no longer
+     * accounted once it is garbage collected.
+     *
+     * @param name the name of the cache
+     * @param cache the cache
+     */
+    public static void registerCache(String name, Footprint cache) {
+        List<Evictable> evicted;
+        synchronized (GridMemory.class) {
+            caches.add(new CacheEntry(name, cache));
+            evicted = selectEvicted(null);
+        }
+        evict(evicted);
+    }
+
+    /**
+     * Return the memory (in bytes) used by the registered grids and caches.
+     */
+    public static synchronized long getMemoryUsage() {
+        purge();
+        long total = getCacheMemoryUsage();
+        for (Entry entry : entries) {
+            total += entry.memory;
+        }
+        return total;
+    }
+
+    /**
+     * Return the memory (in bytes) used by the registered grids, by grid
+     * name, from the least recently used grid to the most recently used
+     * one, followed by the memory used by the registered caches, by cache
+     * name.
+     */
+    public static synchronized Map<String, Long> getFootprints() {
+        purge();
+        List<Entry> sorted = new ArrayList<Entry>(entries);
+        sortByLastUse(sorted);
+        Map<String, Long> footprints = new LinkedHashMap<String, Long>();
+        for (Entry entry : sorted) {
+            add(footprints, entry.name, entry.memory);
+        }
+        for (CacheEntry entry : caches) {
+            Footprint cache = entry.cache.get();
+            if (cache != null) {
+                add(footprints, entry.name, cache.getMemoryUsage());
+            }
+        }
+        return footprints;
+    }
+
+    private static void add(Map<String, Long> footprints, String name, long memory) {
+        Long previous = footprints.get(name);
+        footprints.put(name, previous == null ? memory : previous + memory);
+    }
+
+    /**
+     * Return the memory (in bytes) used by the registered caches.
+     */
+    private static long getCacheMemoryUsage() {
+        long total = 0L;
+        for (CacheEntry entry : caches) {
+            Footprint cache = entry.cache.get();
+            if (cache != null) {
+                total += cache.getMemoryUsage();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Remove the entries whose owner has been garbage collected.
+     */
+    private static void purge() {
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+            if (it.next().isCleared()) {
+                it.remove();
+            }
+        }
+        for (Iterator<CacheEntry> it = caches.iterator(); it.hasNext();) {
+            if (it.next().cache.get() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    private static void sortByLastUse(List<Entry> list) {
+        Collections.sort(list, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                return e1.lastUse < e2.lastUse ? -1 : (e1.lastUse == e2.lastUse ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * Remove from the registered grids the least recently used ones until
+     * the budget is respected, and return their owners. The owners are
+     * called after the lock of GridMemory has been released, as they may be
+     * loading another grid at the same time.
+     *
+     * @param kept an entry which must not be evicted (may be null)
+     */
+    private static List<Evictable> selectEvicted(Entry kept) {
+        List<Evictable> evicted = new ArrayList<Evictable>();
+        purge();
+        if (budget == Long.MAX_VALUE) {
+            return evicted;
+        }
+        long total = getCacheMemoryUsage();
+        for (Entry entry : entries) {
+            total += entry.memory;
+        }
+        if (total <= budget) {
+            return evicted;
+        }
+        List<Entry> sorted = new ArrayList<Entry>(entries);
+        sortByLastUse(sorted);
+        for (Entry entry : sorted) {
+            if (total <= budget) {
+                break;
+            }
+            Evictable owner = entry.owner.get();
+            if (entry != kept && owner != null) {
+                entries.remove(entry);
+                total -= entry.memory;
+                evicted.add(owner);
+            }
+        }
+        return evicted;
+    }
+
+    private static void evict(List<Evictable> evicted) {
+        for (Evictable owner : evicted) {
+            owner.evictGrid();
+        }
+        if (!evicted.isEmpty()) {
+            Metrics.increment(Metrics.GRID_EVICTION, evicted.size());
+        }
+    }
+}
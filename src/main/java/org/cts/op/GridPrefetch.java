@@ -0,0 +1,251 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.cts.metrics.Metrics;
+
+/**
+ * GridPrefetch schedules the loading of the grids used by coordinate
+ * operations.<p>
+ * By default, grids are loaded synchronously, when the operation is created
+ * or the first time it is used. In asynchronous mode
+ * ({@link #setAsynchronous(boolean)}), the operations created by
+ * {@link org.cts.CRSHelper} schedule the loading of their grids on a
+ * background executor, so that the creation of a CRS returns immediately :
+ * the first transformation using a grid waits for this grid only. The
+ * grids being loaded can be inspected with {@link #getPendingGrids()} and
+ * {@link #isReady(String)}, and awaited with {@link #awaitAll(long, TimeUnit)},
+ * at the startup of an application for instance.
+ */
+public final class GridPrefetch {
+
+    private static volatile boolean asynchronous = false;
+    /**
+     * The executor used to load the grids (created the first time it is
+     * needed).
+     */
+    private static ExecutorService executor;
+    /**
+     * The grids being loaded in the background. A task removes itself from
+     * this list when it is done.
+     */
+    private static final List<Load<?>> pending = new ArrayList<Load<?>>();
+
+    /**
+     * Task loading a grid in the background.
+     */
+    private static final class Load<T> extends FutureTask<T> {
+
+        final String name;
+
+        Load(String name, Callable<T> loader) {
+            super(loader);
+            this.name = name;
+        }
+
+        @Override
+        protected void done() {
+            synchronized (GridPrefetch.class) {
+                pending.remove(this);
+            }
+        }
+    }
+
+    private GridPrefetch() {
+    }
+
+    /**
+     * Return true if the grids are loaded in the background.
+     */
+    public static boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * Set whether the grids of the operations created from now on are loaded
+     * in the background (false by default).
+     *
+     * @param async true to load the grids in the background
+     */
+    public static void setAsynchronous(boolean async) {
+        asynchronous = async;
+    }
+
+    /**
+     * Set the executor used to load the grids in the background. By default,
+     * two daemon threads are used.
+     *
+     * @param newExecutor the executor to use (null to use the default one)
+     */
+    public static synchronized void setExecutor(ExecutorService newExecutor) {
+        executor = newExecutor;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "cts-grid-loader-" + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Load a grid with loader : in the background in asynchronous mode, at
+     * once otherwise. In both cases, the result (or the failure) of the
+     * loading is obtained with {@link #await(Future)}.
+     *
+     * @param name the name of the grid (the name of its file)
+     * @param loader the task loading the grid
+     * @return the future result of the loading
+     */
+    public static <T> Future<T> load(String name, Callable<T> loader) {
+        if (!asynchronous) {
+            FutureTask<T> task = new FutureTask<T>(loader);
+            task.run();
+            return task;
+        }
+        Load<T> task = new Load<T>(name, loader);
+        synchronized (GridPrefetch.class) {
+            pending.add(task);
+        }
+        try {
+            getExecutor().execute(task);
+        } catch (RuntimeException e) {
+            synchronized (GridPrefetch.class) {
+                pending.remove(task);
+            }
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * Wait for the loading of a grid and return the grid.
+     *
+     * @param future the future result returned by
+     * {@link #load(String, Callable)}
+     * @throws IOException if the grid could not be loaded, or if the
+     * calling thread has been interrupted while waiting
+     */
+    public static <T> T await(Future<T> future) throws IOException {
+        long start = future.isDone() ? 0L : Metrics.start();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a grid");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            if (start != 0L) {
+                Metrics.recordSince(Metrics.GRID_WAIT_TIME, start);
+            }
+        }
+    }
+
+    /**
+     * Return the names of the grids being loaded in the background.
+     */
+    public static synchronized List<String> getPendingGrids() {
+        List<String> names = new ArrayList<String>();
+        for (Load<?> load : pending) {
+            // done() is called after the waiting threads are released
+            if (!load.isDone()) {
+                names.add(load.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Return true if the grid of this name is not being loaded in the
+     * background.
+     *
+     * @param name the name of the grid
+     */
+    public static boolean isReady(String name) {
+        return !getPendingGrids().contains(name);
+    }
+
+    /**
+     * Wait for the loading of all the grids scheduled so far. The failures
+     * are not reported here, but by the transformations using the grids.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of timeout
+     * @return true if all the grids are loaded, false if the timeout elapsed
+     * before
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public static boolean awaitAll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<Load<?>> loads;
+        synchronized (GridPrefetch.class) {
+            loads = new ArrayList<Load<?>>(pending);
+        }
+        for (Load<?> load : loads) {
+            try {
+                load.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // reported by the operations using the grid
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
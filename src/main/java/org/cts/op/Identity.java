@@ -39,7 +39,7 @@ import org.cts.IllegalCoordinateException;
  *
  * @author Michaël Michaud
  */
-public class Identity extends AbstractCoordinateOperation {
+public class Identity extends AbstractCoordinateOperation implements SeparableOperation {
 
     /**
      * The identity transformation. When used to transform coordinates, it
@@ -67,6 +67,30 @@ public class Identity extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Return columns unchanged.
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        return columns;
+    }
+
+    /**
+     * Each axis is its own source axis.
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        return axis;
+    }
+
+    /**
+     * Values are not modified.
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length) {
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
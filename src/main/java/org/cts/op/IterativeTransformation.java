@@ -33,6 +33,7 @@ package org.cts.op;
 
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
+import org.cts.util.ConvergencePolicy;
 
 /**
  * The IterativeTransformation is used to repeat a
@@ -51,6 +52,18 @@ public class IterativeTransformation extends AbstractCoordinateOperation impleme
     int[] realValueIndex;
     int[] calculatedValueIndex;
     double[] tolerance;
+    /**
+     * Default convergence policy of iterative transformations (the tolerance
+     * of the policy is not used, each IterativeTransformation has its own
+     * tolerances).
+     */
+    private static volatile ConvergencePolicy defaultConvergencePolicy =
+            new ConvergencePolicy("IterativeTransformation", 100, 1E-11, ConvergencePolicy.OnFailure.THROW);
+    /**
+     * Convergence policy of this transformation (null to use the default
+     * policy).
+     */
+    ConvergencePolicy convergencePolicy;
 
     /**
      * Build a new IterativeTransformation.
@@ -76,19 +89,168 @@ public class IterativeTransformation extends AbstractCoordinateOperation impleme
         this.tolerance = tol;
     }
 
+    /**
+     * Build a new IterativeTransformation with a specific convergence policy.
+     *
+     * @param op the transformation to iterate
+     * @param realValueIndex a list of index refering to the reference values
+     * the iteration should reach
+     * @param calculatedValueIndex the list of index refering to the calculated
+     * values that must reach the reference values defined above
+     * @param tol the maximal difference accepted between the real value and the
+     * target value
+     * @param policy the policy defining the maximum number of iterations and
+     * the behaviour if the transformation does not converge
+     * @throws Exception when the arrayx in parameter does not have the same
+     * length
+     */
+    public IterativeTransformation(CoordinateOperation op, int[] realValueIndex, int[] calculatedValueIndex, double[] tol, ConvergencePolicy policy) throws Exception {
+        this(op, realValueIndex, calculatedValueIndex, tol);
+        this.convergencePolicy = policy;
+    }
+
+    /**
+     * Build a copy of model iterating op instead of the operation of model.
+     *
+     * @param model the IterativeTransformation to copy
+     * @param op the transformation to iterate
+     */
+    private IterativeTransformation(IterativeTransformation model, CoordinateOperation op) {
+        super(new Identifier(IterativeTransformation.class));
+        this.op = op;
+        this.realValueIndex = model.realValueIndex;
+        this.calculatedValueIndex = model.calculatedValueIndex;
+        this.tolerance = model.tolerance;
+        this.convergencePolicy = model.convergencePolicy;
+    }
+
+    /**
+     * Return a new IterativeTransformation with the same indexes, tolerances
+     * and convergence policy as this one, but iterating op.
+     *
+     * @param op the transformation to iterate
+     */
+    public IterativeTransformation withOperation(CoordinateOperation op) {
+        return new IterativeTransformation(this, op);
+    }
+
+    /**
+     * Return the iterated operation.
+     */
+    public CoordinateOperation getIteratedOperation() {
+        return op;
+    }
+
+    /**
+     * Return the indexes of the reference values the iteration should reach.
+     */
+    public int[] getRealValueIndex() {
+        return realValueIndex.clone();
+    }
+
+    /**
+     * Return the indexes of the calculated values that must reach the
+     * reference values.
+     */
+    public int[] getCalculatedValueIndex() {
+        return calculatedValueIndex.clone();
+    }
+
+    /**
+     * Return the maximal differences accepted between the reference values
+     * and the calculated values.
+     */
+    public double[] getTolerance() {
+        return tolerance.clone();
+    }
+
+    /**
+     * Iterate the operation until the calculated values reach the real values.
+     * If they do not converge within the maximum number of iterations of the
+     * convergence policy, the coordinate is filled with NaN, or returned as is,
+     * or a {@link org.cts.util.NonConvergenceException} is thrown, depending on
+     * the policy.
+     *
+     * @param coord the coordinate to transform
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
     @Override
     public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Iterate the operation using context for each iteration.
+     *
+     * @param coord the coordinate to transform
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        ConvergencePolicy policy = getConvergencePolicy();
+        int maxIterations = policy.getMaxIterations();
+        int n = 0;
         boolean iter = false;
         for (int i = 0; i < realValueIndex.length; i++) {
             iter = iter || Math.abs(coord[realValueIndex[i]] - coord[calculatedValueIndex[i]]) > tolerance[i];
         }
         while (iter) {
-            coord = op.transform(coord);
+            if (n == maxIterations) {
+                policy.notConverged();
+                if (policy.isNaNOnFailure()) {
+                    for (int i = 0; i < coord.length; i++) {
+                        coord[i] = Double.NaN;
+                    }
+                }
+                return coord;
+            }
+            n++;
+            coord = op.transform(coord, context);
             iter = false;
             for (int i = 0; i < realValueIndex.length; i++) {
                 iter = iter || Math.abs(coord[realValueIndex[i]] - coord[calculatedValueIndex[i]]) > tolerance[i];
             }
         }
+        policy.converged(n);
+        if (context != null) {
+            context.countIterations(n);
+        }
         return coord;
     }
+
+    /**
+     * Return the convergence policy used by this transformation.
+     */
+    public ConvergencePolicy getConvergencePolicy() {
+        return convergencePolicy == null ? defaultConvergencePolicy : convergencePolicy;
+    }
+
+    /**
+     * Set the convergence policy used by this transformation.
+     *
+     * @param policy the new convergence policy (null to use the default one)
+     */
+    public void setConvergencePolicy(ConvergencePolicy policy) {
+        this.convergencePolicy = policy;
+    }
+
+    /**
+     * Return the default convergence policy of iterative transformations.
+     */
+    public static ConvergencePolicy getDefaultConvergencePolicy() {
+        return defaultConvergencePolicy;
+    }
+
+    /**
+     * Set the default convergence policy of iterative transformations.
+     *
+     * @param policy the new default convergence policy
+     */
+    public static void setDefaultConvergencePolicy(ConvergencePolicy policy) {
+        defaultConvergencePolicy = policy;
+    }
 }
\ No newline at end of file
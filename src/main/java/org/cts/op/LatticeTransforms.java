@@ -0,0 +1,142 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.Arrays;
+
+import org.cts.IllegalCoordinateException;
+import org.cts.metrics.Metrics;
+
+/**
+ * Utility methods used to transform a regular lattice of coordinates, defined
+ * by an origin, a step and a number of nodes for each of the two first
+ * axes.<p>
+ * When the operation is a {@link SeparableOperation} (ex. a sequence made of
+ * unit conversions, axis switches and a cylindrical projection), the values
+ * of each axis are transformed once, and the lattice is filled from them :
+ * the transcendental work is proportional to count0 + count1 instead of
+ * count0 * count1. Other operations transform every node with
+ * {@link CoordinateOperation#transform(double[][], int, int)}.<p>
+ * Nodes are stored row by row : node (i0, i1) is at index
+ * <code>i0 * count1 + i1</code> of the columns.
+ */
+public final class LatticeTransforms {
+
+    private LatticeTransforms() {
+    }
+
+    /**
+     * Return true if op transforms lattices by transforming each axis once.
+     *
+     * @param op the operation to test
+     */
+    public static boolean isSeparable(CoordinateOperation op) {
+        if (!(op instanceof SeparableOperation)) {
+            return false;
+        }
+        SeparableOperation sep = (SeparableOperation) op;
+        int s0 = sep.getSourceAxis(0);
+        int s1 = sep.getSourceAxis(1);
+        return s0 >= 0 && s1 >= 0 && s0 != s1;
+    }
+
+    /**
+     * Transform the regular lattice of coordinates defined by origin, step
+     * and count for the two first axes.
+     *
+     * @param op the operation to apply
+     * @param origin0 first value of axis 0
+     * @param step0 step between two values of axis 0
+     * @param count0 number of values of axis 0
+     * @param origin1 first value of axis 1
+     * @param step1 step between two values of axis 1
+     * @param count1 number of values of axis 1
+     * @return the transformed nodes, one array per dimension, node (i0, i1)
+     * being at index i0 * count1 + i1
+     * @throws IllegalCoordinateException if a node cannot be transformed
+     */
+    public static double[][] transform(CoordinateOperation op,
+            double origin0, double step0, int count0,
+            double origin1, double step1, int count1)
+            throws IllegalCoordinateException {
+        if (count0 < 0 || count1 < 0 || (long) count0 * count1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid lattice size : " + count0 + " x " + count1);
+        }
+        double[] axis0 = new double[count0];
+        for (int i = 0; i < count0; i++) {
+            axis0[i] = origin0 + i * step0;
+        }
+        double[] axis1 = new double[count1];
+        for (int i = 0; i < count1; i++) {
+            axis1[i] = origin1 + i * step1;
+        }
+        int n = count0 * count1;
+        if (!isSeparable(op)) {
+            double[][] columns = new double[2][n];
+            for (int i0 = 0, k = 0; i0 < count0; i0++) {
+                for (int i1 = 0; i1 < count1; i1++, k++) {
+                    columns[0][k] = axis0[i0];
+                    columns[1][k] = axis1[i1];
+                }
+            }
+            return op.transform(columns, 0, n);
+        }
+        SeparableOperation sep = (SeparableOperation) op;
+        double[][] axes = {axis0, axis1};
+        double[][] columns = new double[2][];
+        for (int axis = 0; axis < 2; axis++) {
+            int source = sep.getSourceAxis(axis);
+            double[] values = axes[source];
+            sep.transformAxis(axis, values, 0, values.length);
+            columns[axis] = fill(values, source == 0, count0, count1);
+        }
+        if (Metrics.isEnabled()) {
+            Metrics.countTransform(op.getClass(), n);
+        }
+        return columns;
+    }
+
+    /**
+     * Fill a column of the lattice from the values of one axis.
+     */
+    private static double[] fill(double[] values, boolean rows, int count0, int count1) {
+        double[] column = new double[count0 * count1];
+        for (int i0 = 0; i0 < count0; i0++) {
+            if (rows) {
+                Arrays.fill(column, i0 * count1, (i0 + 1) * count1, values[i0]);
+            } else {
+                System.arraycopy(values, 0, column, i0 * count1, count1);
+            }
+        }
+        return column;
+    }
+}
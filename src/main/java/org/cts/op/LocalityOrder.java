@@ -0,0 +1,241 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.Arrays;
+
+import org.cts.IllegalCoordinateException;
+
+/**
+ * Utility methods used to transform a batch of points in the order of a
+ * Morton curve (Z-order) drawn over their two first ordinates, and to
+ * restore the original order afterwards.<p>
+ * Grid based operations reading their grid from a file (see
+ * {@link GridBasedOperation#isLocalitySensitive()}) are much faster when
+ * successive points fall in the same grid cell or sub-grid. Points of a GPS
+ * event stream arrive in random spatial order : sorting them along a
+ * space-filling curve keeps points close in space close in the batch.
+ * Sorting only pays off for large batches, so
+ * {@link CoordinateOperationSequence}s sort batches of at least
+ * {@link #getThreshold()} points only. The Morton curve is used rather than
+ * the Hilbert curve because its index is computed without any branch, the
+ * locality being nearly the same at the scale of a grid cell.
+ */
+public final class LocalityOrder {
+
+    /**
+     * Default minimal number of points of a batch to sort it.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+    /**
+     * Number of bits of each ordinate in the Morton index.
+     */
+    private static final int BITS = 15;
+    private static final int SIDE = 1 << BITS;
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+
+    private LocalityOrder() {
+    }
+
+    /**
+     * Return the minimal number of points of a batch to sort it.
+     */
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Set the minimal number of points of a batch to sort it
+     * (Integer.MAX_VALUE disables sorting).
+     *
+     * @param minPoints the new threshold
+     */
+    public static void setThreshold(int minPoints) {
+        if (minPoints < 2) {
+            throw new IllegalArgumentException("The threshold must be at least 2");
+        }
+        threshold = minPoints;
+    }
+
+    /**
+     * Return true if op is a locality sensitive {@link GridBasedOperation}
+     * or a sequence containing one.
+     *
+     * @param op the operation to check
+     */
+    public static boolean isLocalitySensitive(CoordinateOperation op) {
+        if (op instanceof GridBasedOperation) {
+            return ((GridBasedOperation) op).isLocalitySensitive();
+        }
+        if (op instanceof CoordinateOperationSequence) {
+            for (CoordinateOperation step : ((CoordinateOperationSequence) op).getSequence()) {
+                if (isLocalitySensitive(step)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Transform the points of columns in the range [offset, offset+length[
+     * in Morton order, and return them in their original order. The
+     * operation is applied to a sorted copy of the range.
+     *
+     * @param op the operation to apply (it must not sort the points itself)
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @return the transformed columns
+     * @throws IllegalCoordinateException if a point cannot be transformed
+     */
+    public static double[][] transform(CoordinateOperation op,
+            double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        int[] order = order(columns, offset, length);
+        double[][] sorted = gather(columns, offset, length, order);
+        return scatter(op.transform(sorted, 0, length), columns, offset, order);
+    }
+
+    /**
+     * Return the order of the points of the range [offset, offset+length[
+     * along a Morton curve drawn over the bounding box of their two first
+     * ordinates : order[k] is the index (relative to offset) of the k-th
+     * point of the curve. Points having a NaN or infinite ordinate are put at
+     * the end.
+     *
+     * @param columns the coordinates, one array per dimension (at least 2)
+     * @param offset index of the first point
+     * @param length number of points
+     */
+    public static int[] order(double[][] columns, int offset, int length) {
+        if (columns.length < 2) {
+            throw new IllegalArgumentException("At least 2 columns are required to sort points");
+        }
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] xs = columns[0];
+        double[] ys = columns[1];
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + length; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            if (Double.isFinite(x) && Double.isFinite(y)) {
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+        }
+        double scaleX = maxX > minX ? (SIDE - 1) / (maxX - minX) : 0;
+        double scaleY = maxY > minY ? (SIDE - 1) / (maxY - minY) : 0;
+        // Morton index in the upper bits, index of the point in the lower
+        // bits, so that sorting the keys gives the order
+        long[] keys = new long[length];
+        for (int k = 0; k < length; k++) {
+            double x = xs[offset + k];
+            double y = ys[offset + k];
+            long d;
+            if (Double.isFinite(x) && Double.isFinite(y)) {
+                d = interleave((int) ((x - minX) * scaleX)) | interleave((int) ((y - minY) * scaleY)) << 1;
+            } else {
+                d = (long) SIDE * SIDE;
+            }
+            keys[k] = d << 32 | k;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[length];
+        for (int k = 0; k < length; k++) {
+            order[k] = (int) keys[k];
+        }
+        return order;
+    }
+
+    /**
+     * Return a copy of the range [offset, offset+length[ of columns, the
+     * points being copied in the given order.
+     *
+     * @param columns the coordinates, one array per dimension
+     * @param offset index of the first point
+     * @param length number of points
+     * @param order the order of the points (see
+     * {@link #order(double[][], int, int)})
+     */
+    public static double[][] gather(double[][] columns, int offset, int length, int[] order) {
+        double[][] sorted = new double[columns.length][length];
+        for (int d = 0; d < columns.length; d++) {
+            double[] src = columns[d];
+            double[] dst = sorted[d];
+            for (int k = 0; k < length; k++) {
+                dst[k] = src[offset + order[k]];
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Copy the points of sorted back to their original position in columns,
+     * starting at offset. Columns are added or removed if sorted has another
+     * dimension (see {@link ColumnTransforms#resize(double[][], int)}).
+     *
+     * @param sorted the points in the given order
+     * @param columns the columns receiving the points
+     * @param offset index of the first point in columns
+     * @param order the order of the points of sorted
+     * @return columns, or new columns if the dimension has changed
+     */
+    public static double[][] scatter(double[][] sorted, double[][] columns, int offset, int[] order) {
+        double[][] output = ColumnTransforms.resize(columns, sorted.length);
+        for (int d = 0; d < sorted.length; d++) {
+            double[] src = sorted[d];
+            double[] dst = output[d];
+            for (int k = 0; k < order.length; k++) {
+                dst[offset + order[k]] = src[k];
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Spread the 16 lower bits of v over the even bits of the result.
+     */
+    private static long interleave(int v) {
+        long x = v & 0xFFFFL;
+        x = (x | (x << 8)) & 0x00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0FL;
+        x = (x | (x << 2)) & 0x33333333L;
+        x = (x | (x << 1)) & 0x55555555L;
+        return x;
+    }
+}
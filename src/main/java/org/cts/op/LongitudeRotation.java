@@ -42,7 +42,7 @@ import org.cts.datum.PrimeMeridian;
  *
  * @author Michaël Michaud
  */
-public class LongitudeRotation extends AbstractCoordinateOperation {
+public class LongitudeRotation extends AbstractCoordinateOperation implements SeparableOperation {
 
     /**
      * The Identifier used for all Longitude Rotations.
@@ -84,6 +84,50 @@ public class LongitudeRotation extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Add the rotation angle to the longitude column.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] lon = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            lon[i] = lon[i] + rotationAngle;
+        }
+        return columns;
+    }
+
+    /**
+     * Each axis is its own source axis.
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        return axis;
+    }
+
+    /**
+     * Rotate longitude values (axis 1), other values are not modified.
+     *
+     * @param axis the axis to transform
+     * @param values the values to transform
+     * @param offset index of the first value to transform
+     * @param length number of values to transform
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length) {
+        if (axis == 1) {
+            for (int i = offset; i < offset + length; i++) {
+                values[i] = values[i] + rotationAngle;
+            }
+        }
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
@@ -0,0 +1,424 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+import org.cts.metrics.Metrics;
+
+/**
+ * A MemoizedCoordinateOperation wraps a {@link CoordinateOperation} and keeps
+ * the results of the last transformed coordinates in a bounded cache, so that
+ * coordinates transformed several times (vertices shared by adjacent
+ * polygons, corners of adjacent tiles...) are only computed once. This is
+ * useful for expensive operations like grid based datum shifts.<p>
+ * The cache is a fixed-size open addressing table. A coordinate is found in
+ * the cache only if the bit patterns of all its ordinates are exactly the
+ * same as the cached one, so that a memoized operation always returns the
+ * same values as the wrapped operation. Entries are immutable and are
+ * replaced when the table is full : the cache can be used concurrently
+ * without locking.<p>
+ * Memoization is opt-in (operations must be wrapped with
+ * {@link #memoize(CoordinateOperation)}) and can be disabled globally with
+ * {@link #setEnabled(boolean)}, in which case wrapped operations call the
+ * memoized operation directly. The memory used by the caches is accounted by
+ * {@link GridMemory}.
+ */
+public class MemoizedCoordinateOperation extends AbstractCoordinateOperation
+        implements GridMemory.Footprint {
+
+    /**
+     * Default number of entries of the cache.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /**
+     * Number of consecutive slots where a coordinate may be stored.
+     */
+    private static final int MAX_PROBES = 4;
+    private static volatile boolean enabled = true;
+    /**
+     * The memoized operation.
+     */
+    private final CoordinateOperation op;
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a new MemoizedCoordinateOperation.
+     *
+     * @param op the operation to memoize
+     * @param capacity the number of entries of the cache (rounded to the
+     * next power of two)
+     */
+    private MemoizedCoordinateOperation(CoordinateOperation op, int capacity) {
+        super(new Identifier(op.getAuthorityName(), op.getAuthorityKey(), op.getName()));
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity : " + capacity);
+        }
+        this.op = op;
+        this.precision = op.getPrecision();
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.table = new AtomicReferenceArray<Entry>(Math.max(size, MAX_PROBES));
+        this.mask = table.length() - 1;
+        GridMemory.registerCache(getName() + " (memoized)", this);
+    }
+
+    /**
+     * Return a memoized version of op with a cache of
+     * {@link #DEFAULT_CAPACITY} entries. If op is already memoized, it is
+     * returned as is.
+     *
+     * @param op the operation to memoize
+     */
+    public static MemoizedCoordinateOperation memoize(CoordinateOperation op) {
+        return memoize(op, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Return a memoized version of op with a cache of capacity entries. If op
+     * is already memoized, it is returned as is.
+     *
+     * @param op the operation to memoize
+     * @param capacity the number of entries of the cache
+     */
+    public static MemoizedCoordinateOperation memoize(CoordinateOperation op, int capacity) {
+        if (op instanceof MemoizedCoordinateOperation) {
+            return (MemoizedCoordinateOperation) op;
+        }
+        return new MemoizedCoordinateOperation(op, capacity);
+    }
+
+    /**
+     * Return true if memoized operations use their cache.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable the cache of all memoized operations. Disabled
+     * memoized operations call the memoized operation directly.
+     *
+     * @param enable false to disable memoization
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Transform coord with the memoized operation, or copy the cached result
+     * if coord has already been transformed.
+     *
+     * @param coord the coordinate to transform
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Transform coord with the memoized operation, passing context, or copy
+     * the cached result if coord has already been transformed.
+     *
+     * @param coord the coordinate to transform
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        if (!enabled) {
+            return op.transform(coord, context);
+        }
+        int hash = hash(coord);
+        Entry entry = lookup(coord, hash);
+        if (entry != null) {
+            count(1, 0);
+            if (entry.value.length == coord.length) {
+                System.arraycopy(entry.value, 0, coord, 0, coord.length);
+                return coord;
+            }
+            return entry.value.clone();
+        }
+        count(0, 1);
+        double[] key = coord.clone();
+        double[] result = op.transform(coord, context);
+        if (context == null || !context.hasFailed()) {
+            store(hash, new Entry(key, result.clone()));
+        }
+        return result;
+    }
+
+    /**
+     * Transform the points stored in columns. Points found in the cache are
+     * copied, and the other ones are transformed together with the columnar
+     * transform of the memoized operation.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @throws IllegalCoordinateException if a point cannot be transformed
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        if (!enabled || columns.length == 0) {
+            return op.transform(columns, offset, length);
+        }
+        ColumnTransforms.checkRange(columns, offset, length);
+        int dim = columns.length;
+        double[] coord = new double[dim];
+        int[] hashes = new int[length];
+        Entry[] found = new Entry[length];
+        int missing = 0;
+        for (int i = 0; i < length; i++) {
+            for (int d = 0; d < dim; d++) {
+                coord[d] = columns[d][offset + i];
+            }
+            hashes[i] = hash(coord);
+            found[i] = lookup(coord, hashes[i]);
+            if (found[i] == null || found[i].value.length != dim) {
+                found[i] = null;
+                missing++;
+            }
+        }
+        double[][] keys = new double[dim][missing];
+        for (int i = 0, k = 0; i < length; i++) {
+            if (found[i] == null) {
+                for (int d = 0; d < dim; d++) {
+                    keys[d][k] = columns[d][offset + i];
+                }
+                k++;
+            }
+        }
+        double[][] computed = new double[dim][];
+        for (int d = 0; d < dim; d++) {
+            computed[d] = keys[d].clone();
+        }
+        computed = op.transform(computed, 0, missing);
+        if (computed.length != dim) {
+            // the operation changes the dimension of the columns
+            count(0, length);
+            return op.transform(columns, offset, length);
+        }
+        count(length - missing, missing);
+        for (int i = 0, k = 0; i < length; i++) {
+            if (found[i] == null) {
+                double[] key = new double[dim];
+                double[] value = new double[dim];
+                for (int d = 0; d < dim; d++) {
+                    key[d] = keys[d][k];
+                    value[d] = computed[d][k];
+                    columns[d][offset + i] = value[d];
+                }
+                store(hashes[i], new Entry(key, value));
+                k++;
+            } else {
+                for (int d = 0; d < dim; d++) {
+                    columns[d][offset + i] = found[i].value[d];
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Return a memoized version of the inverse of the memoized operation,
+     * with a cache of the same capacity.
+     */
+    @Override
+    public CoordinateOperation inverse() throws NonInvertibleOperationException {
+        return memoize(op.inverse(), getCapacity());
+    }
+
+    /**
+     * Return the memoized operation.
+     */
+    public CoordinateOperation getMemoizedOperation() {
+        return op;
+    }
+
+    /**
+     * Return the number of entries of the cache.
+     */
+    public int getCapacity() {
+        return table.length();
+    }
+
+    /**
+     * Return an estimation of the memory used by the cache (in bytes) : the
+     * table and the cached coordinates, assuming compressed references.
+     */
+    @Override
+    public long getMemoryUsage() {
+        long size = 16L + 4L * table.length();
+        for (int i = 0; i < table.length(); i++) {
+            Entry entry = table.get(i);
+            if (entry != null) {
+                // entry object and its two arrays
+                size += 24L + 2L * (16L + 8L * entry.key.length);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of coordinates found in the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Return the number of coordinates not found in the cache.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Return the ratio of coordinates found in the cache (0 if no coordinate
+     * has been transformed).
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Remove all the entries of the cache and reset hit and miss counters.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private void count(long hit, long miss) {
+        if (hit > 0) {
+            hits.add(hit);
+        }
+        if (miss > 0) {
+            misses.add(miss);
+        }
+        if (Metrics.isEnabled()) {
+            Metrics.increment(Metrics.MEMO_HIT, hit);
+            Metrics.increment(Metrics.MEMO_MISS, miss);
+        }
+    }
+
+    /**
+     * Return the entry of the cache whose key has exactly the same bits as
+     * coord, or null.
+     */
+    private Entry lookup(double[] coord, int hash) {
+        for (int p = 0; p < MAX_PROBES; p++) {
+            Entry entry = table.get((hash + p) & mask);
+            if (entry != null && entry.matches(coord)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store entry in the first free slot of its probe sequence, or replace
+     * one of the entries of the sequence.
+     */
+    private void store(int hash, Entry entry) {
+        for (int p = 0; p < MAX_PROBES; p++) {
+            if (table.compareAndSet((hash + p) & mask, null, entry)) {
+                return;
+            }
+        }
+        table.set((hash + ((hash >>> 16) & (MAX_PROBES - 1))) & mask, entry);
+    }
+
+    private static int hash(double[] coord) {
+        long h = coord.length;
+        for (double v : coord) {
+            h = h * 0x9E3779B97F4A7C15L + Double.doubleToRawLongBits(v);
+        }
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        h ^= h >>> 32;
+        return (int) h;
+    }
+
+    /**
+     * Return a String representation of this operation.
+     */
+    @Override
+    public String toString() {
+        return "Memoized " + op;
+    }
+
+    /**
+     * An immutable entry of the cache.
+     */
+    private static final class Entry {
+
+        final double[] key;
+        final double[] value;
+
+        Entry(double[] key, double[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean matches(double[] coord) {
+            if (coord.length != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (Double.doubleToRawLongBits(coord[i]) != Double.doubleToRawLongBits(key[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -40,7 +40,7 @@ import org.cts.IllegalCoordinateException;
  *
  * @author Jules Party
  */
-public class OppositeCoordinate extends AbstractCoordinateOperation {
+public class OppositeCoordinate extends AbstractCoordinateOperation implements SeparableOperation {
 
     /**
      * The index of the coordinate to transform.
@@ -74,6 +74,31 @@ public class OppositeCoordinate extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Each axis is its own source axis.
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        return axis;
+    }
+
+    /**
+     * Negate values of the axis index, other values are not modified.
+     *
+     * @param axis the axis to transform
+     * @param values the values to transform
+     * @param offset index of the first value to transform
+     * @param length number of values to transform
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length) {
+        if (axis == index) {
+            for (int i = offset; i < offset + length; i++) {
+                values[i] = -values[i];
+            }
+        }
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
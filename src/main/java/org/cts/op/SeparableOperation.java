@@ -0,0 +1,67 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import org.cts.IllegalCoordinateException;
+
+/**
+ * A SeparableOperation is a {@link CoordinateOperation} for which each of the
+ * two first target axes depends on a single source axis (ex. easting and
+ * northing of a Mercator projection only depend on longitude and latitude
+ * respectively).<p>
+ * Such operations can transform a regular lattice of coordinates by
+ * transforming the values of each axis once (see {@link LatticeTransforms}).
+ */
+public interface SeparableOperation extends CoordinateOperation {
+
+    /**
+     * Return the index (0 or 1) of the source axis on which target axis
+     * depends, or -1 if target axis does not depend on a single source axis
+     * (the operation is then not separable).
+     *
+     * @param axis the target axis (0 or 1)
+     */
+    public int getSourceAxis(int axis);
+
+    /**
+     * Transform in place values of the source axis of target axis into
+     * values of target axis.
+     *
+     * @param axis the target axis (0 or 1)
+     * @param values the values of the source axis of target axis
+     * @param offset index of the first value to transform
+     * @param length number of values to transform
+     * @throws IllegalCoordinateException if a value cannot be transformed
+     */
+    public void transformAxis(int axis, double[] values, int offset, int length)
+            throws IllegalCoordinateException;
+}
@@ -0,0 +1,343 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+
+/**
+ * A TracedCoordinateOperation wraps a {@link CoordinateOperation} and
+ * measures, for each of its steps, the number of calls, the cumulative time
+ * and an estimation of the memory allocated.<p>
+ * {@link CoordinateOperationSequence}s are traced step by step (nested
+ * sequences included) and the operation iterated by an
+ * {@link IterativeTransformation} is traced too, so that the report returned
+ * by {@link #explain()} shows which step of a transformation is expensive.<p>
+ * Tracing is opt-in : the wrapped operation is not modified, and operations
+ * which are not wrapped do not pay anything. Times and allocations are
+ * inclusive (the cost of a sequence includes the cost of its steps).
+ * Allocations are only measured on JVMs providing
+ * com.sun.management.ThreadMXBean.
+ */
+public class TracedCoordinateOperation extends AbstractCoordinateOperation {
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+    /**
+     * Memory allocated by the measure itself, removed from each measure.
+     */
+    private static final long ALLOCATION_OVERHEAD = allocationOverhead();
+    /**
+     * The traced operation.
+     */
+    private final CoordinateOperation op;
+    /**
+     * The traced steps of the operation (null for a single operation).
+     */
+    private final TracedCoordinateOperation[] steps;
+    /**
+     * The operation really used to transform coordinates (a copy of an
+     * IterativeTransformation iterating the traced step).
+     */
+    private final CoordinateOperation delegate;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * Create a new TracedCoordinateOperation.
+     *
+     * @param op the operation to trace
+     */
+    private TracedCoordinateOperation(CoordinateOperation op) {
+        super(new Identifier(op.getAuthorityName(), op.getAuthorityKey(), op.getName()));
+        this.op = op;
+        this.precision = op.getPrecision();
+        if (op instanceof CoordinateOperationSequence) {
+            CoordinateOperation[] sequence = ((CoordinateOperationSequence) op).getSequence();
+            steps = new TracedCoordinateOperation[sequence.length];
+            for (int i = 0; i < sequence.length; i++) {
+                steps[i] = new TracedCoordinateOperation(sequence[i]);
+            }
+            delegate = null;
+        } else if (op instanceof IterativeTransformation) {
+            IterativeTransformation it = (IterativeTransformation) op;
+            steps = new TracedCoordinateOperation[]{
+                new TracedCoordinateOperation(it.getIteratedOperation())};
+            delegate = it.withOperation(steps[0]);
+        } else {
+            steps = null;
+            delegate = op;
+        }
+    }
+
+    /**
+     * Return a traced version of op. If op is already traced, it is returned
+     * as is.
+     *
+     * @param op the operation to trace
+     */
+    public static TracedCoordinateOperation trace(CoordinateOperation op) {
+        if (op instanceof TracedCoordinateOperation) {
+            return (TracedCoordinateOperation) op;
+        }
+        return new TracedCoordinateOperation(op);
+    }
+
+    /**
+     * Find the method returning the memory allocated by a thread, or null if
+     * this JVM does not support it.
+     */
+    private static Method allocatedBytesMethod() {
+        try {
+            Class<?> c = Class.forName("com.sun.management.ThreadMXBean");
+            if (c.isInstance(THREAD_BEAN)) {
+                Method m = c.getMethod("getThreadAllocatedBytes", long.class);
+                m.setAccessible(true);
+                if ((Long) m.invoke(THREAD_BEAN, Thread.currentThread().getId()) >= 0) {
+                    return m;
+                }
+            }
+        } catch (Exception e) {
+            // allocation tracking is not supported
+        } catch (LinkageError e) {
+            // allocation tracking is not supported
+        }
+        return null;
+    }
+
+    /**
+     * Return the number of bytes allocated by the current thread, or -1 if
+     * this information is not available.
+     */
+    private static long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return -1L;
+        }
+        try {
+            return (Long) ALLOCATED_BYTES.invoke(THREAD_BEAN, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Estimate the memory allocated by two successive calls to
+     * {@link #allocatedBytes()}.
+     */
+    private static long allocationOverhead() {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            long b0 = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - b0);
+        }
+        return Math.max(0L, overhead);
+    }
+
+    /**
+     * Transform coord with the traced operation and record the cost of each
+     * step.
+     *
+     * @param coord the coordinate to transform
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Transform coord with the traced operation, passing context to each
+     * step, and record the cost of each step.
+     *
+     * @param coord the coordinate to transform
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        long b0 = allocatedBytes();
+        long t0 = System.nanoTime();
+        try {
+            if (delegate == null) {
+                for (TracedCoordinateOperation step : steps) {
+                    coord = step.transform(coord, context);
+                }
+                return coord;
+            } else {
+                return delegate.transform(coord, context);
+            }
+        } finally {
+            nanos.add(System.nanoTime() - t0);
+            calls.increment();
+            if (b0 >= 0) {
+                bytes.add(Math.max(0L, allocatedBytes() - b0 - ALLOCATION_OVERHEAD));
+            }
+        }
+    }
+
+    /**
+     * Transform the points stored in columns with the traced operation and
+     * record the cost of each step. Each point of the range is counted as one
+     * call.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @throws IllegalCoordinateException if a point cannot be transformed
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        long b0 = allocatedBytes();
+        long t0 = System.nanoTime();
+        try {
+            if (delegate == null) {
+                for (TracedCoordinateOperation step : steps) {
+                    columns = step.transform(columns, offset, length);
+                }
+                return columns;
+            } else {
+                return delegate.transform(columns, offset, length);
+            }
+        } finally {
+            nanos.add(System.nanoTime() - t0);
+            calls.add(length);
+            if (b0 >= 0) {
+                bytes.add(Math.max(0L, allocatedBytes() - b0 - ALLOCATION_OVERHEAD));
+            }
+        }
+    }
+
+    /**
+     * Return a traced version of the inverse of the traced operation.
+     */
+    @Override
+    public CoordinateOperation inverse() throws NonInvertibleOperationException {
+        return trace(op.inverse());
+    }
+
+    /**
+     * Return the traced operation.
+     */
+    public CoordinateOperation getTracedOperation() {
+        return op;
+    }
+
+    /**
+     * Return the traced steps of this operation, or an empty array if the
+     * traced operation is neither a sequence nor an iterative transformation.
+     */
+    public TracedCoordinateOperation[] getSteps() {
+        return steps == null ? new TracedCoordinateOperation[0] : steps.clone();
+    }
+
+    /**
+     * Return the number of calls to this step.
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Return the cumulative time spent in this step in nanoseconds.
+     */
+    public long getTotalTime() {
+        return nanos.sum();
+    }
+
+    /**
+     * Return the cumulative number of bytes allocated by this step (0 if the
+     * JVM cannot measure it).
+     */
+    public long getAllocatedBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Reset the measures of this step and of its sub-steps.
+     */
+    public void reset() {
+        calls.reset();
+        nanos.reset();
+        bytes.reset();
+        if (steps != null) {
+            for (TracedCoordinateOperation step : steps) {
+                step.reset();
+            }
+        }
+    }
+
+    /**
+     * Return a report listing each step of the traced operation with the
+     * number of calls, the cumulative time, the mean time per call and the
+     * mean allocation per call.
+     */
+    public String explain() {
+        StringBuilder sb = new StringBuilder(1024);
+        explain(sb, "");
+        return sb.toString();
+    }
+
+    private void explain(StringBuilder sb, String indent) {
+        long n = calls.sum();
+        long t = nanos.sum();
+        sb.append(indent);
+        if (steps == null) {
+            sb.append(op.getCode()).append(" : ").append(op.toString());
+        } else {
+            sb.append(op.getCode()).append(" : ").append(op.getName());
+        }
+        sb.append(String.format(Locale.ROOT, " [calls=%d, total=%.3f ms, mean=%d ns, alloc=%d B/call]",
+                n, t / 1e6, n == 0 ? 0 : t / n, n == 0 ? 0 : bytes.sum() / n));
+        sb.append('\n');
+        if (steps != null) {
+            for (TracedCoordinateOperation step : steps) {
+                step.explain(sb, indent + "   ");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return op.toString();
+    }
+}
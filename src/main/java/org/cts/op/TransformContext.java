@@ -0,0 +1,432 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import org.cts.metrics.Metrics;
+import org.cts.op.transformation.grid.GridShift;
+
+/**
+ * A TransformContext holds the temporary state used by
+ * {@link CoordinateOperation}s while transforming coordinates : scratch
+ * arrays, hints about the last grid cell or sub-grid used, and a few
+ * statistics about the calls made with this context.<p>
+ * Passing a context to {@link CoordinateOperation#transform(double[],
+ * TransformContext)} lets operations reuse these objects from one coordinate
+ * to the next instead of allocating new ones, and keeps the hints out of the
+ * (shared) operations.<p>
+ * <b>WARNING</b> : a TransformContext is not thread-safe. Each thread
+ * transforming coordinates must use its own context, so that operations can
+ * be shared between threads without any lock.
+ */
+public final class TransformContext {
+
+    /**
+     * Number of scratch arrays, hints and grid cells kept by a context.
+     */
+    private static final int SLOTS = 8;
+    /**
+     * Owners and values of the scratch arrays.
+     */
+    private final Object[] scratchOwners = new Object[SLOTS];
+    private final double[][] scratch = new double[SLOTS][];
+    private int nextScratch;
+    /**
+     * Owners and values of the GridShift objects used by NTv2
+     * transformations.
+     */
+    private final Object[] gridShiftOwners = new Object[SLOTS];
+    private final GridShift[] gridShifts = new GridShift[SLOTS];
+    private int nextGridShift;
+    /**
+     * Keys and values of the hints stored in this context.
+     */
+    private final Object[] hintKeys = new Object[SLOTS];
+    private final Object[] hintValues = new Object[SLOTS];
+    private int nextHint;
+    /**
+     * Last cell used in each grid.
+     */
+    private final Cell[] cells = new Cell[SLOTS];
+    private int nextCell;
+    /**
+     * Statistics.
+     */
+    private long transformCount;
+    private long iterationCount;
+    private long gridLookupCount;
+    private long cellHitCount;
+    private long hintHitCount;
+    /**
+     * Failure reporting mode and status of the current coordinate.
+     */
+    private boolean reportingFailures;
+    private byte status = TransformStatus.OK;
+
+    /**
+     * Create a new empty TransformContext.
+     */
+    public TransformContext() {
+    }
+
+    /**
+     * Return a scratch array of the given length owned by owner. The same
+     * array is returned by successive calls with the same owner and the same
+     * length, so that an operation can use it during a call without
+     * interfering with the operations it calls (which own other arrays).
+     *
+     * @param owner the object using the array (generally the operation
+     * itself, compared by identity)
+     * @param length length of the returned array
+     */
+    public double[] getScratch(Object owner, int length) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (scratchOwners[i] == owner && scratch[i] != null && scratch[i].length == length) {
+                return scratch[i];
+            }
+        }
+        double[] array = new double[length];
+        scratchOwners[nextScratch] = owner;
+        scratch[nextScratch] = array;
+        nextScratch = (nextScratch + 1) % SLOTS;
+        return array;
+    }
+
+    /**
+     * Copy coord into a scratch array owned by owner and return it. This
+     * method replaces <code>coord.clone()</code> in operations using a
+     * context.
+     *
+     * @param owner the object using the array (compared by identity)
+     * @param coord the coordinate to copy
+     */
+    public double[] copy(Object owner, double[] coord) {
+        double[] array = getScratch(owner, coord.length);
+        System.arraycopy(coord, 0, array, 0, coord.length);
+        return array;
+    }
+
+    /**
+     * Return a GridShift object owned by owner, which can be reused by NTv2
+     * grid shift transformations.
+     *
+     * @param owner the object using the GridShift (compared by identity)
+     */
+    public GridShift getGridShift(Object owner) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (gridShiftOwners[i] == owner && gridShifts[i] != null) {
+                return gridShifts[i];
+            }
+        }
+        GridShift gs = new GridShift();
+        gridShiftOwners[nextGridShift] = owner;
+        gridShifts[nextGridShift] = gs;
+        nextGridShift = (nextGridShift + 1) % SLOTS;
+        return gs;
+    }
+
+    /**
+     * Return the hint stored for key (for instance the last sub-grid used in
+     * a grid shift file), or null if there is no hint for this key.
+     *
+     * @param key the object using the hint (compared by identity)
+     */
+    public Object getHint(Object key) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (hintKeys[i] == key && key != null) {
+                if (hintValues[i] != null) {
+                    hintHitCount++;
+                }
+                return hintValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store a hint for key. If the context already contains hints for eight
+     * other keys, the oldest one is replaced.
+     *
+     * @param key the object using the hint (compared by identity)
+     * @param hint the hint to store
+     */
+    public void setHint(Object key, Object hint) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (hintKeys[i] == key) {
+                hintValues[i] = hint;
+                return;
+            }
+        }
+        hintKeys[nextHint] = key;
+        hintValues[nextHint] = hint;
+        nextHint = (nextHint + 1) % SLOTS;
+    }
+
+    /**
+     * Return the values of the four nodes of the cell (row, column) of grid if
+     * it is the last cell read in this grid with this context, or null
+     * otherwise. The values are stored node by node for each dimension : the
+     * four values of the first dimension, then the four values of the second
+     * one...
+     *
+     * @param grid the grid (compared by identity)
+     * @param row row index of the cell
+     * @param column column index of the cell
+     */
+    public double[] getCellValues(Object grid, int row, int column) {
+        gridLookupCount++;
+        for (int i = 0; i < SLOTS; i++) {
+            Cell cell = cells[i];
+            if (cell != null && cell.grid == grid) {
+                if (cell.row == row && cell.column == column) {
+                    cellHitCount++;
+                    return cell.values;
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set (row, column) as the last cell read in grid and return the array
+     * which must be filled with the values of its four nodes.
+     *
+     * @param grid the grid (compared by identity)
+     * @param row row index of the cell
+     * @param column column index of the cell
+     * @param dim the number of values stored in each node of the grid
+     */
+    public double[] setCell(Object grid, int row, int column, int dim) {
+        return getCell(grid, dim).set(row, column);
+    }
+
+    /**
+     * Return the array used to return the interpolated values of grid.
+     *
+     * @param grid the grid (compared by identity)
+     * @param dim the number of values stored in each node of the grid
+     */
+    public double[] getInterpolatedValues(Object grid, int dim) {
+        return getCell(grid, dim).result;
+    }
+
+    private Cell getCell(Object grid, int dim) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (cells[i] != null && cells[i].grid == grid
+                    && cells[i].result.length == dim) {
+                return cells[i];
+            }
+        }
+        Cell cell = new Cell(grid, dim);
+        cells[nextCell] = cell;
+        nextCell = (nextCell + 1) % SLOTS;
+        return cell;
+    }
+
+    /**
+     * Return true if operations must report failures to this context instead
+     * of throwing an exception (see {@link #reportFailure(byte)}).
+     */
+    public boolean isReportingFailures() {
+        return reportingFailures;
+    }
+
+    /**
+     * Ask operations to report failures to this context instead of throwing
+     * an exception. This mode is used by the non-throwing bulk
+     * transformations (see {@link ColumnTransforms#transform(
+     * CoordinateOperation, double[][], int, int, byte[])}).
+     *
+     * @param reportingFailures true to report failures to this context
+     */
+    public void setReportingFailures(boolean reportingFailures) {
+        this.reportingFailures = reportingFailures;
+    }
+
+    /**
+     * Report that the current coordinate cannot be transformed. Only the
+     * first failure reported since the last {@link #resetStatus()} is kept.
+     * The operation reporting a failure returns immediately, its result being
+     * replaced by NaN values by the caller.
+     *
+     * @param failure a status code of {@link TransformStatus}
+     */
+    public void reportFailure(byte failure) {
+        if (status == TransformStatus.OK) {
+            status = failure;
+            if (failure == TransformStatus.OUT_OF_EXTENT) {
+                Metrics.increment(Metrics.OUT_OF_EXTENT);
+            }
+        }
+    }
+
+    /**
+     * Return the status of the current coordinate :
+     * {@link TransformStatus#OK} or the first failure reported since the last
+     * {@link #resetStatus()}.
+     */
+    public byte getStatus() {
+        return status;
+    }
+
+    /**
+     * Return true if a failure has been reported since the last
+     * {@link #resetStatus()}.
+     */
+    public boolean hasFailed() {
+        return status != TransformStatus.OK;
+    }
+
+    /**
+     * Reset the status of the current coordinate to
+     * {@link TransformStatus#OK}.
+     */
+    public void resetStatus() {
+        status = TransformStatus.OK;
+    }
+
+    /**
+     * Count a coordinate transformed with this context.
+     */
+    public void countTransform() {
+        transformCount++;
+    }
+
+    /**
+     * Count iterations made by an iterative algorithm.
+     *
+     * @param iterations number of iterations
+     */
+    public void countIterations(int iterations) {
+        iterationCount += iterations;
+    }
+
+    /**
+     * Return the number of coordinates transformed with this context.
+     */
+    public long getTransformCount() {
+        return transformCount;
+    }
+
+    /**
+     * Return the number of iterations made by iterative algorithms.
+     */
+    public long getIterationCount() {
+        return iterationCount;
+    }
+
+    /**
+     * Return the number of grid cells looked up with this context.
+     */
+    public long getGridLookupCount() {
+        return gridLookupCount;
+    }
+
+    /**
+     * Return the number of grid lookups which have reused the last cell.
+     */
+    public long getCellHitCount() {
+        return cellHitCount;
+    }
+
+    /**
+     * Return the number of hints (last sub-grid...) found in this context.
+     */
+    public long getHintHitCount() {
+        return hintHitCount;
+    }
+
+    /**
+     * Reset the statistics of this context. Scratch arrays and hints are
+     * kept.
+     */
+    public void resetStatistics() {
+        transformCount = 0;
+        iterationCount = 0;
+        gridLookupCount = 0;
+        cellHitCount = 0;
+        hintHitCount = 0;
+    }
+
+    /**
+     * Remove all scratch objects, hints and cached grid cells from this
+     * context. This method must be called if a grid used with this context is
+     * modified.
+     */
+    public void clear() {
+        for (int i = 0; i < SLOTS; i++) {
+            scratchOwners[i] = null;
+            scratch[i] = null;
+            gridShiftOwners[i] = null;
+            gridShifts[i] = null;
+            hintKeys[i] = null;
+            hintValues[i] = null;
+            cells[i] = null;
+        }
+    }
+
+    /**
+     * Return a String representation of the statistics of this context.
+     */
+    @Override
+    public String toString() {
+        return "TransformContext[transforms=" + transformCount
+                + ", iterations=" + iterationCount
+                + ", gridLookups=" + gridLookupCount
+                + ", cellHits=" + cellHitCount
+                + ", hintHits=" + hintHitCount + "]";
+    }
+
+    /**
+     * The last cell read in a grid.
+     */
+    private static final class Cell {
+
+        private final Object grid;
+        private final double[] values;
+        private final double[] result;
+        private int row = -1;
+        private int column = -1;
+
+        private Cell(Object grid, int dim) {
+            this.grid = grid;
+            this.values = new double[4 * dim];
+            this.result = new double[dim];
+        }
+
+        private double[] set(int row, int column) {
+            this.row = row;
+            this.column = column;
+            return values;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import org.cts.CoordinateDimensionException;
+import org.cts.cs.OutOfExtentException;
+import org.cts.util.NonConvergenceException;
+import org.cts.util.UncheckedNonConvergenceException;
+
+/**
+ * Status codes written in the mask of
+ * {@link CoordinateOperation#transform(double[][], int, int, byte[])} : each
+ * point of a non-throwing bulk transformation gets one of these codes, and
+ * points with a code different from {@link #OK} get NaN coordinates.
+ */
+public final class TransformStatus {
+
+    /**
+     * The point has been transformed.
+     */
+    public static final byte OK = 0;
+    /**
+     * The point is outside the extent of a grid used by the operation.
+     */
+    public static final byte OUT_OF_EXTENT = 1;
+    /**
+     * An iterative algorithm did not converge for this point.
+     */
+    public static final byte NOT_CONVERGED = 2;
+    /**
+     * The coordinates do not have enough dimensions for the operation.
+     */
+    public static final byte DIMENSION_ERROR = 3;
+    /**
+     * The point cannot be transformed for another reason.
+     */
+    public static final byte ILLEGAL_COORDINATE = 4;
+
+    private TransformStatus() {
+    }
+
+    /**
+     * Return the status code corresponding to an exception thrown while
+     * transforming a point.
+     *
+     * @param e the exception thrown by the operation
+     */
+    public static byte of(Throwable e) {
+        if (e instanceof CoordinateDimensionException) {
+            return DIMENSION_ERROR;
+        }
+        if (e instanceof NonConvergenceException || e instanceof UncheckedNonConvergenceException) {
+            return NOT_CONVERGED;
+        }
+        if (e instanceof OutOfExtentException) {
+            return OUT_OF_EXTENT;
+        }
+        return ILLEGAL_COORDINATE;
+    }
+
+    /**
+     * Return the name of a status code.
+     *
+     * @param status the status code
+     */
+    public static String toString(byte status) {
+        switch (status) {
+            case OK:
+                return "OK";
+            case OUT_OF_EXTENT:
+                return "OUT_OF_EXTENT";
+            case NOT_CONVERGED:
+                return "NOT_CONVERGED";
+            case DIMENSION_ERROR:
+                return "DIMENSION_ERROR";
+            case ILLEGAL_COORDINATE:
+                return "ILLEGAL_COORDINATE";
+            default:
+                return "UNKNOWN(" + status + ")";
+        }
+    }
+}
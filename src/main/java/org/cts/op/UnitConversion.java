@@ -42,7 +42,7 @@ import org.cts.units.Unit;
  *
  * @author Michaël Michaud
  */
-public class UnitConversion extends AbstractCoordinateOperation {
+public class UnitConversion extends AbstractCoordinateOperation implements SeparableOperation {
 
     /**
      * Units used in source coordinates.
@@ -103,6 +103,32 @@ public class UnitConversion extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Convert the values of each column from source unit to target unit.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        if (columns.length == 0) {
+            throw new CoordinateDimensionException("Columns of dimension 0 are not valid");
+        }
+        ColumnTransforms.checkRange(columns, offset, length);
+        int dim = Math.min(columns.length, sourceUnit.length);
+        for (int d = 0; d < dim; d++) {
+            double[] c = columns[d];
+            double source = sourceUnit[d].getScale();
+            double target = targetUnit[d].getScale();
+            for (int i = offset; i < offset + length; i++) {
+                c[i] = c[i] * source / target;
+            }
+        }
+        return columns;
+    }
+
     /**
      * Returns a coordinate representing the same point as coord but with
      * different units.
@@ -118,6 +144,35 @@ public class UnitConversion extends AbstractCoordinateOperation {
      * coord[i] = coord[i] * targetUnit[i].getScale() /
      * sourceUnit[i].getScale(); } }
      */
+
+    /**
+     * Each axis is converted independently.
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        return axis;
+    }
+
+    /**
+     * Convert the values of an axis.
+     *
+     * @param axis the axis to convert
+     * @param values the values to convert
+     * @param offset index of the first value to convert
+     * @param length number of values to convert
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length) {
+        if (axis >= sourceUnit.length) {
+            return;
+        }
+        double source = sourceUnit[axis].getScale();
+        double target = targetUnit[axis].getScale();
+        for (int i = offset; i < offset + length; i++) {
+            values[i] = values[i] * source / target;
+        }
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
@@ -0,0 +1,490 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.List;
+
+import org.cts.IllegalCoordinateException;
+import org.cts.crs.GeodeticCRS;
+
+/**
+ * A WarpMapGenerator computes, for each pixel of a target raster grid, the
+ * coordinates of the pixel center in a source coordinate reference system.
+ * These coordinates are used to resample source rasters into the target
+ * grid.<p>
+ * Exact coordinates are only computed on a sparse sub-lattice of the target
+ * grid (one node every {@link #getStep()} pixels), in a single bulk
+ * transformation. Other pixels are interpolated row by row between the
+ * nodes. The interpolation is checked at the center and at the middle of the
+ * four edges of each cell of the sub-lattice : cells where the interpolation
+ * error is greater than {@link #getMaxError()} source pixels (or where a
+ * node cannot be transformed) are computed exactly.<p>
+ * A WarpMapGenerator is immutable, and each computation only uses its own
+ * arrays : a single generator can compute the warp maps of several tiles
+ * concurrently, as long as its operation is thread safe (which is the case
+ * of operations between two dimensional CRS).<p>
+ * Pixel (i, j) is the pixel of column i and row j, rows being ordered from
+ * north (maxY) to south (minY) ; it is stored at index j * width + i of the
+ * planes.
+ */
+public class WarpMapGenerator {
+
+    /**
+     * Default number of pixels between two nodes of the sub-lattice.
+     */
+    public static final int DEFAULT_STEP = 16;
+    /**
+     * Approximate number of rows computed at once by the float version of
+     * {@link #compute(double, double, double, double, int, int, float[], float[])}.
+     */
+    private static final int BAND_ROWS = 32;
+    /**
+     * The operation from target CRS to source CRS.
+     */
+    private final CoordinateOperation operation;
+    /**
+     * Size of the source pixels along the first and the second source axes,
+     * in source CRS units.
+     */
+    private final double sourcePixelWidth, sourcePixelHeight;
+    /**
+     * The maximum interpolation error, in source pixels.
+     */
+    private final double maxError;
+    /**
+     * Number of pixels between two nodes of the sub-lattice.
+     */
+    private final int step;
+
+    /**
+     * Create a WarpMapGenerator computing coordinates in sourceCRS of the
+     * pixels of grids defined in targetCRS. The operation is the first one
+     * returned by
+     * {@link CoordinateOperationFactory#createCoordinateOperations(GeodeticCRS, GeodeticCRS)}.
+     *
+     * @param targetCRS the CRS of the target grids
+     * @param sourceCRS the CRS of the source rasters
+     * @param sourcePixelWidth the size of the source pixels along the first
+     * axis of sourceCRS, in sourceCRS units
+     * @param sourcePixelHeight the size of the source pixels along the
+     * second axis of sourceCRS, in sourceCRS units
+     * @param maxError the maximum interpolation error, in source pixels
+     * (typically 0.125)
+     * @throws IllegalArgumentException if no operation is found from
+     * targetCRS to sourceCRS
+     */
+    public WarpMapGenerator(GeodeticCRS targetCRS, GeodeticCRS sourceCRS,
+            double sourcePixelWidth, double sourcePixelHeight, double maxError) {
+        this(getOperation(targetCRS, sourceCRS), sourcePixelWidth, sourcePixelHeight,
+                maxError, DEFAULT_STEP);
+    }
+
+    /**
+     * Create a WarpMapGenerator from an operation transforming target CRS
+     * coordinates into source CRS coordinates.
+     *
+     * @param operation the operation from target CRS to source CRS
+     * @param sourcePixelWidth the size of the source pixels along the first
+     * source axis, in source CRS units
+     * @param sourcePixelHeight the size of the source pixels along the
+     * second source axis, in source CRS units
+     * @param maxError the maximum interpolation error, in source pixels
+     * @param step number of pixels between two nodes of the sub-lattice (1
+     * to compute every pixel exactly)
+     */
+    public WarpMapGenerator(CoordinateOperation operation, double sourcePixelWidth,
+            double sourcePixelHeight, double maxError, int step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("Invalid step : " + step);
+        }
+        if (!(sourcePixelWidth > 0) || !(sourcePixelHeight > 0)) {
+            throw new IllegalArgumentException("Invalid source pixel size : "
+                    + sourcePixelWidth + " x " + sourcePixelHeight);
+        }
+        if (!(maxError >= 0)) {
+            throw new IllegalArgumentException("Invalid maximum error : " + maxError);
+        }
+        this.operation = operation;
+        this.sourcePixelWidth = sourcePixelWidth;
+        this.sourcePixelHeight = sourcePixelHeight;
+        this.maxError = maxError;
+        this.step = step;
+    }
+
+    private static CoordinateOperation getOperation(GeodeticCRS targetCRS, GeodeticCRS sourceCRS) {
+        List<CoordinateOperation> ops =
+                CoordinateOperationFactory.createCoordinateOperations(targetCRS, sourceCRS);
+        if (ops.isEmpty()) {
+            throw new IllegalArgumentException("No operation found from "
+                    + targetCRS.getCode() + " to " + sourceCRS.getCode());
+        }
+        return ops.get(0);
+    }
+
+    /**
+     * Return the operation from target CRS to source CRS.
+     */
+    public CoordinateOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Return the size of the source pixels along the first source axis, in
+     * source CRS units.
+     */
+    public double getSourcePixelWidth() {
+        return sourcePixelWidth;
+    }
+
+    /**
+     * Return the size of the source pixels along the second source axis, in
+     * source CRS units.
+     */
+    public double getSourcePixelHeight() {
+        return sourcePixelHeight;
+    }
+
+    /**
+     * Return the maximum interpolation error, in source pixels.
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Return the number of pixels between two nodes of the sub-lattice.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Compute the source coordinates of the pixels of the target grid
+     * covering extent with width x height pixels.
+     *
+     * @param minX west bound of the target grid
+     * @param minY south bound of the target grid
+     * @param maxX east bound of the target grid
+     * @param maxY north bound of the target grid
+     * @param width number of columns of the target grid
+     * @param height number of rows of the target grid
+     * @return the two planes of source coordinates (NaN for pixels which
+     * cannot be transformed)
+     */
+    public double[][] compute(double minX, double minY, double maxX, double maxY,
+            int width, int height) {
+        checkGrid(width, height, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        double[][] planes = new double[2][width * height];
+        compute(minX, minY, maxX, maxY, width, height, planes[0], planes[1]);
+        return planes;
+    }
+
+    /**
+     * Compute the source coordinates of the pixels of the target grid
+     * covering extent with width x height pixels, rounded to float. The grid
+     * is computed by bands of rows, so that only a band is stored in double
+     * precision ; the results are those of the double version, rounded.
+     *
+     * @param minX west bound of the target grid
+     * @param minY south bound of the target grid
+     * @param maxX east bound of the target grid
+     * @param maxY north bound of the target grid
+     * @param width number of columns of the target grid
+     * @param height number of rows of the target grid
+     * @param xs the plane receiving the first source coordinates
+     * @param ys the plane receiving the second source coordinates
+     */
+    public void compute(double minX, double minY, double maxX, double maxY,
+            int width, int height, float[] xs, float[] ys) {
+        checkGrid(width, height, xs.length, ys.length);
+        Grid grid = new Grid(minX, maxY, (maxX - minX) / width, (maxY - minY) / height, width);
+        // bands share their last row with the next band, and start on a node
+        // row, so that they use the nodes of the whole grid
+        int band = step * Math.max(1, BAND_ROWS / step);
+        double[] bx = new double[width * (Math.min(band, height - 1) + 1)];
+        double[] by = new double[bx.length];
+        int first = 0;
+        do {
+            int last = Math.min(first + band, height - 1);
+            compute(grid, first, last, bx, by);
+            for (int k = 0, index = first * width; k < (last - first + 1) * width; k++, index++) {
+                xs[index] = (float) bx[k];
+                ys[index] = (float) by[k];
+            }
+            first = last;
+        } while (first < height - 1);
+    }
+
+    /**
+     * Compute the source coordinates of the pixels of the target grid
+     * covering extent with width x height pixels.
+     *
+     * @param minX west bound of the target grid
+     * @param minY south bound of the target grid
+     * @param maxX east bound of the target grid
+     * @param maxY north bound of the target grid
+     * @param width number of columns of the target grid
+     * @param height number of rows of the target grid
+     * @param xs the plane receiving the first source coordinates
+     * @param ys the plane receiving the second source coordinates
+     */
+    public void compute(double minX, double minY, double maxX, double maxY,
+            int width, int height, double[] xs, double[] ys) {
+        checkGrid(width, height, xs.length, ys.length);
+        Grid grid = new Grid(minX, maxY, (maxX - minX) / width, (maxY - minY) / height, width);
+        compute(grid, 0, height - 1, xs, ys);
+    }
+
+    /**
+     * Check the size of the grid and of the planes receiving it.
+     */
+    private static void checkGrid(int width, int height, int xsLength, int ysLength) {
+        if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid grid size : " + width + " x " + height);
+        }
+        if (xsLength < width * height || ysLength < width * height) {
+            throw new IllegalArgumentException("Planes are too small for a "
+                    + width + " x " + height + " grid");
+        }
+    }
+
+    /**
+     * Compute the rows rowFirst to rowLast of grid, pixel (i, j) being
+     * stored at index (j - rowFirst) * width + i of the planes.
+     */
+    private void compute(Grid grid, int rowFirst, int rowLast, double[] xs, double[] ys) {
+        int width = grid.width;
+        if (width == 1 || rowFirst == rowLast || step == 1) {
+            transformCell(grid, rowFirst, 0, width - 1, rowFirst, rowLast, xs, ys);
+            return;
+        }
+        int[] cols = nodes(0, width - 1);
+        int[] rows = nodes(rowFirst, rowLast);
+        int nc = cols.length;
+        int nr = rows.length;
+        // exact coordinates of the nodes
+        double[][] nodes = new double[2][nc * nr];
+        for (int r = 0; r < nr; r++) {
+            for (int c = 0; c < nc; c++) {
+                nodes[0][r * nc + c] = grid.x(cols[c]);
+                nodes[1][r * nc + c] = grid.y(rows[r]);
+            }
+        }
+        nodes = transform(nodes, nc * nr);
+        // exact coordinates of the check points of each cell : its center
+        // and the middles of its north, south, west and east edges
+        int cells = (nc - 1) * (nr - 1);
+        int[] checkCols = new int[5 * cells];
+        int[] checkRows = new int[5 * cells];
+        double[][] checks = new double[2][5 * cells];
+        for (int r = 0; r < nr - 1; r++) {
+            for (int c = 0; c < nc - 1; c++) {
+                int k = 5 * (r * (nc - 1) + c);
+                int cm = center(cols, c);
+                int rm = center(rows, r);
+                checkCols[k] = cm;
+                checkRows[k] = rm;
+                checkCols[k + 1] = cm;
+                checkRows[k + 1] = rows[r];
+                checkCols[k + 2] = cm;
+                checkRows[k + 2] = rows[r + 1];
+                checkCols[k + 3] = cols[c];
+                checkRows[k + 3] = rm;
+                checkCols[k + 4] = cols[c + 1];
+                checkRows[k + 4] = rm;
+                for (int p = k; p < k + 5; p++) {
+                    checks[0][p] = grid.x(checkCols[p]);
+                    checks[1][p] = grid.y(checkRows[p]);
+                }
+            }
+        }
+        checks = transform(checks, 5 * cells);
+        double[] tolerance = {maxError * sourcePixelWidth, maxError * sourcePixelHeight};
+        boolean[] exact = new boolean[cells];
+        for (int r = 0; r < nr - 1; r++) {
+            for (int c = 0; c < nc - 1; c++) {
+                int cell = r * (nc - 1) + c;
+                int k = r * nc + c;
+                for (int p = 5 * cell; p < 5 * cell + 5 && !exact[cell]; p++) {
+                    double u = (double) (checkCols[p] - cols[c]) / (cols[c + 1] - cols[c]);
+                    double v = (double) (checkRows[p] - rows[r]) / (rows[r + 1] - rows[r]);
+                    for (int d = 0; d < 2 && !exact[cell]; d++) {
+                        double[] n = nodes[d];
+                        double interpolated = bilinear(n[k], n[k + 1], n[k + nc], n[k + nc + 1], u, v);
+                        // also true if a node or the check point is NaN
+                        exact[cell] = !(Math.abs(interpolated - checks[d][p]) <= tolerance[d]);
+                    }
+                }
+                if (!exact[cell]) {
+                    interpolate(nodes, k, nc, cols[c], cols[c + 1], rows[r], rows[r + 1],
+                            rowFirst, width, xs, ys);
+                }
+            }
+        }
+        for (int r = 0; r < nr - 1; r++) {
+            for (int c = 0; c < nc - 1; c++) {
+                if (exact[r * (nc - 1) + c]) {
+                    transformCell(grid, rowFirst, cols[c], cols[c + 1], rows[r], rows[r + 1], xs, ys);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the indices of the nodes of the sub-lattice from first to last
+     * (last is always a node).
+     */
+    private int[] nodes(int first, int last) {
+        int n = (last - first + step - 1) / step + 1;
+        int[] nodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = Math.min(first + i * step, last);
+        }
+        return nodes;
+    }
+
+    private static int center(int[] nodes, int i) {
+        return (nodes[i] + nodes[i + 1]) / 2;
+    }
+
+    private static double bilinear(double v00, double v01, double v10, double v11, double u, double v) {
+        double left = v00 + (v10 - v00) * v;
+        double right = v01 + (v11 - v01) * v;
+        return left + (right - left) * u;
+    }
+
+    /**
+     * Interpolate the pixels of a cell row by row from the nodes of its
+     * corners (k being the index of the north-west corner).
+     */
+    private static void interpolate(double[][] nodes, int k, int nc, int c0, int c1,
+            int r0, int r1, int rowFirst, int width, double[] xs, double[] ys) {
+        double[] nx = nodes[0];
+        double[] ny = nodes[1];
+        for (int r = r0; r <= r1; r++) {
+            double v = (double) (r - r0) / (r1 - r0);
+            double x0 = nx[k] + (nx[k + nc] - nx[k]) * v;
+            double x1 = nx[k + 1] + (nx[k + nc + 1] - nx[k + 1]) * v;
+            double y0 = ny[k] + (ny[k + nc] - ny[k]) * v;
+            double y1 = ny[k + 1] + (ny[k + nc + 1] - ny[k + 1]) * v;
+            double dx = (x1 - x0) / (c1 - c0);
+            double dy = (y1 - y0) / (c1 - c0);
+            int index = (r - rowFirst) * width + c0;
+            for (int c = 0; c <= c1 - c0; c++, index++) {
+                xs[index] = x0 + c * dx;
+                ys[index] = y0 + c * dy;
+            }
+        }
+    }
+
+    /**
+     * Compute exactly the pixels of a cell.
+     */
+    private void transformCell(Grid grid, int rowFirst, int c0, int c1, int r0, int r1,
+            double[] xs, double[] ys) {
+        int w = c1 - c0 + 1;
+        int n = w * (r1 - r0 + 1);
+        double[][] pixels = new double[2][n];
+        for (int r = r0, k = 0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++, k++) {
+                pixels[0][k] = grid.x(c);
+                pixels[1][k] = grid.y(r);
+            }
+        }
+        pixels = transform(pixels, n);
+        for (int r = r0, k = 0; r <= r1; r++) {
+            System.arraycopy(pixels[0], k, xs, (r - rowFirst) * grid.width + c0, w);
+            System.arraycopy(pixels[1], k, ys, (r - rowFirst) * grid.width + c0, w);
+            k += w;
+        }
+    }
+
+
+    /**
+     * Transform n points in bulk. If the bulk transformation fails, points
+     * are transformed one by one, and points which cannot be transformed are
+     * set to NaN.
+     */
+    private double[][] transform(double[][] columns, int n) {
+        double[][] copy = {columns[0].clone(), columns[1].clone()};
+        try {
+            return operation.transform(copy, 0, n);
+        } catch (IllegalCoordinateException e) {
+            // fall through
+        } catch (ArithmeticException e) {
+            // fall through
+        }
+        double[] coord = new double[3];
+        for (int i = 0; i < n; i++) {
+            coord[0] = columns[0][i];
+            coord[1] = columns[1][i];
+            coord[2] = 0.0;
+            try {
+                double[] result = operation.transform(coord);
+                columns[0][i] = result[0];
+                columns[1][i] = result[1];
+            } catch (IllegalCoordinateException e) {
+                columns[0][i] = Double.NaN;
+                columns[1][i] = Double.NaN;
+            } catch (ArithmeticException e) {
+                columns[0][i] = Double.NaN;
+                columns[1][i] = Double.NaN;
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Position of the pixel centers of a target grid.
+     */
+    private static final class Grid {
+
+        final double minX, maxY, dx, dy;
+        final int width;
+
+        Grid(double minX, double maxY, double dx, double dy, int width) {
+            this.minX = minX;
+            this.maxY = maxY;
+            this.dx = dx;
+            this.dy = dy;
+            this.width = width;
+        }
+
+        double x(int column) {
+            return minX + (column + 0.5) * dx;
+        }
+
+        double y(int row) {
+            return maxY - (row + 0.5) * dy;
+        }
+    }
+}
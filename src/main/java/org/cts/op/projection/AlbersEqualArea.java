@@ -170,6 +170,11 @@ public class AlbersEqualArea extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new AlbersEqualArea(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return AlbersEqualArea.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double e = ellipsoid.getEccentricity();
@@ -156,6 +156,11 @@ public class CassiniSoldner extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new CassiniSoldner(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return CassiniSoldner.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double M1 = M0 + coord[1] - FN;
@@ -35,9 +35,11 @@ import java.util.Map;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
 import org.cts.datum.Ellipsoid;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.SeparableOperation;
 import org.cts.units.Measure;
 
 import static java.lang.Math.abs;
@@ -54,7 +56,7 @@ import static java.lang.Math.sqrt;
  *
  * @author Jules Party
  */
-public class CylindricalEqualArea extends Projection {
+public class CylindricalEqualArea extends Projection implements SeparableOperation {
 
     /**
      * The Identifier used for all Cylindrical Equal Area projections.
@@ -150,6 +152,68 @@ public class CylindricalEqualArea extends Projection {
         return coord;
     }
 
+    /**
+     * Project the points stored in columns and compute the analytic partial
+     * derivatives of the projection.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving dE/dlat, dE/dlon, dN/dlat
+     * and dN/dlon
+     */
+    @Override
+    protected double[][] projectWithDerivatives(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double lat = c0[i];
+            double a = ellipsoid.getSemiMajorAxis();
+            double e2 = ellipsoid.getSquareEccentricity();
+            double esin2 = e2 * sin(lat) * sin(lat);
+            derivatives[0][i] = 0.0;
+            derivatives[1][i] = a * k0;
+            derivatives[2][i] = a * (1 - e2) * cos(lat) / (k0 * (1 - esin2) * (1 - esin2));
+            derivatives[3][i] = 0.0;
+            c0[i] = FE + a * k0 * (c1[i] - lon0);
+            c1[i] = FN + a * q(lat) / 2 / k0;
+        }
+        return columns;
+    }
+
+    /**
+     * Easting only depends on longitude and northing only depends on
+     * latitude.
+     *
+     * @param axis the target axis (0 or 1)
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        return axis == 0 ? 1 : axis == 1 ? 0 : -1;
+    }
+
+    /**
+     * Transform longitudes into eastings (axis 0) or latitudes into northings
+     * (axis 1).
+     *
+     * @param axis the target axis (0 or 1)
+     * @param values the longitudes or latitudes to transform (in radians)
+     * @param offset index of the first value to transform
+     * @param length number of values to transform
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length)
+            throws IllegalCoordinateException {
+        for (int i = offset; i < offset + length; i++) {
+            if (axis == 0) {
+                values[i] = FE + ellipsoid.getSemiMajorAxis() * k0 * (values[i] - lon0);
+            } else {
+                values[i] = FN + ellipsoid.getSemiMajorAxis() * q(values[i]) / 2 / k0;
+            }
+        }
+    }
+
     /**
      * Creates the inverse operation for Cylindrical Equal Area Projection.
      * Input coord is supposed to be a projected easting / northing coordinate
@@ -162,6 +226,11 @@ public class CylindricalEqualArea extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new CylindricalEqualArea(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return CylindricalEqualArea.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double a = ellipsoid.getSemiMajorAxis();
@@ -190,6 +259,19 @@ public class CylindricalEqualArea extends Projection {
                 coord[1] = lon0 + (X - FE) / a / k0;
                 return coord;
             }
+
+            @Override
+            public void transformAxis(int axis, double[] values, int offset, int length)
+                    throws IllegalCoordinateException {
+                for (int i = offset; i < offset + length; i++) {
+                    if (axis == 0) {
+                        // the latitude is computed iteratively from the northing
+                        values[i] = transform(new double[]{FE, values[i]})[0];
+                    } else {
+                        values[i] = lon0 + (values[i] - FE) / ellipsoid.getSemiMajorAxis() / k0;
+                    }
+                }
+            }
         };
     }
 }
\ No newline at end of file
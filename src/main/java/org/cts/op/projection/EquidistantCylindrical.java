@@ -35,9 +35,11 @@ import java.util.Map;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
 import org.cts.datum.Ellipsoid;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.SeparableOperation;
 import org.cts.units.Measure;
 
 import static java.lang.Math.abs;
@@ -52,7 +54,7 @@ import static java.lang.Math.sqrt;
  *
  * @author Jules Party
  */
-public class EquidistantCylindrical extends Projection {
+public class EquidistantCylindrical extends Projection implements SeparableOperation {
 
     /**
      * The Identifier used for all Equidistant Cylindrical projections.
@@ -138,6 +140,66 @@ public class EquidistantCylindrical extends Projection {
         return coord;
     }
 
+    /**
+     * Project the points stored in columns and compute the analytic partial
+     * derivatives of the projection.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving dE/dlat, dE/dlon, dN/dlat
+     * and dN/dlon
+     */
+    @Override
+    protected double[][] projectWithDerivatives(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double lon = c1[i];
+            double lat = abs(c0[i]) > PI * 85 / 180 ? PI * 85 / 180 : c0[i];
+            derivatives[0][i] = 0.0;
+            derivatives[1][i] = C;
+            derivatives[2][i] = lat == c0[i] ? ellipsoid.meridionalRadiusOfCurvature(lat) : 0.0;
+            derivatives[3][i] = 0.0;
+            c0[i] = FE + C * (lon - lon0);
+            c1[i] = FN + ellipsoid.arcFromLat(lat);
+        }
+        return columns;
+    }
+
+    /**
+     * Easting only depends on longitude and northing only depends on
+     * latitude.
+     *
+     * @param axis the target axis (0 or 1)
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        return axis == 0 ? 1 : axis == 1 ? 0 : -1;
+    }
+
+    /**
+     * Transform longitudes into eastings (axis 0) or latitudes into northings
+     * (axis 1).
+     *
+     * @param axis the target axis (0 or 1)
+     * @param values the longitudes or latitudes to transform (in radians)
+     * @param offset index of the first value to transform
+     * @param length number of values to transform
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (axis == 0) {
+                values[i] = FE + C * (values[i] - lon0);
+            } else {
+                double lat = abs(values[i]) > PI * 85 / 180 ? PI * 85 / 180 : values[i];
+                values[i] = FN + ellipsoid.arcFromLat(lat);
+            }
+        }
+    }
+
     /**
      * Creates the inverse operation for Equidistant Cylindrical Projection.
      * Input coord is supposed to be a projected easting / northing coordinate
@@ -149,6 +211,11 @@ public class EquidistantCylindrical extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new EquidistantCylindrical(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return EquidistantCylindrical.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double lat = ellipsoid.latFromArc(coord[1] - FN);
@@ -156,6 +223,17 @@ public class EquidistantCylindrical extends Projection {
                 coord[0] = lat;
                 return coord;
             }
+
+            @Override
+            public void transformAxis(int axis, double[] values, int offset, int length) {
+                for (int i = offset; i < offset + length; i++) {
+                    if (axis == 0) {
+                        values[i] = ellipsoid.latFromArc(values[i] - FN);
+                    } else {
+                        values[i] = (values[i] - FE) / C + lon0;
+                    }
+                }
+            }
         };
     }
 }
\ No newline at end of file
@@ -159,6 +159,11 @@ public class GaussSchreiberTransverseMercator extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new GaussSchreiberTransverseMercator(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return GaussSchreiberTransverseMercator.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double Lambda = atan(sinh((coord[0] - xs) / n2) / cos((coord[1] - ys) / n2));
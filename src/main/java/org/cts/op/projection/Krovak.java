@@ -172,6 +172,11 @@ public class Krovak extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new Krovak(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return Krovak.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double Xp = -coord[1] + FN;
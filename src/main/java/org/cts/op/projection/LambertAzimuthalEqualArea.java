@@ -161,6 +161,11 @@ public class LambertAzimuthalEqualArea extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new LambertAzimuthalEqualArea(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return LambertAzimuthalEqualArea.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double e = ellipsoid.getEccentricity();
@@ -41,6 +41,7 @@ import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
 import org.cts.Parameter;
 import org.cts.datum.Ellipsoid;
+import org.cts.op.ColumnTransforms;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.NonInvertibleOperationException;
 import org.cts.units.Measure;
@@ -184,12 +185,117 @@ public class LambertConicConformal2SP extends Projection {
         return coord;
     }
 
+    /**
+     * Project the points stored in columns.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double latIso = ellipsoid.isometricLatitude(c0[i]);
+            double x = xs + C * exp(-n * latIso) * sin(n * (c1[i] - lon0));
+            double y = ys - C * exp(-n * latIso) * cos(n * (c1[i] - lon0));
+            c0[i] = x;
+            c1[i] = y;
+        }
+        return columns;
+    }
+
+    /**
+     * Project the points stored in columns and compute the analytic partial
+     * derivatives of the projection, sharing the isometric latitude and the
+     * trigonometric terms with the projection itself.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving dE/dlat, dE/dlon, dN/dlat
+     * and dN/dlon
+     * @throws IllegalCoordinateException if a latitude or a longitude is NaN
+     */
+    @Override
+    protected double[][] projectWithDerivatives(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            if (Double.isNaN(c0[i]) || Double.isNaN(c1[i])) {
+                throw new IllegalCoordinateException("Input coordinates can't ne NaN : ",
+                        new double[]{c0[i], c1[i]});
+            }
+            double R = C * exp(-n * ellipsoid.isometricLatitude(c0[i]));
+            double nR = n * R;
+            double dIso = ellipsoid.isometricLatitudeDerivative(c0[i]);
+            double sinG = sin(n * (c1[i] - lon0));
+            double cosG = cos(n * (c1[i] - lon0));
+            derivatives[0][i] = -nR * dIso * sinG;
+            derivatives[1][i] = nR * cosG;
+            derivatives[2][i] = nR * dIso * cosG;
+            derivatives[3][i] = nR * sinG;
+            c0[i] = xs + R * sinG;
+            c1[i] = ys - R * cosG;
+        }
+        return columns;
+    }
+
+    /**
+     * Project the points stored in columns and compute the point scale factor
+     * and the meridian convergence at each point. The meridian convergence of
+     * a conic projection is n * (lon - lon0).
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param scaleFactors the array receiving the scale factors (may be null)
+     * @param convergences the array receiving the meridian convergences (may
+     * be null)
+     * @throws IllegalCoordinateException if a latitude or a longitude is NaN
+     */
+    @Override
+    protected double[][] projectWithDistortion(double[][] columns, int offset, int length,
+            double[] scaleFactors, double[] convergences)
+            throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            if (Double.isNaN(c0[i]) || Double.isNaN(c1[i])) {
+                throw new IllegalCoordinateException("Input coordinates can't ne NaN : ",
+                        new double[]{c0[i], c1[i]});
+            }
+            double lat = c0[i];
+            double R = C * exp(-n * ellipsoid.isometricLatitude(lat));
+            double gamma = n * (c1[i] - lon0);
+            if (scaleFactors != null) {
+                scaleFactors[i] = n * R / (ellipsoid.transverseRadiusOfCurvature(lat) * cos(lat));
+            }
+            if (convergences != null) {
+                convergences[i] = gamma;
+            }
+            c0[i] = xs + R * sin(gamma);
+            c1[i] = ys - R * cos(gamma);
+        }
+        return columns;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new LambertConicConformal2SP(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return LambertConicConformal2SP.this;
+            }
+
             @Override
             public double[] transform(double[] coord)
                     throws IllegalCoordinateException {
@@ -205,6 +311,24 @@ public class LambertConicConformal2SP extends Projection {
                 return coord;
             }
 
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                ColumnTransforms.checkDimension(columns, 2);
+                ColumnTransforms.checkRange(columns, offset, length);
+                double[] c0 = columns[0];
+                double[] c1 = columns[1];
+                for (int i = offset; i < offset + length; i++) {
+                    double x = c0[i];
+                    double y = c1[i];
+                    double R = sqrt((x - xs) * (x - xs) + (y - ys) * (y - ys));
+                    double g = atan((x - xs) / (ys - y));
+                    c0[i] = ellipsoid.latitude((-1 / n) * log(abs(R / C)));
+                    c1[i] = lon0 + g / n;
+                }
+                return columns;
+            }
+
             @Override
             public CoordinateOperation inverse()
                     throws NonInvertibleOperationException {
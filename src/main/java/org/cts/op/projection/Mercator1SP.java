@@ -35,9 +35,12 @@ import java.util.Map;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
 import org.cts.datum.Ellipsoid;
+import org.cts.op.ColumnTransforms;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.SeparableOperation;
 import org.cts.units.Measure;
 
 import static java.lang.Math.abs;
@@ -54,7 +57,7 @@ import static java.lang.Math.sqrt;
  *
  * @author Jules Party
  */
-public class Mercator1SP extends Projection {
+public class Mercator1SP extends Projection implements SeparableOperation {
 
     /**
      * The Identifier used for all Mercator 1SP projections.
@@ -168,6 +171,122 @@ public class Mercator1SP extends Projection {
         return coord;
     }
 
+    /**
+     * Project the points stored in columns.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double lon = c1[i];
+            double lat = abs(c0[i]) > PI * 85 / 180 ? PI * 85 / 180 : c0[i];
+            c0[i] = FE + n * (lon - lon0);
+            c1[i] = FN + n * ellipsoid.isometricLatitude(lat);
+        }
+        return columns;
+    }
+
+    /**
+     * Project the points stored in columns and compute the analytic partial
+     * derivatives of the projection.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving dE/dlat, dE/dlon, dN/dlat
+     * and dN/dlon
+     */
+    @Override
+    protected double[][] projectWithDerivatives(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double lon = c1[i];
+            double lat = abs(c0[i]) > PI * 85 / 180 ? PI * 85 / 180 : c0[i];
+            derivatives[0][i] = 0.0;
+            derivatives[1][i] = n;
+            derivatives[2][i] = lat == c0[i] ? n * ellipsoid.isometricLatitudeDerivative(lat) : 0.0;
+            derivatives[3][i] = 0.0;
+            c0[i] = FE + n * (lon - lon0);
+            c1[i] = FN + n * ellipsoid.isometricLatitude(lat);
+        }
+        return columns;
+    }
+
+    /**
+     * Project the points stored in columns and compute the point scale factor
+     * and the meridian convergence at each point. Meridians being parallel to
+     * the grid north, the meridian convergence is always 0.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param scaleFactors the array receiving the scale factors (may be null)
+     * @param convergences the array receiving the meridian convergences (may
+     * be null)
+     */
+    @Override
+    protected double[][] projectWithDistortion(double[][] columns, int offset, int length,
+            double[] scaleFactors, double[] convergences)
+            throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double lon = c1[i];
+            double lat = abs(c0[i]) > PI * 85 / 180 ? PI * 85 / 180 : c0[i];
+            if (scaleFactors != null) {
+                scaleFactors[i] = n / (ellipsoid.transverseRadiusOfCurvature(lat) * cos(lat));
+            }
+            if (convergences != null) {
+                convergences[i] = 0.0;
+            }
+            c0[i] = FE + n * (lon - lon0);
+            c1[i] = FN + n * ellipsoid.isometricLatitude(lat);
+        }
+        return columns;
+    }
+
+    /**
+     * Easting only depends on longitude and northing only depends on
+     * latitude.
+     *
+     * @param axis the target axis (0 or 1)
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        return axis == 0 ? 1 : axis == 1 ? 0 : -1;
+    }
+
+    /**
+     * Transform longitudes into eastings (axis 0) or latitudes into northings
+     * (axis 1).
+     *
+     * @param axis the target axis (0 or 1)
+     * @param values the longitudes or latitudes to transform (in radians)
+     * @param offset index of the first value to transform
+     * @param length number of values to transform
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (axis == 0) {
+                values[i] = FE + n * (values[i] - lon0);
+            } else {
+                double lat = abs(values[i]) > PI * 85 / 180 ? PI * 85 / 180 : values[i];
+                values[i] = FN + n * ellipsoid.isometricLatitude(lat);
+            }
+        }
+    }
+
     /**
      * Creates the inverse operation for Mercator Projection. Input coord is
      * supposed to be a projected easting / northing coordinate in meters.
@@ -179,6 +298,11 @@ public class Mercator1SP extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new Mercator1SP(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return Mercator1SP.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double t = exp((FN - coord[1]) / n);
@@ -191,6 +315,42 @@ public class Mercator1SP extends Projection {
                 coord[0] = lat;
                 return coord;
             }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                ColumnTransforms.checkDimension(columns, 2);
+                ColumnTransforms.checkRange(columns, offset, length);
+                double[] c0 = columns[0];
+                double[] c1 = columns[1];
+                for (int i = offset; i < offset + length; i++) {
+                    double t = exp((FN - c1[i]) / n);
+                    double ki = PI / 2 - 2 * atan(t);
+                    double lat = ki;
+                    for (int k = 1; k < 5; k++) {
+                        lat += invcoeff[k] * sin(2 * k * ki);
+                    }
+                    c1[i] = (c0[i] - FE) / n + lon0;
+                    c0[i] = lat;
+                }
+                return columns;
+            }
+
+            @Override
+            public void transformAxis(int axis, double[] values, int offset, int length) {
+                for (int i = offset; i < offset + length; i++) {
+                    if (axis == 0) {
+                        double ki = PI / 2 - 2 * atan(exp((FN - values[i]) / n));
+                        double lat = ki;
+                        for (int k = 1; k < 5; k++) {
+                            lat += invcoeff[k] * sin(2 * k * ki);
+                        }
+                        values[i] = lat;
+                    } else {
+                        values[i] = (values[i] - FE) / n + lon0;
+                    }
+                }
+            }
         };
     }
 }
\ No newline at end of file
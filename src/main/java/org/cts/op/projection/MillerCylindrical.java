@@ -35,9 +35,11 @@ import java.util.Map;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
 import org.cts.datum.Ellipsoid;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.SeparableOperation;
 import org.cts.units.Measure;
 
 import static java.lang.Math.abs;
@@ -51,7 +53,7 @@ import static java.lang.Math.sin;
  *
  * @author Jules Party
  */
-public class MillerCylindrical extends Projection {
+public class MillerCylindrical extends Projection implements SeparableOperation {
 
     /**
      * The Identifier used for all Miller Cylindrical projections.
@@ -138,6 +140,66 @@ public class MillerCylindrical extends Projection {
         return coord;
     }
 
+    /**
+     * Project the points stored in columns and compute the analytic partial
+     * derivatives of the projection.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving dE/dlat, dE/dlon, dN/dlat
+     * and dN/dlon
+     */
+    @Override
+    protected double[][] projectWithDerivatives(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double lon = c1[i];
+            double lat = abs(c0[i]) > PI * 85 / 180 ? PI * 85 / 180 : c0[i];
+            derivatives[0][i] = 0.0;
+            derivatives[1][i] = n;
+            derivatives[2][i] = lat == c0[i] ? n * ellipsoid.isometricLatitudeDerivative(lat * 0.8) : 0.0;
+            derivatives[3][i] = 0.0;
+            c0[i] = FE + n * (lon - lon0);
+            c1[i] = FN + n * ellipsoid.isometricLatitude(lat * 0.8) / 0.8;
+        }
+        return columns;
+    }
+
+    /**
+     * Easting only depends on longitude and northing only depends on
+     * latitude.
+     *
+     * @param axis the target axis (0 or 1)
+     */
+    @Override
+    public int getSourceAxis(int axis) {
+        return axis == 0 ? 1 : axis == 1 ? 0 : -1;
+    }
+
+    /**
+     * Transform longitudes into eastings (axis 0) or latitudes into northings
+     * (axis 1).
+     *
+     * @param axis the target axis (0 or 1)
+     * @param values the longitudes or latitudes to transform (in radians)
+     * @param offset index of the first value to transform
+     * @param length number of values to transform
+     */
+    @Override
+    public void transformAxis(int axis, double[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (axis == 0) {
+                values[i] = FE + n * (values[i] - lon0);
+            } else {
+                double lat = abs(values[i]) > PI * 85 / 180 ? PI * 85 / 180 : values[i];
+                values[i] = FN + n * ellipsoid.isometricLatitude(lat * 0.8) / 0.8;
+            }
+        }
+    }
+
     /**
      * Creates the inverse operation for Miller Cylindrical Projection. Input
      * coord is supposed to be a projected easting / northing coordinate in
@@ -150,6 +212,11 @@ public class MillerCylindrical extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new MillerCylindrical(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return MillerCylindrical.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double t = exp(0.8 * (FN - coord[1]) / n);
@@ -162,6 +229,22 @@ public class MillerCylindrical extends Projection {
                 coord[0] = lat / 0.8;
                 return coord;
             }
+
+            @Override
+            public void transformAxis(int axis, double[] values, int offset, int length) {
+                for (int i = offset; i < offset + length; i++) {
+                    if (axis == 0) {
+                        double ki = PI / 2 - 2 * atan(exp(0.8 * (FN - values[i]) / n));
+                        double lat = ki;
+                        for (int k = 1; k < 5; k++) {
+                            lat += invcoeff[k] * sin(2 * k * ki);
+                        }
+                        values[i] = lat / 0.8;
+                    } else {
+                        values[i] = (values[i] - FE) / n + lon0;
+                    }
+                }
+            }
         };
     }
 }
\ No newline at end of file
@@ -150,6 +150,11 @@ public class NewZealandMapGrid extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new NewZealandMapGrid(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return NewZealandMapGrid.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 Complex z = (new Complex(coord[1] - FN, coord[0] - FE)).divideBy(new Complex(ellipsoid.getSemiMajorAxis()));
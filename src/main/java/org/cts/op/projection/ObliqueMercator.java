@@ -183,6 +183,11 @@ public class ObliqueMercator extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new ObliqueMercator(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return ObliqueMercator.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double v = (coord[0] - FE) * cos(gammac) - (coord[1] - FN) * sin(gammac);
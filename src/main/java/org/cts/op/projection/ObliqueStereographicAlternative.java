@@ -175,6 +175,11 @@ public class ObliqueStereographicAlternative extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new ObliqueStereographicAlternative(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return ObliqueStereographicAlternative.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double dE = coord[0] - FE;
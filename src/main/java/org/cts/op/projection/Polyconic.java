@@ -160,6 +160,11 @@ public class Polyconic extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new Polyconic(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return Polyconic.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double a = ellipsoid.getSemiMajorAxis();
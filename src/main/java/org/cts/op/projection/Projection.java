@@ -37,9 +37,11 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
 import org.cts.Parameter;
 import org.cts.datum.Ellipsoid;
 import org.cts.op.AbstractCoordinateOperation;
+import org.cts.op.ColumnTransforms;
 import org.cts.parser.prj.PrjWriter;
 import org.cts.units.Measure;
 import org.cts.units.Unit;
@@ -66,6 +68,11 @@ public abstract class Projection extends AbstractCoordinateOperation {
         new Parameter(Parameter.RECTIFIED_GRID_ANGLE, new Measure(0, Unit.DEGREE)),
         new Parameter(Parameter.SCALE_FACTOR, new Measure(1, Unit.UNIT)),
         new Parameter(Parameter.LATITUDE_OF_ORIGIN, new Measure(0, Unit.DEGREE))};
+    /**
+     * Step (in radians) of the finite differences used to compute the
+     * derivatives of projections without analytic derivatives.
+     */
+    protected static final double DERIVATIVE_STEP = 1E-6;
 
     public static ConcurrentHashMap<String, Measure> getDefaultParameters() {
         ConcurrentHashMap<String, Measure> parameters = new ConcurrentHashMap<String, Measure>();
@@ -257,6 +264,274 @@ public abstract class Projection extends AbstractCoordinateOperation {
      */
     public abstract Orientation getOrientation();
 
+    /**
+     * Project the points stored in columns. Only the two first columns are
+     * modified. This implementation projects points one by one in a single
+     * scratch array ; projections with simple formulas override it with a
+     * loop working directly on the columns.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @throws IllegalCoordinateException if a point cannot be projected
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        double[] coord = new double[2];
+        for (int i = offset; i < offset + length; i++) {
+            coord[0] = c0[i];
+            coord[1] = c1[i];
+            double[] result = transform(coord);
+            c0[i] = result[0];
+            c1[i] = result[1];
+        }
+        return columns;
+    }
+
+    /**
+     * Return the direct projection of which this projection is the inverse,
+     * or null if this projection is a direct projection. The inverse
+     * projections returned by {@link #inverse()} override it.
+     */
+    protected Projection getDirectProjection() {
+        return null;
+    }
+
+    /**
+     * Copy the two first columns of the range of points.
+     */
+    private static double[][] copyPositions(double[][] columns, int offset, int length) {
+        double[][] copy = new double[2][offset + length];
+        System.arraycopy(columns[0], offset, copy[0], offset, length);
+        System.arraycopy(columns[1], offset, copy[1], offset, length);
+        return copy;
+    }
+
+    /**
+     * Project the points stored in columns and compute the partial derivatives
+     * of the projection at each point. Only the two first columns are
+     * modified.<p> derivatives must contain four arrays receiving, at the
+     * same indices as the points, the derivatives dE/dlat, dE/dlon, dN/dlat
+     * and dN/dlon in meters per radian. These derivatives are defined for the
+     * direct projection (from geographic coordinates to projected
+     * coordinates) : an inverse projection transforms the projected points
+     * into geographic points and returns the derivatives of its direct
+     * projection at these geographic points.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving the partial derivatives
+     * @throws IllegalCoordinateException if a point cannot be projected
+     */
+    public final double[][] transform(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        checkDerivatives(derivatives, offset, length);
+        Projection direct = getDirectProjection();
+        if (direct == null) {
+            return projectWithDerivatives(columns, offset, length, derivatives);
+        }
+        columns = transform(columns, offset, length);
+        direct.projectWithDerivatives(copyPositions(columns, offset, length), offset, length, derivatives);
+        return columns;
+    }
+
+    /**
+     * Project the points stored in columns and compute the partial
+     * derivatives of this direct projection, the arguments being already
+     * checked.<p> This implementation uses central finite differences
+     * around each point ; projections with simple formulas override it with
+     * analytic derivatives sharing the intermediate terms of the projection.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving the partial derivatives
+     * @throws IllegalCoordinateException if a point cannot be projected
+     */
+    protected double[][] projectWithDerivatives(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        double[] coord = new double[2];
+        for (int i = offset; i < offset + length; i++) {
+            double lat = c0[i];
+            double lon = c1[i];
+            coord[0] = lat + DERIVATIVE_STEP;
+            coord[1] = lon;
+            double[] p = transform(coord);
+            double dE = p[0];
+            double dN = p[1];
+            coord[0] = lat - DERIVATIVE_STEP;
+            coord[1] = lon;
+            p = transform(coord);
+            derivatives[0][i] = (dE - p[0]) / (2 * DERIVATIVE_STEP);
+            derivatives[2][i] = (dN - p[1]) / (2 * DERIVATIVE_STEP);
+            coord[0] = lat;
+            coord[1] = lon + DERIVATIVE_STEP;
+            p = transform(coord);
+            dE = p[0];
+            dN = p[1];
+            coord[0] = lat;
+            coord[1] = lon - DERIVATIVE_STEP;
+            p = transform(coord);
+            derivatives[1][i] = (dE - p[0]) / (2 * DERIVATIVE_STEP);
+            derivatives[3][i] = (dN - p[1]) / (2 * DERIVATIVE_STEP);
+            coord[0] = lat;
+            coord[1] = lon;
+            p = transform(coord);
+            c0[i] = p[0];
+            c1[i] = p[1];
+        }
+        return columns;
+    }
+
+    /**
+     * Project the points stored in columns and compute the point scale factor
+     * and the meridian convergence of the projection at each point. Only the
+     * two first columns are modified.<p> The scale factor is the scale along
+     * the parallel, which is the point scale factor of conformal projections.
+     * The meridian convergence is the angle (in radians) from grid north to
+     * true north, positive when true north is east of grid north. An
+     * inverse projection transforms the projected points into geographic
+     * points and returns the scale factors and convergences of its direct
+     * projection at these geographic points.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param scaleFactors the array receiving the scale factors, at the same
+     * indices as the points (may be null)
+     * @param convergences the array receiving the meridian convergences, at
+     * the same indices as the points (may be null)
+     * @throws IllegalCoordinateException if a point cannot be projected
+     */
+    public final double[][] transform(double[][] columns, int offset, int length,
+            double[] scaleFactors, double[] convergences)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        checkDistortion(scaleFactors, convergences, offset, length);
+        Projection direct = getDirectProjection();
+        if (direct == null) {
+            return projectWithDistortion(columns, offset, length, scaleFactors, convergences);
+        }
+        columns = transform(columns, offset, length);
+        direct.projectWithDistortion(copyPositions(columns, offset, length), offset, length,
+                scaleFactors, convergences);
+        return columns;
+    }
+
+    /**
+     * Project the points stored in columns and compute the point scale
+     * factor and the meridian convergence of this direct projection, the
+     * arguments being already checked.<p> This implementation derives them
+     * from the partial derivatives of the projection ; projections with
+     * simple formulas override it.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param scaleFactors the array receiving the scale factors (may be null)
+     * @param convergences the array receiving the meridian convergences (may
+     * be null)
+     * @throws IllegalCoordinateException if a point cannot be projected
+     */
+    protected double[][] projectWithDistortion(double[][] columns, int offset, int length,
+            double[] scaleFactors, double[] convergences)
+            throws IllegalCoordinateException {
+        double[] lat = new double[offset + length];
+        System.arraycopy(columns[0], offset, lat, offset, length);
+        double[][] derivatives = new double[4][offset + length];
+        projectWithDerivatives(columns, offset, length, derivatives);
+        for (int i = offset; i < offset + length; i++) {
+            if (scaleFactors != null) {
+                scaleFactors[i] = Math.hypot(derivatives[1][i], derivatives[3][i])
+                        / (ellipsoid.transverseRadiusOfCurvature(lat[i]) * Math.cos(lat[i]));
+            }
+            if (convergences != null) {
+                convergences[i] = Math.atan2(-derivatives[0][i], derivatives[2][i]);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Return the point scale factor of this projection at a geographic
+     * position (scale along the parallel for non conformal projections). For
+     * an inverse projection, this is the scale factor of its direct
+     * projection.
+     *
+     * @param lat the latitude in radians
+     * @param lon the longitude in radians
+     * @throws IllegalCoordinateException if the point cannot be projected
+     */
+    public double getPointScaleFactor(double lat, double lon)
+            throws IllegalCoordinateException {
+        Projection direct = getDirectProjection();
+        double[] k = new double[1];
+        (direct == null ? this : direct).transform(new double[][]{{lat}, {lon}}, 0, 1, k, null);
+        return k[0];
+    }
+
+    /**
+     * Return the meridian convergence of this projection at a geographic
+     * position, in radians, positive when true north is east of grid north.
+     * For an inverse projection, this is the convergence of its direct
+     * projection.
+     *
+     * @param lat the latitude in radians
+     * @param lon the longitude in radians
+     * @throws IllegalCoordinateException if the point cannot be projected
+     */
+    public double getMeridianConvergence(double lat, double lon)
+            throws IllegalCoordinateException {
+        Projection direct = getDirectProjection();
+        double[] gamma = new double[1];
+        (direct == null ? this : direct).transform(new double[][]{{lat}, {lon}}, 0, 1, null, gamma);
+        return gamma[0];
+    }
+
+    /**
+     * Check that derivatives contains four arrays covering the range of
+     * points.
+     */
+    protected static void checkDerivatives(double[][] derivatives, int offset, int length) {
+        if (derivatives.length < 4) {
+            throw new IllegalArgumentException("Four derivative arrays are expected, got "
+                    + derivatives.length);
+        }
+        for (double[] d : derivatives) {
+            if (d.length < offset + length) {
+                throw new IndexOutOfBoundsException("Derivative array of length " + d.length
+                        + " is too short for range [" + offset + "," + (offset + length) + "[");
+            }
+        }
+    }
+
+    /**
+     * Check that the scale factor and convergence arrays, if not null, cover
+     * the range of points.
+     */
+    protected static void checkDistortion(double[] scaleFactors, double[] convergences,
+            int offset, int length) {
+        if (scaleFactors != null && scaleFactors.length < offset + length) {
+            throw new IndexOutOfBoundsException("Scale factor array of length " + scaleFactors.length
+                    + " is too short for range [" + offset + "," + (offset + length) + "[");
+        }
+        if (convergences != null && convergences.length < offset + length) {
+            throw new IndexOutOfBoundsException("Convergence array of length " + convergences.length
+                    + " is too short for range [" + offset + "," + (offset + length) + "[");
+        }
+    }
+
     /**
      * Returns a WKT representation of the projection.
      *
@@ -35,6 +35,7 @@ import java.util.Map;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
 import org.cts.datum.Ellipsoid;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.NonInvertibleOperationException;
@@ -167,6 +168,54 @@ public class Stereographic extends Projection {
         return coord;
     }
 
+    /**
+     * Project the points stored in columns and compute the analytic partial
+     * derivatives of the projection, using the derivative of the
+     * isometric latitude to derive the radius.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving dE/dlat, dE/dlon, dN/dlat
+     * and dN/dlon
+     */
+    @Override
+    protected double[][] projectWithDerivatives(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double lon = c1[i];
+            double lat = c0[i];
+            double esin = e * sin(lat);
+            double t;
+            if (lat0 < 0) {
+                t = tan((PI_2 + lat) / 2) / pow((1 + esin) / (1 - esin), e / 2);
+            } else {
+                t = tan((PI_2 - lat) / 2) * pow((1 + esin) / (1 - esin), e / 2);
+            }
+            double rho = 2 * a * k0 * t / sqrt(pow(1 + e, 1 + e) * pow(1 - e, 1 - e));
+            // t is exp(-latIso) in the north case and exp(latIso) in the south case
+            double dRho = rho * ellipsoid.isometricLatitudeDerivative(lat);
+            double dE = rho * sin(lon - lon0);
+            double dN = rho * cos(lon - lon0);
+            c0[i] = FE + dE;
+            if (lat0 < 0) {
+                c1[i] = FN + dN;
+                derivatives[0][i] = dRho * sin(lon - lon0);
+                derivatives[2][i] = dRho * cos(lon - lon0);
+                derivatives[3][i] = -dE;
+            } else {
+                c1[i] = FN - dN;
+                derivatives[0][i] = -dRho * sin(lon - lon0);
+                derivatives[2][i] = dRho * cos(lon - lon0);
+                derivatives[3][i] = dE;
+            }
+            derivatives[1][i] = dN;
+        }
+        return columns;
+    }
+
     /**
      * Creates the inverse operation for Stereographic Projection. Input coord
      * is supposed to be a projected easting / northing coordinate in meters.
@@ -178,6 +227,11 @@ public class Stereographic extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new Stereographic(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return Stereographic.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double rho = sqrt((coord[0] - FE) * (coord[0] - FE) + (coord[1] - FN) * (coord[1] - FN));
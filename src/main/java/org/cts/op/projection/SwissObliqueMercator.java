@@ -188,6 +188,11 @@ public class SwissObliqueMercator extends Projection {
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new SwissObliqueMercator(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return SwissObliqueMercator.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double X = (coord[1] - FN);
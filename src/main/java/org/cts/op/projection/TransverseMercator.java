@@ -35,6 +35,7 @@ import java.util.Map;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
 import org.cts.datum.Ellipsoid;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.NonInvertibleOperationException;
@@ -113,12 +114,59 @@ public class TransverseMercator extends Projection {
         return coord;
     }
 
+    /**
+     * Project the points stored in columns and compute the analytic partial
+     * derivatives of the projection.<p> Projected coordinates are a complex series
+     * Z(z) of z = gd(latIso + i.dlon), so that dZ/dz is evaluated with the
+     * same terms and multiplied by dz/d(latIso + i.dlon) = sech(latIso + i.dlon).
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param derivatives the four arrays receiving dE/dlat, dE/dlon, dN/dlat
+     * and dN/dlon
+     */
+    @Override
+    protected double[][] projectWithDerivatives(double[][] columns, int offset, int length,
+            double[][] derivatives) throws IllegalCoordinateException {
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        for (int i = offset; i < offset + length; i++) {
+            double dlon = c1[i] - lon0;
+            double latIsoPhi = ellipsoid.isometricLatitude(c0[i]);
+            double PHI = Math.asin(Math.sin(dlon) / Math.cosh(latIsoPhi));
+            double latIsoPHI = Ellipsoid.SPHERE.isometricLatitude(PHI);
+            double lambda = Math.atan(Math.sinh(latIsoPhi) / Math.cos(dlon));
+            Complex z = new Complex(lambda, latIsoPHI);
+            Complex Z = z.times(n * dircoeff[0]);
+            Complex dZ = new Complex(n * dircoeff[0]);
+            for (int k = 1; k < 5; k++) {
+                Z = Z.plus(Complex.sin(z.times(2.0 * k)).times(n * dircoeff[k]));
+                dZ = dZ.plus(Complex.cos(z.times(2.0 * k)).times(2.0 * k * n * dircoeff[k]));
+            }
+            dZ = dZ.divideBy(Complex.cosh(new Complex(latIsoPhi, dlon)));
+            double dIso = ellipsoid.isometricLatitudeDerivative(c0[i]);
+            derivatives[0][i] = dIso * dZ.im();
+            derivatives[1][i] = dZ.re();
+            derivatives[2][i] = dIso * dZ.re();
+            derivatives[3][i] = -dZ.im();
+            c0[i] = xs + Z.im();
+            c1[i] = ys + Z.re();
+        }
+        return columns;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new TransverseMercator(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return TransverseMercator.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 Complex z = new Complex((coord[1] - ys) / (n * invcoeff[0]),
@@ -35,7 +35,9 @@ import java.util.Map;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
 import org.cts.datum.Ellipsoid;
+import org.cts.op.ColumnTransforms;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.NonInvertibleOperationException;
 import org.cts.units.Measure;
@@ -58,6 +60,35 @@ public class UniversalTransverseMercatorAuto extends Projection {
             new Identifier("EPSG", "9824", "Transverse Mercator Zoned Grid System", "UTM");
     protected final double lat0, n, xs;
     protected final double[] dircoeff, invcoeff;
+    /**
+     * Greatest zone having precomputed constants in the bulk transformation
+     * (getZone returns 61 for a longitude of exactly 180 degrees).
+     */
+    private static final int MAX_ZONE = 61;
+    /**
+     * Number of buckets used to sort points by zone and hemisphere : one
+     * bucket per zone and hemisphere, plus a last bucket for other zones.
+     */
+    private static final int BUCKETS = 2 * MAX_ZONE + 1;
+    /**
+     * Central meridian of each zone, indexed by zone number.
+     */
+    private static final double[] ZONE_LON0 = new double[MAX_ZONE + 1];
+
+    static {
+        for (int zone = 0; zone <= MAX_ZONE; zone++) {
+            ZONE_LON0[zone] = getCentralMeridian(zone);
+        }
+    }
+    /**
+     * y coordinate of the pole in the northern and in the southern
+     * hemispheres.
+     */
+    private final double ysNorth, ysSouth;
+    /**
+     * Coefficients of the direct series multiplied by n.
+     */
+    private final double[] ndircoeff;
 
     /**
      * Create a new Universal Transverse Mercator Projection corresponding to
@@ -77,10 +108,34 @@ public class UniversalTransverseMercatorAuto extends Projection {
         xs = 500000;
         dircoeff = UniversalTransverseMercator.getDirectUTMCoeff(ellipsoid);
         invcoeff = UniversalTransverseMercator.getInverseUTMCoeff(ellipsoid);
+        ysNorth = 0 - n * ellipsoid.curvilinearAbscissa(lat0);
+        ysSouth = 10000000 - n * ellipsoid.curvilinearAbscissa(lat0);
+        ndircoeff = new double[dircoeff.length];
+        for (int i = 0; i < dircoeff.length; i++) {
+            ndircoeff[i] = n * dircoeff[i];
+        }
     }
 
     public int getZone(double[] coord) {
-        return (int) ((coord[1] * 180.0 / Math.PI + 180.0) / 6.0) + 1;
+        return getZone(coord[1]);
+    }
+
+    /**
+     * Return the UTM zone of a longitude.
+     *
+     * @param lon the longitude in radians
+     */
+    public static int getZone(double lon) {
+        return (int) ((lon * 180.0 / Math.PI + 180.0) / 6.0) + 1;
+    }
+
+    /**
+     * Return the central meridian of a UTM zone in radians.
+     *
+     * @param zone the zone number
+     */
+    public static double getCentralMeridian(int zone) {
+        return (6 * zone - 183) * Math.PI / 180;
     }
 
     /**
@@ -112,12 +167,170 @@ public class UniversalTransverseMercatorAuto extends Projection {
         return coord;
     }
 
+    /**
+     * Project the points stored in columns, each point in its own UTM zone.
+     * Only the two first columns are modified.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        return transform(columns, offset, length, (int[]) null);
+    }
+
+    /**
+     * Project the points stored in columns, each point in its own UTM zone,
+     * and store the zone of each point in zones. Only the two first columns
+     * are modified.<p> Zones are signed : a positive zone is a zone of the
+     * northern hemisphere, a negative zone a zone of the southern hemisphere.
+     * These zones must be given back to the inverse operation to get the
+     * geographic coordinates of the points.<p> Points are sorted by zone and
+     * hemisphere, then each group of points is projected with the constants
+     * of its zone, without creating any object per point.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param zones the array receiving the zone of each point, at the same
+     * indices as the points (may be null)
+     */
+    public double[][] transform(double[][] columns, int offset, int length,
+            int[] zones) throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        checkZones(zones, offset, length);
+        double[] c0 = columns[0];
+        double[] c1 = columns[1];
+        int[] z = zones == null ? new int[offset + length] : zones;
+        for (int i = offset; i < offset + length; i++) {
+            int zone = getZone(c1[i]);
+            z[i] = c0[i] >= 0 ? zone : -zone;
+        }
+        int[] starts = new int[BUCKETS + 1];
+        int[] order = sortByZone(z, offset, length, starts);
+        double[] Z = new double[2];
+        for (int b = 0; b < BUCKETS; b++) {
+            for (int j = starts[b]; j < starts[b + 1]; j++) {
+                int i = order[j];
+                double lon0 = b < BUCKETS - 1 ? ZONE_LON0[b / 2 + 1] : getCentralMeridian(Math.abs(z[i]));
+                double ys = z[i] < 0 ? ysSouth : ysNorth;
+                double dlon = c1[i] - lon0;
+                double latIsoPhi = ellipsoid.isometricLatitude(c0[i]);
+                double PHI = Math.asin(Math.sin(dlon) / Math.cosh(latIsoPhi));
+                double latIsoPHI = Ellipsoid.SPHERE.isometricLatitude(PHI);
+                double lambda = Math.atan(Math.sinh(latIsoPhi) / Math.cos(dlon));
+                series(lambda, latIsoPHI, ndircoeff[0], ndircoeff, 1.0, Z);
+                c0[i] = xs + Z[1];
+                c1[i] = ys + Z[0];
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Evaluate the complex series c0.z + f.sum(c[k].sin(2k.z)) for k in
+     * [1, c.length[ and z = re + i.im. The sines of the multiple angles are
+     * computed with the angle addition formulas from sin(2z), so that the
+     * whole series needs only three transcendental functions and does not
+     * create any Complex object.
+     *
+     * @param re real part of z
+     * @param im imaginary part of z
+     * @param c0 the coefficient of z
+     * @param c the coefficients of the sine terms (c[0] is not used)
+     * @param f the factor of the sine terms
+     * @param result the array receiving the real and imaginary parts of the
+     * series
+     * @return result
+     */
+    private static double[] series(double re, double im, double c0, double[] c, double f,
+            double[] result) {
+        double s2 = Math.sin(2.0 * re);
+        double c2 = Math.cos(2.0 * re);
+        double e2 = Math.exp(2.0 * im);
+        double sh2 = (e2 - 1.0 / e2) / 2.0;
+        double ch2 = (e2 + 1.0 / e2) / 2.0;
+        double s = s2, co = c2, sh = sh2, ch = ch2;
+        double sumre = 0.0, sumim = 0.0;
+        for (int k = 1; k < c.length; k++) {
+            sumre += c[k] * (s * ch);
+            sumim += c[k] * (co * sh);
+            double sk = s * c2 + co * s2;
+            co = co * c2 - s * s2;
+            s = sk;
+            double shk = sh * ch2 + ch * sh2;
+            ch = ch * ch2 + sh * sh2;
+            sh = shk;
+        }
+        result[0] = c0 * re + f * sumre;
+        result[1] = c0 * im + f * sumim;
+        return result;
+    }
+
+    /**
+     * Sort the indices of the points in [offset, offset+length[ by zone and
+     * hemisphere with a counting sort. Bucket b (b < BUCKETS - 1) contains
+     * the points of zone b / 2 + 1, in the northern hemisphere if b is even,
+     * and the last bucket contains the points of other zones.
+     *
+     * @param zones the signed zone of each point
+     * @param offset index of the first point
+     * @param length number of points
+     * @param starts the array receiving the start of each bucket in the
+     * returned array, followed by its length
+     * @return the indices of the points sorted by bucket
+     */
+    private static int[] sortByZone(int[] zones, int offset, int length, int[] starts) {
+        for (int i = offset; i < offset + length; i++) {
+            starts[bucket(zones[i]) + 1]++;
+        }
+        for (int b = 0; b < BUCKETS; b++) {
+            starts[b + 1] += starts[b];
+        }
+        int[] next = starts.clone();
+        int[] order = new int[length];
+        for (int i = offset; i < offset + length; i++) {
+            order[next[bucket(zones[i])]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Return the bucket of a signed zone.
+     */
+    private static int bucket(int zone) {
+        int abs = Math.abs(zone);
+        if (abs < 1 || abs > MAX_ZONE) {
+            return BUCKETS - 1;
+        }
+        return 2 * (abs - 1) + (zone < 0 ? 1 : 0);
+    }
+
+    /**
+     * Check that zones may receive the zones of points in the range
+     * [offset, offset+length[.
+     */
+    private static void checkZones(int[] zones, int offset, int length) {
+        if (zones != null && zones.length < offset + length) {
+            throw new IndexOutOfBoundsException("Zone array of length " + zones.length
+                    + " is too short for range [" + offset + "," + (offset + length) + "[");
+        }
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new UniversalTransverseMercatorAuto(ellipsoid, parameters) {
+            @Override
+            protected Projection getDirectProjection() {
+                return UniversalTransverseMercatorAuto.this;
+            }
+
             @Override
             public double[] transform(double[] coord) throws CoordinateDimensionException {
                 double lon0 = 0;
@@ -136,6 +349,54 @@ public class UniversalTransverseMercatorAuto extends Projection {
                 coord[1] = lon;
                 return coord;
             }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                return ColumnTransforms.transformByPoint(this, columns, offset, length);
+            }
+
+            /**
+             * Compute the geographic coordinates of the projected points
+             * stored in columns, each point being projected in the signed
+             * zone given at the same index in zones (a negative zone for
+             * the southern hemisphere), as returned by the direct bulk
+             * transformation. If zones is null, points are transformed one
+             * by one.
+             */
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length,
+                    int[] zones) throws IllegalCoordinateException {
+                if (zones == null) {
+                    return transform(columns, offset, length);
+                }
+                ColumnTransforms.checkDimension(columns, 2);
+                ColumnTransforms.checkRange(columns, offset, length);
+                checkZones(zones, offset, length);
+                double[] c0 = columns[0];
+                double[] c1 = columns[1];
+                double ninv = n * invcoeff[0];
+                double[] Z = new double[2];
+                int[] starts = new int[BUCKETS + 1];
+                int[] order = sortByZone(zones, offset, length, starts);
+                for (int b = 0; b < BUCKETS; b++) {
+                    for (int j = starts[b]; j < starts[b + 1]; j++) {
+                        int i = order[j];
+                        double lon0 = b < BUCKETS - 1 ? ZONE_LON0[b / 2 + 1] : getCentralMeridian(Math.abs(zones[i]));
+                        double ys = zones[i] < 0 ? ysSouth : ysNorth;
+                        double zre = (c1[i] - ys) / ninv;
+                        double zim = (c0[i] - xs) / ninv;
+                        series(zre, zim, 1.0, invcoeff, -1.0, Z);
+                        double re = Z[0];
+                        double im = Z[1];
+                        double PHI = Math.asin(Math.sin(re) / Math.cosh(im));
+                        double latIso = Ellipsoid.SPHERE.isometricLatitude(PHI);
+                        c0[i] = ellipsoid.latitude(latIso);
+                        c1[i] = lon0 + Math.atan(Math.sinh(im) / Math.cos(re));
+                    }
+                }
+                return columns;
+            }
         };
     }
 
@@ -32,15 +32,22 @@
 package org.cts.op.transformation;
 
 import java.io.InputStream;
+import java.util.concurrent.Callable;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
 import org.cts.cs.OutOfExtentException;
 import org.cts.datum.GeodeticDatum;
+import org.cts.metrics.Events;
 import org.cts.op.AbstractCoordinateOperation;
 import org.cts.op.CoordinateOperation;
+import org.cts.op.GridBasedOperation;
+import org.cts.op.GridMemory;
+import org.cts.op.GridPrefetch;
 import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.TransformContext;
+import org.cts.op.TransformStatus;
 import org.cts.op.transformation.grids.GeographicGrid;
 import org.cts.op.transformation.grids.IGNVerticalGrid;
 
@@ -52,12 +59,23 @@ import org.cts.op.transformation.grids.IGNVerticalGrid;
  *
  * @author Jules Party
  */
-public class Altitude2EllipsoidalHeight extends AbstractCoordinateOperation {
+public class Altitude2EllipsoidalHeight extends AbstractCoordinateOperation
+        implements GridBasedOperation, GridMemory.Evictable {
 
     /**
-     * The GeographicGrid that define this transformation.
+     * The GeographicGrid that define this transformation, loaded the first
+     * time it is used.
      */
-    private GeographicGrid GRID;
+    private volatile GeographicGrid GRID;
+    /**
+     * The entry of the grid in {@link GridMemory}.
+     */
+    private volatile GridMemory.Entry gridEntry;
+    /**
+     * The transformation holding the grid (this transformation, or the
+     * transformation this one is the inverse of).
+     */
+    private final Altitude2EllipsoidalHeight gridHolder;
     /**
      * The name of the grid file used to define this transformation.
      */
@@ -73,10 +91,12 @@ public class Altitude2EllipsoidalHeight extends AbstractCoordinateOperation {
      */
     private static final Identifier opId =
             new Identifier("EPSG", "9616", "Vertical Offset (by Interpolation of Gridded Data)", "Translation");
+    private static final String GRID_PATH = "org/cts/op/transformation/grids/";
 
     /**
      * Altitude translation with parameter interpolated from a grid depending on
-     * the geographic coordinates of the point to convert.
+     * the geographic coordinates of the point to convert. The grid is only
+     * loaded the first time it is used.
      *
      * @param id the identifier of the Altitude2EllipsoidalHeight
      * @param nameGrid the name of the grid file to use
@@ -88,12 +108,105 @@ public class Altitude2EllipsoidalHeight extends AbstractCoordinateOperation {
         this.associatedDatum = gd;
         this.precision = 0.01;
         this.gridFileName = nameGrid;
-        try {
-            InputStream is = IGNVerticalGrid.class.getClassLoader().getResourceAsStream("org/cts/op/transformation/grids/" + nameGrid);
-            GRID = new IGNVerticalGrid(is, false);
-        } catch (Exception e) {
-            throw new Exception(e.getMessage() + "\nThis problem occured when loading the " + nameGrid + " grid file.");
+        this.gridHolder = this;
+        if (IGNVerticalGrid.class.getClassLoader().getResource(GRID_PATH + nameGrid) == null) {
+            throw new Exception("The grid file cannot be found."
+                    + "\nThis problem occured when loading the " + nameGrid + " grid file.");
+        }
+    }
+
+    /**
+     * Create a transformation using the grid of gridHolder.
+     */
+    private Altitude2EllipsoidalHeight(Altitude2EllipsoidalHeight gridHolder) {
+        super(opId);
+        this.associatedDatum = gridHolder.associatedDatum;
+        this.precision = gridHolder.precision;
+        this.gridFileName = gridHolder.gridFileName;
+        this.gridHolder = gridHolder;
+    }
+
+    /**
+     * Return the grid of this transformation, loading it if needed.
+     *
+     * @throws IllegalCoordinateException if the grid cannot be loaded
+     */
+    private GeographicGrid getGrid() throws IllegalCoordinateException {
+        if (gridHolder != this) {
+            return gridHolder.getGrid();
+        }
+        GeographicGrid grid = GRID;
+        if (grid == null) {
+            synchronized (this) {
+                grid = GRID;
+                if (grid == null) {
+                    try {
+                        Object event = Events.beginGridLoad();
+                        InputStream is = IGNVerticalGrid.class.getClassLoader().getResourceAsStream(GRID_PATH + gridFileName);
+                        grid = new IGNVerticalGrid(is, false);
+                        Events.commitGridLoad(event, gridFileName, "IGN vertical grid", grid.getMemoryUsage());
+                    } catch (Exception e) {
+                        throw new IllegalCoordinateException(e.getMessage()
+                                + "\nThis problem occured when loading the " + gridFileName + " grid file.");
+                    }
+                    GridMemory.release(gridEntry);
+                    gridEntry = GridMemory.register(gridFileName, grid.getMemoryUsage(), this);
+                    GRID = grid;
+                }
+            }
         }
+        GridMemory.touch(gridEntry);
+        return grid;
+    }
+
+    /**
+     * Release the grid of this transformation. It is loaded again the next
+     * time it is used.
+     */
+    @Override
+    public void evictGrid() {
+        if (gridHolder != this) {
+            gridHolder.evictGrid();
+            return;
+        }
+        GRID = null;
+        gridEntry = null;
+    }
+
+    /**
+     * Load the grid of this transformation in the background if
+     * {@link GridPrefetch} is asynchronous. A transformation used before the
+     * end of the loading waits for it.
+     */
+    public void prefetch() {
+        if (GridPrefetch.isAsynchronous() && !isLoaded()) {
+            GridPrefetch.load(gridFileName, new Callable<GeographicGrid>() {
+                @Override
+                public GeographicGrid call() throws IllegalCoordinateException {
+                    return getGrid();
+                }
+            });
+        }
+    }
+
+    /**
+     * Return true if the grid of this transformation has already been
+     * loaded.
+     */
+    public boolean isLoaded() {
+        return gridHolder.GRID != null;
+    }
+
+    /**
+     * Return true if the point (in decimal degrees) can be interpolated in
+     * the grid of this transformation. The grid is loaded if needed.
+     *
+     * @param latitude the latitude in decimal degrees
+     * @param longitude the longitude in decimal degrees
+     * @throws IllegalCoordinateException if the grid cannot be loaded
+     */
+    public boolean isInside(double latitude, double longitude) throws IllegalCoordinateException {
+        return getGrid().isInside(latitude, longitude);
     }
 
     /**
@@ -112,62 +225,96 @@ public class Altitude2EllipsoidalHeight extends AbstractCoordinateOperation {
         return gridFileName;
     }
 
+    /**
+     * Return the difference between ellipsoidal height and altitude
+     * interpolated in the grid of this transformation.
+     *
+     * @param latitude the latitude in decimal degrees
+     * @param longitude the longitude in decimal degrees
+     * @throws IllegalCoordinateException if the point is outside the grid
+     */
+    public double getHeightOffset(double latitude, double longitude) throws IllegalCoordinateException {
+        return getHeightOffset(latitude, longitude, null);
+    }
+
+    /**
+     * Return the difference between ellipsoidal height and altitude
+     * interpolated in the grid of this transformation, using the last grid
+     * cell kept in context. If context reports failures and the point is
+     * outside the grid, the failure is reported to context and NaN is
+     * returned.
+     *
+     * @param latitude the latitude in decimal degrees
+     * @param longitude the longitude in decimal degrees
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if the point is outside the grid
+     */
+    public double getHeightOffset(double latitude, double longitude, TransformContext context)
+            throws IllegalCoordinateException {
+        GeographicGrid grid = getGrid();
+        if (context != null && context.isReportingFailures() && !grid.isInside(latitude, longitude)) {
+            context.reportFailure(TransformStatus.OUT_OF_EXTENT);
+            return Double.NaN;
+        }
+        try {
+            return grid.bilinearInterpolation(latitude, longitude, context)[0];
+        } catch (OutOfExtentException e) {
+            throw new IllegalCoordinateException(e.getMessage());
+        }
+    }
+
     /**
      * @see AbstractCoordinateOperation#transform(double[])
      */
     @Override
     public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * @see CoordinateOperation#transform(double[], TransformContext)
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
         if (coord.length < 3) {
             throw new CoordinateDimensionException(coord, 3);
         }
-        // Creates a temporary coord to find the final translation parameters
-        double[] coordi = coord.clone();
-        double th = 0;
-        // Get the definitive translation parameters from the grids
-        try {
-            double[] t = GRID.bilinearInterpolation(coordi[0], coordi[1]);
-            th = t[0];
-        } catch (OutOfExtentException e) {
-            throw new IllegalCoordinateException(e.getMessage());
-        }
         // Apply definitive translation
-        coord[2] = th + coord[2];
+        coord[2] = getHeightOffset(coord[0], coord[1], context) + coord[2];
         return coord;
     }
 
+    /**
+     * Return false : the grid of this transformation is held in memory.
+     */
+    @Override
+    public boolean isLocalitySensitive() {
+        return false;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
     @Override
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
-        try {
-            return new Altitude2EllipsoidalHeight(getGridFileName(), associatedDatum) {
-                @Override
-                public double[] transform(double[] coord)
-                        throws IllegalCoordinateException {
-                    // Creates a temp coord to find the final translation parameters
-                    double[] coordi = coord.clone();
-                    double th = 0;
-                    // Get the definitive translation parameters from the grids
-                    try {
-                        double[] t = GRID.bilinearInterpolation(coordi[0], coordi[1]);
-                        th = t[0];
-                    } catch (OutOfExtentException e) {
-                        throw new IllegalCoordinateException(e.getMessage());
-                    }
-                    // Apply definitive translation
-                    coord[2] = -th + coord[2];
-                    return coord;
+        return new Altitude2EllipsoidalHeight(gridHolder) {
+            @Override
+            public double[] transform(double[] coord, TransformContext context)
+                    throws IllegalCoordinateException {
+                if (coord.length < 3) {
+                    throw new CoordinateDimensionException(coord, 3);
                 }
+                // Apply definitive translation
+                coord[2] = -getHeightOffset(coord[0], coord[1], context) + coord[2];
+                return coord;
+            }
 
-                @Override
-                public CoordinateOperation inverse()
-                        throws NonInvertibleOperationException {
-                    return Altitude2EllipsoidalHeight.this;
-                }
-            };
-        } catch (Exception e) {
-            throw new NonInvertibleOperationException(e.getMessage());
-        }
+            @Override
+            public CoordinateOperation inverse()
+                    throws NonInvertibleOperationException {
+                return Altitude2EllipsoidalHeight.this;
+            }
+        };
     }
 }
\ No newline at end of file
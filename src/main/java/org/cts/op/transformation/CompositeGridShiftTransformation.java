@@ -0,0 +1,545 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op.transformation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cts.CoordinateDimensionException;
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+import org.cts.metrics.Metrics;
+import org.cts.op.AbstractCoordinateOperation;
+import org.cts.op.ColumnTransforms;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.GridBasedOperation;
+import org.cts.op.GridPrefetch;
+import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.TransformContext;
+import org.cts.op.TransformStatus;
+import org.cts.op.transformation.grid.GridShift;
+import org.cts.op.transformation.grid.GridShiftFile;
+import org.cts.op.transformation.grid.SubGrid;
+
+/**
+ * Geographic Offset by Interpolation of Gridded Data in a list of NTv2
+ * grids, as defined by a proj <code>+nadgrids=a.gsb,b.gsb,@null</code>
+ * parameter.<p>
+ * The grids are tried in the order of the list, like proj does : a point
+ * is shifted by the first grid covering it (by the most detailed sub-grid
+ * of this grid). The <code>@null</code> grid covers the whole world with a
+ * null shift : the points which are not covered by the previous grids are
+ * left unchanged, and the grids listed after it are never used.<p>
+ * The top-level sub-grids of all the grids are registered in a single
+ * spatial index made of one degree cells, each cell listing the sub-grids
+ * intersecting it in the order of priority, so that finding the grid of a
+ * point does not require to try each grid in turn.
+ * The index is created again the first time it is used after one of the
+ * grids has been evicted by {@link org.cts.op.GridMemory}.
+ */
+public class CompositeGridShiftTransformation extends AbstractCoordinateOperation
+        implements GridBasedOperation {
+
+    /**
+     * Size of the cells of the spatial index (in seconds of arc).
+     */
+    private static final double CELL_SIZE = 3600.0;
+    /**
+     * The grids of this transformation, in the order of priority.
+     */
+    private final NTv2GridShiftTransformation[] grids;
+    /**
+     * True if the grids are followed by the @null grid.
+     */
+    private final boolean terminalNull;
+    /**
+     * The spatial index of the sub-grids (null until it is created).
+     */
+    private volatile Index index;
+
+    /**
+     * A spatial index of the top-level sub-grids of all the grids. It is
+     * replaced as a whole when a grid is loaded again, so that concurrent
+     * transformations always use a consistent index.
+     */
+    private static final class Index {
+
+        /**
+         * The grid shift files the sub-grids have been read from.
+         */
+        GridShiftFile[] files;
+        /**
+         * The top-level sub-grids of all the grids, in the order of priority.
+         */
+        SubGrid[] subGrids;
+        /**
+         * Extent of the spatial index (seconds of arc, longitude positive
+         * west).
+         */
+        double minLon, minLat;
+        int columns, rows;
+        /**
+         * For each cell of the spatial index, the indices of the sub-grids
+         * intersecting it, in the order of priority.
+         */
+        int[][] cells;
+    }
+
+    /**
+     * Create a new CompositeGridShiftTransformation.
+     *
+     * @param identifier the identifier of this transformation
+     * @param grids the NTv2 grids, in the order of priority
+     * @param terminalNull true if the grids are followed by the @null grid :
+     * points which are not covered by the grids are then left unchanged
+     * @throws IOException if a grid cannot be loaded
+     */
+    public CompositeGridShiftTransformation(Identifier identifier,
+            List<NTv2GridShiftTransformation> grids, boolean terminalNull) throws IOException {
+        this(identifier, grids.toArray(new NTv2GridShiftTransformation[grids.size()]), terminalNull);
+        if (!GridPrefetch.isAsynchronous()) {
+            getIndex();
+        }
+    }
+
+    private CompositeGridShiftTransformation(Identifier identifier,
+            NTv2GridShiftTransformation[] grids, boolean terminalNull) {
+        super(identifier);
+        this.grids = grids;
+        this.terminalNull = terminalNull;
+        for (NTv2GridShiftTransformation grid : grids) {
+            this.precision = Math.max(this.precision, grid.getPrecision());
+        }
+    }
+
+    /**
+     * Return the spatial index, creating it if it has not been created yet
+     * or if one of the grids has been evicted from memory since. If the
+     * grids are loaded in the background, it is created by the first
+     * transformation, which waits for all the grids.
+     */
+    private Index getIndex() throws IOException {
+        Index idx = index;
+        if (idx == null || !isCurrent(idx)) {
+            synchronized (this) {
+                idx = index;
+                if (idx == null || !isCurrent(idx)) {
+                    idx = createIndex();
+                    index = idx;
+                }
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Return true if the grid shift files of idx are still the ones used by
+     * the grids.
+     */
+    private boolean isCurrent(Index idx) {
+        for (int i = 0; i < grids.length; i++) {
+            if (grids[i].getCurrentGridShiftFile() != idx.files[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create a spatial index of the top-level sub-grids of all the grids.
+     */
+    private Index createIndex() throws IOException {
+        Index idx = new Index();
+        idx.files = new GridShiftFile[grids.length];
+        List<SubGrid> list = new ArrayList<SubGrid>();
+        for (int i = 0; i < grids.length; i++) {
+            idx.files[i] = grids[i].getGridShiftFile();
+            list.addAll(Arrays.asList(idx.files[i].getSubGridTree()));
+        }
+        SubGrid[] subGrids = list.toArray(new SubGrid[list.size()]);
+        idx.subGrids = subGrids;
+        if (subGrids.length == 0) {
+            idx.cells = new int[0][];
+            return idx;
+        }
+        double minLon = Double.POSITIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        for (SubGrid sg : subGrids) {
+            minLon = Math.min(minLon, sg.getMinLon());
+            minLat = Math.min(minLat, sg.getMinLat());
+            maxLon = Math.max(maxLon, sg.getMaxLon());
+            maxLat = Math.max(maxLat, sg.getMaxLat());
+        }
+        idx.minLon = minLon;
+        idx.minLat = minLat;
+        int columns = (int) Math.floor((maxLon - minLon) / CELL_SIZE) + 1;
+        int rows = (int) Math.floor((maxLat - minLat) / CELL_SIZE) + 1;
+        idx.columns = columns;
+        idx.rows = rows;
+        List<List<Integer>> content = new ArrayList<List<Integer>>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            content.add(new ArrayList<Integer>(2));
+        }
+        for (int s = 0; s < subGrids.length; s++) {
+            SubGrid sg = subGrids[s];
+            int c0 = Math.min(columns - 1, (int) Math.floor((sg.getMinLon() - minLon) / CELL_SIZE));
+            int c1 = Math.min(columns - 1, (int) Math.floor((sg.getMaxLon() - minLon) / CELL_SIZE));
+            int r0 = Math.min(rows - 1, (int) Math.floor((sg.getMinLat() - minLat) / CELL_SIZE));
+            int r1 = Math.min(rows - 1, (int) Math.floor((sg.getMaxLat() - minLat) / CELL_SIZE));
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    content.get(r * columns + c).add(s);
+                }
+            }
+        }
+        idx.cells = new int[columns * rows][];
+        for (int i = 0; i < idx.cells.length; i++) {
+            List<Integer> cell = content.get(i);
+            idx.cells[i] = new int[cell.size()];
+            for (int k = 0; k < idx.cells[i].length; k++) {
+                idx.cells[i][k] = cell.get(k);
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Return the sub-grid used to shift the point (in seconds of arc,
+     * longitude positive west), or null if no grid covers it.
+     */
+    private static SubGrid getSubGrid(Index idx, double lon, double lat) {
+        if (idx.cells.length == 0 || !(lon >= idx.minLon && lat >= idx.minLat)) {
+            return null;
+        }
+        int c = (int) Math.floor((lon - idx.minLon) / CELL_SIZE);
+        int r = (int) Math.floor((lat - idx.minLat) / CELL_SIZE);
+        if (c >= idx.columns || r >= idx.rows) {
+            return null;
+        }
+        for (int s : idx.cells[r * idx.columns + c]) {
+            SubGrid sg = idx.subGrids[s].getSubGridForCoord(lon, lat);
+            if (sg != null) {
+                return sg;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compute the forward shift of gs in the grid of highest priority
+     * covering it. Return false if no grid covers gs.
+     */
+    private static boolean shiftForward(Index idx, GridShift gs) throws IOException {
+        SubGrid sg = getSubGrid(idx, gs.getLonPositiveWestSeconds(), gs.getLatSeconds());
+        if (sg == null) {
+            return false;
+        }
+        sg.interpolateGridShift(gs);
+        gs.setSubGridName(sg.getSubGridName());
+        return true;
+    }
+
+    /**
+     * Compute the reverse shift of gs by iterations of the forward shift,
+     * forwardGs being used as a temporary GridShift. Return false if no grid
+     * covers gs.
+     */
+    private static boolean shiftReverse(Index idx, GridShift gs, GridShift forwardGs) throws IOException {
+        forwardGs.setLonPositiveWestSeconds(gs.getLonPositiveWestSeconds());
+        forwardGs.setLatSeconds(gs.getLatSeconds());
+        for (int i = 0; i < 4; i++) {
+            if (!shiftForward(idx, forwardGs)) {
+                return false;
+            }
+            forwardGs.setLonPositiveWestSeconds(gs.getLonPositiveWestSeconds() - forwardGs.getLonShiftPositiveWestSeconds());
+            forwardGs.setLatSeconds(gs.getLatSeconds() - forwardGs.getLatShiftSeconds());
+        }
+        gs.setLonShiftPositiveWestSeconds(-forwardGs.getLonShiftPositiveWestSeconds());
+        gs.setLatShiftSeconds(-forwardGs.getLatShiftSeconds());
+        return true;
+    }
+
+    /**
+     * Shift geographic coordinates by an offset interpolated in the grid of
+     * highest priority covering them.
+     *
+     * @param coord coordinate to shift
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Shift geographic coordinates by an offset interpolated in the grid of
+     * highest priority covering them. A coordinate which is not covered by
+     * any grid is returned unchanged, unless context reports failures and
+     * the grids are not followed by the @null grid : the failure is then
+     * reported and the coordinate is set to NaN.
+     *
+     * @param coord coordinate to shift
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        return transform(coord, context, false);
+    }
+
+    private double[] transform(double[] coord, TransformContext context, boolean reverse)
+            throws IllegalCoordinateException {
+        if (coord.length < 2) {
+            throw new CoordinateDimensionException(coord, 2);
+        }
+        GridShift gs = context == null ? new GridShift() : context.getGridShift(this);
+        gs.setLatDegrees(coord[0] * 180d / Math.PI);
+        gs.setLonPositiveEastDegrees(coord[1] * 180d / Math.PI);
+        try {
+            Index idx = getIndex();
+            boolean covered = reverse
+                    ? shiftReverse(idx, gs, context == null ? new GridShift() : context.getGridShift(grids))
+                    : shiftForward(idx, gs);
+            if (covered) {
+                coord[0] = gs.getShiftedLatDegrees() * Math.PI / 180d;
+                coord[1] = gs.getShiftedLonPositiveEastDegrees() * Math.PI / 180d;
+            } else if (!terminalNull) {
+                if (context != null && context.isReportingFailures()) {
+                    context.reportFailure(TransformStatus.OUT_OF_EXTENT);
+                    coord[0] = Double.NaN;
+                    coord[1] = Double.NaN;
+                } else {
+                    Metrics.increment(Metrics.OUT_OF_EXTENT);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new CoordinateDimensionException(ioe.getMessage());
+        }
+        return coord;
+    }
+
+    /**
+     * Shift geographic coordinates stored in columns by offsets interpolated
+     * in the grids.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        return shift(columns, offset, length, false, null);
+    }
+
+    /**
+     * Shift geographic coordinates stored in columns by offsets interpolated
+     * in the grids without throwing an exception. Points which are not
+     * covered by any grid get NaN coordinates and the
+     * {@link TransformStatus#OUT_OF_EXTENT} status, unless the grids are
+     * followed by the @null grid.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param status the status of each point, indexed like the columns
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+        return shiftSafely(columns, offset, length, false, status);
+    }
+
+    /**
+     * Shift (or shift back if reverse is true) the geographic coordinates
+     * stored in columns without throwing an exception, the status of each
+     * point being stored in status.
+     */
+    private double[][] shiftSafely(double[][] columns, int offset, int length, boolean reverse,
+            byte[] status) {
+        if (columns.length < 2) {
+            return ColumnTransforms.transform(this, columns, offset, length, status);
+        }
+        ColumnTransforms.checkRange(columns, offset, length);
+        ColumnTransforms.checkStatus(status, offset, length);
+        try {
+            return shift(columns, offset, length, reverse, status);
+        } catch (IllegalCoordinateException e) {
+            Arrays.fill(status, offset, offset + length, TransformStatus.of(e));
+            for (int d = 0; d < columns.length; d++) {
+                Arrays.fill(columns[d], offset, offset + length, Double.NaN);
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Shift (or shift back if reverse is true) the geographic coordinates
+     * stored in columns. If status is not null, the status of each point is
+     * stored in it and points which are not covered get NaN coordinates ;
+     * otherwise, they are left unchanged.
+     */
+    private double[][] shift(double[][] columns, int offset, int length, boolean reverse,
+            byte[] status) throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] lat = columns[0];
+        double[] lon = columns[1];
+        GridShift gs = new GridShift();
+        GridShift forwardGs = new GridShift();
+        int outOfExtent = 0;
+        try {
+            Index idx = getIndex();
+            for (int i = offset; i < offset + length; i++) {
+                gs.setLatDegrees(lat[i] * 180d / Math.PI);
+                gs.setLonPositiveEastDegrees(lon[i] * 180d / Math.PI);
+                boolean covered = reverse ? shiftReverse(idx, gs, forwardGs) : shiftForward(idx, gs);
+                if (covered) {
+                    lat[i] = gs.getShiftedLatDegrees() * Math.PI / 180d;
+                    lon[i] = gs.getShiftedLonPositiveEastDegrees() * Math.PI / 180d;
+                }
+                if (covered || terminalNull) {
+                    if (status != null) {
+                        status[i] = TransformStatus.OK;
+                    }
+                } else {
+                    outOfExtent++;
+                    if (status != null) {
+                        status[i] = TransformStatus.OUT_OF_EXTENT;
+                        for (int d = 0; d < columns.length; d++) {
+                            columns[d][i] = Double.NaN;
+                        }
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            throw new CoordinateDimensionException(ioe.getMessage());
+        }
+        if (outOfExtent > 0) {
+            Metrics.increment(Metrics.OUT_OF_EXTENT, outOfExtent);
+        }
+        return columns;
+    }
+
+    /**
+     * Return the grids of this transformation, in the order of priority.
+     */
+    public List<NTv2GridShiftTransformation> getGrids() {
+        return Arrays.asList(grids);
+    }
+
+    /**
+     * Return true if the grids of this transformation are followed by the
+     * @null grid.
+     */
+    public boolean isTerminalNull() {
+        return terminalNull;
+    }
+
+    /**
+     * Return true if one of the grids is read from its grid file.
+     */
+    @Override
+    public boolean isLocalitySensitive() {
+        for (NTv2GridShiftTransformation grid : grids) {
+            if (grid.isLocalitySensitive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the inverse CoordinateOperation.
+     */
+    @Override
+    public CoordinateOperation inverse() throws NonInvertibleOperationException {
+        CompositeGridShiftTransformation inverse =
+                new CompositeGridShiftTransformation(getIdentifier(), grids, terminalNull) {
+            @Override
+            public double[] transform(double[] coord, TransformContext context)
+                    throws IllegalCoordinateException {
+                return CompositeGridShiftTransformation.this.transform(coord, context, true);
+            }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                return CompositeGridShiftTransformation.this.shift(columns, offset, length, true, null);
+            }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+                return CompositeGridShiftTransformation.this.shiftSafely(columns, offset, length, true, status);
+            }
+
+            @Override
+            public CoordinateOperation inverse() {
+                return CompositeGridShiftTransformation.this;
+            }
+        };
+        return inverse;
+    }
+
+    /**
+     * Return the short name of the datum from which the grids must be used.
+     */
+    public String getFromDatum() {
+        return grids.length == 0 ? null : grids[0].getFromDatum();
+    }
+
+    /**
+     * Return the short name of the datum toward which the grids must be
+     * used.
+     */
+    public String getToDatum() {
+        return grids.length == 0 ? null : grids[0].getToDatum();
+    }
+
+    /**
+     * Returns this transformation as a String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("NTv2 Geographic Offset (");
+        for (int i = 0; i < grids.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(grids[i]);
+        }
+        return sb.append(terminalNull ? ", @null)" : ")").toString();
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op.transformation;
+
+import org.cts.CoordinateDimensionException;
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+import org.cts.op.AbstractCoordinateOperation;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.GridBasedOperation;
+import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.TransformContext;
+import org.cts.op.UnitConversion;
+import org.cts.units.Unit;
+import org.cts.util.ConvergencePolicy;
+
+/**
+ * CompoundAltitude2EllipsoidalHeight transforms the altitude of a
+ * {@link org.cts.crs.CompoundCRS} coordinate into an ellipsoidal height, when
+ * the altitude grid is defined in a geodetic datum (the associated datum)
+ * different from the horizontal datum of the CompoundCRS.<p>
+ * The grid must be interpolated at the position of the point in the
+ * associated datum, but this position depends on the ellipsoidal height which
+ * is being computed. The operation thus iterates : the point is transformed to
+ * the associated datum, the grid gives its ellipsoidal height there, and the
+ * point is transformed back, until the horizontal position obtained is the
+ * original one.<p>
+ * This operation replaces the sequence of
+ * {@link org.cts.op.MemorizeCoordinate} / {@link org.cts.op.IterativeTransformation}
+ * used before : the original position and altitude are kept in local
+ * variables and a single three dimensions array is reused for all the steps.
+ * Input and output coordinates are latitude and longitude in radians and
+ * altitude or height in meters, expressed in the horizontal datum.
+ */
+public class CompoundAltitude2EllipsoidalHeight extends AbstractCoordinateOperation
+        implements GridBasedOperation {
+
+    private static final Identifier opId = new Identifier(CompoundAltitude2EllipsoidalHeight.class,
+            "Altitude to ellipsoidal height through the grid datum", "Altitude to height");
+    private static final CoordinateOperation RAD2DEG =
+            UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER);
+    private static final CoordinateOperation DEG2RAD =
+            UnitConversion.createUnitConverter(Unit.DEGREE, Unit.RADIAN, Unit.METER, Unit.METER);
+    /**
+     * Default convergence policy of the iteration on the horizontal position.
+     */
+    private static volatile ConvergencePolicy defaultConvergencePolicy =
+            new ConvergencePolicy("CompoundAltitude2EllipsoidalHeight", 100, 1E-11, ConvergencePolicy.OnFailure.THROW);
+    /**
+     * The grid transformation giving ellipsoidal heights from altitudes.
+     */
+    private final Altitude2EllipsoidalHeight transfo;
+    /**
+     * The operation from the horizontal datum to the datum associated to the
+     * grid.
+     */
+    private final CoordinateOperation toGridDatum;
+    /**
+     * The operation from the datum associated to the grid to the horizontal
+     * datum.
+     */
+    private final CoordinateOperation fromGridDatum;
+    /**
+     * Convergence policy of this operation (null to use the default policy).
+     */
+    private ConvergencePolicy convergencePolicy;
+
+    /**
+     * Create a new CompoundAltitude2EllipsoidalHeight.
+     *
+     * @param transfo the grid transformation giving ellipsoidal heights from
+     * altitudes
+     * @param toGridDatum the operation from the horizontal datum to the datum
+     * associated to the grid (geographic coordinates in radians)
+     * @param fromGridDatum the operation from the datum associated to the grid
+     * to the horizontal datum
+     */
+    public CompoundAltitude2EllipsoidalHeight(Altitude2EllipsoidalHeight transfo,
+            CoordinateOperation toGridDatum, CoordinateOperation fromGridDatum) {
+        super(opId);
+        this.transfo = transfo;
+        this.toGridDatum = toGridDatum;
+        this.fromGridDatum = fromGridDatum;
+        this.precision = transfo.getPrecision() + toGridDatum.getPrecision();
+    }
+
+    /**
+     * Transform the altitude of coord (third ordinate) into an ellipsoidal
+     * height. Latitude and longitude are not modified.
+     *
+     * @param coord the coordinate to transform
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Transform the altitude of coord into an ellipsoidal height, using the
+     * scratch array and the grid cell hints of context.
+     *
+     * @param coord the coordinate to transform
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        if (coord.length < 3) {
+            throw new CoordinateDimensionException(coord, 3);
+        }
+        final double lat = coord[0];
+        final double lon = coord[1];
+        final double alt = coord[2];
+        double[] c = context == null ? new double[3] : context.getScratch(this, 3);
+        ConvergencePolicy policy = getConvergencePolicy();
+        double tolerance = policy.getTolerance();
+        int maxIterations = policy.getMaxIterations();
+        // First approximation uses the altitude as ellipsoidal height
+        double h = alt;
+        int iter = 0;
+        while (true) {
+            c[0] = lat;
+            c[1] = lon;
+            c[2] = h;
+            c = toGridDatum.transform(c, context);
+            c = RAD2DEG.transform(c);
+            c[2] = transfo.getHeightOffset(c[0], c[1], context) + alt;
+            c = DEG2RAD.transform(c);
+            c = fromGridDatum.transform(c, context);
+            h = c[2];
+            if (!(Math.abs(lat - c[0]) > tolerance || Math.abs(lon - c[1]) > tolerance)) {
+                policy.converged(iter);
+                if (context != null) {
+                    context.countIterations(iter + 1);
+                }
+                break;
+            }
+            if (iter == maxIterations) {
+                h = policy.notConverged(h);
+                break;
+            }
+            iter++;
+        }
+        coord[2] = h;
+        return coord;
+    }
+
+    /**
+     * Return true if the altitude to ellipsoidal height transformation used
+     * by this operation is locality sensitive.
+     */
+    @Override
+    public boolean isLocalitySensitive() {
+        return transfo.isLocalitySensitive();
+    }
+
+    /**
+     * Creates the inverse CoordinateOperation, transforming ellipsoidal
+     * heights into altitudes (this direction does not need any iteration).
+     */
+    @Override
+    public CoordinateOperation inverse() throws NonInvertibleOperationException {
+        return new CompoundAltitude2EllipsoidalHeight(transfo, toGridDatum, fromGridDatum) {
+            @Override
+            public double[] transform(double[] coord, TransformContext context)
+                    throws IllegalCoordinateException {
+                if (coord.length < 3) {
+                    throw new CoordinateDimensionException(coord, 3);
+                }
+                double[] c = context == null ? new double[3] : context.getScratch(this, 3);
+                c[0] = coord[0];
+                c[1] = coord[1];
+                c[2] = coord[2];
+                c = toGridDatum.transform(c, context);
+                c = RAD2DEG.transform(c);
+                coord[2] = -transfo.getHeightOffset(c[0], c[1], context) + c[2];
+                return coord;
+            }
+
+            @Override
+            public CoordinateOperation inverse() throws NonInvertibleOperationException {
+                return CompoundAltitude2EllipsoidalHeight.this;
+            }
+
+            @Override
+            public String toString() {
+                return "Ellipsoidal height to altitude (" + transfo.getGridFileName() + ")";
+            }
+        };
+    }
+
+    /**
+     * Return the convergence policy used by this operation.
+     */
+    public ConvergencePolicy getConvergencePolicy() {
+        return convergencePolicy == null ? defaultConvergencePolicy : convergencePolicy;
+    }
+
+    /**
+     * Set the convergence policy used by this operation.
+     *
+     * @param policy the new convergence policy (null to use the default one)
+     */
+    public void setConvergencePolicy(ConvergencePolicy policy) {
+        this.convergencePolicy = policy;
+    }
+
+    /**
+     * Return the default convergence policy of
+     * CompoundAltitude2EllipsoidalHeight operations.
+     */
+    public static ConvergencePolicy getDefaultConvergencePolicy() {
+        return defaultConvergencePolicy;
+    }
+
+    /**
+     * Set the default convergence policy of CompoundAltitude2EllipsoidalHeight
+     * operations.
+     *
+     * @param policy the new default convergence policy
+     */
+    public static void setDefaultConvergencePolicy(ConvergencePolicy policy) {
+        defaultConvergencePolicy = policy;
+    }
+
+    /**
+     * Return a String representation of this operation.
+     */
+    @Override
+    public String toString() {
+        return "Altitude to ellipsoidal height (" + transfo.getGridFileName() + ")";
+    }
+}
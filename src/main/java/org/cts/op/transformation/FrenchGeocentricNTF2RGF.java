@@ -32,20 +32,30 @@
 package org.cts.op.transformation;
 
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
 import org.cts.cs.OutOfExtentException;
 import org.cts.datum.Ellipsoid;
+import org.cts.metrics.Events;
 import org.cts.op.AbstractCoordinateOperation;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.Geocentric2Geographic;
+import org.cts.op.GridBasedOperation;
+import org.cts.op.GridMemory;
+import org.cts.op.GridPrefetch;
 import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.TransformContext;
+import org.cts.op.TransformStatus;
 import org.cts.op.UnitConversion;
 import org.cts.op.transformation.grids.IGNGeographicGrid;
 import org.cts.units.Unit;
+import org.cts.util.ConvergencePolicy;
 
 /**
  * French Geocentric interpolation is a transformation used at IGN-France to
@@ -55,7 +65,8 @@ import org.cts.units.Unit;
  *
  * @author Michaël Michaud, Jules Party, Erwan Bocher
  */
-public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
+public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation
+        implements GridBasedOperation, GridMemory.Evictable {
 
     /**
      * The Identifier used for all French Geocentric NTF to RGF transformation.
@@ -70,7 +81,26 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
     /**
      * The GeographicGrid that define this transformation.
      */
-    private IGNGeographicGrid GRID3D;
+    private volatile Future<IGNGeographicGrid> GRID3D;
+    /**
+     * The directory containing the grid if it is not found in the resources
+     * (may be null).
+     */
+    private String gridPath;
+    /**
+     * The entry of the grid in {@link GridMemory}.
+     */
+    private volatile GridMemory.Entry gridEntry;
+    /**
+     * Default convergence policy of the iterative grid interpolation.
+     */
+    private static volatile ConvergencePolicy defaultConvergencePolicy =
+            new ConvergencePolicy("FrenchGeocentricNTF2RGF", 100, 1E-11, ConvergencePolicy.OnFailure.THROW);
+    /**
+     * Convergence policy of this transformation (null to use the default
+     * policy).
+     */
+    private ConvergencePolicy convergencePolicy;
 
     /**
      * Geocentric translation with parameters interpolated in a grid.<p> The
@@ -83,16 +113,8 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
     public FrenchGeocentricNTF2RGF(String gridPath) throws Exception {
         super(opId);
         this.precision = 0.01;
-        try {
-            InputStream is = FrenchGeocentricNTF2RGF.class.getResourceAsStream("grids/gr3df97a.txt");
-            if (is == null) {
-                GRID3D = new IGNGeographicGrid(new FileInputStream(gridPath + "gr3df97a.txt"));
-            } else {
-                GRID3D = new IGNGeographicGrid(is);
-            }
-        } catch (Exception e) {
-            throw new Exception( "\nThis problem occured when trying to load the gr3df97a.txt grid file", e);
-        }
+        this.gridPath = gridPath;
+        loadGrid();
     }
 
     /**
@@ -103,12 +125,41 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
     public FrenchGeocentricNTF2RGF() throws Exception {
         super(opId);
         this.precision = 0.01;
-        try {
-            InputStream is = FrenchGeocentricNTF2RGF.class.getResourceAsStream("grids/gr3df97a.txt");
-            GRID3D = new IGNGeographicGrid(is);
-        } catch (Exception e) {
-            throw new Exception("\nThis problem occured when trying to load the gr3df97a.txt grid file", e);
+        loadGrid();
+    }
+
+    /**
+     * Load the grid, in the background if {@link GridPrefetch} is
+     * asynchronous. Otherwise, the loading errors are thrown at once.
+     */
+    private Future<IGNGeographicGrid> loadGrid() throws Exception {
+        Future<IGNGeographicGrid> grid = GridPrefetch.load("gr3df97a.txt", new Callable<IGNGeographicGrid>() {
+            @Override
+            public IGNGeographicGrid call() throws Exception {
+                Object event = Events.beginGridLoad();
+                InputStream is = FrenchGeocentricNTF2RGF.class.getResourceAsStream("grids/gr3df97a.txt");
+                IGNGeographicGrid grid;
+                if (is == null && gridPath != null) {
+                    grid = new IGNGeographicGrid(new FileInputStream(gridPath + "gr3df97a.txt"));
+                } else {
+                    grid = new IGNGeographicGrid(is);
+                }
+                Events.commitGridLoad(event, "gr3df97a.txt", "IGN geographic grid", grid.getMemoryUsage());
+                GridMemory.release(gridEntry);
+                gridEntry = GridMemory.register("gr3df97a.txt", grid.getMemoryUsage(), FrenchGeocentricNTF2RGF.this);
+                return grid;
+            }
+        });
+        GRID3D = grid;
+        if (grid.isDone()) {
+            try {
+                GridPrefetch.await(grid);
+            } catch (IOException e) {
+                forget(grid);
+                throw new Exception("\nThis problem occured when trying to load the gr3df97a.txt grid file", e);
+            }
         }
+        return grid;
     }
 
     /**
@@ -120,11 +171,26 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
      */
     @Override
     public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Transforms NTF Geocentric coordinate into RGF93 geocentric coordinate,
+     * using the scratch array and the grid cell hints of context.
+     *
+     * @param coord coordinate to transform
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
         if (coord.length < 3) {
             throw new CoordinateDimensionException(coord, 3);
         }
         // Creates a temporary coord to find the final translation parameters
-        double[] coordi = coord.clone();
+        double[] coordi = context == null ? coord.clone() : context.copy(this, coord);
 
         // Translation using mean parameters (precision = +/- 5 m)
         coordi = NTF2WGS84.transform(coordi);
@@ -141,7 +207,29 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
         double ty = -60.0;
         double tz = 320.0;
 
-        while (Math.max(Math.abs(oldLon - coordi[0]), Math.abs(oldLat - coordi[1])) > 1e-11) {
+        ConvergencePolicy policy = getConvergencePolicy();
+        int maxIterations = policy.getMaxIterations();
+        double tolerance = policy.getTolerance();
+        int iter = 0;
+        boolean converged = true;
+        while (Math.max(Math.abs(oldLon - coordi[0]), Math.abs(oldLat - coordi[1])) > tolerance) {
+            if (iter == maxIterations) {
+                converged = false;
+                if (context != null && context.isReportingFailures()
+                        && policy.getOnFailure() != ConvergencePolicy.OnFailure.BEST_EFFORT) {
+                    context.reportFailure(TransformStatus.NOT_CONVERGED);
+                    return fillNaN(coord);
+                }
+                policy.notConverged();
+                if (policy.isNaNOnFailure()) {
+                    coord[0] = Double.NaN;
+                    coord[1] = Double.NaN;
+                    coord[2] = Double.NaN;
+                    return coord;
+                }
+                break;
+            }
+            iter++;
 
             oldLon = coordi[0];
             oldLat = coordi[1];
@@ -150,8 +238,12 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
             coordi = RAD2DD.transform(coordi);
 
             // Get the definitive translation parameters from the grids
+            if (context != null && context.isReportingFailures() && !getGrid().isInside(coordi[0], coordi[1])) {
+                context.reportFailure(TransformStatus.OUT_OF_EXTENT);
+                return fillNaN(coord);
+            }
             try {
-                double[] t = GRID3D.bilinearInterpolation(coordi[0], coordi[1]);
+                double[] t = getGrid().bilinearInterpolation(coordi[0], coordi[1], context);
                 tx = t[0];
                 ty = t[1];
                 tz = t[2];
@@ -165,6 +257,12 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
 
             coordi = GEOC2GEOG.transform(coordi);
         }
+        if (converged) {
+            policy.converged(iter);
+        }
+        if (context != null) {
+            context.countIterations(iter);
+        }
 
         // Apply definitive translation
         coord[0] = tx + coord[0];
@@ -173,6 +271,70 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Return the official grid of geocentric translations used by this
+     * transformation, waiting for it if it is loaded in the background, or
+     * loading it again if it has been evicted.
+     */
+    IGNGeographicGrid getGrid() throws IllegalCoordinateException {
+        Future<IGNGeographicGrid> grid = GRID3D;
+        try {
+            if (grid == null) {
+                synchronized (this) {
+                    grid = GRID3D;
+                    if (grid == null) {
+                        grid = loadGrid();
+                    }
+                }
+            }
+            IGNGeographicGrid loaded;
+            try {
+                loaded = GridPrefetch.await(grid);
+            } catch (IOException e) {
+                if (grid.isDone()) {
+                    forget(grid);
+                }
+                throw e;
+            }
+            GridMemory.touch(gridEntry);
+            return loaded;
+        } catch (Exception e) {
+            throw new IllegalCoordinateException(e.getMessage()
+                    + "\nThis problem occured when loading the gr3df97a.txt grid file.");
+        }
+    }
+
+    /**
+     * Forget a grid loading which failed, so that the grid is loaded again
+     * the next time it is used.
+     */
+    private synchronized void forget(Future<IGNGeographicGrid> failed) {
+        if (GRID3D == failed) {
+            GRID3D = null;
+        }
+    }
+
+    /**
+     * Release the grid of this transformation. It is loaded again the next
+     * time it is used.
+     */
+    @Override
+    public void evictGrid() {
+        Future<IGNGeographicGrid> grid = GRID3D;
+        if (grid != null && grid.isDone()) {
+            GRID3D = null;
+            gridEntry = null;
+        }
+    }
+
+    /**
+     * Return false : the grid of this transformation is held in memory.
+     */
+    @Override
+    public boolean isLocalitySensitive() {
+        return false;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
@@ -181,10 +343,13 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
         try {
             return new FrenchGeocentricNTF2RGF() {
                 @Override
-                public double[] transform(double[] coord)
+                public double[] transform(double[] coord, TransformContext context)
                         throws IllegalCoordinateException {
+                    if (coord.length < 3) {
+                        throw new CoordinateDimensionException(coord, 3);
+                    }
                     // Creates a temp coord to find the final translation parameters
-                    double[] coordi = coord.clone();
+                    double[] coordi = context == null ? coord.clone() : context.copy(this, coord);
                     // Find a rough position on GRS 80
                     coordi = GEOC2GEOG.transform(coordi);
                     // Get decimal degree coordinates for grid interpolation
@@ -195,8 +360,12 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
                     double ty = -60.0;
                     double tz = 320.0;
                     // Get the definitive translation parameters from the grids
+                    if (context != null && context.isReportingFailures() && !getGrid().isInside(coordi[0], coordi[1])) {
+                        context.reportFailure(TransformStatus.OUT_OF_EXTENT);
+                        return fillNaN(coord);
+                    }
                     try {
-                        double[] t = GRID3D.bilinearInterpolation(coordi[0], coordi[1]);
+                        double[] t = getGrid().bilinearInterpolation(coordi[0], coordi[1], context);
                         tx = t[0];
                         ty = t[1];
                         tz = t[2];
@@ -221,6 +390,50 @@ public class FrenchGeocentricNTF2RGF extends AbstractCoordinateOperation {
         }
     }
 
+    /**
+     * Set the three first ordinates of coord to NaN and return it.
+     */
+    private static double[] fillNaN(double[] coord) {
+        coord[0] = Double.NaN;
+        coord[1] = Double.NaN;
+        coord[2] = Double.NaN;
+        return coord;
+    }
+
+    /**
+     * Return the convergence policy used by this transformation.
+     */
+    public ConvergencePolicy getConvergencePolicy() {
+        return convergencePolicy == null ? defaultConvergencePolicy : convergencePolicy;
+    }
+
+    /**
+     * Set the convergence policy used by this transformation.
+     *
+     * @param policy the new convergence policy (null to use the default one)
+     */
+    public void setConvergencePolicy(ConvergencePolicy policy) {
+        this.convergencePolicy = policy;
+    }
+
+    /**
+     * Return the default convergence policy of FrenchGeocentricNTF2RGF
+     * transformations.
+     */
+    public static ConvergencePolicy getDefaultConvergencePolicy() {
+        return defaultConvergencePolicy;
+    }
+
+    /**
+     * Set the default convergence policy of FrenchGeocentricNTF2RGF
+     * transformations.
+     *
+     * @param policy the new default convergence policy
+     */
+    public static void setDefaultConvergencePolicy(ConvergencePolicy policy) {
+        defaultConvergencePolicy = policy;
+    }
+
     /**
      * Return a string representation of this transformation.
      */
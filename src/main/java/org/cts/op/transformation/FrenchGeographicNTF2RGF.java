@@ -0,0 +1,448 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op.transformation;
+
+import org.cts.CoordinateDimensionException;
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+import org.cts.cs.OutOfExtentException;
+import org.cts.datum.Ellipsoid;
+import org.cts.metrics.Events;
+import org.cts.metrics.Metrics;
+import org.cts.op.AbstractCoordinateOperation;
+import org.cts.op.ColumnTransforms;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.Geocentric2Geographic;
+import org.cts.op.Geographic2Geocentric;
+import org.cts.op.GridBasedOperation;
+import org.cts.op.GridMemory;
+import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.TransformContext;
+import org.cts.op.TransformStatus;
+import org.cts.op.transformation.grids.GeographicGrid;
+import org.cts.util.ConvergencePolicy;
+
+/**
+ * Transformation from NTF geographic coordinates (Clarke 1880 IGN ellipsoid,
+ * Greenwich meridian) to RGF93 geographic coordinates (GRS 1980 ellipsoid),
+ * using a grid of geographic shifts derived from the official gr3df97a grid
+ * of {@link FrenchGeocentricNTF2RGF}.<p>
+ * The official algorithm interpolates a geocentric translation at the RGF93
+ * position of the point, which is unknown : it needs a fixed-point iteration
+ * with several geocentric to geographic conversions per point. This
+ * transformation replaces it by a single bilinear interpolation : the
+ * derived grid has the nodes of gr3df97a, taken as NTF positions, and stores
+ * for each node the latitude, longitude and height shifts computed by the
+ * official algorithm at a null height, plus their variation per meter of
+ * height. The derived grid is computed once, the first time it is needed.
+ * It gives the results of the official algorithm within a few millimeters :
+ * the geocentric translations are interpolated linearly between the RGF93
+ * positions of the nodes, while the derived shifts are interpolated between
+ * their NTF positions, about a hundred meters away.<p>
+ * This transformation is optional : it is used in place of the sequence
+ * NTF geocentric conversion, {@link FrenchGeocentricNTF2RGF}, RGF93
+ * geographic conversion in the CRS created after a call to
+ * {@link #setEnabled(boolean)}.
+ */
+public class FrenchGeographicNTF2RGF extends AbstractCoordinateOperation
+        implements GridBasedOperation {
+
+    /**
+     * The Identifier used for all French Geographic NTF to RGF transformation.
+     */
+    private static final Identifier opId = new Identifier(FrenchGeographicNTF2RGF.class,
+            "French geographic interpolation (geographic shift grid)", "NTF2RGF93");
+    /**
+     * Height used to compute the variation of the shifts with the height.
+     */
+    private static final double REFERENCE_HEIGHT = 1000.0;
+    /**
+     * Default convergence policy of the inverse transformation. The
+     * tolerance is in radians (1E-12 radian is less than 1E-5 m).
+     */
+    private static volatile ConvergencePolicy defaultConvergencePolicy =
+            new ConvergencePolicy("FrenchGeographicNTF2RGF", 100, 1E-12, ConvergencePolicy.OnFailure.THROW);
+    private static volatile boolean enabled = false;
+    private static GeographicGrid shiftGrid;
+    /**
+     * The geographic shift grid, in radians for latitude and longitude
+     * shifts and in meters for height shifts.
+     */
+    private final GeographicGrid grid;
+    /**
+     * Convergence policy of this operation (null to use the default policy).
+     */
+    private ConvergencePolicy convergencePolicy;
+
+    /**
+     * Create a new FrenchGeographicNTF2RGF, computing the derived grid if it
+     * has not been computed yet.
+     */
+    public FrenchGeographicNTF2RGF() throws Exception {
+        this(getShiftGrid());
+    }
+
+    private FrenchGeographicNTF2RGF(GeographicGrid grid) {
+        super(opId);
+        this.grid = grid;
+        this.precision = 0.01;
+    }
+
+    /**
+     * Return true if the CRS created from now on use this transformation
+     * instead of the geocentric interpolation.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether the CRS created from now on use this transformation
+     * instead of the geocentric interpolation (false by default).
+     *
+     * @param enable true to use the geographic shift grid
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Return the convergence policy used by the inverse transformation.
+     */
+    public ConvergencePolicy getConvergencePolicy() {
+        return convergencePolicy == null ? defaultConvergencePolicy : convergencePolicy;
+    }
+
+    /**
+     * Set the convergence policy used by the inverse transformation. The
+     * inverse operations created from now on use it too.
+     *
+     * @param policy the new convergence policy (null to use the default one)
+     */
+    public void setConvergencePolicy(ConvergencePolicy policy) {
+        this.convergencePolicy = policy;
+    }
+
+    /**
+     * Return the default convergence policy of the inverse
+     * FrenchGeographicNTF2RGF transformations.
+     */
+    public static ConvergencePolicy getDefaultConvergencePolicy() {
+        return defaultConvergencePolicy;
+    }
+
+    /**
+     * Set the default convergence policy of the inverse
+     * FrenchGeographicNTF2RGF transformations.
+     *
+     * @param policy the new default convergence policy
+     */
+    public static void setDefaultConvergencePolicy(ConvergencePolicy policy) {
+        defaultConvergencePolicy = policy;
+    }
+
+    /**
+     * Return the geographic shift grid, computing it from the official grid
+     * the first time.
+     */
+    static synchronized GeographicGrid getShiftGrid() throws Exception {
+        if (shiftGrid == null) {
+            Object event = Events.beginGridLoad();
+            long start = Metrics.start();
+            shiftGrid = createShiftGrid(new FrenchGeocentricNTF2RGF());
+            Metrics.recordSince(Metrics.GRID_LOAD_TIME + FrenchGeographicNTF2RGF.class.getSimpleName(), start);
+            Events.commitGridLoad(event, "gr3df97a.txt", "IGN geographic grid (geographic shifts)",
+                    shiftGrid.getMemoryUsage());
+            // the grid is shared by all the transformations : it is accounted
+            // but never evicted
+            GridMemory.register("gr3df97a.txt (geographic shifts)", shiftGrid.getMemoryUsage(), null);
+        }
+        return shiftGrid;
+    }
+
+    /**
+     * Compute the geographic shift grid with the official algorithm. The
+     * shifts of the nodes which cannot be transformed (nodes at the border
+     * of the official grid, whose RGF93 position is out of the grid) are NaN.
+     *
+     * @param reference the official transformation
+     */
+    static GeographicGrid createShiftGrid(FrenchGeocentricNTF2RGF reference) throws IllegalCoordinateException {
+        GeographicGrid official = reference.getGrid();
+        double south = Math.min(official.getY0(), official.getYL());
+        double north = Math.max(official.getY0(), official.getYL());
+        GeographicGrid derived = new GeographicGrid(official.getX0(), north, official.getXL(), south,
+                official.getColumnNumber(), official.getRowNumber(), 6, 360.0, 1, null);
+        Geographic2Geocentric ntf2geoc = new Geographic2Geocentric(Ellipsoid.CLARKE1880IGN);
+        Geocentric2Geographic geoc2rgf = new Geocentric2Geographic(Ellipsoid.GRS80);
+        TransformContext context = new TransformContext();
+        context.setReportingFailures(true);
+        double[] coord = new double[3];
+        double[] shifts = new double[6];
+        for (int r = 0; r < derived.getRowNumber(); r++) {
+            double lat = Math.toRadians(derived.getY0() + r * derived.getDY());
+            for (int c = 0; c < derived.getColumnNumber(); c++) {
+                double lon = Math.toRadians(derived.getX0() + c * derived.getDX());
+                for (int k = 0; k < 2; k++) {
+                    double height = k * REFERENCE_HEIGHT;
+                    coord[0] = lat;
+                    coord[1] = lon;
+                    coord[2] = height;
+                    context.resetStatus();
+                    try {
+                        ntf2geoc.transform(coord);
+                        reference.transform(coord, context);
+                        geoc2rgf.transform(coord);
+                    } catch (IllegalCoordinateException e) {
+                        context.reportFailure(TransformStatus.of(e));
+                    }
+                    if (context.hasFailed()) {
+                        coord[0] = Double.NaN;
+                        coord[1] = Double.NaN;
+                        coord[2] = Double.NaN;
+                    }
+                    if (k == 0) {
+                        shifts[0] = coord[0] - lat;
+                        shifts[1] = coord[1] - lon;
+                        shifts[2] = coord[2] - height;
+                    } else {
+                        shifts[3] = (coord[0] - lat - shifts[0]) / REFERENCE_HEIGHT;
+                        shifts[4] = (coord[1] - lon - shifts[1]) / REFERENCE_HEIGHT;
+                        shifts[5] = (coord[2] - height - shifts[2]) / REFERENCE_HEIGHT;
+                    }
+                }
+                derived.setValue(r, c, shifts.clone());
+            }
+        }
+        return derived;
+    }
+
+    /**
+     * Transform NTF geographic coordinates (latitude, longitude in radians
+     * and ellipsoidal height) into RGF93 geographic coordinates.
+     *
+     * @param coord coordinate to transform
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Transform NTF geographic coordinates into RGF93 geographic
+     * coordinates, using the grid cell hints of context. A NaN height is
+     * taken as a null height for the horizontal shifts and stays NaN.
+     *
+     * @param coord coordinate to transform
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        if (coord.length < 3) {
+            throw new CoordinateDimensionException(coord, 3);
+        }
+        double[] shifts = getShifts(coord[0], coord[1], context);
+        if (shifts == null) {
+            return fillNaN(coord);
+        }
+        double height = coord[2];
+        double h = Double.isNaN(height) ? 0.0 : height;
+        coord[0] = coord[0] + shifts[0] + h * shifts[3];
+        coord[1] = coord[1] + shifts[1] + h * shifts[4];
+        coord[2] = height + shifts[2] + height * shifts[5];
+        return coord;
+    }
+
+    /**
+     * Transform the NTF geographic coordinates stored in columns into RGF93
+     * geographic coordinates.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 3);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] lat = columns[0];
+        double[] lon = columns[1];
+        double[] h = columns[2];
+        TransformContext context = new TransformContext();
+        for (int i = offset; i < offset + length; i++) {
+            double[] shifts = getShifts(lat[i], lon[i], context);
+            double height = Double.isNaN(h[i]) ? 0.0 : h[i];
+            lat[i] = lat[i] + shifts[0] + height * shifts[3];
+            lon[i] = lon[i] + shifts[1] + height * shifts[4];
+            h[i] = h[i] + shifts[2] + h[i] * shifts[5];
+        }
+        return columns;
+    }
+
+    /**
+     * Return the shifts interpolated at the NTF position lat, lon (in
+     * radians). If the position is out of the grid, the failure is reported
+     * to context and null is returned if context reports failures, else an
+     * exception is thrown.
+     */
+    private double[] getShifts(double lat, double lon, TransformContext context)
+            throws IllegalCoordinateException {
+        double latd = lat * 180 / Math.PI;
+        double lond = lon * 180 / Math.PI;
+        double[] shifts = null;
+        if (grid.isInside(latd, lond)) {
+            try {
+                shifts = grid.bilinearInterpolation(latd, lond, context);
+            } catch (OutOfExtentException e) {
+                throw new IllegalCoordinateException(e.getMessage());
+            }
+            if (Double.isNaN(shifts[0])) {
+                shifts = null;
+            }
+        }
+        if (shifts == null) {
+            if (context != null && context.isReportingFailures()) {
+                context.reportFailure(TransformStatus.OUT_OF_EXTENT);
+                return null;
+            }
+            Metrics.increment(Metrics.OUT_OF_EXTENT);
+            throw new IllegalCoordinateException("The point (" + latd + ", " + lond
+                    + ") is out of the extent of the NTF to RGF93 grid");
+        }
+        return shifts;
+    }
+
+    /**
+     * Return false : the grid of this transformation is held in memory.
+     */
+    @Override
+    public boolean isLocalitySensitive() {
+        return false;
+    }
+
+    /**
+     * Creates the inverse CoordinateOperation, transforming RGF93 geographic
+     * coordinates into NTF geographic coordinates. The NTF position where
+     * the shifts are interpolated is found by a fixed-point iteration, which
+     * converges in two or three iterations, the shifts varying slowly. The
+     * iteration is controlled by the convergence policy of this operation.
+     */
+    @Override
+    public CoordinateOperation inverse() throws NonInvertibleOperationException {
+        FrenchGeographicNTF2RGF inverse = new FrenchGeographicNTF2RGF(grid) {
+            @Override
+            public double[] transform(double[] coord, TransformContext context)
+                    throws IllegalCoordinateException {
+                if (coord.length < 3) {
+                    throw new CoordinateDimensionException(coord, 3);
+                }
+                double lat = coord[0];
+                double lon = coord[1];
+                double h = coord[2];
+                ConvergencePolicy policy = getConvergencePolicy();
+                double tolerance = policy.getTolerance();
+                int maxIterations = policy.getMaxIterations();
+                double ntfLat = lat;
+                double ntfLon = lon;
+                double ntfH = h;
+                int iter = 0;
+                while (true) {
+                    if (iter == maxIterations) {
+                        ntfLat = policy.notConverged(ntfLat);
+                        ntfLon = Double.isNaN(ntfLat) ? Double.NaN : ntfLon;
+                        break;
+                    }
+                    iter++;
+                    double[] shifts = getShifts(ntfLat, ntfLon, context);
+                    if (shifts == null) {
+                        return fillNaN(coord);
+                    }
+                    // a NaN height is taken as a null height for the
+                    // horizontal shifts and stays NaN
+                    double dh = Double.isNaN(ntfH) ? 0.0 : ntfH;
+                    double newLat = lat - shifts[0] - dh * shifts[3];
+                    double newLon = lon - shifts[1] - dh * shifts[4];
+                    ntfH = (h - shifts[2]) / (1 + shifts[5]);
+                    boolean converged = Math.abs(newLat - ntfLat) < tolerance
+                            && Math.abs(newLon - ntfLon) < tolerance;
+                    ntfLat = newLat;
+                    ntfLon = newLon;
+                    if (converged) {
+                        policy.converged(iter);
+                        break;
+                    }
+                }
+                coord[0] = ntfLat;
+                coord[1] = ntfLon;
+                coord[2] = ntfH;
+                return coord;
+            }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                return ColumnTransforms.transformByPoint(this, columns, offset, length);
+            }
+
+            @Override
+            public CoordinateOperation inverse() {
+                return FrenchGeographicNTF2RGF.this;
+            }
+        };
+        inverse.setConvergencePolicy(convergencePolicy);
+        return inverse;
+    }
+
+    /**
+     * Set the three first ordinates of coord to NaN and return it.
+     */
+    private static double[] fillNaN(double[] coord) {
+        coord[0] = Double.NaN;
+        coord[1] = Double.NaN;
+        coord[2] = Double.NaN;
+        return coord;
+    }
+
+    /**
+     * Returns this transformation as a String.
+     */
+    @Override
+    public String toString() {
+        return "French geographic transformation from NTF to RGF93 (geographic shift grid)";
+    }
+}
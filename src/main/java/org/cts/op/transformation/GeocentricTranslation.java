@@ -35,7 +35,9 @@ import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
 import org.cts.op.AbstractCoordinateOperation;
+import org.cts.op.ColumnTransforms;
 import org.cts.op.CoordinateOperation;
+import org.cts.op.GeocentricKernels;
 import org.cts.op.NonInvertibleOperationException;
 
 /**
@@ -110,6 +112,23 @@ public class GeocentricTranslation extends AbstractCoordinateOperation implement
         return coord;
     }
 
+    /**
+     * Translate geocentric coordinates stored in columns.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 3);
+        ColumnTransforms.checkRange(columns, offset, length);
+        GeocentricKernels.getInstance().translate(columns[0], columns[1], columns[2],
+                offset, length, tx, ty, tz);
+        return columns;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
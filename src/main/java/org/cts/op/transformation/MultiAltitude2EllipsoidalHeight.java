@@ -0,0 +1,508 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op.transformation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.cts.CoordinateDimensionException;
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+import org.cts.cs.GeographicExtent;
+import org.cts.datum.GeodeticDatum;
+import org.cts.datum.VerticalDatum;
+import org.cts.metrics.Metrics;
+import org.cts.op.AbstractCoordinateOperation;
+import org.cts.op.ColumnTransforms;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.GridBasedOperation;
+import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.TransformContext;
+import org.cts.op.TransformStatus;
+
+/**
+ * MultiAltitude2EllipsoidalHeight transforms altitudes into ellipsoidal
+ * heights with the grid of the vertical datum applicable at each point,
+ * chosen among a set of {@link VerticalDatum}s with small extents (the
+ * geoids of the French overseas islands for instance).<p>
+ * The extents of the vertical datums are registered in a spatial index made
+ * of one degree cells, each cell listing the datums whose extent intersects
+ * it, the smallest extents first. The datum of a point is the first datum of
+ * its cell whose extent and grid contain the point : only the grids of the
+ * datums hit by the transformed points are loaded.<p>
+ * Like {@link Altitude2EllipsoidalHeight}, this operation expects latitudes
+ * and longitudes in decimal degrees, expressed in the geodetic datum
+ * associated to the grids, which must be the same for all the vertical
+ * datums. Bulk transformations first find the datum of each point, then
+ * apply the grid of each datum to its points, one datum after the other.
+ */
+public class MultiAltitude2EllipsoidalHeight extends AbstractCoordinateOperation
+        implements GridBasedOperation {
+
+    /**
+     * Size of the cells of the spatial index (in decimal degrees).
+     */
+    private static final double CELL_SIZE = 1.0;
+    /**
+     * The vertical datums, the smallest extents first.
+     */
+    private final VerticalDatum[] datums;
+    /**
+     * The grid transformation of each vertical datum.
+     */
+    private final Altitude2EllipsoidalHeight[] transfos;
+    /**
+     * Extent of the spatial index.
+     */
+    private double minLon, minLat;
+    private int columns, rows;
+    /**
+     * For each cell of the spatial index, the indices of the datums whose
+     * extent intersects it, the smallest extents first.
+     */
+    private int[][] cells;
+
+    /**
+     * Create a new MultiAltitude2EllipsoidalHeight.
+     *
+     * @param datums the vertical datums
+     * @throws IllegalArgumentException if a datum is not defined by a grid
+     * with a geographic extent, or if the grids are associated to different
+     * geodetic datums
+     */
+    public MultiAltitude2EllipsoidalHeight(Collection<VerticalDatum> datums) {
+        this(new Identifier(MultiAltitude2EllipsoidalHeight.class,
+                "Altitude to ellipsoidal height with the grid of the datum of each point",
+                "Altitudes to heights"), datums);
+    }
+
+    /**
+     * Create a new MultiAltitude2EllipsoidalHeight.
+     *
+     * @param identifier the identifier of this operation
+     * @param datums the vertical datums
+     * @throws IllegalArgumentException if a datum is not defined by a grid
+     * with a geographic extent, or if the grids are associated to different
+     * geodetic datums
+     */
+    public MultiAltitude2EllipsoidalHeight(Identifier identifier, Collection<VerticalDatum> datums) {
+        this(identifier, sort(datums));
+        GeodeticDatum associatedDatum = null;
+        for (int i = 0; i < this.datums.length; i++) {
+            if (!(this.datums[i].getAltiToEllpsHeight() instanceof Altitude2EllipsoidalHeight)
+                    || !(this.datums[i].getExtent() instanceof GeographicExtent)) {
+                throw new IllegalArgumentException("The vertical datum " + this.datums[i].getName()
+                        + " is not defined by a grid with a geographic extent");
+            }
+            transfos[i] = (Altitude2EllipsoidalHeight) this.datums[i].getAltiToEllpsHeight();
+            if (associatedDatum == null) {
+                associatedDatum = transfos[i].getAssociatedDatum();
+            } else if (!associatedDatum.equals(transfos[i].getAssociatedDatum())) {
+                throw new IllegalArgumentException("The grid of " + this.datums[i].getName()
+                        + " is not associated to " + associatedDatum.getName());
+            }
+            this.precision = Math.max(this.precision, transfos[i].getPrecision());
+        }
+        createIndex();
+    }
+
+    private MultiAltitude2EllipsoidalHeight(Identifier identifier, VerticalDatum[] datums) {
+        super(identifier);
+        this.datums = datums;
+        this.transfos = new Altitude2EllipsoidalHeight[datums.length];
+    }
+
+    /**
+     * Create an operation sharing the datums, the grid transformations, the
+     * precision and the spatial index of forward (used by the inverse).
+     */
+    private MultiAltitude2EllipsoidalHeight(MultiAltitude2EllipsoidalHeight forward) {
+        super(forward.getIdentifier());
+        this.datums = forward.datums;
+        this.transfos = forward.transfos;
+        this.precision = forward.precision;
+        this.minLon = forward.minLon;
+        this.minLat = forward.minLat;
+        this.columns = forward.columns;
+        this.rows = forward.rows;
+        this.cells = forward.cells;
+    }
+
+    /**
+     * Return the datums sorted by increasing area of their extent.
+     */
+    private static VerticalDatum[] sort(Collection<VerticalDatum> datums) {
+        List<VerticalDatum> list = new ArrayList<VerticalDatum>(datums);
+        Collections.sort(list, new Comparator<VerticalDatum>() {
+            @Override
+            public int compare(VerticalDatum d1, VerticalDatum d2) {
+                return Double.compare(area(d1), area(d2));
+            }
+        });
+        return list.toArray(new VerticalDatum[list.size()]);
+    }
+
+    private static double area(VerticalDatum datum) {
+        if (!(datum.getExtent() instanceof GeographicExtent)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        GeographicExtent extent = (GeographicExtent) datum.getExtent();
+        return (extent.getNorthernBound() - extent.getSouthernBound())
+                * (extent.getEasternBound() - extent.getWesternBound());
+    }
+
+    /**
+     * Register the extents of the datums in the spatial index.
+     */
+    private void createIndex() {
+        if (datums.length == 0) {
+            cells = new int[0][];
+            return;
+        }
+        minLon = Double.POSITIVE_INFINITY;
+        minLat = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        for (VerticalDatum datum : datums) {
+            GeographicExtent extent = (GeographicExtent) datum.getExtent();
+            minLon = Math.min(minLon, extent.getWesternBound());
+            minLat = Math.min(minLat, extent.getSouthernBound());
+            maxLon = Math.max(maxLon, extent.getEasternBound());
+            maxLat = Math.max(maxLat, extent.getNorthernBound());
+        }
+        columns = (int) Math.floor((maxLon - minLon) / CELL_SIZE) + 1;
+        rows = (int) Math.floor((maxLat - minLat) / CELL_SIZE) + 1;
+        List<List<Integer>> content = new ArrayList<List<Integer>>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            content.add(new ArrayList<Integer>(1));
+        }
+        for (int d = 0; d < datums.length; d++) {
+            GeographicExtent extent = (GeographicExtent) datums[d].getExtent();
+            int c0 = (int) Math.floor((extent.getWesternBound() - minLon) / CELL_SIZE);
+            int c1 = (int) Math.floor((extent.getEasternBound() - minLon) / CELL_SIZE);
+            int r0 = (int) Math.floor((extent.getSouthernBound() - minLat) / CELL_SIZE);
+            int r1 = (int) Math.floor((extent.getNorthernBound() - minLat) / CELL_SIZE);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    content.get(r * columns + c).add(d);
+                }
+            }
+        }
+        cells = new int[columns * rows][];
+        for (int i = 0; i < cells.length; i++) {
+            List<Integer> cell = content.get(i);
+            cells[i] = new int[cell.size()];
+            for (int k = 0; k < cells[i].length; k++) {
+                cells[i][k] = cell.get(k);
+            }
+        }
+    }
+
+    /**
+     * Return the index of the datum applicable at the point (in decimal
+     * degrees), or -1 if no datum covers it. The grids of the datums whose
+     * extent contains the point are loaded if needed.
+     */
+    private int getDatumIndex(double lat, double lon) throws IllegalCoordinateException {
+        if (cells.length == 0 || !(lon >= minLon && lat >= minLat)) {
+            return -1;
+        }
+        int c = (int) Math.floor((lon - minLon) / CELL_SIZE);
+        int r = (int) Math.floor((lat - minLat) / CELL_SIZE);
+        if (c >= columns || r >= rows) {
+            return -1;
+        }
+        for (int d : cells[r * columns + c]) {
+            if (((GeographicExtent) datums[d].getExtent()).isInside(lat, lon)
+                    && transfos[d].isInside(lat, lon)) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the vertical datum applicable at the point, or null if no datum
+     * covers it.
+     *
+     * @param latitude the latitude in decimal degrees
+     * @param longitude the longitude in decimal degrees
+     * @throws IllegalCoordinateException if a grid cannot be loaded
+     */
+    public VerticalDatum getVerticalDatum(double latitude, double longitude)
+            throws IllegalCoordinateException {
+        int d = getDatumIndex(latitude, longitude);
+        return d < 0 ? null : datums[d];
+    }
+
+    /**
+     * Return the vertical datums of this operation, the smallest extents
+     * first.
+     */
+    public List<VerticalDatum> getVerticalDatums() {
+        return Arrays.asList(datums);
+    }
+
+    /**
+     * @see AbstractCoordinateOperation#transform(double[])
+     */
+    @Override
+    public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Transform the altitude of coord into an ellipsoidal height with the
+     * grid of the datum applicable at the point. If no datum covers the
+     * point, the failure is reported to context and the coordinate is set to
+     * NaN if context reports failures, else an exception is thrown.
+     *
+     * @see CoordinateOperation#transform(double[], TransformContext)
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
+        return transform(coord, context, 1.0);
+    }
+
+    private double[] transform(double[] coord, TransformContext context, double sign)
+            throws IllegalCoordinateException {
+        if (coord.length < 3) {
+            throw new CoordinateDimensionException(coord, 3);
+        }
+        int d = getDatumIndex(coord[0], coord[1]);
+        if (d < 0) {
+            if (context != null && context.isReportingFailures()) {
+                context.reportFailure(TransformStatus.OUT_OF_EXTENT);
+                Arrays.fill(coord, 0, 3, Double.NaN);
+                return coord;
+            }
+            throw outOfExtent(coord[0], coord[1]);
+        }
+        coord[2] = sign * transfos[d].getHeightOffset(coord[0], coord[1], context) + coord[2];
+        return coord;
+    }
+
+    private static IllegalCoordinateException outOfExtent(double lat, double lon) {
+        Metrics.increment(Metrics.OUT_OF_EXTENT);
+        return new IllegalCoordinateException("The point (" + lat + ", " + lon
+                + ") is not covered by any of the vertical datums");
+    }
+
+    /**
+     * Transform the altitudes stored in columns into ellipsoidal heights. The
+     * datum of each point is found first, then the grid of each datum is
+     * applied to its points.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @throws IllegalCoordinateException if a point is not covered by any
+     * datum (the coordinates are then left unchanged) or if a grid cannot be
+     * loaded
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        return transform(columns, offset, length, 1.0, null);
+    }
+
+    /**
+     * Transform the altitudes stored in columns into ellipsoidal heights
+     * without throwing an exception. Points which are not covered by any
+     * datum get NaN coordinates and the {@link TransformStatus#OUT_OF_EXTENT}
+     * status.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param status the status of each point, indexed like the columns
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+        ColumnTransforms.checkStatus(status, offset, length);
+        try {
+            return transform(columns, offset, length, 1.0, status);
+        } catch (IllegalCoordinateException e) {
+            return ColumnTransforms.transform(this, columns, offset, length, status);
+        }
+    }
+
+    /**
+     * Transform the altitudes stored in columns, the height offsets being
+     * multiplied by sign. If status is null, an exception is thrown before
+     * any modification if a point is not covered by any datum.
+     */
+    private double[][] transform(double[][] columns, int offset, int length, double sign,
+            byte[] status) throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 3);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] lat = columns[0];
+        double[] lon = columns[1];
+        double[] h = columns[2];
+        // find the datum of each point and sort the points by datum
+        int[] datum = new int[length];
+        int[] start = new int[datums.length + 2];
+        for (int i = 0; i < length; i++) {
+            int d = getDatumIndex(lat[offset + i], lon[offset + i]);
+            if (d < 0 && status == null) {
+                throw outOfExtent(lat[offset + i], lon[offset + i]);
+            }
+            datum[i] = d + 1;
+            start[d + 2]++;
+        }
+        for (int d = 1; d < start.length; d++) {
+            start[d] += start[d - 1];
+        }
+        int[] order = new int[length];
+        int[] next = start.clone();
+        for (int i = 0; i < length; i++) {
+            order[next[datum[i]]++] = offset + i;
+        }
+        // points which are not covered by any datum
+        int outOfExtent = start[1];
+        for (int k = 0; k < outOfExtent; k++) {
+            int i = order[k];
+            status[i] = TransformStatus.OUT_OF_EXTENT;
+            for (int dim = 0; dim < columns.length; dim++) {
+                columns[dim][i] = Double.NaN;
+            }
+        }
+        if (outOfExtent > 0) {
+            Metrics.increment(Metrics.OUT_OF_EXTENT, outOfExtent);
+        }
+        // apply the grid of each datum to its points
+        for (int d = 0; d < datums.length; d++) {
+            TransformContext context = new TransformContext();
+            Altitude2EllipsoidalHeight transfo = transfos[d];
+            int k = start[d + 1];
+            try {
+                for (; k < start[d + 2]; k++) {
+                    int i = order[k];
+                    h[i] = sign * transfo.getHeightOffset(lat[i], lon[i], context) + h[i];
+                    if (status != null) {
+                        status[i] = TransformStatus.OK;
+                    }
+                }
+            } catch (IllegalCoordinateException e) {
+                if (status == null) {
+                    throw e;
+                }
+                for (; k < start[d + 2]; k++) {
+                    int i = order[k];
+                    status[i] = TransformStatus.of(e);
+                    for (int dim = 0; dim < columns.length; dim++) {
+                        columns[dim][i] = Double.NaN;
+                    }
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Return true if one of the grids is locality sensitive.
+     */
+    @Override
+    public boolean isLocalitySensitive() {
+        for (Altitude2EllipsoidalHeight transfo : transfos) {
+            if (transfo.isLocalitySensitive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the inverse CoordinateOperation, transforming ellipsoidal
+     * heights into altitudes with the grid of the datum of each point.
+     */
+    @Override
+    public CoordinateOperation inverse() throws NonInvertibleOperationException {
+        return new MultiAltitude2EllipsoidalHeight(this) {
+            @Override
+            public double[] transform(double[] coord, TransformContext context)
+                    throws IllegalCoordinateException {
+                return MultiAltitude2EllipsoidalHeight.this.transform(coord, context, -1.0);
+            }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                return MultiAltitude2EllipsoidalHeight.this.transform(columns, offset, length, -1.0, null);
+            }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+                ColumnTransforms.checkStatus(status, offset, length);
+                try {
+                    return MultiAltitude2EllipsoidalHeight.this.transform(columns, offset, length, -1.0, status);
+                } catch (IllegalCoordinateException e) {
+                    return ColumnTransforms.transform(this, columns, offset, length, status);
+                }
+            }
+
+            @Override
+            public VerticalDatum getVerticalDatum(double latitude, double longitude)
+                    throws IllegalCoordinateException {
+                return MultiAltitude2EllipsoidalHeight.this.getVerticalDatum(latitude, longitude);
+            }
+
+            @Override
+            public boolean isLocalitySensitive() {
+                return MultiAltitude2EllipsoidalHeight.this.isLocalitySensitive();
+            }
+
+            @Override
+            public CoordinateOperation inverse() {
+                return MultiAltitude2EllipsoidalHeight.this;
+            }
+
+            @Override
+            public String toString() {
+                return "Ellipsoidal height to altitude (" + datums.length + " vertical datums)";
+            }
+        };
+    }
+
+    /**
+     * Return a String representation of this operation.
+     */
+    @Override
+    public String toString() {
+        return "Altitude to ellipsoidal height (" + datums.length + " vertical datums)";
+    }
+}
@@ -40,13 +40,24 @@ import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
+import org.cts.metrics.Events;
+import org.cts.metrics.Metrics;
 import org.cts.op.AbstractCoordinateOperation;
+import org.cts.op.ColumnTransforms;
 import org.cts.op.CoordinateOperation;
+import org.cts.op.GridBasedOperation;
+import org.cts.op.GridMemory;
+import org.cts.op.GridPrefetch;
 import org.cts.op.NonInvertibleOperationException;
+import org.cts.op.TransformContext;
+import org.cts.op.TransformStatus;
 import org.cts.op.transformation.grid.GridShift;
 import org.cts.op.transformation.grid.GridShiftFile;
 import org.slf4j.Logger;
@@ -59,7 +70,8 @@ import org.slf4j.LoggerFactory;
  *
  * @author Michaël Michaud
  */
-public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
+public class NTv2GridShiftTransformation extends AbstractCoordinateOperation
+        implements GridBasedOperation, GridMemory.Evictable {
 
     static final Logger LOGGER = LoggerFactory.getLogger(NTv2GridShiftTransformation.class);
     /**
@@ -81,7 +93,22 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
     /**
      * The GridShiftFile that define this transformation.
      */
-    private GridShiftFile gsf;
+    private volatile GridShiftFile gsf;
+    /**
+     * The GridShiftFile being loaded in the background, replacing gsf once
+     * it is loaded (null if no grid is being loaded).
+     */
+    private volatile Future<GridShiftFile> loading;
+    /**
+     * The entry of the grid in {@link GridMemory} (null if the grid is not
+     * loaded in memory).
+     */
+    private volatile GridMemory.Entry gridEntry;
+    /**
+     * The short names of the datums of the grid, kept when the grid is
+     * evicted.
+     */
+    private String fromDatum, toDatum;
 
     /**
      * Create a NTv2GridShiftTransformation from the name of the file that
@@ -133,20 +160,36 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
      */
     @Override
     public double[] transform(double[] coord) throws IllegalCoordinateException {
+        return transform(coord, null);
+    }
+
+    /**
+     * Shift geographic coordinates by an offset interpolated in a grid, using
+     * the GridShift and the sub-grid hint of context. A coordinate outside
+     * the grid is returned unchanged, unless context reports failures : the
+     * failure is then reported and the coordinate is set to NaN.
+     *
+     * @param coord coordinate to shift
+     * @param context the context of the calling thread (may be null)
+     * @throws IllegalCoordinateException if <code>coord</code> is not
+     * compatible with this <code>CoordinateOperation</code>.
+     */
+    @Override
+    public double[] transform(double[] coord, TransformContext context)
+            throws IllegalCoordinateException {
         if (coord.length < 2) {
             throw new CoordinateDimensionException(coord, 2);
         }
-        GridShift gs = new GridShift();
+        GridShift gs = context == null ? new GridShift() : context.getGridShift(this);
         gs.setLatDegrees(coord[0] * 180d / Math.PI);
         gs.setLonPositiveEastDegrees(coord[1] * 180d / Math.PI);
         try {
-            if (gsf == null) {
-                loadGridShiftFile();
-            }
-            boolean withinGrid = gsf.gridShiftForward(gs);
+            boolean withinGrid = getGridShiftFile().gridShiftForward(gs, context);
             if (withinGrid) {
                 coord[0] = gs.getShiftedLatDegrees() * Math.PI / 180d;
                 coord[1] = gs.getShiftedLonPositiveEastDegrees() * Math.PI / 180d;
+            } else {
+                outOfGrid(coord, context);
             }
         } catch (IOException ioe) {
             throw new CoordinateDimensionException(ioe.getMessage());
@@ -154,6 +197,130 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
         return coord;
     }
 
+    /**
+     * Shift geographic coordinates stored in columns by offsets interpolated
+     * in the grid. The search of the sub-grid starts from the sub-grid used
+     * for the previous point.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        return shift(columns, offset, length, false, null);
+    }
+
+    /**
+     * Shift geographic coordinates stored in columns by offsets interpolated
+     * in the grid without throwing an exception. Points outside the grid get
+     * NaN coordinates and the {@link TransformStatus#OUT_OF_EXTENT} status.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     * @param status the status of each point, indexed like the columns
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+        return shiftSafely(columns, offset, length, false, status);
+    }
+
+    /**
+     * Handle a coordinate outside the grid in the point by point
+     * transformation.
+     */
+    private static void outOfGrid(double[] coord, TransformContext context) {
+        if (context != null && context.isReportingFailures()) {
+            context.reportFailure(TransformStatus.OUT_OF_EXTENT);
+            coord[0] = Double.NaN;
+            coord[1] = Double.NaN;
+        } else {
+            Metrics.increment(Metrics.OUT_OF_EXTENT);
+        }
+    }
+
+    /**
+     * Shift (or shift back if reverse is true) the geographic coordinates
+     * stored in columns without throwing an exception, the status of each
+     * point being stored in status.
+     */
+    private double[][] shiftSafely(double[][] columns, int offset, int length, boolean reverse,
+            byte[] status) {
+        if (columns.length < 2) {
+            return ColumnTransforms.transform(this, columns, offset, length, status);
+        }
+        ColumnTransforms.checkRange(columns, offset, length);
+        ColumnTransforms.checkStatus(status, offset, length);
+        try {
+            return shift(columns, offset, length, reverse, status);
+        } catch (IllegalCoordinateException e) {
+            Arrays.fill(status, offset, offset + length, TransformStatus.of(e));
+            for (int d = 0; d < columns.length; d++) {
+                Arrays.fill(columns[d], offset, offset + length, Double.NaN);
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Shift (or shift back if reverse is true) the geographic coordinates
+     * stored in columns. If status is not null, the status of each point is
+     * stored in it and points outside the grid get NaN coordinates ;
+     * otherwise, they are left unchanged.
+     */
+    private double[][] shift(double[][] columns, int offset, int length, boolean reverse,
+            byte[] status) throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 2);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double[] lat = columns[0];
+        double[] lon = columns[1];
+        TransformContext context = new TransformContext();
+        GridShift gs = new GridShift();
+        int outOfExtent = 0;
+        try {
+            GridShiftFile file = getGridShiftFile();
+            for (int i = offset; i < offset + length; i++) {
+                gs.setLatDegrees(lat[i] * 180d / Math.PI);
+                gs.setLonPositiveEastDegrees(lon[i] * 180d / Math.PI);
+                boolean withinGrid = reverse
+                        ? file.gridShiftReverse(gs, context)
+                        : file.gridShiftForward(gs, context);
+                if (withinGrid) {
+                    lat[i] = gs.getShiftedLatDegrees() * Math.PI / 180d;
+                    lon[i] = gs.getShiftedLonPositiveEastDegrees() * Math.PI / 180d;
+                    if (status != null) {
+                        status[i] = TransformStatus.OK;
+                    }
+                } else {
+                    outOfExtent++;
+                    if (status != null) {
+                        status[i] = TransformStatus.OUT_OF_EXTENT;
+                        for (int d = 0; d < columns.length; d++) {
+                            columns[d][i] = Double.NaN;
+                        }
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            throw new CoordinateDimensionException(ioe.getMessage());
+        }
+        if (outOfExtent > 0) {
+            Metrics.increment(Metrics.OUT_OF_EXTENT, outOfExtent);
+        }
+        return columns;
+    }
+
+    /**
+     * Return true if the grid is read from the grid file (LOW_MEMORY mode) :
+     * successive points falling in the same cell do not read the file again.
+     */
+    @Override
+    public boolean isLocalitySensitive() {
+        return mode == LOW_MEMORY;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
@@ -161,21 +328,22 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
     public CoordinateOperation inverse() throws NonInvertibleOperationException {
         return new NTv2GridShiftTransformation(grid_file, precision) {
             @Override
-            public double[] transform(double[] coord) throws IllegalCoordinateException {
+            public double[] transform(double[] coord, TransformContext context)
+                    throws IllegalCoordinateException {
                 if (coord.length < 2) {
                     throw new CoordinateDimensionException(coord, 2);
                 }
-                GridShift gs = new GridShift();
+                GridShift gs = context == null ? new GridShift() : context.getGridShift(this);
                 gs.setLatDegrees(coord[0] * 180d / Math.PI);
                 gs.setLonPositiveEastDegrees(coord[1] * 180d / Math.PI);
                 try {
-                    if (gsf == null) {
-                        loadGridShiftFile();
-                    }
-                    boolean withinGrid = gsf.gridShiftReverse(gs);
+                    boolean withinGrid = NTv2GridShiftTransformation.this.getGridShiftFile()
+                            .gridShiftReverse(gs, context);
                     if (withinGrid) {
                         coord[0] = gs.getShiftedLatDegrees() * Math.PI / 180d;
                         coord[1] = gs.getShiftedLonPositiveEastDegrees() * Math.PI / 180d;
+                    } else {
+                        outOfGrid(coord, context);
                     }
                 } catch (IOException ioe) {
                     throw new CoordinateDimensionException(ioe.getMessage());
@@ -183,6 +351,17 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
                 return coord;
             }
 
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                return shift(columns, offset, length, true, null);
+            }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length, byte[] status) {
+                return shiftSafely(columns, offset, length, true, status);
+            }
+
             @Override
             public CoordinateOperation inverse()
                     throws NonInvertibleOperationException {
@@ -195,6 +374,7 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
      * Load the grid file that will be used to transform the coordinates.
      */
     public void loadGridShiftFile() throws IOException {
+        Object event = Events.beginGridLoad();
         if (grid_file != null) {
             if (mode == 0) {
                 if (grid_file.getProtocol().equals("file")) {
@@ -225,14 +405,119 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
         } else {
             LOGGER.warn("The location of the grid is null. Any grid will be used.");
         }
+        if (gsf.isLoaded()) {
+            Events.commitGridLoad(event, grid_file.getFile(),
+                    mode == SPEED ? "NTv2" : "NTv2 (random access)", gsf.getMemoryUsage());
+            if (mode == SPEED) {
+                registerGrid();
+            }
+        }
+    }
+
+    /**
+     * Register the grid loaded in memory in {@link GridMemory}.
+     */
+    private void registerGrid() {
+        GridMemory.release(gridEntry);
+        gridEntry = GridMemory.register(new File(grid_file.getFile()).getName(), gsf.getMemoryUsage(), this);
+    }
+
+    /**
+     * Release the grid of this transformation if it is loaded in memory. It
+     * is loaded again the next time it is used. The grid file is not
+     * unloaded, as it may still be used by a concurrent transformation.
+     */
+    @Override
+    public void evictGrid() {
+        if (mode == SPEED && loading == null && gsf.isLoaded()) {
+            getFromDatum();
+            getToDatum();
+            gsf = new GridShiftFile();
+            gridEntry = null;
+        }
+    }
+
+    /**
+     * Load the grid file in memory in the background with
+     * {@link GridPrefetch}. The header of the file is read at once through a
+     * RandomAccessFile, so that the datums of the grid are known, and the
+     * file loaded in memory replaces it once the loading is done.
+     */
+    private void prefetchGridShiftFile() throws IOException {
+        File file = new File(grid_file.getFile());
+        if (!file.exists() || !file.canRead()) {
+            LOGGER.warn("This grid doesn't exist or cannot be read.");
+            return;
+        }
+        gsf.loadGridShiftFile(new RandomAccessFile(file, "r"));
+        loading = GridPrefetch.load(file.getName(), new Callable<GridShiftFile>() {
+            @Override
+            public GridShiftFile call() throws IOException {
+                Object event = Events.beginGridLoad();
+                GridShiftFile loaded = new GridShiftFile();
+                loaded.loadGridShiftFile(new FileInputStream(grid_file.getFile()), false);
+                Events.commitGridLoad(event, grid_file.getFile(), "NTv2", loaded.getMemoryUsage());
+                return loaded;
+            }
+        });
+    }
+
+    /**
+     * Return the grid shift file used by this transformation, waiting for it
+     * if it is loaded in the background, or loading it if needed.
+     */
+    GridShiftFile getGridShiftFile() throws IOException {
+        if (loading != null) {
+            synchronized (this) {
+                if (loading != null) {
+                    GridShiftFile loaded;
+                    try {
+                        loaded = GridPrefetch.await(loading);
+                    } catch (IOException e) {
+                        // keep reading the grid from the file, instead of
+                        // failing again on each use
+                        if (loading.isDone()) {
+                            loading = null;
+                        }
+                        throw e;
+                    }
+                    GridShiftFile header = gsf;
+                    gsf = loaded;
+                    loading = null;
+                    header.unload();
+                    registerGrid();
+                }
+            }
+        }
+        GridShiftFile file = gsf;
+        if (!file.isLoaded()) {
+            synchronized (this) {
+                if (!gsf.isLoaded()) {
+                    loadGridShiftFile();
+                }
+                file = gsf;
+            }
+        }
+        GridMemory.touch(gridEntry);
+        return file;
+    }
+
+    /**
+     * Return the grid shift file currently used by this transformation,
+     * without loading it. It is replaced when the grid is evicted from
+     * memory or loaded in the background.
+     */
+    GridShiftFile getCurrentGridShiftFile() {
+        return gsf;
     }
 
     /**
      * Return whether the grid shift file used by this transformation is loaded
-     * or not.
+     * or not (false while it is being loaded in the background).
      */
     public boolean isLoaded() {
-        return gsf.isLoaded();
+        Future<GridShiftFile> pending = loading;
+        return (pending == null || pending.isDone()) && gsf.isLoaded();
     }
 
     /**
@@ -240,7 +525,13 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
      *
      * @throws IOException
      */
-    public void unload() throws IOException {
+    public synchronized void unload() throws IOException {
+        if (loading != null) {
+            loading.cancel(false);
+            loading = null;
+        }
+        GridMemory.release(gridEntry);
+        gridEntry = null;
         gsf.unload();
     }
 
@@ -249,7 +540,8 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
      * use an InputStream, if mode = 1 (LOW_MEMORY), it will use a
      * RandomAccessFile. If the parameter mode is different from 0 or 1 or if it
      * is equal to the current mode, this method will have no effect and return
-     * false.
+     * false. If {@link GridPrefetch} is asynchronous, a grid file stored in
+     * the file system is loaded in memory (SPEED mode) in the background.
      *
      * @param mode an integer representing a mode to access to grid shift file
      * (see description above)
@@ -260,7 +552,12 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
         if ((mode == 0 || mode == 1) && this.mode != mode) {
             this.mode = mode;
             unload();
-            loadGridShiftFile();
+            if (GridPrefetch.isAsynchronous() && mode == SPEED && grid_file != null
+                    && grid_file.getProtocol().equals("file")) {
+                prefetchGridShiftFile();
+            } else {
+                loadGridShiftFile();
+            }
             return true;
         } else {
             return false;
@@ -280,7 +577,10 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
      * must be used.
      */
     public String getFromDatum() {
-        return gsf.getFromEllipsoid().trim().toLowerCase();
+        if (fromDatum == null) {
+            fromDatum = gsf.getFromEllipsoid().trim().toLowerCase();
+        }
+        return fromDatum;
     }
 
     /**
@@ -288,6 +588,9 @@ public class NTv2GridShiftTransformation extends AbstractCoordinateOperation {
      * transformation must be used.
      */
     public String getToDatum() {
-        return gsf.getToEllipsoid().trim().toLowerCase();
+        if (toDatum == null) {
+            toDatum = gsf.getToEllipsoid().trim().toLowerCase();
+        }
+        return toDatum;
     }
 }
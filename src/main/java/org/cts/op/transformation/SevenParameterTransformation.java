@@ -37,7 +37,9 @@ import org.cts.CoordinateDimensionException;
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
 import org.cts.op.AbstractCoordinateOperation;
+import org.cts.op.ColumnTransforms;
 import org.cts.op.CoordinateOperation;
+import org.cts.op.GeocentricKernels;
 import org.cts.op.NonInvertibleOperationException;
 
 /**
@@ -361,6 +363,30 @@ public class SevenParameterTransformation extends AbstractCoordinateOperation im
         return coord;
     }
 
+    /**
+     * Transform geocentric coordinates stored in columns.
+     *
+     * @param columns the coordinates to transform, one array per dimension
+     * @param offset index of the first point to transform
+     * @param length number of points to transform
+     */
+    @Override
+    public double[][] transform(double[][] columns, int offset, int length)
+            throws IllegalCoordinateException {
+        ColumnTransforms.checkDimension(columns, 3);
+        ColumnTransforms.checkRange(columns, offset, length);
+        double rotationSign = (rotationConvention == POSITION_VECTOR) ? 1.0 : -1.0;
+        double srx = rx * rotationSign;
+        double sry = ry * rotationSign;
+        double srz = rz * rotationSign;
+        srx = linearized ? srx : sin(srx);
+        sry = linearized ? sry : sin(sry);
+        srz = linearized ? srz : sin(srz);
+        GeocentricKernels.getInstance().helmert(columns[0], columns[1], columns[2],
+                offset, length, tx, ty, tz, scale, srx, sry, srz);
+        return columns;
+    }
+
     /**
      * Creates the inverse CoordinateOperation.
      */
@@ -391,6 +417,23 @@ public class SevenParameterTransformation extends AbstractCoordinateOperation im
                 return coord;
             }
 
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                ColumnTransforms.checkDimension(columns, 3);
+                ColumnTransforms.checkRange(columns, offset, length);
+                double rotationSign = (rotationConvention == POSITION_VECTOR) ? 1.0 : -1.0;
+                double srx = rx * rotationSign;
+                double sry = ry * rotationSign;
+                double srz = rz * rotationSign;
+                srx = linearized ? -srx : -sin(srx);
+                sry = linearized ? -sry : -sin(sry);
+                srz = linearized ? -srz : -sin(srz);
+                GeocentricKernels.getInstance().inverseHelmert(columns[0], columns[1], columns[2],
+                        offset, length, tx, ty, tz, 1.0 / scale, srx, sry, srz);
+                return columns;
+            }
+
             @Override
             public CoordinateOperation inverse() throws NonInvertibleOperationException {
                 return new SevenParameterTransformation(tx, ty, tz, rx, ry, rz, scale,
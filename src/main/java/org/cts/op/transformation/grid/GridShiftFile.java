@@ -11,6 +11,9 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import org.cts.metrics.Metrics;
+import org.cts.op.TransformContext;
+
 public class GridShiftFile
         implements Serializable {
 
@@ -33,6 +36,7 @@ public class GridShiftFile
 
     public void loadGridShiftFile(InputStream in, boolean loadAccuracy)
             throws IOException {
+        long start = Metrics.start();
         byte[] b8 = new byte[8];
         boolean bigEndian = true;
         this.fromEllipsoid = "";
@@ -94,10 +98,12 @@ public class GridShiftFile
         this.lastSubGrid = this.topLevelSubGrid[0];
 
         in.close();
+        Metrics.gridLoaded(GridShiftFile.class, start, getMemoryUsage());
     }
 
     public void loadGridShiftFile(RandomAccessFile raf)
             throws IOException {
+        long start = Metrics.start();
         this.raf = raf;
         byte[] b8 = new byte[8];
         boolean bigEndian = true;
@@ -163,6 +169,7 @@ public class GridShiftFile
         }
         this.topLevelSubGrid = createSubGridTree(subGrid);
         this.lastSubGrid = this.topLevelSubGrid[0];
+        Metrics.gridLoaded(GridShiftFile.class, start, getMemoryUsage());
     }
 
     private SubGrid[] createSubGridTree(SubGrid[] subGrid) {
@@ -210,13 +217,57 @@ public class GridShiftFile
         return true;
     }
 
+    /**
+     * Compute the forward shift of gs, starting the search of the sub-grid
+     * from the last sub-grid used with context instead of the last sub-grid
+     * used by any thread.
+     *
+     * @param gs the GridShift to compute
+     * @param context the context of the calling thread (may be null)
+     * @return false if gs is not within the grid
+     */
+    public boolean gridShiftForward(GridShift gs, TransformContext context)
+            throws IOException {
+        if (context == null) {
+            return gridShiftForward(gs);
+        }
+        SubGrid[] tree = this.topLevelSubGrid;
+        // the hint is attached to the sub-grid tree, so that it is not used
+        // after the file has been reloaded
+        SubGrid last = (SubGrid) context.getHint(tree);
+        SubGrid subGrid = (last == null ? tree[0] : last).getSubGridForCoord(gs.getLonPositiveWestSeconds(), gs.getLatSeconds());
+        if (subGrid == null) {
+            subGrid = getSubGrid(gs.getLonPositiveWestSeconds(), gs.getLatSeconds());
+        }
+        if (subGrid == null) {
+            return false;
+        }
+        subGrid.interpolateGridShift(gs);
+        gs.setSubGridName(subGrid.getSubGridName());
+        context.setHint(tree, subGrid);
+        return true;
+    }
+
     public boolean gridShiftReverse(GridShift gs)
             throws IOException {
-        GridShift forwardGs = new GridShift();
+        return gridShiftReverse(gs, null);
+    }
+
+    /**
+     * Compute the reverse shift of gs, using the sub-grid hint and a
+     * temporary GridShift of context.
+     *
+     * @param gs the GridShift to compute
+     * @param context the context of the calling thread (may be null)
+     * @return false if gs is not within the grid
+     */
+    public boolean gridShiftReverse(GridShift gs, TransformContext context)
+            throws IOException {
+        GridShift forwardGs = context == null ? new GridShift() : context.getGridShift(this);
         forwardGs.setLonPositiveWestSeconds(gs.getLonPositiveWestSeconds());
         forwardGs.setLatSeconds(gs.getLatSeconds());
         for (int i = 0; i < 4; i++) {
-            if (!gridShiftForward(forwardGs)) {
+            if (!gridShiftForward(forwardGs, context)) {
                 return false;
             }
             forwardGs.setLonPositiveWestSeconds(gs.getLonPositiveWestSeconds() - forwardGs.getLonShiftPositiveWestSeconds());
@@ -251,6 +302,21 @@ public class GridShiftFile
         return this.topLevelSubGrid != null;
     }
 
+    /**
+     * Return an estimation of the memory used by the shifts loaded in memory
+     * (in bytes). Grids accessed through a RandomAccessFile use almost no
+     * memory.
+     */
+    public long getMemoryUsage() {
+        long size = 0L;
+        if (this.topLevelSubGrid != null) {
+            for (int i = 0; i < this.topLevelSubGrid.length; i++) {
+                size += this.topLevelSubGrid[i].getMemoryUsage();
+            }
+        }
+        return size;
+    }
+
     public void unload() throws IOException {
         this.topLevelSubGrid = null;
         if (this.raf != null) {
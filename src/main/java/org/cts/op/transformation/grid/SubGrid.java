@@ -6,6 +6,7 @@ package org.cts.op.transformation.grid;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
 
@@ -33,6 +34,12 @@ public class SubGrid implements Cloneable, Serializable {
     private long subGridOffset;
     boolean bigEndian;
     private SubGrid[] subGrid;
+    /**
+     * Last cell read from raf (index of its first node) and its four nodes.
+     */
+    private transient int cachedCell = -1;
+    private transient float[] cellNodes = new float[16];
+    private transient byte[] nodeBuffer = new byte[2 * REC_SIZE];
 
     public SubGrid(InputStream in, boolean bigEndian, boolean loadAccuracy)
             throws IOException {
@@ -207,66 +214,49 @@ public class SubGrid implements Cloneable, Serializable {
             }
         } else {
             synchronized (this.raf) {
-                byte[] b4 = new byte[4];
-                long nodeOffset = this.subGridOffset + 176L + indexA * 16;
-                this.raf.seek(nodeOffset);
-                this.raf.read(b4);
-                float latShiftA = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float lonShiftA = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float latAccuracyA = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float lonAccuracyA = Util.getFloat(b4, this.bigEndian);
-
-                nodeOffset = this.subGridOffset + 176L + indexB * 16;
-                this.raf.seek(nodeOffset);
-                this.raf.read(b4);
-                float latShiftB = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float lonShiftB = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float latAccuracyB = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float lonAccuracyB = Util.getFloat(b4, this.bigEndian);
-
-                nodeOffset = this.subGridOffset + 176L + indexC * 16;
-                this.raf.seek(nodeOffset);
-                this.raf.read(b4);
-                float latShiftC = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float lonShiftC = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float latAccuracyC = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float lonAccuracyC = Util.getFloat(b4, this.bigEndian);
-
-                nodeOffset = this.subGridOffset + 176L + indexD * 16;
-                this.raf.seek(nodeOffset);
-                this.raf.read(b4);
-                float latShiftD = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float lonShiftD = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float latAccuracyD = Util.getFloat(b4, this.bigEndian);
-                this.raf.read(b4);
-                float lonAccuracyD = Util.getFloat(b4, this.bigEndian);
-
-                gs.setLonShiftPositiveWestSeconds(interpolate(lonShiftA, lonShiftB, lonShiftC, lonShiftD, X, Y));
-
-                gs.setLatShiftSeconds(interpolate(latShiftA, latShiftB, latShiftC, latShiftD, X, Y));
+                // the nodes of the last cell are kept, so that successive
+                // points falling in the same cell do not read the file again
+                if (indexA != this.cachedCell) {
+                    // invalidate the cache first : if a read fails, cellNodes
+                    // holds a mix of two cells
+                    this.cachedCell = -1;
+                    readNodes(indexA, 0);
+                    readNodes(indexC, 8);
+                    this.cachedCell = indexA;
+                }
+                float[] n = this.cellNodes;
+
+                gs.setLonShiftPositiveWestSeconds(interpolate(n[1], n[5], n[9], n[13], X, Y));
+
+                gs.setLatShiftSeconds(interpolate(n[0], n[4], n[8], n[12], X, Y));
 
                 gs.setLonAccuracyAvailable(true);
-                gs.setLonAccuracySeconds(interpolate(lonAccuracyA, lonAccuracyB, lonAccuracyC, lonAccuracyD, X, Y));
+                gs.setLonAccuracySeconds(interpolate(n[3], n[7], n[11], n[15], X, Y));
 
                 gs.setLatAccuracyAvailable(true);
-                gs.setLatAccuracySeconds(interpolate(latAccuracyA, latAccuracyB, latAccuracyC, latAccuracyD, X, Y));
+                gs.setLatAccuracySeconds(interpolate(n[2], n[6], n[10], n[14], X, Y));
             }
         }
 
         return gs;
     }
 
+    /**
+     * Read the values of the node of the given index and of the following
+     * node (lat shift, lon shift, lat accuracy and lon accuracy of each node)
+     * into cellNodes, starting at pos. Must be called while holding the lock
+     * of raf.
+     */
+    private void readNodes(int index, int pos) throws IOException {
+        byte[] b = this.nodeBuffer;
+        this.raf.seek(this.subGridOffset + 176L + index * (long) REC_SIZE);
+        this.raf.readFully(b);
+        for (int k = 0; k < 8; k++) {
+            int bits = this.bigEndian ? Util.getIntBE(b, 4 * k) : Util.getIntLE(b, 4 * k);
+            this.cellNodes[pos + k] = Float.intBitsToFloat(bits);
+        }
+    }
+
     public String getParentSubGridName() {
         return this.parentSubGridName;
     }
@@ -279,6 +269,22 @@ public class SubGrid implements Cloneable, Serializable {
         return this.nodeCount;
     }
 
+    public long getMemoryUsage() {
+        long size = 0L;
+        if (this.latShift != null) {
+            size += 8L * this.latShift.length;
+        }
+        if (this.latAccuracy != null) {
+            size += 8L * this.latAccuracy.length;
+        }
+        if (this.subGrid != null) {
+            for (int i = 0; i < this.subGrid.length; i++) {
+                size += this.subGrid[i].getMemoryUsage();
+            }
+        }
+        return size;
+    }
+
     public int getSubGridCount() {
         return this.subGrid == null ? 0 : this.subGrid.length;
     }
@@ -327,6 +333,9 @@ public class SubGrid implements Cloneable, Serializable {
         SubGrid clone = null;
         try {
             clone = (SubGrid) super.clone();
+            clone.cachedCell = -1;
+            clone.cellNodes = new float[16];
+            clone.nodeBuffer = new byte[2 * REC_SIZE];
             if (this.subGrid != null) {
                 clone.subGrid = new SubGrid[this.subGrid.length];
                 for (int i = 0; i < this.subGrid.length; i++) {
@@ -338,6 +347,16 @@ public class SubGrid implements Cloneable, Serializable {
         return clone;
     }
 
+    /**
+     * Restore the cache of the last cell read, which is not serialized.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.cachedCell = -1;
+        this.cellNodes = new float[16];
+        this.nodeBuffer = new byte[2 * REC_SIZE];
+    }
+
     public double getMaxLat() {
         return this.maxLat;
     }
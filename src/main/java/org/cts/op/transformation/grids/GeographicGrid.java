@@ -33,6 +33,8 @@ package org.cts.op.transformation.grids;
 
 import org.cts.cs.GeographicExtent;
 import org.cts.cs.OutOfExtentException;
+import org.cts.metrics.Metrics;
+import org.cts.op.TransformContext;
 
 /**
  * A grid with column and rows representing meridians and parallels and cell
@@ -70,6 +72,17 @@ public class GeographicGrid implements Grid {
      * precision (6 digits are generally sufficient).
      */
     protected double[][][] values;
+    /**
+     * Values of a quantized grid (see {@link #quantize()}), stored row by
+     * row as integers scaled by {@link #getScale()}, in a short array if
+     * they all fit in it and in an int array otherwise. values is then null.
+     */
+    private short[] shortValues;
+    private int[] intValues;
+    /**
+     * True if the grids read from a file are quantized.
+     */
+    private static volatile boolean quantizedStorage = false;
     /**
      * Context object (may be used to specify the reference Datum).
      */
@@ -208,6 +221,9 @@ public class GeographicGrid implements Grid {
      * 'scale' factor to use to obtain an integer parameter.
      */
     public void setScale(int scale) {
+        if (isQuantized()) {
+            dequantize();
+        }
         this.scale = scale;
     }
 
@@ -219,12 +235,20 @@ public class GeographicGrid implements Grid {
     }
 
     /**
-     * get the value in row r and column c
+     * get the value in row r and column c (a new array if the grid is
+     * quantized)
      *
      * @param r row index
      * @param c column index
      */
     public double[] getValues(int r, int c) {
+        if (values == null) {
+            double[] v = new double[dim];
+            for (int k = 0; k < dim; k++) {
+                v[k] = value(r, c, k);
+            }
+            return v;
+        }
         return values[r][c];
     }
 
@@ -236,6 +260,9 @@ public class GeographicGrid implements Grid {
      * @param value new value of row r column c
      */
     public void setValue(int r, int c, double[] values) {
+        if (isQuantized()) {
+            dequantize();
+        }
         System.arraycopy(values, 0, this.values[r][c], 0, dim);
     }
 
@@ -256,12 +283,144 @@ public class GeographicGrid implements Grid {
     }
 
     /**
-     * Return the array of values.
+     * Return the array of values. If the grid is quantized, a new array of
+     * dequantized values is returned.
      */
     public double[][][] getValues() {
+        if (values == null && isQuantized()) {
+            double[][][] v = new double[rowNumber][colNumber][];
+            for (int i = 0; i < rowNumber; i++) {
+                for (int j = 0; j < colNumber; j++) {
+                    v[i][j] = getValues(i, j);
+                }
+            }
+            return v;
+        }
         return values;
     }
 
+    /**
+     * Return the value k of the node in row i and column j.
+     */
+    private double value(int i, int j, int k) {
+        if (values != null) {
+            return values[i][j][k];
+        }
+        int index = (i * colNumber + j) * dim + k;
+        // a division (and not a multiplication by 1/scale) returns exactly
+        // the double parsed from the decimal value
+        return (shortValues != null ? shortValues[index] : intValues[index]) / (double) scale;
+    }
+
+    /**
+     * Return true if the grids read from a file are quantized (false by
+     * default).
+     */
+    public static boolean isQuantizedStorage() {
+        return quantizedStorage;
+    }
+
+    /**
+     * Set whether the grids read from a file from now on are quantized (see
+     * {@link #quantize()}).
+     *
+     * @param quantized true to quantize the grids read from a file
+     */
+    public static void setQuantizedStorage(boolean quantized) {
+        quantizedStorage = quantized;
+    }
+
+    /**
+     * Return true if the values of this grid are stored as scaled integers.
+     */
+    public boolean isQuantized() {
+        return shortValues != null || intValues != null;
+    }
+
+    /**
+     * Store the values of this grid as integers scaled by
+     * {@link #getScale()} : shorts if they all fit in a short, ints
+     * otherwise. The values are dequantized in the interpolation, which
+     * returns exactly the same results, while a value uses 2 or 4 bytes
+     * instead of 8 bytes plus the headers of the nested arrays.<p>
+     * The grid is not quantized if one of its values is not an exact
+     * multiple of 1/scale (a NaN value, or a value having more decimals than
+     * the scale), or does not fit in an int once scaled. This method must be
+     * called before the grid is shared between threads.
+     *
+     * @return true if the grid is quantized
+     */
+    public boolean quantize() {
+        if (values == null) {
+            return isQuantized();
+        }
+        int[] q = new int[rowNumber * colNumber * dim];
+        boolean fitShort = true;
+        int index = 0;
+        for (int i = 0; i < rowNumber; i++) {
+            for (int j = 0; j < colNumber; j++) {
+                for (int k = 0; k < dim; k++) {
+                    double v = values[i][j][k];
+                    double n = Math.rint(v * scale);
+                    if (!(Math.abs(n) <= Integer.MAX_VALUE) || n / scale != v) {
+                        return false;
+                    }
+                    q[index++] = (int) n;
+                    fitShort = fitShort && n >= Short.MIN_VALUE && n <= Short.MAX_VALUE;
+                }
+            }
+        }
+        if (fitShort) {
+            shortValues = new short[q.length];
+            for (int n = 0; n < q.length; n++) {
+                shortValues[n] = (short) q[n];
+            }
+        } else {
+            intValues = q;
+        }
+        values = null;
+        return true;
+    }
+
+    /**
+     * Store the values of a quantized grid as doubles again.
+     */
+    private void dequantize() {
+        values = getValues();
+        shortValues = null;
+        intValues = null;
+    }
+
+    /**
+     * Return an estimation of the memory used by the values of this grid (in
+     * bytes), including the headers of the nested arrays.
+     */
+    public long getMemoryUsage() {
+        if (shortValues != null) {
+            return 16L + 2L * shortValues.length;
+        }
+        if (intValues != null) {
+            return 16L + 4L * intValues.length;
+        }
+        if (values == null) {
+            return 0L;
+        }
+        return 16L + rowNumber * (16L + 8L * colNumber)
+                + (long) rowNumber * colNumber * (16L + 8L * dim);
+    }
+
+    /**
+     * Return true if the point can be interpolated in this grid, that is if
+     * {@link #bilinearInterpolation(double, double)} will not throw an
+     * {@link OutOfExtentException} for this point.
+     *
+     * @param latitude the latitude
+     * @param longitude the longitude
+     */
+    public boolean isInside(double latitude, double longitude) {
+        return extent.isInside(latitude, longitude);
+    }
+
     /**
      * Return a double value interpolated in this geographic grid with a
      * bilinear interpolation method.<p>
@@ -281,6 +440,7 @@ public class GeographicGrid implements Grid {
     public double[] bilinearInterpolation(double latitude, double longitude)
             throws OutOfExtentException {
         if (!extent.isInside(latitude, longitude)) {
+            Metrics.increment(Metrics.OUT_OF_EXTENT);
             throw new OutOfExtentException(new double[]{latitude, longitude}, extent);
         }
         double x = longitude < x0 ? longitude + modulo : longitude;
@@ -299,16 +459,103 @@ public class GeographicGrid implements Grid {
         // coordonnées situées exactement sur la dernière ligne ou dernière
         // colonne (cela revient à les dupliquer)
         double[] shift = new double[dim];
+        double[][][] v = values;
+        if (v == null) {
+            return quantizedInterpolation(i, j, fx, fy, shift);
+        }
+        for (int k = 0; k < dim; k++) {
+            double d1 = v[i][j][k];
+            double d2 = v[i < (rowNumber - 1) ? i + 1 : i][j][k];
+            double d3 = v[i][j < (colNumber - 1) ? j + 1 : j][k];
+            double d4 = v[i < (rowNumber - 1) ? i + 1 : i][j < (colNumber - 1) ? j + 1 : j][k];
+            shift[k] = ((1 - fx) * (1 - fy) * d1 + (1 - fx) * fy * d2 + fx * (1 - fy) * d3 + fx * fy * d4);
+        }
+        return shift;
+    }
+
+    /**
+     * Interpolate the values of the cell (i, j) of a quantized grid into
+     * shift, the nodes being dequantized before the interpolation so that
+     * the result is exactly the one of the grid of doubles.
+     */
+    private double[] quantizedInterpolation(int i, int j, double fx, double fy, double[] shift) {
+        int i2 = i < (rowNumber - 1) ? i + 1 : i;
+        int j2 = j < (colNumber - 1) ? j + 1 : j;
+        int n1 = (i * colNumber + j) * dim;
+        int n2 = (i2 * colNumber + j) * dim;
+        int n3 = (i * colNumber + j2) * dim;
+        int n4 = (i2 * colNumber + j2) * dim;
+        double s = scale;
+        short[] sv = shortValues;
+        int[] iv = intValues;
         for (int k = 0; k < dim; k++) {
-            double d1 = values[i][j][k];
-            double d2 = values[i < (rowNumber - 1) ? i + 1 : i][j][k];
-            double d3 = values[i][j < (colNumber - 1) ? j + 1 : j][k];
-            double d4 = values[i < (rowNumber - 1) ? i + 1 : i][j < (colNumber - 1) ? j + 1 : j][k];
+            double d1 = (sv != null ? sv[n1 + k] : iv[n1 + k]) / s;
+            double d2 = (sv != null ? sv[n2 + k] : iv[n2 + k]) / s;
+            double d3 = (sv != null ? sv[n3 + k] : iv[n3 + k]) / s;
+            double d4 = (sv != null ? sv[n4 + k] : iv[n4 + k]) / s;
             shift[k] = ((1 - fx) * (1 - fy) * d1 + (1 - fx) * fy * d2 + fx * (1 - fy) * d3 + fx * fy * d4);
         }
         return shift;
     }
 
+    /**
+     * Return a double value interpolated in this geographic grid with a
+     * bilinear interpolation method, using context to avoid any allocation.
+     * The values of the last cell used are kept in the context, so that
+     * successive points located in the same cell do not read the grid again.
+     * The returned array belongs to the context and is overwritten by the
+     * next interpolation in this grid.
+     *
+     * @param latitude the latitude
+     * @param longitude the longitude
+     * @param context the context of the calling thread (if null, this method
+     * is equivalent to {@link #bilinearInterpolation(double, double)})
+     * @return the interpolated value as a double
+     */
+    public double[] bilinearInterpolation(double latitude, double longitude,
+            TransformContext context) throws OutOfExtentException {
+        if (context == null) {
+            return bilinearInterpolation(latitude, longitude);
+        }
+        if (!extent.isInside(latitude, longitude)) {
+            Metrics.increment(Metrics.OUT_OF_EXTENT);
+            throw new OutOfExtentException(new double[]{latitude, longitude}, extent);
+        }
+        double x = longitude < x0 ? longitude + modulo : longitude;
+        double y = latitude;
+        int j = (int) Math.floor((x - x0) / dx);  // column
+        double fx = (x - x0) / dx - j;
+        int i = (int) Math.floor((y - y0) / dy);  // line
+        double fy = (y - y0) / dy - i;
+
+        double[] cell = context.getCellValues(this, i, j);
+        if (cell == null) {
+            cell = context.setCell(this, i, j, dim);
+            int i2 = i < (rowNumber - 1) ? i + 1 : i;
+            int j2 = j < (colNumber - 1) ? j + 1 : j;
+            double[][][] v = values;
+            for (int k = 0; k < dim; k++) {
+                if (v != null) {
+                    cell[4 * k] = v[i][j][k];
+                    cell[4 * k + 1] = v[i2][j][k];
+                    cell[4 * k + 2] = v[i][j2][k];
+                    cell[4 * k + 3] = v[i2][j2][k];
+                } else {
+                    cell[4 * k] = value(i, j, k);
+                    cell[4 * k + 1] = value(i2, j, k);
+                    cell[4 * k + 2] = value(i, j2, k);
+                    cell[4 * k + 3] = value(i2, j2, k);
+                }
+            }
+        }
+        double[] shift = context.getInterpolatedValues(this, dim);
+        for (int k = 0; k < dim; k++) {
+            shift[k] = ((1 - fx) * (1 - fy) * cell[4 * k] + (1 - fx) * fy * cell[4 * k + 1]
+                    + fx * (1 - fy) * cell[4 * k + 2] + fx * fy * cell[4 * k + 3]);
+        }
+        return shift;
+    }
+
     /**
      * Return a short string representation of the grid.
      */
@@ -326,7 +573,7 @@ public class GeographicGrid implements Grid {
                 + " eastLon=" + xL + " southLat=" + yL + " Column[" + colNumber + "] Row[" + rowNumber + "])\n");
         for (int i = 0; i < rowNumber; i++) {
             for (int j = 0; j < colNumber; j++) {
-                sb.append(values[i][j]);
+                sb.append(getValues(i, j));
                 if (j < (colNumber - 1)) {
                     sb.append("\t");
                 }
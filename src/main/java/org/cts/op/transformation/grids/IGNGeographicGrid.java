@@ -39,6 +39,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.StringTokenizer;
 
 import org.cts.cs.GeographicExtent;
+import org.cts.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -92,6 +93,7 @@ public class IGNGeographicGrid extends GeographicGrid {
      * @param is input stream
      */
     public IGNGeographicGrid(InputStream is) throws Exception {
+        long start = Metrics.start();
         BufferedReader reader = new BufferedReader(new InputStreamReader(is));        
         try {
             //Read the header           
@@ -250,6 +252,10 @@ public class IGNGeographicGrid extends GeographicGrid {
         } finally {
             reader.close();
         }
+        if (isQuantizedStorage()) {
+            quantize();
+        }
+        Metrics.gridLoaded(IGNGeographicGrid.class, start, getMemoryUsage());
 
     }
 }
\ No newline at end of file
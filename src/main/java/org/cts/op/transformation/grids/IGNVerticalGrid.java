@@ -39,6 +39,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.cts.cs.GeographicExtent;
+import org.cts.metrics.Metrics;
 
 /**
  * <p>Classe representing an Altimetric grid as defined by IGN (France).</p>
@@ -93,6 +94,7 @@ public class IGNVerticalGrid extends GeographicGrid {
      * @param zip flag indicating if input data is zipped or not
      */
     public IGNVerticalGrid(InputStream is, boolean zip) throws Exception {
+        long start = Metrics.start();
         String token;
         String ignFile;
         boolean lonlat;
@@ -260,6 +262,10 @@ public class IGNVerticalGrid extends GeographicGrid {
         // decimal part size --> scale
         scale = (int) Math.rint(Math.pow(10.0, (double) nbdec));
         extent = new GeographicExtent("GG", y0, yL, x0, xL, modulo);
+        if (isQuantizedStorage()) {
+            quantize();
+        }
+        Metrics.gridLoaded(IGNVerticalGrid.class, start, getMemoryUsage());
     }
 
     /**
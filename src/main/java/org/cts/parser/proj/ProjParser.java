@@ -41,6 +41,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import org.cts.metrics.Events;
+import org.cts.metrics.Metrics;
 import org.cts.registry.Registry;
 
 /**
@@ -77,6 +79,8 @@ public class ProjParser {
      */
     public Map<String, String> readParameters(String crsCode, Pattern regexPattern)
             throws IOException {
+        long start = Metrics.start();
+        Object event = Events.beginRegistryParse();
         InputStream inStr = Registry.class.getResourceAsStream(registry.getRegistryName());
         if (inStr == null) {
             throw new IllegalStateException("Unable to access CRS file: " + registry.getRegistryName());
@@ -88,6 +92,8 @@ public class ProjParser {
 
         } finally {
             reader.close();
+            Metrics.recordSince(Metrics.REGISTRY_READ_TIME, start);
+            Events.commitRegistryParse(event, registry.getRegistryName(), crsCode);
         }
         return args;
     }
@@ -185,6 +191,8 @@ public class ProjParser {
      * @param regex pattern
      */
     public Set<String> getSupportedCodes(Pattern regex) throws IOException {
+        long start = Metrics.start();
+        Object event = Events.beginRegistryParse();
         InputStream inStr = Registry.class.getResourceAsStream(registry.getRegistryName());
         if (inStr == null) {
             throw new IllegalStateException("Unable to access CRS file: " + registry.getRegistryName());
@@ -202,6 +210,8 @@ public class ProjParser {
             return codes;
         } finally {
             br.close();
+            Metrics.recordSince(Metrics.REGISTRY_READ_TIME, start);
+            Events.commitRegistryParse(event, registry.getRegistryName(), null);
         }
     }
 }
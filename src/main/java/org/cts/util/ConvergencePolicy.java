@@ -0,0 +1,198 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.util;
+
+import org.cts.metrics.Metrics;
+
+/**
+ * A ConvergencePolicy controls the iterative algorithms of CTS (conversion of
+ * geocentric coordinates to geographic coordinates, computation of a latitude
+ * from an isometric latitude, iterative grid transformations...).<p>
+ * It defines the tolerance used to stop the iteration, the maximum number of
+ * iterations, and what to do if the algorithm does not converge within this
+ * number of iterations :
+ * <ul>
+ * <li>{@link OnFailure#THROW} throws a {@link NonConvergenceException},</li>
+ * <li>{@link OnFailure#NAN} returns NaN values,</li>
+ * <li>{@link OnFailure#BEST_EFFORT} returns the last computed value.</li>
+ * </ul>
+ * When {@link Metrics} are enabled, the number of iterations of each call is
+ * recorded in the histogram named convergence.iterations.&lt;name&gt; and
+ * failures are counted in convergence.failures.&lt;name&gt;.
+ */
+public final class ConvergencePolicy {
+
+    /**
+     * Behaviour of an iterative algorithm which does not converge.
+     */
+    public static enum OnFailure {
+
+        THROW, NAN, BEST_EFFORT
+    }
+    private final String name;
+    private final int maxIterations;
+    private final double tolerance;
+    private final OnFailure onFailure;
+    private final String iterationsHistogram;
+    private final String failuresCounter;
+
+    /**
+     * Create a new ConvergencePolicy.
+     *
+     * @param name the name of the algorithm controlled by this policy (used
+     * to name metrics)
+     * @param maxIterations the maximum number of iterations
+     * @param tolerance the tolerance used to stop the iteration (algorithms
+     * taking an explicit tolerance parameter use it instead)
+     * @param onFailure what to do if the algorithm does not converge
+     */
+    public ConvergencePolicy(String name, int maxIterations, double tolerance, OnFailure onFailure) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("The maximum number of iterations must be positive");
+        }
+        this.name = name;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.onFailure = onFailure;
+        this.iterationsHistogram = "convergence.iterations." + name;
+        this.failuresCounter = "convergence.failures." + name;
+    }
+
+    /**
+     * Return the name of the algorithm controlled by this policy.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the maximum number of iterations.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Return the tolerance used to stop the iteration.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Return the behaviour of the algorithm if it does not converge.
+     */
+    public OnFailure getOnFailure() {
+        return onFailure;
+    }
+
+    /**
+     * Return a copy of this policy with another maximum number of iterations.
+     *
+     * @param maxIterations the new maximum number of iterations
+     */
+    public ConvergencePolicy withMaxIterations(int maxIterations) {
+        return new ConvergencePolicy(name, maxIterations, tolerance, onFailure);
+    }
+
+    /**
+     * Return a copy of this policy with another tolerance.
+     *
+     * @param tolerance the new tolerance
+     */
+    public ConvergencePolicy withTolerance(double tolerance) {
+        return new ConvergencePolicy(name, maxIterations, tolerance, onFailure);
+    }
+
+    /**
+     * Return a copy of this policy with another behaviour on failure.
+     *
+     * @param onFailure the new behaviour on failure
+     */
+    public ConvergencePolicy withOnFailure(OnFailure onFailure) {
+        return new ConvergencePolicy(name, maxIterations, tolerance, onFailure);
+    }
+
+    /**
+     * Report that the algorithm converged after iterations iterations.
+     *
+     * @param iterations the number of iterations
+     */
+    public void converged(int iterations) {
+        Metrics.record(iterationsHistogram, iterations);
+    }
+
+    /**
+     * Return true if the values which do not converge are replaced by NaN
+     * ({@link OnFailure#NAN}).
+     */
+    public boolean isNaNOnFailure() {
+        return onFailure == OnFailure.NAN;
+    }
+
+    /**
+     * Report that the algorithm did not converge after the maximum number of
+     * iterations. The caller keeps its last values or replaces them by NaN
+     * according to {@link #isNaNOnFailure()}.
+     *
+     * @throws NonConvergenceException if the policy is
+     * {@link OnFailure#THROW}
+     */
+    public void notConverged() throws NonConvergenceException {
+        Metrics.record(iterationsHistogram, maxIterations);
+        Metrics.increment(failuresCounter);
+        if (onFailure == OnFailure.THROW) {
+            throw new NonConvergenceException("The " + name
+                    + " algorithm does not converge after " + maxIterations + " iterations");
+        }
+    }
+
+    /**
+     * Report that the algorithm did not converge after the maximum number of
+     * iterations, and return the value to use according to this policy : NaN
+     * or the last computed value.
+     *
+     * @param lastValue the last value computed by the algorithm
+     * @throws NonConvergenceException if the policy is
+     * {@link OnFailure#THROW}
+     */
+    public double notConverged(double lastValue) throws NonConvergenceException {
+        notConverged();
+        return isNaNOnFailure() ? Double.NaN : lastValue;
+    }
+
+    @Override
+    public String toString() {
+        return "ConvergencePolicy[" + name + ", maxIterations=" + maxIterations
+                + ", tolerance=" + tolerance + ", onFailure=" + onFailure + "]";
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vectorized implementation of {@link GeocentricKernels} based on the
+ * incubating Vector API : points are processed by groups of 4 (AVX2) or 8
+ * (AVX-512) lanes, the remaining points being processed by the scalar
+ * kernels. Lanewise operations are IEEE 754 operations computed in the same
+ * order as in the scalar kernels, so that both give exactly the same
+ * results. Trigonometric functions are computed with the scalar
+ * {@link Math} functions.<p>
+ * This class is compiled for Java 17 and stored in the versioned part of
+ * the multi-release jar. It is loaded by {@link GeocentricKernels#getInstance()}
+ * only.
+ */
+final class VectorGeocentricKernels extends GeocentricKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * Number of points whose sines and cosines are computed before the
+     * vectorized part of the geographic to geocentric conversion.
+     */
+    private static final int CHUNK = 256;
+
+    /**
+     * Create vectorized kernels.
+     *
+     * @throws UnsupportedOperationException if the preferred species of
+     * the platform has a single lane
+     */
+    VectorGeocentricKernels() {
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("No SIMD support for double values");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " x double)";
+    }
+
+    @Override
+    public void translate(double[] x, double[] y, double[] z, int offset, int length,
+            double tx, double ty, double tz) {
+        int end = offset + length;
+        int i = offset;
+        for (int upper = offset + SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, i).add(tx).intoArray(x, i);
+            DoubleVector.fromArray(SPECIES, y, i).add(ty).intoArray(y, i);
+            DoubleVector.fromArray(SPECIES, z, i).add(tz).intoArray(z, i);
+        }
+        super.translate(x, y, z, i, end - i, tx, ty, tz);
+    }
+
+    @Override
+    public void helmert(double[] x, double[] y, double[] z, int offset, int length,
+            double tx, double ty, double tz, double scale,
+            double srx, double sry, double srz) {
+        int end = offset + length;
+        int i = offset;
+        for (int upper = offset + SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector xi = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector yi = DoubleVector.fromArray(SPECIES, y, i);
+            DoubleVector zi = DoubleVector.fromArray(SPECIES, z, i);
+            xi.add(zi.mul(sry)).sub(yi.mul(srz)).mul(scale).add(tx).intoArray(x, i);
+            yi.add(xi.mul(srz)).sub(zi.mul(srx)).mul(scale).add(ty).intoArray(y, i);
+            zi.add(yi.mul(srx)).sub(xi.mul(sry)).mul(scale).add(tz).intoArray(z, i);
+        }
+        super.helmert(x, y, z, i, end - i, tx, ty, tz, scale, srx, sry, srz);
+    }
+
+    @Override
+    public void inverseHelmert(double[] x, double[] y, double[] z, int offset, int length,
+            double tx, double ty, double tz, double invScale,
+            double srx, double sry, double srz) {
+        double det = 1 + srx * srx + sry * sry + srz * srz;
+        double xx = 1 + srx * srx;
+        double xz = sry + srx * srz;
+        double xy = srz - srx * sry;
+        double yy = 1 + sry * sry;
+        double yx = srz + srx * sry;
+        double yz = srx - sry * srz;
+        double zz = 1 + srz * srz;
+        double zy = srx + sry * srz;
+        double zx = sry - srx * srz;
+        int end = offset + length;
+        int i = offset;
+        for (int upper = offset + SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector xi = DoubleVector.fromArray(SPECIES, x, i).sub(tx);
+            DoubleVector yi = DoubleVector.fromArray(SPECIES, y, i).sub(ty);
+            DoubleVector zi = DoubleVector.fromArray(SPECIES, z, i).sub(tz);
+            xi.mul(xx).add(zi.mul(xz)).sub(yi.mul(xy)).mul(invScale).div(det).intoArray(x, i);
+            yi.mul(yy).add(xi.mul(yx)).sub(zi.mul(yz)).mul(invScale).div(det).intoArray(y, i);
+            zi.mul(zz).add(yi.mul(zy)).sub(xi.mul(zx)).mul(invScale).div(det).intoArray(z, i);
+        }
+        super.inverseHelmert(x, y, z, i, end - i, tx, ty, tz, invScale, srx, sry, srz);
+    }
+
+    @Override
+    public void geographic2Geocentric(double[] lat, double[] lon, double[] h,
+            int offset, int length, double a, double e2) {
+        int n = Math.min(length, CHUNK);
+        double[] sinLat = new double[n];
+        double[] cosLat = new double[n];
+        double[] sinLon = new double[n];
+        double[] cosLon = new double[n];
+        double oneMinusE2 = 1 - e2;
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector semiMajorAxis = DoubleVector.broadcast(SPECIES, a);
+        int end = offset + length;
+        int first = offset;
+        while (end - first >= SPECIES.length()) {
+            int count = Math.min(CHUNK, end - first);
+            for (int k = 0; k < count; k++) {
+                sinLat[k] = sin(lat[first + k]);
+                cosLat[k] = cos(lat[first + k]);
+                sinLon[k] = sin(lon[first + k]);
+                cosLon[k] = cos(lon[first + k]);
+            }
+            int k = 0;
+            for (int upper = SPECIES.loopBound(count); k < upper; k += SPECIES.length()) {
+                int i = first + k;
+                DoubleVector height = DoubleVector.fromArray(SPECIES, h, i);
+                VectorMask<Double> nan = height.test(VectorOperators.IS_NAN);
+                height = height.blend(0.0, nan);
+                DoubleVector sl = DoubleVector.fromArray(SPECIES, sinLat, k);
+                DoubleVector cl = DoubleVector.fromArray(SPECIES, cosLat, k);
+                DoubleVector N = semiMajorAxis.div(one.sub(sl.mul(e2).mul(sl)).sqrt());
+                DoubleVector nh = N.add(height);
+                nh.mul(cl).mul(DoubleVector.fromArray(SPECIES, cosLon, k)).intoArray(lat, i);
+                nh.mul(cl).mul(DoubleVector.fromArray(SPECIES, sinLon, k)).intoArray(lon, i);
+                N.mul(oneMinusE2).add(height).mul(sl).intoArray(h, i);
+            }
+            first += k;
+        }
+        super.geographic2Geocentric(lat, lon, h, first, end - first, a, e2);
+    }
+}
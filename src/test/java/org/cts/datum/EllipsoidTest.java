@@ -33,6 +33,9 @@ package org.cts.datum;
 
 import org.cts.CTSTestCase;
 import org.cts.Identifier;
+import org.cts.util.ConvergencePolicy;
+import org.cts.util.NonConvergenceException;
+import org.cts.util.UncheckedNonConvergenceException;
 
 import org.junit.Test;
 
@@ -382,4 +385,28 @@ public class EllipsoidTest extends CTSTestCase {
         assertEquals("latFromArcTest test 2", eTest2.latFromArc(2845220.2110), Math.PI / 7, 1e-11);
         assertEquals("latFromArcTest equator", eTest2.latFromArc(0), 0, 1e-11);
     }
+
+    @Test
+    public void latitudeConvergencePolicyTest() {
+        ConvergencePolicy policy = getLatitudeConvergencePolicy();
+        double iso = eTest2.isometricLatitude(Math.PI / 3);
+        try {
+            setLatitudeConvergencePolicy(policy.withMaxIterations(2)
+                    .withOnFailure(ConvergencePolicy.OnFailure.NAN));
+            assertTrue("latitude not converged", Double.isNaN(eTest2.latitude(iso)));
+            setLatitudeConvergencePolicy(policy.withMaxIterations(2)
+                    .withOnFailure(ConvergencePolicy.OnFailure.BEST_EFFORT));
+            assertEquals("latitude best effort", eTest2.latitude(iso), Math.PI / 3, 1e-3);
+            setLatitudeConvergencePolicy(policy.withMaxIterations(2));
+            try {
+                eTest2.latitude(iso);
+                assertTrue("latitude should not converge", false);
+            } catch (UncheckedNonConvergenceException e) {
+                assertTrue(e.getCause() instanceof NonConvergenceException);
+            }
+        } finally {
+            setLatitudeConvergencePolicy(policy);
+        }
+        assertEquals("latitude converged", eTest2.latitude(iso), Math.PI / 3, 1e-11);
+    }
 }
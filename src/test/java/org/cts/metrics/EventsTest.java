@@ -0,0 +1,248 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+import org.cts.CTSTestCase;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link Events}.
+ */
+public class EventsTest extends CTSTestCase {
+
+    /**
+     * An EventRecorder counting the bulk transformation events.
+     */
+    static class CountingRecorder implements EventRecorder {
+
+        boolean batchEnabled = true;
+        int begun;
+        int committed;
+        int points;
+
+        @Override
+        public Object beginGridLoad() {
+            begun++;
+            return this;
+        }
+
+        @Override
+        public void commitGridLoad(Object event, String file, String format, long bytes) {
+            committed++;
+        }
+
+        @Override
+        public Object beginRegistryParse() {
+            return null;
+        }
+
+        @Override
+        public void commitRegistryParse(Object event, String registry, String code) {
+            committed++;
+        }
+
+        @Override
+        public Object beginCRSCreation() {
+            return null;
+        }
+
+        @Override
+        public void commitCRSCreation(Object event, String code) {
+            committed++;
+        }
+
+        @Override
+        public Object beginOperationCreation() {
+            return null;
+        }
+
+        @Override
+        public void commitOperationCreation(Object event, String source, String target, int operations) {
+            committed++;
+        }
+
+        @Override
+        public boolean isTransformBatchEnabled() {
+            return batchEnabled;
+        }
+
+        @Override
+        public Object beginTransformBatch() {
+            begun++;
+            return this;
+        }
+
+        @Override
+        public void commitTransformBatch(Object event, String operation, int points) {
+            committed++;
+            this.points += points;
+        }
+    }
+
+    @Test
+    public void testDefaultRecorder() {
+        EventRecorder recorder = Events.getRecorder();
+        assertNotNull(recorder);
+        boolean jfr;
+        try {
+            Class.forName("jdk.jfr.Event");
+            jfr = true;
+        } catch (ClassNotFoundException e) {
+            jfr = false;
+        }
+        if (jfr) {
+            assertEquals("org.cts.metrics.jfr.JfrEventRecorder", recorder.getClass().getName());
+        } else {
+            assertSame(NoOpEventRecorder.NOOP, recorder);
+        }
+    }
+
+    @Test
+    public void testNoOpFallback() {
+        EventRecorder previous = Events.getRecorder();
+        try {
+            Events.setRecorder(null);
+            assertSame(NoOpEventRecorder.NOOP, Events.getRecorder());
+            assertNull(Events.beginGridLoad());
+            assertNull(Events.beginRegistryParse());
+            assertNull(Events.beginCRSCreation());
+            assertNull(Events.beginOperationCreation());
+            assertNull(Events.beginTransformBatch());
+            // commits of null events are ignored
+            CountingRecorder counting = new CountingRecorder();
+            Events.setRecorder(counting);
+            Events.commitRegistryParse(null, "epsg", "4326");
+            Events.commitTransformBatch(null, "op", 10);
+            assertEquals(0, counting.committed);
+            Object event = Events.beginGridLoad();
+            assertSame(counting, event);
+            Events.commitGridLoad(event, "file", "NTv2", 100L);
+            assertEquals(1, counting.committed);
+        } finally {
+            Events.setRecorder(previous);
+        }
+    }
+
+    @Test
+    public void testBatchSampling() {
+        EventRecorder previous = Events.getRecorder();
+        int period = Events.getBatchSamplingPeriod();
+        try {
+            CountingRecorder counting = new CountingRecorder();
+            Events.setRecorder(counting);
+            Events.setBatchSamplingPeriod(0);
+            assertEquals(1, Events.getBatchSamplingPeriod());
+            for (int i = 0; i < 5; i++) {
+                Events.commitTransformBatch(Events.beginTransformBatch(), "op", 2);
+            }
+            assertEquals(5, counting.begun);
+            assertEquals(10, counting.points);
+
+            Events.setBatchSamplingPeriod(4);
+            // align the batch counter of this thread on the sampling period
+            while (Events.beginTransformBatch() == null) {
+            }
+            for (int i = 0; i < 3; i++) {
+                assertNull(Events.beginTransformBatch());
+            }
+            counting = new CountingRecorder();
+            Events.setRecorder(counting);
+            int sampled = 0;
+            for (int i = 0; i < 40; i++) {
+                Object event = Events.beginTransformBatch();
+                if (event != null) {
+                    sampled++;
+                }
+                Events.commitTransformBatch(event, "op", 1);
+            }
+            assertEquals(10, sampled);
+            assertEquals(10, counting.committed);
+            assertEquals(10, counting.points);
+
+            // batches are not counted while the events are disabled
+            counting.batchEnabled = false;
+            for (int i = 0; i < 3; i++) {
+                assertNull(Events.beginTransformBatch());
+            }
+            counting.batchEnabled = true;
+            assertNotNull(Events.beginTransformBatch());
+            assertNull(Events.beginTransformBatch());
+        } finally {
+            Events.setRecorder(previous);
+            Events.setBatchSamplingPeriod(period);
+        }
+    }
+
+    @Test
+    public void testBatchSamplingPerThread() throws InterruptedException {
+        EventRecorder previous = Events.getRecorder();
+        int period = Events.getBatchSamplingPeriod();
+        try {
+            final CountingRecorder counting = new CountingRecorder();
+            Events.setRecorder(counting);
+            Events.setBatchSamplingPeriod(8);
+            final int[] sampled = new int[4];
+            Thread[] threads = new Thread[sampled.length];
+            for (int t = 0; t < threads.length; t++) {
+                final int index = t;
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 80; i++) {
+                            if (Events.beginTransformBatch() != null) {
+                                sampled[index]++;
+                            }
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (int s : sampled) {
+                assertEquals(10, s);
+            }
+            assertTrue(counting.begun > 0);
+        } finally {
+            Events.setRecorder(previous);
+            Events.setBatchSamplingPeriod(period);
+        }
+    }
+}
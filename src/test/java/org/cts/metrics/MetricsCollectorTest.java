@@ -0,0 +1,188 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.metrics;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.cts.CTSTestCase;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of {@link LatencyHistogram}, {@link HistogramSnapshot} and
+ * {@link DefaultMetricsCollector}.
+ */
+public class MetricsCollectorTest extends CTSTestCase {
+
+    @Test
+    public void testBucketBoundaries() {
+        assertEquals(0, LatencyHistogram.bucketIndex(-5L));
+        assertEquals(0, LatencyHistogram.bucketIndex(0L));
+        assertEquals(1, LatencyHistogram.bucketIndex(1L));
+        assertEquals(2, LatencyHistogram.bucketIndex(2L));
+        assertEquals(2, LatencyHistogram.bucketIndex(3L));
+        assertEquals(3, LatencyHistogram.bucketIndex(4L));
+        assertEquals(10, LatencyHistogram.bucketIndex(1023L));
+        assertEquals(11, LatencyHistogram.bucketIndex(1024L));
+        assertEquals(63, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testHistogramSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        HistogramSnapshot empty = histogram.snapshot();
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getMax());
+        assertEquals(0, empty.getPercentile(50));
+        assertEquals(0.0, empty.getMean(), 0.0);
+
+        for (long v = 1; v <= 100; v++) {
+            histogram.record(v);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(5050, snapshot.getSum());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(50.5, snapshot.getMean(), 1E-12);
+        long[] buckets = snapshot.getBuckets();
+        assertEquals(LatencyHistogram.BUCKETS, buckets.length);
+        // 1 | 2-3 | 4-7 | 8-15 | 16-31 | 32-63 | 64-100
+        assertArrayEquals(new long[]{0, 1, 2, 4, 8, 16, 32, 37},
+                java.util.Arrays.copyOf(buckets, 8));
+        // the 50th value (50) is in the bucket [32, 63]
+        assertEquals(63, snapshot.getPercentile(50));
+        // upper bounds are limited by the maximum
+        assertEquals(100, snapshot.getPercentile(99));
+        assertEquals(100, snapshot.getPercentile(100));
+        assertEquals(1, snapshot.getPercentile(0));
+
+        // a snapshot is not affected by later records nor by a reset
+        histogram.record(1000);
+        histogram.reset();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void testSnapshotMerge() {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        h1.record(3);
+        h1.record(5);
+        h2.record(6);
+        h2.record(2000);
+        HistogramSnapshot s1 = h1.snapshot();
+        HistogramSnapshot s2 = h2.snapshot();
+        HistogramSnapshot merged = s1.merge(s2);
+        assertEquals(4, merged.getCount());
+        assertEquals(2014, merged.getSum());
+        assertEquals(2000, merged.getMax());
+        long[] buckets = merged.getBuckets();
+        assertEquals(1, buckets[2]);
+        assertEquals(2, buckets[3]);
+        assertEquals(1, buckets[11]);
+        assertEquals(2000, merged.getPercentile(100));
+        assertEquals(7, merged.getPercentile(75));
+        // merge is symmetric and does not modify its operands
+        assertArrayEquals(buckets, s2.merge(s1).getBuckets());
+        assertEquals(2, s1.getCount());
+        assertEquals(2, s2.getCount());
+        // merging with an empty snapshot
+        HistogramSnapshot empty = new LatencyHistogram().snapshot();
+        assertSame(s1, s1.merge(empty));
+        assertSame(s2, empty.merge(s2));
+    }
+
+    @Test
+    public void testDefaultMetricsCollector() {
+        DefaultMetricsCollector collector = new DefaultMetricsCollector();
+        collector.increment("a", 2);
+        collector.increment("a", 3);
+        collector.record("t", 10);
+        MetricsSnapshot snapshot = collector.snapshot();
+        assertEquals(5, snapshot.getCounter("a"));
+        assertEquals(0, snapshot.getCounter("unknown"));
+        assertEquals(1, snapshot.getHistogram("t").getCount());
+        assertNull(snapshot.getHistogram("unknown"));
+        collector.reset();
+        assertEquals(5, snapshot.getCounter("a"));
+        assertEquals(0, collector.snapshot().getCounter("a"));
+        assertEquals(0, collector.snapshot().getHistogram("t").getCount());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final DefaultMetricsCollector collector = new DefaultMetricsCollector();
+        final int threads = 8;
+        final int records = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final long value = t + 1;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < records; i++) {
+                        collector.increment("counter", 1);
+                        collector.record("histogram", value);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        MetricsSnapshot snapshot = collector.snapshot();
+        assertEquals(threads * records, snapshot.getCounter("counter"));
+        HistogramSnapshot histogram = snapshot.getHistogram("histogram");
+        assertEquals(threads * records, histogram.getCount());
+        assertEquals(records * (threads * (threads + 1L) / 2), histogram.getSum());
+        assertEquals(threads, histogram.getMax());
+        long total = 0;
+        for (long b : histogram.getBuckets()) {
+            total += b;
+        }
+        assertEquals(threads * records, total);
+    }
+}
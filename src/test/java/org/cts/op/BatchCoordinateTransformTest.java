@@ -33,13 +33,42 @@ package org.cts.op;
 
 import java.io.FileReader;
 import java.io.LineNumberReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoublePredicate;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
 
+import org.cts.CoordinateDimensionException;
+import org.cts.IllegalCoordinateException;
+import org.cts.Parameter;
 import org.cts.crs.CoordinateReferenceSystem;
 import org.cts.crs.GeodeticCRS;
+import org.cts.datum.Ellipsoid;
+import org.cts.op.projection.LambertAzimuthalEqualArea;
+import org.cts.op.projection.LambertConicConformal1SP;
+import org.cts.op.projection.Mercator1SP;
+import org.cts.op.projection.Projection;
+import org.cts.op.projection.UniversalTransverseMercator;
+import org.cts.op.projection.UniversalTransverseMercatorAuto;
+import org.cts.units.Measure;
+import org.cts.units.Unit;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * This class is used to test several transformations.
@@ -93,6 +122,603 @@ public class BatchCoordinateTransformTest extends BaseCoordinateTransformTest {
         lineReader.close();
     }
 
+    /**
+     * Test that transforming coordinates stored in columns gives exactly the
+     * same results as transforming them point by point, for every operation
+     * found between the CRS of the test file.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testColumnTransformFromFile() throws Exception {
+        String filePath = BatchCoordinateTransformTest.class.getResource("crstransform.csv").toURI().getPath();
+        LineNumberReader lineReader = new LineNumberReader(new FileReader(filePath));
+        lineReader.readLine();
+        String line;
+        while ((line = lineReader.readLine()) != null) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            String[] values = line.split(";");
+            GeodeticCRS inputCRS = (GeodeticCRS) cRSFactory.getCRS(values[1]);
+            GeodeticCRS outputCRS = (GeodeticCRS) cRSFactory.getCRS(values[4]);
+            double x = parseNumber(values[2]);
+            double y = parseNumber(values[3]);
+            for (CoordinateOperation op : CoordinateOperationFactory.createCoordinateOperations(inputCRS, outputCRS)) {
+                double[] expected;
+                try {
+                    expected = op.transform(new double[]{x, y, 0});
+                } catch (IllegalCoordinateException e) {
+                    continue;
+                }
+                // the point is stored between two other values which must
+                // not be modified
+                double[][] columns = op.transform(new double[]{-1, x, -1},
+                        new double[]{-1, y, -1}, new double[]{-1, 0, -1}, 1, 1);
+                assertEquals(values[0] + " " + op, expected.length, columns.length);
+                for (int d = 0; d < expected.length; d++) {
+                    assertEquals(values[0] + " " + op, expected[d], columns[d][1], 0.0);
+                    assertEquals(values[0] + " " + op, d < 3 ? -1 : 0, columns[d][0], 0.0);
+                }
+            }
+        }
+        lineReader.close();
+    }
+
+    /**
+     * Test the transformation of coordinates stored in a direct DoubleBuffer
+     * and in a FloatBuffer, starting after the first point of the buffers.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBufferTransform() throws Exception {
+        CoordinateOperation op = CoordinateOperationFactory.createCoordinateOperations(
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:27572"),
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:2154")).get(0);
+        int n = 1000;
+        DoubleBuffer doubles = ByteBuffer.allocateDirect(2 * n * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        FloatBuffer floats = FloatBuffer.allocate(2 * n);
+        for (int i = 0; i < n; i++) {
+            doubles.put(282331 + 100 * i).put(2273699.7 + 50 * i);
+            floats.put(282331 + 100 * i).put(2273699.7f + 50 * i);
+        }
+        doubles.position(2);
+        op.transform(doubles, 2);
+        assertEquals(2, doubles.position());
+        assertEquals(282331, doubles.get(0), 0.0);
+        for (int i = 1; i < n; i++) {
+            double[] expected = op.transform(new double[]{282331 + 100 * i, 2273699.7 + 50 * i, 0});
+            assertEquals(expected[0], doubles.get(2 * i), 0.0);
+            assertEquals(expected[1], doubles.get(2 * i + 1), 0.0);
+        }
+        floats.position(0);
+        float[] input = new float[2 * n];
+        floats.get(input).rewind();
+        op.transform(floats, 2);
+        for (int i = 0; i < n; i++) {
+            double[] expected = op.transform(new double[]{input[2 * i], input[2 * i + 1], 0});
+            assertEquals((float) expected[0], floats.get(2 * i), 0f);
+            assertEquals((float) expected[1], floats.get(2 * i + 1), 0f);
+        }
+    }
+
+    /**
+     * Test that a point which cannot be transformed in the second block of a
+     * buffer leaves this block and the following ones unchanged, and the
+     * position of the buffer unchanged.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBufferTransformFailure() throws Exception {
+        CoordinateOperation op = dimensionChange(2);
+        int n = 3 * BufferTransforms.BLOCK_SIZE;
+        DoubleBuffer doubles = DoubleBuffer.allocate(2 * n + 2);
+        for (int i = 0; i < n + 1; i++) {
+            doubles.put(i == BufferTransforms.BLOCK_SIZE + 10 ? -1 : i).put(1);
+        }
+        doubles.position(2);
+        try {
+            op.transform(doubles, 2);
+            fail("The negative first ordinate cannot be transformed");
+        } catch (IllegalCoordinateException e) {
+            // expected
+        }
+        assertEquals(2, doubles.position());
+        assertEquals(2 * n + 2, doubles.limit());
+        assertEquals(0.0, doubles.get(0), 0.0);
+        for (int i = 1; i < n + 1; i++) {
+            boolean written = i <= BufferTransforms.BLOCK_SIZE;
+            assertEquals(written ? 2.0 : 1.0, doubles.get(2 * i + 1), 0.0);
+        }
+    }
+
+    /**
+     * Test the lazy transformation of streams of points and of streams of
+     * interleaved coordinates, sequential and parallel.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStreamTransform() throws Exception {
+        CoordinateOperation op = CoordinateOperationFactory.createCoordinateOperations(
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:27572"),
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:2154")).get(0);
+        int n = 5000;
+        double[][] expected = new double[n][];
+        double[] packed = new double[2 * n];
+        for (int i = 0; i < n; i++) {
+            packed[2 * i] = 282331 + 100 * i;
+            packed[2 * i + 1] = 2273699.7 + 50 * i;
+            expected[i] = op.transform(new double[]{packed[2 * i], packed[2 * i + 1], 0});
+        }
+        packed[2 * 10] = Double.NaN;
+        for (boolean parallel : new boolean[]{false, true}) {
+            List<double[]> points = new ArrayList<double[]>();
+            for (int i = 0; i < n; i++) {
+                points.add(new double[]{packed[2 * i], packed[2 * i + 1], 0});
+            }
+            Stream<double[]> stream = parallel ? points.parallelStream() : points.stream();
+            List<double[]> result = op.transformStream(stream).collect(Collectors.<double[]>toList());
+            assertEquals(n, result.size());
+            DoubleStream values = DoubleStream.of(packed);
+            double[] transformed = op.transformStream(parallel ? values.parallel() : values, 2).toArray();
+            assertEquals(2 * n, transformed.length);
+            for (int i = 0; i < n; i++) {
+                if (i == 10) {
+                    assertTrue(Double.isNaN(result.get(i)[0]) && Double.isNaN(transformed[2 * i]));
+                    continue;
+                }
+                assertEquals(expected[i][0], result.get(i)[0], 0.0);
+                assertEquals(expected[i][1], result.get(i)[1], 0.0);
+                assertEquals(expected[i][0], transformed[2 * i], 0.0);
+                assertEquals(expected[i][1], transformed[2 * i + 1], 0.0);
+            }
+        }
+    }
+
+    /**
+     * Test that streams of interleaved coordinates are split on point
+     * boundaries, where the source splits.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPackedStreamSplit() throws Exception {
+        CoordinateOperation op = CoordinateOperationFactory.createCoordinateOperations(
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:27572"),
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:2154")).get(0);
+        int n = 3001;
+        double[] packed = new double[3 * n];
+        for (int i = 0; i < n; i++) {
+            packed[3 * i] = 282331 + 100 * i;
+            packed[3 * i + 1] = 2273699.7 + 50 * i;
+            packed[3 * i + 2] = i;
+        }
+        double[] expected = op.transformStream(DoubleStream.of(packed), 3).toArray();
+        // 3 * 3001 values : the first split of the source ends inside a point
+        Spliterator.OfDouble suffix = op.transformStream(DoubleStream.of(packed), 3).spliterator();
+        Spliterator.OfDouble prefix = suffix.trySplit();
+        assertTrue(prefix != null);
+        assertEquals(0, prefix.estimateSize() % 3);
+        assertEquals(3 * n, prefix.estimateSize() + suffix.estimateSize());
+        final List<Double> values = new ArrayList<Double>();
+        DoubleConsumer collect = new DoubleConsumer() {
+            @Override
+            public void accept(double value) {
+                values.add(value);
+            }
+        };
+        prefix.forEachRemaining(collect);
+        suffix.forEachRemaining(collect);
+        assertEquals(expected.length, values.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], values.get(i), 0.0);
+        }
+        assertArrayEquals(expected, op.transformStream(DoubleStream.of(packed).parallel(), 3).toArray(), 0.0);
+        // a filtered source does not know the size of its splits
+        double[] filtered = op.transformStream(DoubleStream.of(packed).parallel()
+                .filter(new DoublePredicate() {
+                    @Override
+                    public boolean test(double value) {
+                        return true;
+                    }
+                }), 3).toArray();
+        assertArrayEquals(expected, filtered, 0.0);
+    }
+
+    @Test
+    public void testLatticeTransform() throws Exception {
+        CoordinateOperation mercator = CoordinateOperationFactory.createCoordinateOperations(
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:4326"),
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:3395")).get(0);
+        CoordinateOperation lambert93 = CoordinateOperationFactory.createCoordinateOperations(
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:4326"),
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:2154")).get(0);
+        assertTrue(LatticeTransforms.isSeparable(mercator));
+        assertTrue(LatticeTransforms.isSeparable(mercator.inverse()));
+        assertTrue(!LatticeTransforms.isSeparable(lambert93));
+        for (CoordinateOperation op : new CoordinateOperation[]{mercator, lambert93}) {
+            int count0 = 40;
+            int count1 = 30;
+            double[][] lattice = op.transformLattice(-2.0, 0.25, count0, 43.0, 0.2, count1);
+            for (int i0 = 0; i0 < count0; i0++) {
+                for (int i1 = 0; i1 < count1; i1++) {
+                    double[] expected = op.transform(new double[]{-2.0 + i0 * 0.25, 43.0 + i1 * 0.2, 0});
+                    assertEquals(expected[0], lattice[0][i0 * count1 + i1], 0.0);
+                    assertEquals(expected[1], lattice[1][i0 * count1 + i1], 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWarpMap() throws Exception {
+        final WarpMapGenerator generator = new WarpMapGenerator(
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:2154"),
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:4326"), 1E-5, 1E-5, 0.01);
+        WarpMapGenerator exact = new WarpMapGenerator(generator.getOperation(), 1.0, 1.0, 0.0, 1);
+        final int width = 256;
+        final int height = 200;
+        double[][] expected = exact.compute(600000, 6500000, 602560, 6502000, width, height);
+        double[][] planes = generator.compute(600000, 6500000, 602560, 6502000, width, height);
+        for (int i = 0; i < width * height; i++) {
+            assertEquals(expected[0][i], planes[0][i], 1E-7);
+            assertEquals(expected[1][i], planes[1][i], 1E-7);
+        }
+        double[] center = generator.getOperation().transform(new double[]{600105, 6501965, 0});
+        assertEquals(center[0], expected[0][3 * width + 10], 0.0);
+        assertEquals(center[1], expected[1][3 * width + 10], 0.0);
+        // tiles computed concurrently by the same generator
+        final double[][][] tiles = new double[4][][];
+        Thread[] threads = new Thread[tiles.length];
+        for (int t = 0; t < tiles.length; t++) {
+            final int tile = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    tiles[tile] = generator.compute(600000 + 2560 * tile, 6500000,
+                            602560 + 2560 * tile, 6502000, width, height);
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < tiles.length; t++) {
+            threads[t].join();
+            double[][] tile = generator.compute(600000 + 2560 * t, 6500000,
+                    602560 + 2560 * t, 6502000, width, height);
+            for (int i = 0; i < width * height; i++) {
+                assertEquals(tile[0][i], tiles[t][0][i], 0.0);
+                assertEquals(tile[1][i], tiles[t][1][i], 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testWarpMapTolerance() throws Exception {
+        CoordinateOperation op = CoordinateOperationFactory.createCoordinateOperations(
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:2154"),
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:4326")).get(0);
+        int width = 256;
+        int height = 200;
+        double[][] expected = new WarpMapGenerator(op, 1.0, 1.0, 0.0, 1).compute(
+                600000, 6500000, 602560, 6502000, width, height);
+        // the tolerance is converted along each axis with its pixel size
+        WarpMapGenerator generator = new WarpMapGenerator(op, 1E-3, 1E-5, 0.01, 32);
+        assertEquals(0.01, generator.getMaxError(), 0.0);
+        double[][] planes = generator.compute(600000, 6500000, 602560, 6502000, width, height);
+        for (int i = 0; i < width * height; i++) {
+            assertEquals(expected[0][i], planes[0][i], 1E-5);
+            assertEquals(expected[1][i], planes[1][i], 1E-7);
+        }
+        // float planes are computed by bands with the same results
+        float[] xs = new float[width * height];
+        float[] ys = new float[width * height];
+        generator.compute(600000, 6500000, 602560, 6502000, width, height, xs, ys);
+        for (int i = 0; i < width * height; i++) {
+            assertEquals((float) planes[0][i], xs[i], 0.0f);
+            assertEquals((float) planes[1][i], ys[i], 0.0f);
+        }
+        try {
+            generator.compute(600000, 6500000, 602560, 6502000, width, height,
+                    new float[width * height - 1], ys);
+            fail("Planes are too small");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new WarpMapGenerator(op, 0.0, 1E-5, 0.01, 16);
+            fail("Invalid source pixel size");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testProjectionDistortion() throws Exception {
+        Projection lambert93 = LambertConicConformal1SP.LAMBERT93;
+        double lat0 = Math.toRadians(46.5);
+        assertEquals(0.9990510286374, lambert93.getPointScaleFactor(lat0, Math.toRadians(3)), 1E-12);
+        assertEquals(0.0, lambert93.getMeridianConvergence(lat0, Math.toRadians(3)), 1E-15);
+        assertEquals(Math.sin(lat0) * Math.toRadians(5), lambert93.getMeridianConvergence(
+                Math.toRadians(43), Math.toRadians(8)), 1E-15);
+        Map<String, Measure> parameters = new HashMap<String, Measure>();
+        parameters.put(Parameter.CENTRAL_MERIDIAN, new Measure(3, Unit.DEGREE));
+        parameters.put(Parameter.FALSE_NORTHING, new Measure(0, Unit.METER));
+        Projection utm31 = new UniversalTransverseMercator(Ellipsoid.GRS80, parameters);
+        assertEquals(0.9996, utm31.getPointScaleFactor(Math.toRadians(45), Math.toRadians(3)), 1E-12);
+        int n = 100;
+        for (Projection projection : new Projection[]{lambert93, utm31}) {
+            double[][] columns = new double[2][n];
+            for (int i = 0; i < n; i++) {
+                columns[0][i] = Math.toRadians(41 + 0.1 * i);
+                columns[1][i] = Math.toRadians(-1 + 0.09 * i);
+            }
+            double[][] geographic = {columns[0].clone(), columns[1].clone()};
+            double[][] derivatives = new double[4][n];
+            projection.transform(columns, 0, n, derivatives);
+            double h = 1E-6;
+            for (int i = 0; i < n; i++) {
+                double lat = geographic[0][i];
+                double lon = geographic[1][i];
+                double[] expected = projection.transform(new double[]{lat, lon});
+                assertEquals(expected[0], columns[0][i], 0.0);
+                assertEquals(expected[1], columns[1][i], 0.0);
+                double[] p1 = projection.transform(new double[]{lat + h, lon});
+                double[] p2 = projection.transform(new double[]{lat - h, lon});
+                double[] p3 = projection.transform(new double[]{lat, lon + h});
+                double[] p4 = projection.transform(new double[]{lat, lon - h});
+                assertEquals((p1[0] - p2[0]) / (2 * h), derivatives[0][i], 1E-2);
+                assertEquals((p3[0] - p4[0]) / (2 * h), derivatives[1][i], 1E-2);
+                assertEquals((p1[1] - p2[1]) / (2 * h), derivatives[2][i], 1E-2);
+                assertEquals((p3[1] - p4[1]) / (2 * h), derivatives[3][i], 1E-2);
+            }
+        }
+    }
+
+    /**
+     * Test that the inverse projections transform projected points into
+     * geographic points and return the derivatives, scale factors and
+     * convergences of their direct projection at these geographic points.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInverseProjectionDistortion() throws Exception {
+        Map<String, Measure> parameters = Projection.getDefaultParameters();
+        parameters.put(Parameter.CENTRAL_MERIDIAN, new Measure(3, Unit.DEGREE));
+        parameters.put(Parameter.LATITUDE_OF_ORIGIN, new Measure(46, Unit.DEGREE));
+        Projection mercator = new Mercator1SP(Ellipsoid.WGS84, parameters);
+        Projection utm31 = new UniversalTransverseMercator(Ellipsoid.GRS80, parameters);
+        Projection laea = new LambertAzimuthalEqualArea(Ellipsoid.GRS80, parameters);
+        int n = 50;
+        for (Projection projection : new Projection[]{LambertConicConformal1SP.LAMBERT93, mercator, utm31, laea}) {
+            Projection inverse = (Projection) projection.inverse();
+            double[][] geographic = new double[2][n];
+            for (int i = 0; i < n; i++) {
+                geographic[0][i] = Math.toRadians(41 + 0.2 * i);
+                geographic[1][i] = Math.toRadians(-1 + 0.18 * i);
+            }
+            double[][] projected = projection.transform(
+                    new double[][]{geographic[0].clone(), geographic[1].clone()}, 0, n);
+            double[][] columns = {projected[0].clone(), projected[1].clone()};
+            double[][] derivatives = new double[4][n];
+            inverse.transform(columns, 0, n, derivatives);
+            double[][] expected = new double[4][n];
+            projection.transform(new double[][]{columns[0].clone(), columns[1].clone()}, 0, n, expected);
+            double[] k = new double[n];
+            double[] gamma = new double[n];
+            double[][] columns2 = {projected[0].clone(), projected[1].clone()};
+            inverse.transform(columns2, 0, n, k, gamma);
+            for (int i = 0; i < n; i++) {
+                assertEquals(geographic[0][i], columns[0][i], 1E-9);
+                assertEquals(geographic[1][i], columns[1][i], 1E-9);
+                assertEquals(columns[0][i], columns2[0][i], 0.0);
+                for (int d = 0; d < 4; d++) {
+                    assertEquals(expected[d][i], derivatives[d][i], 0.0);
+                }
+                assertEquals(projection.getPointScaleFactor(columns[0][i], columns[1][i]), k[i], 0.0);
+                assertEquals(projection.getMeridianConvergence(columns[0][i], columns[1][i]), gamma[i], 0.0);
+                assertEquals(k[i], inverse.getPointScaleFactor(columns[0][i], columns[1][i]), 0.0);
+            }
+        }
+        // above 85 degrees, Mercator projects the points of latitude 85 degrees
+        assertEquals(mercator.getPointScaleFactor(Math.toRadians(85), 0.1),
+                mercator.getPointScaleFactor(Math.toRadians(87), 0.1), 0.0);
+    }
+
+    @Test
+    public void testUTMAutoZoneTransform() throws Exception {
+        UniversalTransverseMercatorAuto utm = new UniversalTransverseMercatorAuto(
+                Ellipsoid.WGS84, new HashMap<String, Measure>());
+        int n = 1000;
+        double[][] columns = new double[2][n + 1];
+        for (int i = 0; i <= n; i++) {
+            columns[0][i] = Math.toRadians(-80 + 0.16 * i);
+            columns[1][i] = Math.toRadians(-180 + 0.359 * ((i * 37) % n));
+        }
+        double[][] geographic = {columns[0].clone(), columns[1].clone()};
+        int[] zones = new int[n + 1];
+        utm.transform(columns, 1, n, zones);
+        assertEquals(geographic[0][0], columns[0][0], 0.0);
+        for (int i = 1; i <= n; i++) {
+            double[] expected = utm.transform(new double[]{geographic[0][i], geographic[1][i]});
+            assertEquals(expected[0], columns[0][i], 1E-6);
+            assertEquals(expected[1], columns[1][i], 1E-6);
+            int zone = utm.getZone(new double[]{geographic[0][i], geographic[1][i]});
+            assertEquals(geographic[0][i] >= 0 ? zone : -zone, zones[i]);
+        }
+        UniversalTransverseMercatorAuto inverse = (UniversalTransverseMercatorAuto) utm.inverse();
+        inverse.transform(columns, 1, n, zones);
+        for (int i = 1; i <= n; i++) {
+            assertEquals(geographic[0][i], columns[0][i], 1E-11);
+            assertEquals(geographic[1][i], columns[1][i], 1E-11);
+        }
+    }
+
+    /**
+     * Operation changing the dimension of the points and failing for
+     * negative first ordinates.
+     */
+    private static CoordinateOperation dimensionChange(final int dim) {
+        return new AbstractCoordinateOperation(new org.cts.Identifier(CoordinateOperation.class, "to " + dim + "D")) {
+            @Override
+            public double[] transform(double[] coord) throws IllegalCoordinateException {
+                if (coord[0] < 0) {
+                    throw new IllegalCoordinateException("negative first ordinate", coord);
+                }
+                double[] result = new double[dim];
+                for (int d = 0; d < dim; d++) {
+                    result[d] = d < coord.length ? coord[d] * 2 : coord[0] + coord[1];
+                }
+                return result;
+            }
+        };
+    }
+
+    @Test
+    public void testColumnTransformWithStatusChangingDimension() throws Exception {
+        // 2D to 3D, the third point fails
+        double[][] columns = {{1, 2, -3, 4, 5}, {10, 20, 30, 40, 50}};
+        byte[] status = new byte[5];
+        double[][] output = dimensionChange(3).transform(columns, 1, 3, status);
+        assertEquals(3, output.length);
+        assertEquals(TransformStatus.OK, status[1]);
+        assertEquals(TransformStatus.ILLEGAL_COORDINATE, status[2]);
+        assertEquals(TransformStatus.OK, status[3]);
+        assertEquals(4.0, output[0][1], 0.0);
+        assertEquals(40.0, output[1][1], 0.0);
+        assertEquals(22.0, output[2][1], 0.0);
+        assertEquals(8.0, output[0][3], 0.0);
+        assertEquals(80.0, output[1][3], 0.0);
+        assertEquals(44.0, output[2][3], 0.0);
+        for (int d = 0; d < 3; d++) {
+            assertTrue(Double.isNaN(output[d][2]));
+        }
+        // points out of the range are not modified
+        assertEquals(1.0, output[0][0], 0.0);
+        assertEquals(5.0, output[0][4], 0.0);
+
+        // 3D to 2D, the first point fails
+        columns = new double[][]{{-1, 2, 3}, {10, 20, 30}, {100, 200, 300}};
+        status = new byte[3];
+        output = dimensionChange(2).transform(columns, 0, 3, status);
+        assertEquals(2, output.length);
+        assertEquals(TransformStatus.ILLEGAL_COORDINATE, status[0]);
+        assertTrue(Double.isNaN(output[0][0]));
+        assertTrue(Double.isNaN(output[1][0]));
+        assertEquals(4.0, output[0][1], 0.0);
+        assertEquals(60.0, output[1][2], 0.0);
+
+        // the per point bulk transformation keeps the dimension of the first point
+        columns = new double[][]{{1, 2}, {10, 20}};
+        output = ColumnTransforms.transformByPoint(dimensionChange(3), columns, 0, 2);
+        assertEquals(3, output.length);
+        assertEquals(11.0, output[2][0], 0.0);
+        assertEquals(22.0, output[2][1], 0.0);
+    }
+
+    @Test
+    public void testColumnTransformWithStatusAfterColumnarDimensionError() throws Exception {
+        // the columnar transform fails with a dimension error (like a grid
+        // which cannot be read) but points can be transformed one by one
+        CoordinateOperation op = new AbstractCoordinateOperation(
+                new org.cts.Identifier(CoordinateOperation.class, "columnar failure")) {
+            @Override
+            public double[] transform(double[] coord) throws IllegalCoordinateException {
+                if (coord[0] < 0) {
+                    throw new CoordinateDimensionException(coord, 3);
+                }
+                coord[0] *= 2;
+                return coord;
+            }
+
+            @Override
+            public double[][] transform(double[][] columns, int offset, int length)
+                    throws IllegalCoordinateException {
+                throw new CoordinateDimensionException("grid not available");
+            }
+        };
+        double[][] columns = {{1, -2, 3}, {10, 20, 30}};
+        byte[] status = new byte[3];
+        double[][] output = op.transform(columns, 0, 3, status);
+        assertEquals(TransformStatus.OK, status[0]);
+        assertEquals(TransformStatus.DIMENSION_ERROR, status[1]);
+        assertEquals(TransformStatus.OK, status[2]);
+        assertEquals(2.0, output[0][0], 0.0);
+        assertTrue(Double.isNaN(output[0][1]));
+        assertEquals(6.0, output[0][2], 0.0);
+
+        // exceptions which are not transformation failures are propagated
+        CoordinateOperation buggy = new AbstractCoordinateOperation(
+                new org.cts.Identifier(CoordinateOperation.class, "buggy")) {
+            @Override
+            public double[] transform(double[] coord) {
+                throw new IllegalStateException("bug");
+            }
+        };
+        try {
+            buggy.transform(columns, 0, 3, status);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFallbackWithChangingDimension() throws Exception {
+        CoordinateOperation identity = new AbstractCoordinateOperation(
+                new org.cts.Identifier(CoordinateOperation.class, "identity")) {
+            @Override
+            public double[] transform(double[] coord) throws IllegalCoordinateException {
+                return coord;
+            }
+        };
+        FallbackCoordinateOperation op = new FallbackCoordinateOperation(
+                new org.cts.Identifier(CoordinateOperation.class, "fallback"), dimensionChange(3), identity);
+        // the primary operation gives the dimension, the point transformed by
+        // the 2D fallback operation is a dimension error
+        double[][] columns = {{1, -2, 3}, {10, 20, 30}};
+        byte[] status = new byte[3];
+        double[][] output = op.transform(columns, 0, 3, status);
+        assertEquals(3, output.length);
+        assertEquals(TransformStatus.OK, status[0]);
+        assertEquals(TransformStatus.DIMENSION_ERROR, status[1]);
+        assertEquals(TransformStatus.OK, status[2]);
+        assertEquals(33.0, output[2][2], 0.0);
+        for (int d = 0; d < 3; d++) {
+            assertTrue(Double.isNaN(output[d][1]));
+        }
+        // no point transformed by the primary operation : the fallback
+        // operation gives the dimension
+        columns = new double[][]{{-1, -2}, {10, 20}};
+        status = new byte[2];
+        output = op.transform(columns, 0, 2, status);
+        assertEquals(2, output.length);
+        assertEquals(TransformStatus.OK, status[0]);
+        assertEquals(TransformStatus.OK, status[1]);
+        assertEquals(-2.0, output[0][1], 0.0);
+        assertEquals(20.0, output[1][1], 0.0);
+
+        // runtime exceptions of the primary operation are not a fallback case
+        CoordinateOperation failing = new AbstractCoordinateOperation(
+                new org.cts.Identifier(CoordinateOperation.class, "failing")) {
+            @Override
+            public double[] transform(double[] coord) throws IllegalCoordinateException {
+                throw new IllegalStateException("bug");
+            }
+        };
+        op = new FallbackCoordinateOperation(
+                new org.cts.Identifier(CoordinateOperation.class, "fallback"), failing, identity);
+        try {
+            op.transform(new double[]{1, 2});
+            fail("The runtime exception of the primary operation is not propagated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
     /**
      * Parses a number from a String. If the string is empty returns
      * {@link java.lang.Double#NaN}.
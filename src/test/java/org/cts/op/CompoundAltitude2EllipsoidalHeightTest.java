@@ -0,0 +1,214 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.Random;
+
+import org.cts.Identifier;
+import org.cts.crs.GeodeticCRS;
+import org.cts.datum.GeodeticDatum;
+import org.cts.datum.VerticalDatum;
+import org.cts.op.transformation.Altitude2EllipsoidalHeight;
+import org.cts.op.transformation.CompoundAltitude2EllipsoidalHeight;
+import org.cts.units.Unit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare {@link CompoundAltitude2EllipsoidalHeight} with the sequence of
+ * {@link MemorizeCoordinate} and {@link IterativeTransformation} it replaces.
+ */
+public class CompoundAltitude2EllipsoidalHeightTest extends BaseCoordinateTransformTest {
+
+    private static final double DEG = Math.PI / 180;
+
+    /**
+     * Build the sequence used by CompoundCRS before
+     * CompoundAltitude2EllipsoidalHeight to transform altitudes into
+     * ellipsoidal heights.
+     */
+    private static CoordinateOperation legacyAltitude2Height(Altitude2EllipsoidalHeight transfo,
+            CoordinateOperation toGridDatum, CoordinateOperation fromGridDatum) throws Exception {
+        CoordinateOperation rad2deg = UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER);
+        CoordinateOperation deg2rad = UnitConversion.createUnitConverter(Unit.DEGREE, Unit.RADIAN, Unit.METER, Unit.METER);
+        CoordinateOperationSequence seq = new CoordinateOperationSequence(new Identifier(CoordinateOperationSequence.class),
+                new CoordinateSwitch(4, 5),
+                new CoordinateSwitch(3, 4),
+                LoadMemorizeCoordinate.loadY,
+                LoadMemorizeCoordinate.loadX,
+                MemorizeCoordinate.memoX,
+                MemorizeCoordinate.memoY,
+                new CoordinateSwitch(3, 4),
+                new CoordinateSwitch(4, 5),
+                toGridDatum,
+                rad2deg,
+                LoadMemorizeCoordinate.loadZ,
+                MemorizeCoordinate.memoZ,
+                transfo,
+                deg2rad,
+                fromGridDatum);
+        return new CoordinateOperationSequence(new Identifier(CoordinateOperationSequence.class),
+                MemorizeCoordinate.memoX,
+                MemorizeCoordinate.memoY,
+                MemorizeCoordinate.memoZ,
+                toGridDatum,
+                rad2deg,
+                LoadMemorizeCoordinate.loadZ,
+                MemorizeCoordinate.memoZ,
+                transfo,
+                deg2rad,
+                fromGridDatum,
+                new IterativeTransformation(seq, new int[]{3, 4}, new int[]{0, 1}, new double[]{1e-11, 1e-11}),
+                LoadMemorizeCoordinate.loadY,
+                LoadMemorizeCoordinate.loadY,
+                LoadMemorizeCoordinate.loadX);
+    }
+
+    /**
+     * Build the sequence used by CompoundCRS before
+     * CompoundAltitude2EllipsoidalHeight to transform ellipsoidal heights into
+     * altitudes.
+     */
+    private static CoordinateOperation legacyHeight2Altitude(Altitude2EllipsoidalHeight transfo,
+            CoordinateOperation toGridDatum) throws Exception {
+        return new CoordinateOperationSequence(new Identifier(CoordinateOperationSequence.class),
+                MemorizeCoordinate.memoX,
+                MemorizeCoordinate.memoY,
+                toGridDatum,
+                UnitConversion.createUnitConverter(Unit.RADIAN, Unit.DEGREE, Unit.METER, Unit.METER),
+                transfo.inverse(),
+                LoadMemorizeCoordinate.loadY,
+                LoadMemorizeCoordinate.loadX);
+    }
+
+    /**
+     * Check that op and its inverse give the same results as the legacy
+     * sequences for random points of the area [lat0, lat1] x [lon0, lon1]
+     * (in degrees), and log the time spent by both implementations.
+     */
+    private void compare(String name, Altitude2EllipsoidalHeight transfo,
+            CoordinateOperation toGridDatum, CoordinateOperation fromGridDatum,
+            double lat0, double lat1, double lon0, double lon1) throws Exception {
+        CompoundAltitude2EllipsoidalHeight op =
+                new CompoundAltitude2EllipsoidalHeight(transfo, toGridDatum, fromGridDatum);
+        CoordinateOperation inverse = op.inverse();
+        CoordinateOperation legacy = legacyAltitude2Height(transfo, toGridDatum, fromGridDatum);
+        CoordinateOperation legacyInverse = legacyHeight2Altitude(transfo, toGridDatum);
+        Random random = new Random(12345);
+        int n = 200;
+        double[][] points = new double[n][];
+        for (int i = 0; i < n; i++) {
+            points[i] = new double[]{
+                (lat0 + random.nextDouble() * (lat1 - lat0)) * DEG,
+                (lon0 + random.nextDouble() * (lon1 - lon0)) * DEG,
+                random.nextDouble() * 1000};
+        }
+        long tNew = 0;
+        long tLegacy = 0;
+        for (double[] p : points) {
+            long t0 = System.nanoTime();
+            double[] h = op.transform(p.clone());
+            long t1 = System.nanoTime();
+            double[] hLegacy = legacy.transform(p.clone());
+            tNew += t1 - t0;
+            tLegacy += System.nanoTime() - t1;
+            assertEquals(name + " latitude", p[0], h[0], 0.0);
+            assertEquals(name + " longitude", p[1], h[1], 0.0);
+            assertEquals(name + " latitude", p[0], hLegacy[0], 0.0);
+            assertEquals(name + " longitude", p[1], hLegacy[1], 0.0);
+            assertEquals(name + " height", hLegacy[2], h[2], 1E-6);
+
+            double[] a = inverse.transform(h.clone());
+            double[] aLegacy = legacyInverse.transform(h.clone());
+            assertEquals(name + " latitude", p[0], a[0], 0.0);
+            assertEquals(name + " longitude", p[1], a[1], 0.0);
+            assertEquals(name + " altitude", aLegacy[2], a[2], 1E-6);
+            // round trip
+            assertEquals(name + " altitude", p[2], a[2], 1E-4);
+        }
+        LOGGER.info(name + " : CompoundAltitude2EllipsoidalHeight " + tNew / n
+                + " ns/point, MemorizeCoordinate/IterativeTransformation " + tLegacy / n + " ns/point");
+    }
+
+    @Test
+    public void testIGN69FromNTF() throws Exception {
+        Altitude2EllipsoidalHeight transfo = (Altitude2EllipsoidalHeight) VerticalDatum.IGN69.getAltiToEllpsHeight();
+        GeodeticDatum gridDatum = transfo.getAssociatedDatum();
+        compare("NTF + IGN69", transfo,
+                GeodeticDatum.NTF.getCoordinateOperations(gridDatum).get(0),
+                gridDatum.getCoordinateOperations(GeodeticDatum.NTF).get(0),
+                43.5, 49.5, -1.5, 6.5);
+    }
+
+    @Test
+    public void testSHOM53FromMAYO50() throws Exception {
+        Altitude2EllipsoidalHeight transfo = (Altitude2EllipsoidalHeight) VerticalDatum.SHOM53.getAltiToEllpsHeight();
+        GeodeticDatum gridDatum = transfo.getAssociatedDatum();
+        GeodeticDatum mayo50 = ((GeodeticCRS) cRSFactory.getCRS("IGNF:MAYO50UTM38S")).getDatum();
+        compare("MAYO50 + SHOM53", transfo,
+                mayo50.getCoordinateOperations(gridDatum).get(0),
+                gridDatum.getCoordinateOperations(mayo50).get(0),
+                -13.0, -12.65, 45.0, 45.3);
+    }
+
+    @Test
+    public void testInverse() throws Exception {
+        Altitude2EllipsoidalHeight transfo = (Altitude2EllipsoidalHeight) VerticalDatum.IGN69.getAltiToEllpsHeight();
+        GeodeticDatum gridDatum = transfo.getAssociatedDatum();
+        CompoundAltitude2EllipsoidalHeight op = new CompoundAltitude2EllipsoidalHeight(transfo,
+                GeodeticDatum.NTF.getCoordinateOperations(gridDatum).get(0),
+                gridDatum.getCoordinateOperations(GeodeticDatum.NTF).get(0));
+        CoordinateOperation inverse = op.inverse();
+        assertSame(op, inverse.inverse());
+        assertTrue(inverse.toString().startsWith("Ellipsoidal height to altitude"));
+        assertTrue(op.toString().startsWith("Altitude to ellipsoidal height"));
+
+        // the inverse uses the scratch array of the context, not the one of op
+        double[] p = {47 * DEG, 2 * DEG, 100};
+        TransformContext context = new TransformContext();
+        double[] h = op.transform(p.clone(), context);
+        double[] a = inverse.transform(h.clone(), context);
+        assertEquals(100.0, a[2], 1E-4);
+        assertEquals(h[2], op.transform(p.clone(), context)[2], 0.0);
+        assertEquals(a[2], inverse.transform(h.clone())[2], 0.0);
+
+        try {
+            inverse.transform(new double[]{47 * DEG, 2 * DEG});
+            assertTrue("a 2D coordinate cannot be transformed", false);
+        } catch (org.cts.CoordinateDimensionException e) {
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link CoordinateOperationSelector}.
+ */
+public class CoordinateOperationSelectorTest extends BaseCoordinateTransformTest {
+
+    /**
+     * Count the points transformed and reject the points whose first
+     * ordinate exceeds a limit. All the instances are equal.
+     */
+    static class Bounded extends AbstractCoordinateOperation {
+
+        final double limit;
+        int calls;
+
+        Bounded(double limit, double precision) {
+            super(new Identifier("TEST", "bounded", "Bounded"));
+            this.limit = limit;
+            this.precision = precision;
+        }
+
+        @Override
+        public double[] transform(double[] coord) throws IllegalCoordinateException {
+            calls++;
+            if (coord[0] > limit) {
+                throw new IllegalCoordinateException("Out of the limit", coord);
+            }
+            return coord;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Bounded;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+
+    @Test
+    public void testCostsByIdentity() {
+        Bounded op1 = new Bounded(100.0, 1.0);
+        Bounded op2 = new Bounded(100.0, 1.0);
+        double[] sample = new double[]{10.0, 10.0};
+        try {
+            CoordinateOperationSelector.setCost(op1, 10.0);
+            CoordinateOperationSelector.setCost(op2, 1.0);
+            assertEquals(10.0, CoordinateOperationSelector.getCost(op1, sample), 0.0);
+            assertEquals(1.0, CoordinateOperationSelector.getCost(op2, sample), 0.0);
+            List<CoordinateOperation> ops = Arrays.<CoordinateOperation>asList(op1, op2);
+            assertSame(op2, CoordinateOperationSelector.select(ops, 1.0, sample));
+        } finally {
+            CoordinateOperationSelector.clearCosts();
+        }
+    }
+
+    @Test
+    public void testEligibilityIsCached() {
+        Bounded op = new Bounded(100.0, 1.0);
+        List<CoordinateOperation> ops = Arrays.<CoordinateOperation>asList(op);
+        double[] inside = new double[]{10.0, 10.0};
+        double[] outside = new double[]{200.0, 10.0};
+        try {
+            assertSame(op, CoordinateOperationSelector.select(ops, 1.0, inside));
+            int calls = op.calls;
+            assertTrue(calls > 0);
+            assertSame(op, CoordinateOperationSelector.select(ops, 1.0, inside));
+            assertEquals(calls, op.calls);
+            assertTrue(CoordinateOperationSelector.select(ops, 1.0, outside) == null);
+            calls = op.calls;
+            assertTrue(CoordinateOperationSelector.select(ops, 1.0, outside) == null);
+            assertEquals(calls, op.calls);
+            assertTrue(Double.isInfinite(CoordinateOperationSelector.getCost(op, outside)));
+            assertTrue(CoordinateOperationSelector.select(ops, 0.1, inside) == null);
+        } finally {
+            CoordinateOperationSelector.clearCosts();
+        }
+    }
+
+    @Test
+    public void testCalibrationPointsAreSpread() {
+        // the sample is close to the limit : part of the calibration points
+        // are rejected, the cost is measured on the other ones
+        Bounded op = new Bounded(10.0, 1.0);
+        double cost = CoordinateOperationSelector.measureCost(op, new double[]{10.0, 10.0});
+        assertTrue(cost > 0.0 && !Double.isInfinite(cost));
+        assertTrue(Double.isInfinite(CoordinateOperationSelector.measureCost(op, new double[]{10.01, 10.0})));
+    }
+}
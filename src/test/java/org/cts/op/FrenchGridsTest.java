@@ -31,17 +31,41 @@
  */
 package org.cts.op;
 
+import org.cts.CRSHelper;
+import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
 import org.cts.crs.CoordinateReferenceSystem;
 import org.cts.crs.GeodeticCRS;
+import org.cts.crs.Geographic2DCRS;
+import org.cts.datum.Ellipsoid;
+import org.cts.datum.GeodeticDatum;
+import org.cts.op.transformation.CompositeGridShiftTransformation;
+import org.cts.op.transformation.FrenchGeocentricNTF2RGF;
+import org.cts.op.transformation.FrenchGeographicNTF2RGF;
+import org.cts.op.transformation.NTv2GridShiftTransformation;
+import org.cts.util.ConvergencePolicy;
+import org.cts.util.NonConvergenceException;
 
 import org.junit.Test;
 
+import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * This class is used to test french grids transformations.
@@ -100,6 +124,620 @@ public class FrenchGridsTest extends BaseCoordinateTransformTest {
         lineReader.close();
     }
 
+    /**
+     * Test that transformations using a TransformContext give exactly the
+     * same results as transformations without context, in both directions.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCoordinateTransformWithContext() throws Exception {
+        String filePath = BatchCoordinateTransformTest.class.getResource("frenchgridstest.csv").toURI().getPath();
+        LineNumberReader lineReader = new LineNumberReader(new FileReader(filePath));
+        TransformContext context = new TransformContext();
+        lineReader.readLine();
+        String line;
+        while ((line = lineReader.readLine()) != null) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            String[] values = line.split(";");
+            GeodeticCRS inputCRS = (GeodeticCRS) cRSFactory.getCRS(values[1]);
+            GeodeticCRS outputCRS = (GeodeticCRS) cRSFactory.getCRS(values[4]);
+            double[] pointSource = new double[]{parseNumber(values[2]), parseNumber(values[3]), 0};
+            List<CoordinateOperation> ops = CoordinateOperationFactory.createCoordinateOperations(inputCRS, outputCRS);
+            List<CoordinateOperation> inverseOps = CoordinateOperationFactory.createCoordinateOperations(outputCRS, inputCRS);
+            for (int i = 0; i < ops.size(); i++) {
+                double[] expected = ops.get(i).transform(pointSource.clone());
+                double[] result = ops.get(i).transform(pointSource.clone(), context);
+                assertArrayEquals(expected, result, 0.0);
+                expected = inverseOps.get(i).transform(expected);
+                result = inverseOps.get(i).transform(result, context);
+                assertArrayEquals(expected, result, 0.0);
+            }
+        }
+        lineReader.close();
+        assertTrue(context.getGridLookupCount() > 0);
+    }
+
+    /**
+     * Test that memoized transformations give exactly the same results as
+     * the original transformations, point by point and in bulk.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMemoizedCoordinateTransform() throws Exception {
+        String filePath = BatchCoordinateTransformTest.class.getResource("frenchgridstest.csv").toURI().getPath();
+        LineNumberReader lineReader = new LineNumberReader(new FileReader(filePath));
+        lineReader.readLine();
+        String line;
+        while ((line = lineReader.readLine()) != null) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            String[] values = line.split(";");
+            GeodeticCRS inputCRS = (GeodeticCRS) cRSFactory.getCRS(values[1]);
+            GeodeticCRS outputCRS = (GeodeticCRS) cRSFactory.getCRS(values[4]);
+            double[] pointSource = new double[]{parseNumber(values[2]), parseNumber(values[3]), 0};
+            for (CoordinateOperation op : CoordinateOperationFactory.createCoordinateOperations(inputCRS, outputCRS)) {
+                MemoizedCoordinateOperation memo = MemoizedCoordinateOperation.memoize(op, 16);
+                double[] expected = op.transform(pointSource.clone());
+                assertArrayEquals(expected, memo.transform(pointSource.clone()), 0.0);
+                assertArrayEquals(expected, memo.transform(pointSource.clone()), 0.0);
+                assertEquals(1, memo.getHits());
+                double[][] columns = new double[3][4];
+                for (int i = 0; i < 4; i++) {
+                    columns[0][i] = pointSource[0] + (i % 2) * 0.001;
+                    columns[1][i] = pointSource[1];
+                }
+                double[][] expectedColumns = op.transform(
+                        new double[][]{columns[0].clone(), columns[1].clone(), columns[2].clone()}, 0, 4);
+                columns = memo.transform(columns, 0, 4);
+                assertEquals(expectedColumns.length, columns.length);
+                for (int d = 0; d < columns.length; d++) {
+                    assertArrayEquals(expectedColumns[d], columns[d], 0.0);
+                }
+                long hits = memo.getHits();
+                MemoizedCoordinateOperation.setEnabled(false);
+                try {
+                    assertArrayEquals(expected, memo.transform(pointSource.clone()), 0.0);
+                    assertEquals(hits, memo.getHits());
+                } finally {
+                    MemoizedCoordinateOperation.setEnabled(true);
+                }
+            }
+        }
+        lineReader.close();
+    }
+
+    /**
+     * Test the non-throwing bulk transformation : points outside the french
+     * grids get NaN coordinates and a status code, the other ones get the
+     * same result as a point by point transformation reporting failures.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTransformWithStatus() throws Exception {
+        GeodeticCRS inputCRS = (GeodeticCRS) cRSFactory.getCRS("IGNF:LAMBE");
+        GeodeticCRS outputCRS = (GeodeticCRS) cRSFactory.getCRS("IGNF:LAMB93");
+        double[][] points = new double[][]{
+            {565767.906, 2669005.730, 0},
+            {3565767.906, 2669005.730, 0},
+            {600000, 2200000, 0},
+            {565767.906, -2669005.730, 0}};
+        boolean ntf2rgf = false;
+        for (CoordinateOperation op : CoordinateOperationFactory.createCoordinateOperations(inputCRS, outputCRS)) {
+            double[][] columns = new double[3][points.length];
+            for (int i = 0; i < points.length; i++) {
+                for (int d = 0; d < 3; d++) {
+                    columns[d][i] = points[i][d];
+                }
+            }
+            byte[] status = new byte[points.length];
+            columns = op.transform(columns, 0, points.length, status);
+            boolean usesGeocentricGrid = toString(op).contains("FrenchGeocentricNTF2RGF");
+            ntf2rgf |= usesGeocentricGrid;
+            for (int i = 0; i < points.length; i++) {
+                double[] expected;
+                TransformContext context = new TransformContext();
+                context.setReportingFailures(true);
+                try {
+                    expected = op.transform(points[i].clone(), context);
+                    if (context.hasFailed()) {
+                        expected = null;
+                    }
+                } catch (IllegalCoordinateException e) {
+                    expected = null;
+                }
+                if (expected == null) {
+                    assertTrue(status[i] != TransformStatus.OK);
+                    if (usesGeocentricGrid) {
+                        assertEquals(TransformStatus.OUT_OF_EXTENT, status[i]);
+                    }
+                    for (int d = 0; d < columns.length; d++) {
+                        assertTrue(Double.isNaN(columns[d][i]));
+                    }
+                } else {
+                    assertEquals(TransformStatus.OK, status[i]);
+                    assertEquals(expected[0], columns[0][i], 1E-9);
+                    assertEquals(expected[1], columns[1][i], 1E-9);
+                }
+            }
+            assertEquals(TransformStatus.OK, status[0]);
+            if (usesGeocentricGrid) {
+                assertEquals(TransformStatus.OUT_OF_EXTENT, status[1]);
+            }
+        }
+        assertTrue(ntf2rgf);
+        // dimension errors are reported for all the points
+        double[][] columns = new double[][]{{1, 2}, {3, 4}};
+        byte[] status = new byte[2];
+        new Geocentric2Geographic(Ellipsoid.GRS80).transform(columns, 0, 2, status);
+        assertArrayEquals(new byte[]{TransformStatus.DIMENSION_ERROR, TransformStatus.DIMENSION_ERROR}, status);
+        assertTrue(Double.isNaN(columns[0][0]) && Double.isNaN(columns[1][1]));
+    }
+
+    /**
+     * Test that sorting a batch along a space-filling curve before a grid
+     * stage reading the grid file gives the same results as transforming it
+     * in its original order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLocalityOrder() throws Exception {
+        NTv2GridShiftTransformation ntv2 = NTv2GridShiftTransformation.createNTv2GridShiftTransformation("ntf_r93.gsb");
+        ntv2.loadGridShiftFile();
+        assertTrue(ntv2.isLocalitySensitive());
+        CoordinateOperationSequence seq = new CoordinateOperationSequence(
+                new Identifier(FrenchGridsTest.class), ntv2);
+        int n = 5000;
+        Random random = new Random(1);
+        double[][] columns = new double[2][n + 10];
+        for (int i = 0; i < n + 10; i++) {
+            columns[0][i] = Math.toRadians(42 + random.nextDouble() * 9);
+            columns[1][i] = Math.toRadians(-4 + random.nextDouble() * 12);
+        }
+        columns[0][17] = Double.NaN;
+        int[] order = LocalityOrder.order(columns, 10, n);
+        int[] sortedOrder = order.clone();
+        Arrays.sort(sortedOrder);
+        for (int k = 0; k < n; k++) {
+            assertEquals(k, sortedOrder[k]);
+        }
+        assertEquals(7, order[n - 1]);
+        double[][] expected = new double[][]{columns[0].clone(), columns[1].clone()};
+        for (int i = 10; i < n + 10; i++) {
+            double[] p = ntv2.transform(new double[]{expected[0][i], expected[1][i]});
+            expected[0][i] = p[0];
+            expected[1][i] = p[1];
+        }
+        int threshold = LocalityOrder.getThreshold();
+        LocalityOrder.setThreshold(100);
+        try {
+            double[][] result = seq.transform(columns, 10, n);
+            assertArrayEquals(expected[0], result[0], 0.0);
+            assertArrayEquals(expected[1], result[1], 0.0);
+        } finally {
+            LocalityOrder.setThreshold(threshold);
+        }
+    }
+
+    /**
+     * Compare the time spent to transform a large shuffled batch with a grid
+     * read from the grid file, in its original order and sorted along the
+     * Morton curve, and check that both give the same results.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLocalityOrderTiming() throws Exception {
+        NTv2GridShiftTransformation ntv2 = NTv2GridShiftTransformation.createNTv2GridShiftTransformation("ntf_r93.gsb");
+        ntv2.loadGridShiftFile();
+        assertTrue(ntv2.isLocalitySensitive());
+        CoordinateOperationSequence seq = new CoordinateOperationSequence(
+                new Identifier(FrenchGridsTest.class), ntv2);
+        int n = 200000;
+        Random random = new Random(12345);
+        double[][] points = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            points[0][i] = Math.toRadians(42 + random.nextDouble() * 9);
+            points[1][i] = Math.toRadians(-4 + random.nextDouble() * 12);
+        }
+        int threshold = LocalityOrder.getThreshold();
+        try {
+            LocalityOrder.setThreshold(Integer.MAX_VALUE);
+            double[][] unsorted = new double[][]{points[0].clone(), points[1].clone()};
+            long t0 = System.nanoTime();
+            unsorted = seq.transform(unsorted, 0, n);
+            long tUnsorted = System.nanoTime() - t0;
+            LocalityOrder.setThreshold(LocalityOrder.DEFAULT_THRESHOLD);
+            double[][] sorted = new double[][]{points[0].clone(), points[1].clone()};
+            t0 = System.nanoTime();
+            sorted = seq.transform(sorted, 0, n);
+            long tSorted = System.nanoTime() - t0;
+            assertArrayEquals(unsorted[0], sorted[0], 0.0);
+            assertArrayEquals(unsorted[1], sorted[1], 0.0);
+            LOGGER.info("NTv2 (random access), " + n + " shuffled points : "
+                    + tUnsorted / 1000000 + " ms in their order, "
+                    + tSorted / 1000000 + " ms sorted along the Morton curve");
+        } finally {
+            LocalityOrder.setThreshold(threshold);
+        }
+    }
+
+    /**
+     * Test that the selected operation is the cheapest one meeting the
+     * required precision and able to transform the sample point.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testOperationSelection() throws Exception {
+        GeodeticCRS lambe = (GeodeticCRS) cRSFactory.getCRS("IGNF:LAMBE");
+        GeodeticCRS lamb93 = (GeodeticCRS) cRSFactory.getCRS("IGNF:LAMB93");
+        List<CoordinateOperation> ops = CoordinateOperationFactory.createCoordinateOperations(lambe, lamb93);
+        double[] inside = new double[]{565767.906, 2669005.730, 0};
+        double[] outside = new double[]{0, 0, 0};
+        try {
+            List<CoordinateOperation> ranked = CoordinateOperationSelector.rank(ops, 2.0, inside);
+            assertEquals(ops.size(), ranked.size());
+            for (int i = 1; i < ranked.size(); i++) {
+                assertTrue(CoordinateOperationSelector.getCost(ranked.get(i - 1), inside)
+                        <= CoordinateOperationSelector.getCost(ranked.get(i), inside));
+            }
+            assertTrue(ranked.get(0) == CoordinateOperationFactory.createCoordinateOperation(lambe, lamb93, 2.0, inside));
+            CoordinateOperation mostPrecise = CoordinateOperationSelector.select(ops, 1E-6, inside);
+            for (CoordinateOperation op : ops) {
+                assertTrue(op == mostPrecise || op.getPrecision() > 1E-6);
+            }
+            assertTrue(CoordinateOperationSelector.select(ops, 1E-12, inside) == null);
+            // The gr3df97a grid does not cover the outside point
+            CoordinateOperation grid = null;
+            CoordinateOperation helmert = null;
+            for (CoordinateOperation op : ops) {
+                if (op.getPrecision() > 1.0) {
+                    helmert = op;
+                } else if (op.getPrecision() > 1E-3) {
+                    grid = op;
+                }
+            }
+            ranked = CoordinateOperationSelector.rank(ops, 2.0, outside);
+            assertEquals(ops.size() - 1, ranked.size());
+            assertTrue(!ranked.contains(grid));
+            CoordinateOperationSelector.setCost(helmert, 0.0);
+            assertTrue(helmert == CoordinateOperationSelector.select(ops, 2.0, inside));
+            assertTrue(CoordinateOperationSelector.select(ops, 0.1, inside).getPrecision() <= 0.1);
+        } finally {
+            CoordinateOperationSelector.clearCosts();
+        }
+    }
+
+    /**
+     * Test that points out of the grid are transformed by the Helmert
+     * transformation, in point by point and in bulk mode.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGridFallback() throws Exception {
+        GeodeticCRS lambe = (GeodeticCRS) cRSFactory.getCRS("IGNF:LAMBE");
+        GeodeticCRS lamb93 = (GeodeticCRS) cRSFactory.getCRS("IGNF:LAMB93");
+        FallbackCoordinateOperation op = (FallbackCoordinateOperation)
+                CoordinateOperationFactory.createGridFallbackOperation(lambe, lamb93);
+        assertTrue(toString(op.getPrimary()).contains("NTv2GridShiftTransformation"));
+        assertTrue(op.getFallback().getPrecision() > op.getPrimary().getPrecision());
+        double[][] points = new double[][]{
+            {565767.906, 2669005.730, 0},
+            {0, 0, 0},
+            {600000, 2200000, 0},
+            {3565767.906, 2669005.730, 0}};
+        boolean[] inside = new boolean[]{true, false, true, false};
+        double[][] columns = new double[3][points.length];
+        for (int i = 0; i < points.length; i++) {
+            double[] expected = inside[i]
+                    ? op.getPrimary().transform(points[i].clone())
+                    : op.getFallback().transform(points[i].clone());
+            assertArrayEquals(expected, op.transform(points[i].clone()), 0.0);
+            for (int d = 0; d < 3; d++) {
+                columns[d][i] = points[i][d];
+            }
+        }
+        double[] precisions = new double[points.length];
+        columns = op.transform(columns, 0, points.length, precisions);
+        CoordinateOperation inverse = CoordinateOperationFactory.createGridFallbackOperation(lamb93, lambe);
+        for (int i = 0; i < points.length; i++) {
+            double[] expected = op.transform(points[i].clone());
+            assertEquals(expected[0], columns[0][i], 1E-9);
+            assertEquals(expected[1], columns[1][i], 1E-9);
+            assertEquals(inside[i] ? op.getPrimary().getPrecision() : op.getFallback().getPrecision(),
+                    precisions[i], 0.0);
+            double[] back = inverse.transform(expected);
+            assertEquals(points[i][0], back[0], 1E-3);
+            assertEquals(points[i][1], back[1], 1E-3);
+        }
+    }
+
+    /**
+     * Test that a grid fallback operation cannot be created between two CRS
+     * without any operation.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGridFallbackWithoutOperation() throws Exception {
+        GeodeticCRS source = new Geographic2DCRS(new Identifier("TEST", "source", "source"), GeodeticDatum.WGS84);
+        GeodeticCRS target = new Geographic2DCRS(new Identifier("TEST", "target", "target"), GeodeticDatum.WGS84);
+        source.addCRSTransformation(target, new ArrayList<CoordinateOperation>());
+        try {
+            CoordinateOperationFactory.createGridFallbackOperation(source, target);
+            fail("No operation from source to target");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("TEST:source"));
+        }
+    }
+
+    /**
+     * Test that the geographic shift grid derived from gr3df97a gives the
+     * results of the official geocentric interpolation within a few
+     * millimeters for points spread over France at heights up to 3000 m, and
+     * that its inverse returns the starting points.
+     */
+    @Test
+    public void testGeographicShiftGrid() throws Exception {
+        CoordinateOperation reference = new CoordinateOperationSequence(
+                new Identifier(CoordinateOperation.class, "NTF to RGF93"),
+                new Geographic2Geocentric(Ellipsoid.CLARKE1880IGN),
+                new FrenchGeocentricNTF2RGF(),
+                new Geocentric2Geographic(Ellipsoid.GRS80));
+        FrenchGeographicNTF2RGF op = new FrenchGeographicNTF2RGF();
+        CoordinateOperation inverse = op.inverse();
+        double radius = Ellipsoid.GRS80.getSemiMajorAxis();
+        Random random = new Random(45);
+        int n = 2000;
+        double[][] columns = new double[3][n];
+        double[][] expected = new double[n][];
+        double maxDeviation = 0;
+        for (int i = 0; i < n; i++) {
+            double[] point = new double[]{
+                Math.toRadians(42.5 + 8.5 * random.nextDouble()),
+                Math.toRadians(-4.5 + 12.5 * random.nextDouble()),
+                3000 * random.nextDouble()};
+            expected[i] = reference.transform(point.clone());
+            double[] result = op.transform(point.clone());
+            maxDeviation = Math.max(maxDeviation, radius * Math.abs(result[0] - expected[i][0]));
+            maxDeviation = Math.max(maxDeviation, radius * Math.cos(point[0]) * Math.abs(result[1] - expected[i][1]));
+            maxDeviation = Math.max(maxDeviation, Math.abs(result[2] - expected[i][2]));
+            double[] back = inverse.transform(result.clone());
+            assertEquals(point[0], back[0], 1E-11);
+            assertEquals(point[1], back[1], 1E-11);
+            assertEquals(point[2], back[2], 1E-6);
+            for (int d = 0; d < 3; d++) {
+                columns[d][i] = point[d];
+            }
+        }
+        assertTrue("deviation " + maxDeviation, maxDeviation < 5E-3);
+        op.transform(columns, 0, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected[i][0], columns[0][i], 1E-9);
+            assertEquals(expected[i][1], columns[1][i], 1E-9);
+            assertEquals(expected[i][2], columns[2][i], 1E-3);
+        }
+    }
+
+    /**
+     * Test that NaN heights stay NaN through the geographic shift grid, and
+     * that the inverse iteration follows its convergence policy.
+     */
+    @Test
+    public void testGeographicShiftGridConvergence() throws Exception {
+        FrenchGeographicNTF2RGF op = new FrenchGeographicNTF2RGF();
+        double[] point = new double[]{Math.toRadians(47.5), Math.toRadians(2.5), 0.0};
+        double[] expected = op.transform(point.clone());
+        double[] result = op.transform(new double[]{point[0], point[1], Double.NaN});
+        assertEquals(expected[0], result[0], 0.0);
+        assertEquals(expected[1], result[1], 0.0);
+        assertTrue(Double.isNaN(result[2]));
+        double[][] columns = new double[][]{{point[0]}, {point[1]}, {Double.NaN}};
+        op.transform(columns, 0, 1);
+        assertEquals(expected[0], columns[0][0], 0.0);
+        assertTrue(Double.isNaN(columns[2][0]));
+        CoordinateOperation inverse = op.inverse();
+        double[] back = inverse.transform(result);
+        assertEquals(point[0], back[0], 1E-11);
+        assertEquals(point[1], back[1], 1E-11);
+        assertTrue(Double.isNaN(back[2]));
+
+        ConvergencePolicy policy = FrenchGeographicNTF2RGF.getDefaultConvergencePolicy();
+        assertTrue(op.getConvergencePolicy() == policy);
+        op.setConvergencePolicy(policy.withMaxIterations(1));
+        try {
+            op.inverse().transform(expected.clone());
+            fail("The inverse transformation converges in a single iteration");
+        } catch (NonConvergenceException e) {
+            // expected
+        }
+        op.setConvergencePolicy(policy.withMaxIterations(1).withOnFailure(ConvergencePolicy.OnFailure.NAN));
+        assertTrue(Double.isNaN(op.inverse().transform(expected.clone())[0]));
+        op.setConvergencePolicy(policy.withMaxIterations(1).withOnFailure(ConvergencePolicy.OnFailure.BEST_EFFORT));
+        assertEquals(point[0], op.inverse().transform(expected.clone())[0], 1E-7);
+        op.setConvergencePolicy(null);
+        assertEquals(point[0], op.inverse().transform(expected.clone())[0], 1E-11);
+    }
+
+    /**
+     * Test the composite transformation of a list of nadgrids : the first
+     * grid covering a point is used, points covered by no grid are left
+     * unchanged after @null and reported as out of extent otherwise.
+     */
+    @Test
+    public void testCompositeGridShift() throws Exception {
+        Map<String, String> param = new HashMap<String, String>();
+        param.put("proj", "longlat");
+        param.put("ellps", "clrk80ign");
+        param.put("nadgrids", "@missing.gsb,ntf_r93.gsb,@null,other.gsb");
+        GeodeticCRS crs = (GeodeticCRS) CRSHelper.createCoordinateReferenceSystem(
+                new Identifier("TEST", "NADGRIDS", "nadgrids"), param);
+        CompositeGridShiftTransformation composite = null;
+        for (CoordinateOperation op : crs.getGridTransformations(GeodeticDatum.RGF93)) {
+            if (op instanceof CompositeGridShiftTransformation) {
+                composite = (CompositeGridShiftTransformation) op;
+            }
+        }
+        assertTrue(composite != null);
+        assertEquals(1, composite.getGrids().size());
+        assertTrue(composite.isTerminalNull());
+
+        NTv2GridShiftTransformation grid = NTv2GridShiftTransformation.createNTv2GridShiftTransformation("ntf_r93.gsb");
+        grid.setMode(NTv2GridShiftTransformation.SPEED);
+        CompositeGridShiftTransformation twoGrids = new CompositeGridShiftTransformation(
+                new Identifier(CompositeGridShiftTransformation.class, "ntf_r93.gsb,ntf_r93.gsb"),
+                Arrays.asList(grid, grid), false);
+        double[] inside = new double[]{Math.toRadians(46.5), Math.toRadians(2.5), 0};
+        double[] outside = new double[]{Math.toRadians(10), Math.toRadians(20), 0};
+        double[] expected = grid.transform(inside.clone());
+        assertArrayEquals(expected, composite.transform(inside.clone()), 0.0);
+        assertArrayEquals(expected, twoGrids.transform(inside.clone()), 0.0);
+        assertArrayEquals(outside, composite.transform(outside.clone()), 0.0);
+        TransformContext context = new TransformContext();
+        context.setReportingFailures(true);
+        assertTrue(Double.isNaN(twoGrids.transform(outside.clone(), context)[0]));
+        assertEquals(TransformStatus.OUT_OF_EXTENT, context.getStatus());
+
+        double[] back = composite.inverse().transform(expected.clone());
+        assertEquals(inside[0], back[0], 1E-10);
+        assertEquals(inside[1], back[1], 1E-10);
+        double[][] columns = new double[][]{
+            {inside[0], outside[0]}, {inside[1], outside[1]}, {0, 0}};
+        byte[] status = new byte[2];
+        twoGrids.transform(columns, 0, 2, status);
+        assertEquals(expected[0], columns[0][0], 0.0);
+        assertEquals(expected[1], columns[1][0], 0.0);
+        assertEquals(TransformStatus.OK, status[0]);
+        assertEquals(TransformStatus.OUT_OF_EXTENT, status[1]);
+        assertTrue(Double.isNaN(columns[0][1]));
+    }
+
+    @Test
+    public void testAsynchronousGridLoading() throws Exception {
+        NTv2GridShiftTransformation reference = NTv2GridShiftTransformation.createNTv2GridShiftTransformation("ntf_r93.gsb");
+        reference.setMode(NTv2GridShiftTransformation.SPEED);
+        FrenchGeocentricNTF2RGF geocentricReference = new FrenchGeocentricNTF2RGF();
+        double[] point = new double[]{Math.toRadians(48.85), Math.toRadians(2.35), 0};
+        double[] geocentric = new Geographic2Geocentric(GeodeticDatum.NTF.getEllipsoid()).transform(point.clone());
+        GridPrefetch.setAsynchronous(true);
+        try {
+            NTv2GridShiftTransformation grid = NTv2GridShiftTransformation.createNTv2GridShiftTransformation("ntf_r93.gsb");
+            grid.setMode(NTv2GridShiftTransformation.SPEED);
+            // the datums are known before the end of the loading
+            assertEquals(reference.getToDatum(), grid.getToDatum());
+            FrenchGeocentricNTF2RGF geocentricTransfo = new FrenchGeocentricNTF2RGF();
+            // the first transformation waits for the grid
+            assertArrayEquals(reference.transform(point.clone()), grid.transform(point.clone()), 0.0);
+            assertTrue(grid.isLoaded());
+            assertTrue(GridPrefetch.awaitAll(60, TimeUnit.SECONDS));
+            assertTrue(GridPrefetch.getPendingGrids().isEmpty());
+            assertTrue(GridPrefetch.isReady("gr3df97a.txt"));
+            assertArrayEquals(geocentricReference.transform(geocentric.clone()),
+                    geocentricTransfo.transform(geocentric.clone()), 0.0);
+        } finally {
+            GridPrefetch.setAsynchronous(false);
+        }
+    }
+
+    @Test
+    public void testAsynchronousGridLoadingFailure() throws Exception {
+        GridPrefetch.setAsynchronous(true);
+        try {
+            Future<Object> future = GridPrefetch.load("missing.gsb", new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    throw new FileNotFoundException("missing.gsb");
+                }
+            });
+            try {
+                GridPrefetch.await(future);
+                fail("The grid cannot be loaded");
+            } catch (FileNotFoundException e) {
+                assertEquals("missing.gsb", e.getMessage());
+            }
+            assertTrue(GridPrefetch.awaitAll(60, TimeUnit.SECONDS));
+            assertTrue(GridPrefetch.isReady("missing.gsb"));
+        } finally {
+            GridPrefetch.setAsynchronous(false);
+        }
+    }
+
+    @Test
+    public void testGridMemoryBudget() throws Exception {
+        NTv2GridShiftTransformation grid = NTv2GridShiftTransformation.createNTv2GridShiftTransformation("ntf_r93.gsb");
+        grid.setMode(NTv2GridShiftTransformation.SPEED);
+        FrenchGeocentricNTF2RGF geocentricTransfo = new FrenchGeocentricNTF2RGF();
+        double[] point = new double[]{Math.toRadians(48.85), Math.toRadians(2.35), 0};
+        double[] geocentric = new Geographic2Geocentric(GeodeticDatum.NTF.getEllipsoid()).transform(point.clone());
+        double[] expected = grid.transform(point.clone());
+        double[] expectedGeocentric = geocentricTransfo.transform(geocentric.clone());
+        assertTrue(GridMemory.getFootprints().containsKey("ntf_r93.gsb"));
+        assertTrue(GridMemory.getFootprints().containsKey("gr3df97a.txt"));
+        try {
+            // evict all the grids : they are loaded again when they are used
+            GridMemory.setBudget(0);
+            assertTrue(!grid.isLoaded());
+            GridMemory.setBudget(Long.MAX_VALUE);
+            assertArrayEquals(expected, grid.transform(point.clone()), 0.0);
+            assertArrayEquals(expectedGeocentric, geocentricTransfo.transform(geocentric.clone()), 0.0);
+            assertTrue(grid.isLoaded());
+            assertTrue(GridMemory.getFootprints().get("ntf_r93.gsb") > 0);
+            assertTrue(GridMemory.getFootprints().get("gr3df97a.txt") > 0);
+            long total = 0L;
+            for (long memory : GridMemory.getFootprints().values()) {
+                total += memory;
+            }
+            assertEquals(total, GridMemory.getMemoryUsage());
+
+            // the least recently used grid is evicted first (grids used
+            // in the same millisecond are not ordered)
+            Thread.sleep(5);
+            grid.transform(point.clone());
+            GridMemory.setBudget(GridMemory.getMemoryUsage() - 1);
+            assertTrue(grid.isLoaded());
+            assertTrue(!GridMemory.getFootprints().containsKey("gr3df97a.txt"));
+            assertArrayEquals(expectedGeocentric, geocentricTransfo.transform(geocentric.clone()), 0.0);
+            assertTrue(!grid.isLoaded());
+            assertTrue(GridMemory.getMemoryUsage() <= GridMemory.getBudget());
+        } finally {
+            GridMemory.setBudget(Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void testCacheMemoryAccounting() throws Exception {
+        NTv2GridShiftTransformation grid = NTv2GridShiftTransformation.createNTv2GridShiftTransformation("ntf_r93.gsb");
+        MemoizedCoordinateOperation memo = MemoizedCoordinateOperation.memoize(grid, 64);
+        String name = memo.getName() + " (memoized)";
+        long empty = memo.getMemoryUsage();
+        assertTrue(GridMemory.getFootprints().get(name) >= empty);
+        for (int i = 0; i < 10; i++) {
+            memo.transform(new double[]{Math.toRadians(46 + 0.1 * i), Math.toRadians(2.35), 0});
+        }
+        // the cache is measured when the memory is accounted
+        assertTrue(memo.getMemoryUsage() > empty);
+        assertTrue(GridMemory.getFootprints().get(name) >= memo.getMemoryUsage());
+    }
+
+    private static String toString(CoordinateOperation op) {
+        if (op instanceof CoordinateOperationSequence) {
+            StringBuilder sb = new StringBuilder();
+            for (CoordinateOperation step : ((CoordinateOperationSequence) op).getSequence()) {
+                sb.append(toString(step)).append(' ');
+            }
+            return sb.toString();
+        }
+        return op.getClass().getName();
+    }
+
     public double[] transform(GeodeticCRS sourceCRS, GeodeticCRS targetCRS, double[] inputPoint, int index) throws IllegalCoordinateException {
         List<CoordinateOperation> ops = CoordinateOperationFactory.createCoordinateOperations(sourceCRS, targetCRS);
         return ops.get(index).transform(new double[]{inputPoint[0], inputPoint[1], inputPoint[2]});
@@ -0,0 +1,126 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import java.util.Random;
+
+import org.cts.CTSTestCase;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare the kernels returned by {@link GeocentricKernels#getInstance()}
+ * (the vectorized kernels when they are available) with the scalar kernels.
+ * The vector profile runs this test with the Java 17 classes and the
+ * jdk.incubator.vector module, and sets the org.cts.vector.required system
+ * property so that the test fails if the vectorized kernels are not used.
+ */
+public class GeocentricKernelsTest extends CTSTestCase {
+
+    private static final int N = 1037;
+    private final GeocentricKernels scalar = new GeocentricKernels();
+    private final GeocentricKernels kernels = GeocentricKernels.getInstance();
+
+    private static double[] random(Random random, double min, double max) {
+        double[] values = new double[N];
+        for (int i = 0; i < N; i++) {
+            values[i] = min + random.nextDouble() * (max - min);
+        }
+        return values;
+    }
+
+    private static void assertSameValues(String name, double[] expected, double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(name + "[" + i + "]", expected[i], actual[i], 0.0);
+        }
+    }
+
+    @Test
+    public void testKernels() {
+        LOGGER.info("Geocentric kernels : " + kernels.getName());
+        if (Boolean.getBoolean("org.cts.vector.required")) {
+            assertTrue(kernels.getName(), kernels.getName().startsWith("vector"));
+        }
+    }
+
+    @Test
+    public void testTranslateAndHelmert() {
+        Random random = new Random(17);
+        double[] x = random(random, -6.4E6, 6.4E6);
+        double[] y = random(random, -6.4E6, 6.4E6);
+        double[] z = random(random, -6.4E6, 6.4E6);
+        double[][] s = {x.clone(), y.clone(), z.clone()};
+        double[][] v = {x.clone(), y.clone(), z.clone()};
+        // odd offsets and lengths exercise the scalar tails of the vector loops
+        scalar.translate(s[0], s[1], s[2], 3, N - 5, -168.0, -60.0, 320.0);
+        kernels.translate(v[0], v[1], v[2], 3, N - 5, -168.0, -60.0, 320.0);
+        for (int d = 0; d < 3; d++) {
+            assertSameValues("translate", s[d], v[d]);
+        }
+        double srx = 0.35 / 206264.8;
+        double sry = -0.12 / 206264.8;
+        double srz = 1.2 / 206264.8;
+        scalar.helmert(s[0], s[1], s[2], 1, N - 1, 89.5, 93.8, 123.1, 1 + 1.2E-6, srx, sry, srz);
+        kernels.helmert(v[0], v[1], v[2], 1, N - 1, 89.5, 93.8, 123.1, 1 + 1.2E-6, srx, sry, srz);
+        for (int d = 0; d < 3; d++) {
+            assertSameValues("helmert", s[d], v[d]);
+        }
+        scalar.inverseHelmert(s[0], s[1], s[2], 0, N, 89.5, 93.8, 123.1, 1 / (1 + 1.2E-6), -srx, -sry, -srz);
+        kernels.inverseHelmert(v[0], v[1], v[2], 0, N, 89.5, 93.8, 123.1, 1 / (1 + 1.2E-6), -srx, -sry, -srz);
+        for (int d = 0; d < 3; d++) {
+            assertSameValues("inverseHelmert", s[d], v[d]);
+        }
+    }
+
+    @Test
+    public void testGeographic2Geocentric() {
+        Random random = new Random(42);
+        double[] lat = random(random, -Math.PI / 2, Math.PI / 2);
+        double[] lon = random(random, -Math.PI, Math.PI);
+        double[] h = random(random, -100.0, 5000.0);
+        h[10] = Double.NaN;
+        h[N - 2] = Double.NaN;
+        double[][] s = {lat.clone(), lon.clone(), h.clone()};
+        double[][] v = {lat.clone(), lon.clone(), h.clone()};
+        // more points than a chunk of precomputed sines and cosines
+        scalar.geographic2Geocentric(s[0], s[1], s[2], 2, N - 3, 6378137.0, 0.00669438002290);
+        kernels.geographic2Geocentric(v[0], v[1], v[2], 2, N - 3, 6378137.0, 0.00669438002290);
+        for (int d = 0; d < 3; d++) {
+            assertSameValues("geographic2Geocentric", s[d], v[d]);
+        }
+        assertEquals(lat[0], v[0][0], 0.0);
+        assertEquals(h[N - 1], v[2][N - 1], 0.0);
+    }
+}
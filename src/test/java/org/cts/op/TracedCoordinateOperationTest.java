@@ -0,0 +1,191 @@
+/*
+ * Coordinate Transformations Suite (abridged CTS)  is a library developped to 
+ * perform Coordinate Transformations using well known geodetic algorithms 
+ * and parameter sets. 
+ * Its main focus are simplicity, flexibility, interoperability, in this order.
+ *
+ * This library has been originally developed by Michaël Michaud under the JGeod
+ * name. It has been renamed CTS in 2009 and shared to the community from 
+ * the Atelier SIG code repository.
+ * 
+ * Since them, CTS is supported by the Atelier SIG team in collaboration with Michaël 
+ * Michaud.
+ * The new CTS has been funded  by the French Agence Nationale de la Recherche 
+ * (ANR) under contract ANR-08-VILL-0005-01 and the regional council 
+ * "Région Pays de La Loire" under the projet SOGVILLE (Système d'Orbservation 
+ * Géographique de la Ville).
+ *
+ * CTS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * CTS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * CTS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <https://github.com/irstv/cts/>
+ */
+package org.cts.op;
+
+import org.cts.Identifier;
+import org.cts.IllegalCoordinateException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link TracedCoordinateOperation}.
+ */
+public class TracedCoordinateOperationTest extends BaseCoordinateTransformTest {
+
+    /**
+     * Add a constant to the first ordinate.
+     */
+    static class Shift extends AbstractCoordinateOperation {
+
+        final double delta;
+
+        Shift(String key, double delta) {
+            super(new Identifier("TEST", key, "Shift " + key));
+            this.delta = delta;
+        }
+
+        @Override
+        public double[] transform(double[] coord) throws IllegalCoordinateException {
+            coord[0] += delta;
+            return coord;
+        }
+
+        @Override
+        public String toString() {
+            return "Shift(" + delta + ")";
+        }
+    }
+
+    /**
+     * Move the first ordinate half way to the third one.
+     */
+    static class HalfWay extends AbstractCoordinateOperation {
+
+        HalfWay() {
+            super(new Identifier("TEST", "half", "Half way"));
+        }
+
+        @Override
+        public double[] transform(double[] coord) throws IllegalCoordinateException {
+            coord[0] = (coord[0] + coord[2]) / 2;
+            return coord;
+        }
+
+        @Override
+        public String toString() {
+            return "HalfWay";
+        }
+    }
+
+    @Test
+    public void testSequence() throws Exception {
+        Shift a = new Shift("a", 1);
+        Shift b = new Shift("b", 10);
+        Shift c = new Shift("c", 100);
+        CoordinateOperation sequence = new CoordinateOperationSequence(
+                new Identifier("TEST", "seq", "Sequence"), a, b, c);
+        TracedCoordinateOperation traced = TracedCoordinateOperation.trace(sequence);
+        assertSame(traced, TracedCoordinateOperation.trace(traced));
+        assertSame(sequence, traced.getTracedOperation());
+
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(new double[]{111.0 + i, 0.0},
+                    traced.transform(new double[]{i, 0.0}), 0.0);
+        }
+        double[][] columns = {new double[]{0, 1, 2, 3, 4}, new double[5]};
+        traced.transform(columns, 1, 3);
+        assertArrayEquals(new double[]{0, 112, 113, 114, 4}, columns[0], 0.0);
+
+        TracedCoordinateOperation[] steps = traced.getSteps();
+        assertEquals(3, steps.length);
+        assertSame(a, steps[0].getTracedOperation());
+        assertSame(b, steps[1].getTracedOperation());
+        assertSame(c, steps[2].getTracedOperation());
+        assertEquals(0, steps[0].getSteps().length);
+        // 3 single transformations + 3 points transformed by columns
+        assertEquals(6, traced.getCalls());
+        for (TracedCoordinateOperation step : steps) {
+            assertEquals(6, step.getCalls());
+            assertTrue(traced.getTotalTime() >= step.getTotalTime());
+        }
+
+        String[] lines = traced.explain().split("\n");
+        assertEquals(traced.explain(), 4, lines.length);
+        String stats = " \\[calls=6, total=\\d+\\.\\d{3} ms, mean=\\d+ ns, alloc=\\d+ B/call\\]";
+        assertTrue(lines[0], lines[0].matches("TEST:seq : Sequence" + stats));
+        assertTrue(lines[1], lines[1].matches("   TEST:a : Shift\\(1\\.0\\)" + stats));
+        assertTrue(lines[2], lines[2].matches("   TEST:b : Shift\\(10\\.0\\)" + stats));
+        assertTrue(lines[3], lines[3].matches("   TEST:c : Shift\\(100\\.0\\)" + stats));
+
+        traced.reset();
+        assertEquals(0, traced.getCalls());
+        assertEquals(0, steps[2].getCalls());
+        assertEquals(0, steps[2].getTotalTime());
+        assertTrue(traced.explain().startsWith(
+                "TEST:seq : Sequence [calls=0, total=0.000 ms, mean=0 ns, alloc=0 B/call]"));
+    }
+
+    @Test
+    public void testNestedIterativeSequence() throws Exception {
+        Shift shift = new Shift("a", 0.0);
+        HalfWay half = new HalfWay();
+        CoordinateOperation inner = new CoordinateOperationSequence(
+                new Identifier("TEST", "inner", "Inner"), shift, half);
+        IterativeTransformation iterative = new IterativeTransformation(inner,
+                new int[]{2}, new int[]{0}, new double[]{1E-3});
+        CoordinateOperation outer = new CoordinateOperationSequence(
+                new Identifier("TEST", "outer", "Outer"), new Shift("b", 0.0), iterative);
+        TracedCoordinateOperation traced = TracedCoordinateOperation.trace(outer);
+        TracedCoordinateOperation tracedIterative = traced.getSteps()[1];
+        assertSame(iterative, tracedIterative.getTracedOperation());
+        TracedCoordinateOperation tracedInner = tracedIterative.getSteps()[0];
+        assertSame(inner, tracedInner.getTracedOperation());
+        TracedCoordinateOperation tracedHalf = tracedInner.getSteps()[1];
+        assertSame(half, tracedHalf.getTracedOperation());
+
+        double[] expected = iterative.transform(new double[]{0.0, 0.0, 1.0});
+        double[] result = traced.transform(new double[]{0.0, 0.0, 1.0});
+        assertArrayEquals(expected, result, 0.0);
+        // the distance is halved at each iteration : 2^-10 < 1E-3 < 2^-9
+        assertEquals(1, tracedIterative.getCalls());
+        assertEquals(10, tracedInner.getCalls());
+        assertEquals(10, tracedHalf.getCalls());
+        // no iteration if the values have already converged
+        traced.transform(new double[]{1.0 - 1E-4, 0.0, 1.0});
+        assertEquals(2, traced.getCalls());
+        assertEquals(2, tracedIterative.getCalls());
+        assertEquals(10, tracedInner.getCalls());
+
+        // the traced copy keeps the parameters of the traced operation
+        IterativeTransformation copy = iterative.withOperation(tracedInner);
+        assertSame(tracedInner, copy.getIteratedOperation());
+        assertArrayEquals(iterative.getRealValueIndex(), copy.getRealValueIndex());
+        assertArrayEquals(iterative.getCalculatedValueIndex(), copy.getCalculatedValueIndex());
+        assertArrayEquals(iterative.getTolerance(), copy.getTolerance(), 0.0);
+        assertSame(iterative.getConvergencePolicy(), copy.getConvergencePolicy());
+
+        String[] lines = traced.explain().split("\n");
+        assertEquals(traced.explain(), 6, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("TEST:outer : Outer [calls=2, "));
+        assertTrue(lines[1], lines[1].startsWith("   TEST:b : Shift(0.0) [calls=2, "));
+        assertTrue(lines[2], lines[2].startsWith("   " + iterative.getCode() + " : "));
+        assertTrue(lines[2], lines[2].contains(" [calls=2, "));
+        assertTrue(lines[3], lines[3].startsWith("      TEST:inner : Inner [calls=10, "));
+        assertTrue(lines[4], lines[4].startsWith("         TEST:a : Shift(0.0) [calls=10, "));
+        assertTrue(lines[5], lines[5].startsWith("         TEST:half : HalfWay [calls=10, "));
+    }
+}
@@ -33,14 +33,28 @@ package org.cts.op;
 
 import static java.lang.Math.PI;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.cts.Identifier;
 import org.cts.IllegalCoordinateException;
 import org.cts.crs.*;
+import org.cts.cs.GeographicExtent;
 import org.cts.datum.Ellipsoid;
 import org.cts.datum.GeodeticDatum;
 import org.cts.datum.VerticalDatum;
-
+import org.cts.op.transformation.Altitude2EllipsoidalHeight;
+import org.cts.op.transformation.MultiAltitude2EllipsoidalHeight;
+import org.cts.op.transformation.grids.GeographicGrid;
+import org.cts.op.transformation.grids.IGNGeographicGrid;
+import org.cts.op.transformation.grids.IGNVerticalGrid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 
 /**
@@ -871,4 +885,120 @@ public class VerticalTransformTest extends BaseCoordinateTransformTest {
         assertTrue(checkEquals3D(" altitude to ellipsoidal height.", outputPoint, expectedPoint, 1E-3));
         assertTrue(checkEquals3D(" altitude to ellipsoidal height.", checkPoint, inputPoint, 1E-3));
     }
+    /**
+     * Test the transformation over a set of vertical datums : each point uses
+     * the grid of the smallest datum covering it, and only the grids of the
+     * datums hit are loaded.
+     */
+    @Test
+    public void testMultiVerticalDatums() throws Exception {
+        List<VerticalDatum> datums = new ArrayList<VerticalDatum>();
+        for (VerticalDatum vd : new VerticalDatum[]{VerticalDatum.IGN88GTBT, VerticalDatum.IGN88LS,
+                VerticalDatum.IGN88MG, VerticalDatum.IGN87MART, VerticalDatum.BORASAU01, VerticalDatum.IGNTAHITI66}) {
+            Altitude2EllipsoidalHeight transfo = (Altitude2EllipsoidalHeight) vd.getAltiToEllpsHeight();
+            // new datums, so that their grids are not loaded yet
+            datums.add(new VerticalDatum(vd.getIdentifier(), (GeographicExtent) vd.getExtent(), "", "",
+                    VerticalDatum.Type.GEOIDAL, transfo.getGridFileName(), GeodeticDatum.RGF93));
+        }
+        MultiAltitude2EllipsoidalHeight op = new MultiAltitude2EllipsoidalHeight(datums);
+        // the inverse has the precision of the least precise grid
+        double precision = 0;
+        for (VerticalDatum vd : datums) {
+            precision = Math.max(precision, vd.getAltiToEllpsHeight().getPrecision());
+        }
+        assertEquals(precision, op.getPrecision(), 0.0);
+        assertEquals(precision, op.inverse().getPrecision(), 0.0);
+        assertEquals(op.isLocalitySensitive(), ((GridBasedOperation) op.inverse()).isLocalitySensitive());
+        // Les Saintes, also inside the extent of Grande-Terre & Basse-Terre
+        double[] lesSaintes = new double[]{15.9, -61.6, 100};
+        double[] guadeloupe = new double[]{16, -61.5, 100};
+        double[] bora = new double[]{-16.5, -151.7, 100};
+        double[] outside = new double[]{46, 2, 100};
+        assertEquals("IGN88LS", op.getVerticalDatum(lesSaintes[0], lesSaintes[1]).getShortName());
+        assertEquals("IGN88GTBT", op.getVerticalDatum(guadeloupe[0], guadeloupe[1]).getShortName());
+        assertEquals(null, op.getVerticalDatum(outside[0], outside[1]));
+        double[][] points = new double[][]{lesSaintes, guadeloupe, bora, guadeloupe, lesSaintes};
+        double[][] columns = new double[3][points.length];
+        for (int i = 0; i < points.length; i++) {
+            VerticalDatum vd = op.getVerticalDatum(points[i][0], points[i][1]);
+            double[] expected = vd.getAltiToEllpsHeight().transform(points[i].clone());
+            assertArrayEquals(expected, op.transform(points[i].clone()), 0.0);
+            assertArrayEquals(points[i], op.inverse().transform(expected.clone()), 1E-9);
+            for (int d = 0; d < 3; d++) {
+                columns[d][i] = points[i][d];
+            }
+        }
+        assertEquals(59.747, op.transform(guadeloupe.clone())[2], 1E-3);
+        assertEquals(109.954, op.transform(bora.clone())[2], 1E-3);
+        for (VerticalDatum vd : datums) {
+            boolean hit = vd.getShortName().equals("IGN88LS") || vd.getShortName().equals("IGN88GTBT")
+                    || vd.getShortName().equals("BORASAU01");
+            assertEquals(vd.getShortName(), hit, ((Altitude2EllipsoidalHeight) vd.getAltiToEllpsHeight()).isLoaded());
+        }
+        double[][] bulk = new double[][]{columns[0].clone(), columns[1].clone(), columns[2].clone()};
+        op.transform(bulk, 0, points.length);
+        for (int i = 0; i < points.length; i++) {
+            assertEquals(op.transform(points[i].clone())[2], bulk[2][i], 0.0);
+        }
+        op.inverse().transform(bulk, 0, points.length);
+        assertArrayEquals(columns[2], bulk[2], 1E-9);
+
+        double[][] withOutside = new double[][]{{16, 46}, {-61.5, 2}, {100, 100}};
+        try {
+            op.transform(withOutside, 0, 2);
+            fail("The second point is not covered by any datum");
+        } catch (IllegalCoordinateException e) {
+            assertEquals(100, withOutside[2][0], 0.0);
+        }
+        byte[] status = new byte[2];
+        op.transform(withOutside, 0, 2, status);
+        assertEquals(TransformStatus.OK, status[0]);
+        assertEquals(TransformStatus.OUT_OF_EXTENT, status[1]);
+        assertEquals(59.747, withOutside[2][0], 1E-3);
+        assertTrue(Double.isNaN(withOutside[2][1]));
+    }
+
+    @Test
+    public void testQuantizedGrids() throws Exception {
+        String path = "org/cts/op/transformation/grids/";
+        GeographicGrid[] geoid = new GeographicGrid[2];
+        GeographicGrid[] ntf = new GeographicGrid[2];
+        try {
+            for (int q = 0; q < 2; q++) {
+                GeographicGrid.setQuantizedStorage(q == 1);
+                InputStream is = IGNVerticalGrid.class.getClassLoader().getResourceAsStream(path + "RAF09.txt");
+                geoid[q] = new IGNVerticalGrid(is, false);
+                is = IGNGeographicGrid.class.getClassLoader().getResourceAsStream(path + "gr3df97a.txt");
+                ntf[q] = new IGNGeographicGrid(is);
+            }
+        } finally {
+            GeographicGrid.setQuantizedStorage(false);
+        }
+        assertTrue(!geoid[0].isQuantized());
+        for (GeographicGrid[] grids : new GeographicGrid[][]{geoid, ntf}) {
+            assertTrue(grids[1].isQuantized());
+            assertTrue(grids[1].getMemoryUsage() * 4 <= grids[0].getMemoryUsage());
+            double south = Math.min(grids[0].getY0(), grids[0].getYL());
+            double north = Math.max(grids[0].getY0(), grids[0].getYL());
+            Random random = new Random(0);
+            TransformContext context = new TransformContext();
+            for (int i = 0; i < 10000; i++) {
+                double lat = south + random.nextDouble() * (north - south);
+                double lon = grids[0].getX0() + random.nextDouble() * (grids[0].getXL() - grids[0].getX0());
+                // the dequantized values are exactly the values read in the file
+                assertArrayEquals(grids[0].bilinearInterpolation(lat, lon),
+                        grids[1].bilinearInterpolation(lat, lon), 0.0);
+                assertArrayEquals(grids[0].bilinearInterpolation(lat, lon),
+                        grids[1].bilinearInterpolation(lat, lon, context), 0.0);
+            }
+        }
+        // a value having more decimals than the scale cannot be quantized
+        GeographicGrid grid = new GeographicGrid(0, 1, 1, 0, 2, 2, 1, 360.0, 100, null);
+        grid.setValue(0, 0, new double[]{1.25});
+        assertTrue(grid.quantize());
+        assertEquals(1.25, grid.getValues(0, 0)[0], 0.0);
+        grid.setValue(1, 1, new double[]{1.255});
+        assertTrue(!grid.isQuantized());
+        assertTrue(!grid.quantize());
+    }
 }